@@ -0,0 +1,84 @@
+package catering.bench;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+
+import catering.persistence.PersistenceManager;
+import catering.util.DataGenerator;
+
+/**
+ * Benchmark fixture: the seed data plus {@link DataGenerator} output scaled
+ * to a number of menus, built once per scale under {@code target/bench-db}
+ * and reused by later runs.
+ */
+public final class BenchmarkDatabase {
+
+    private static final String SCRIPT = System.getProperty("catering.script",
+            "../catering/database/catering_init_sqlite.sql");
+    private static final File DIR = new File("target", "bench-db");
+    private static final long SEED = 42;
+
+    private BenchmarkDatabase() {
+    }
+
+    /**
+     * Points {@link PersistenceManager} at the fixture of the given scale,
+     * building it if missing. Must run before anything touches the
+     * persistence layer in this JVM, which JMH guarantees by forking.
+     *
+     * @param scale   Number of menus
+     * @param scratch Whether to work on a throwaway copy, for benchmarks that
+     *                write
+     */
+    public static void use(int scale, boolean scratch) throws IOException, SQLException {
+        DIR.mkdirs();
+        File fixture = new File(DIR, "catering-" + scale + ".db");
+        File target = scratch ? new File(DIR, "catering-" + scale + "-scratch.db") : fixture;
+        if (!fixture.exists()) {
+            // Built where this run works, since the database path is read
+            // once per JVM, then kept as the fixture for later runs
+            System.setProperty("catering.db", target.getPath());
+            build(scale);
+            if (scratch)
+                Files.copy(target.toPath(), fixture.toPath(), StandardCopyOption.REPLACE_EXISTING);
+            return;
+        }
+        if (scratch) {
+            Files.copy(fixture.toPath(), target.toPath(), StandardCopyOption.REPLACE_EXISTING);
+            new File(target.getPath() + "-wal").delete();
+            new File(target.getPath() + "-shm").delete();
+        }
+        System.setProperty("catering.db", target.getPath());
+    }
+
+    private static void build(int scale) throws SQLException {
+        if (!PersistenceManager.initializeDatabase(SCRIPT))
+            throw new IllegalStateException("Cannot run " + new File(SCRIPT).getAbsolutePath()
+                    + "; set -Dcatering.script to the schema script");
+        new DataGenerator(SEED).scaledTo(scale).generate();
+    }
+
+    /**
+     * @param table A table with an {@code id} column
+     * @return All its IDs, for benchmarks to pick rows from
+     */
+    public static int[] ids(String table) throws SQLException {
+        List<Integer> ids = new ArrayList<>();
+        try (Connection conn = PersistenceManager.getConnection();
+                PreparedStatement ps = conn.prepareStatement("SELECT id FROM " + table);
+                ResultSet rs = ps.executeQuery()) {
+            while (rs.next()) {
+                ids.add(rs.getInt(1));
+            }
+        }
+        return ids.stream().mapToInt(Integer::intValue).toArray();
+    }
+}
@@ -0,0 +1,90 @@
+package catering.bench;
+
+import java.util.ArrayList;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import catering.businesslogic.event.Event;
+import catering.businesslogic.kitchen.SummarySheet;
+import catering.businesslogic.menu.Menu;
+import catering.businesslogic.recipe.Recipe;
+import catering.businesslogic.shift.Shift;
+import catering.businesslogic.user.User;
+
+/**
+ * Load paths of the persistence layer, against fixtures of growing size.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ReadBenchmarks {
+
+    @Param({ "100", "1000" })
+    public int scale;
+
+    private int[] menuIds;
+    private int[] userIds;
+    private String[] userNames;
+
+    @Setup
+    public void setUp() throws Exception {
+        BenchmarkDatabase.use(scale, false);
+        menuIds = BenchmarkDatabase.ids("Menus");
+        userIds = BenchmarkDatabase.ids("Users");
+        userNames = User.loadAllUsers().stream().map(User::getUserName).toArray(String[]::new);
+    }
+
+    @Benchmark
+    public Menu menuLoad() {
+        return Menu.load(pick(menuIds));
+    }
+
+    @Benchmark
+    public User userLoadById() {
+        return User.load(pick(userIds));
+    }
+
+    @Benchmark
+    public User userLoadByName() {
+        return User.load(userNames[ThreadLocalRandom.current().nextInt(userNames.length)]);
+    }
+
+    @Benchmark
+    public ArrayList<SummarySheet> summarySheetLoadAll() {
+        return SummarySheet.loadAllSumSheets();
+    }
+
+    @Benchmark
+    public ArrayList<Shift> shiftLoadAll() {
+        return Shift.loadAllShifts();
+    }
+
+    @Benchmark
+    public ArrayList<Recipe> recipeLoadAll() {
+        return Recipe.loadAllRecipes();
+    }
+
+    @Benchmark
+    public ArrayList<Event> eventLoadAll() {
+        return Event.loadAllEvents();
+    }
+
+    static int pick(int[] ids) {
+        return ids[ThreadLocalRandom.current().nextInt(ids.length)];
+    }
+}
@@ -0,0 +1,107 @@
+package catering.bench;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import catering.businesslogic.CatERing;
+import catering.businesslogic.UseCaseLogicException;
+import catering.businesslogic.event.Event;
+import catering.businesslogic.event.Service;
+import catering.businesslogic.kitchen.SummarySheet;
+import catering.businesslogic.menu.Menu;
+import catering.businesslogic.menu.MenuManager;
+import catering.businesslogic.menu.Section;
+import catering.businesslogic.recipe.Recipe;
+import catering.businesslogic.user.User;
+
+/**
+ * Write paths of the use cases, through the managers so that the
+ * persistence receivers run as in production. Each fork works on a scratch
+ * copy of the fixture, which grows during the run.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class WriteBenchmarks {
+
+    @Param({ "100", "1000" })
+    public int scale;
+
+    private CatERing app;
+    private Recipe[] recipes;
+    private Event[] events;
+    private Service[] services;
+    private Menu menu;
+
+    @Setup
+    public void setUp() throws Exception {
+        BenchmarkDatabase.use(scale, true);
+        app = CatERing.getInstance();
+        List<Event> all = Event.loadAllEvents();
+        // Log in as the chef of the latest event, who can work on all their events
+        User chef = all.get(0).getChef();
+        app.getUserManager().fakeLogin(chef.getUserName());
+        recipes = app.getRecipeManager().getRecipeBook().stream().limit(200).toArray(Recipe[]::new);
+        List<Event> withMenu = new ArrayList<>();
+        List<Service> menuServices = new ArrayList<>();
+        for (Event e : all) {
+            if (!chef.equals(e.getChef()))
+                continue;
+            for (Service s : e.getServices()) {
+                if (s.getMenu() != null && withMenu.size() < 50) {
+                    withMenu.add(e);
+                    menuServices.add(s);
+                }
+            }
+        }
+        events = withMenu.toArray(new Event[0]);
+        services = menuServices.toArray(new Service[0]);
+        menu = app.getMenuManager().createMenu("Menu da modificare");
+    }
+
+    /** Create a menu with two sections of three items each */
+    @Benchmark
+    public Menu createMenu() throws UseCaseLogicException {
+        MenuManager mgr = app.getMenuManager();
+        Menu m = mgr.createMenu("Menu di prova");
+        for (int s = 0; s < 2; s++) {
+            Section sec = mgr.defineSection("Sezione " + s);
+            for (int i = 0; i < 3; i++) {
+                mgr.insertItem(recipes[ThreadLocalRandom.current().nextInt(recipes.length)], sec);
+            }
+        }
+        return m;
+    }
+
+    /** Rename the same menu over and over: the cheapest write */
+    @Benchmark
+    public Menu changeMenuTitle() throws UseCaseLogicException {
+        MenuManager mgr = app.getMenuManager();
+        mgr.setCurrentMenu(menu);
+        mgr.changeTitle("Titolo " + ThreadLocalRandom.current().nextInt(1000));
+        return menu;
+    }
+
+    @Benchmark
+    public SummarySheet generateSummarySheet() throws UseCaseLogicException {
+        int i = ThreadLocalRandom.current().nextInt(events.length);
+        return app.getKitchenTaskManager().generateSummarySheet(events[i], services[i]);
+    }
+}
@@ -1,5 +1,7 @@
 -- database: catering.db
 -- 1) FIRST REMOVE ALL TABLES (in reverse dependency order)
+DROP TABLE IF EXISTS `KitchenProcessSearch`;
+
 DROP TABLE IF EXISTS `Assignment`;
 
 DROP TABLE IF EXISTS `Tasks`;
@@ -64,21 +66,32 @@ CREATE TABLE
     );
 
 -- Tables with simple dependencies
+-- Dates are stored as epoch days (days since 1970-01-01), times of day as
+-- minutes since midnight: see catering.persistence.Temporals
 CREATE TABLE
     `Events` (
         `id` INTEGER PRIMARY KEY AUTOINCREMENT,
         `name` TEXT,
-        `date_start` DATE,
-        `date_end` DATE,
+        `date_start` INTEGER,
+        `date_end` INTEGER,
         `chef_id` INTEGER NOT NULL
     );
 
+-- Menu features are one bit each: needsCook 1, fingerFood 2, buffet 4,
+-- warmDishes 8, needsKitchen 16. A copy records the menu it was copied
+-- from (parent_id, 0 if none) and its version, one more than its parent.
+-- Until its first edit it reads the sections and items of content_id,
+-- 0 meaning its own rows.
 CREATE TABLE
     `Menus` (
         `id` INTEGER PRIMARY KEY AUTOINCREMENT,
         `title` TEXT,
         `owner_id` INTEGER,
-        `published` INTEGER DEFAULT 0
+        `published` INTEGER DEFAULT 0,
+        `features` INTEGER NOT NULL DEFAULT 0,
+        `parent_id` INTEGER NOT NULL DEFAULT 0,
+        `version` INTEGER NOT NULL DEFAULT 1,
+        `content_id` INTEGER NOT NULL DEFAULT 0
     );
 
 CREATE TABLE
@@ -104,13 +117,6 @@ CREATE TABLE
         FOREIGN KEY (`preparation_id`) REFERENCES `Preparations` (`id`)
     );
 
-CREATE TABLE
-    `MenuFeatures` (
-        `menu_id` INTEGER NOT NULL,
-        `name` TEXT NOT NULL DEFAULT '',
-        `value` INTEGER DEFAULT 0
-    );
-
 CREATE TABLE
     `MenuItems` (
         `id` INTEGER PRIMARY KEY AUTOINCREMENT,
@@ -127,18 +133,18 @@ CREATE TABLE
         `event_id` INTEGER NOT NULL,
         `name` TEXT,
         `approved_menu_id` INTEGER DEFAULT 0,
-        `service_date` DATE,
-        `time_start` TIME,
-        `time_end` TIME,
+        `service_date` INTEGER,
+        `time_start` INTEGER,
+        `time_end` INTEGER,
         `location` TEXT
     );
 
 CREATE TABLE
     `Shifts` (
         `id` INTEGER PRIMARY KEY AUTOINCREMENT,
-        `date` DATE NOT NULL,
-        `start_time` TIME NOT NULL,
-        `end_time` TIME NOT NULL
+        `date` INTEGER NOT NULL,
+        `start_time` INTEGER NOT NULL,
+        `end_time` INTEGER NOT NULL
     );
 
 CREATE TABLE
@@ -186,6 +192,80 @@ CREATE TABLE
         FOREIGN KEY (`shift_id`) REFERENCES `Shifts` (`id`)
     );
 
+-- Indexes for the keyset-paginated listings, in their sort order, and for
+-- loading the children of each listed row
+CREATE INDEX `Events_by_date` ON `Events` (`date_start`, `id`);
+
+CREATE INDEX `Shifts_by_date` ON `Shifts` (`date`, `start_time`, `id`);
+
+CREATE INDEX `Services_by_event` ON `Services` (`event_id`);
+
+CREATE INDEX `Services_by_menu` ON `Services` (`approved_menu_id`);
+
+CREATE INDEX `UserRoles_by_user` ON `UserRoles` (`user_id`);
+
+CREATE INDEX `MenuSections_by_menu` ON `MenuSections` (`menu_id`, `position`);
+
+CREATE INDEX `MenuItems_by_section` ON `MenuItems` (`menu_id`, `section_id`, `position`);
+
+-- Feature queries list the masks they accept: one lookup each
+CREATE INDEX `Menus_by_features` ON `Menus` (`features`);
+
+CREATE INDEX `Menus_by_parent` ON `Menus` (`parent_id`);
+
+CREATE INDEX `Menus_by_content` ON `Menus` (`content_id`);
+
+CREATE INDEX `Tasks_by_sheet` ON `Tasks` (`sumsheet_id`, `position`);
+
+CREATE INDEX `Assignment_by_sheet` ON `Assignment` (`sumsheet_id`);
+
+-- Indexes for the calendar queries. An event runs to its end date, or its
+-- start date when it has none: the end index finds those still running at
+-- the start of a window
+CREATE INDEX `Events_by_end` ON `Events` (coalesce(`date_end`, `date_start`));
+
+CREATE INDEX `Events_by_chef` ON `Events` (`chef_id`, coalesce(`date_end`, `date_start`));
+
+CREATE INDEX `Services_by_date` ON `Services` (`service_date`, `time_start`);
+
+CREATE INDEX `Services_by_location` ON `Services` (`location`, `service_date`, `time_start`);
+
+-- Full-text index over recipe and preparation names and descriptions.
+-- rowid = 2 * id for recipes, 2 * id + 1 for preparations. The triggers
+-- below keep it in sync with the Recipes and Preparations tables.
+CREATE VIRTUAL TABLE
+    `KitchenProcessSearch` USING fts5 (
+        name,
+        description,
+        tokenize = 'unicode61 remove_diacritics 2'
+    );
+
+CREATE TRIGGER `Recipes_search_insert` AFTER INSERT ON `Recipes` BEGIN
+    INSERT INTO KitchenProcessSearch (rowid, name, description) VALUES (new.id * 2, new.name, new.description);
+END;
+
+CREATE TRIGGER `Recipes_search_update` AFTER UPDATE ON `Recipes` BEGIN
+    DELETE FROM KitchenProcessSearch WHERE rowid = old.id * 2;
+    INSERT INTO KitchenProcessSearch (rowid, name, description) VALUES (new.id * 2, new.name, new.description);
+END;
+
+CREATE TRIGGER `Recipes_search_delete` AFTER DELETE ON `Recipes` BEGIN
+    DELETE FROM KitchenProcessSearch WHERE rowid = old.id * 2;
+END;
+
+CREATE TRIGGER `Preparations_search_insert` AFTER INSERT ON `Preparations` BEGIN
+    INSERT INTO KitchenProcessSearch (rowid, name, description) VALUES (new.id * 2 + 1, new.name, new.description);
+END;
+
+CREATE TRIGGER `Preparations_search_update` AFTER UPDATE ON `Preparations` BEGIN
+    DELETE FROM KitchenProcessSearch WHERE rowid = old.id * 2 + 1;
+    INSERT INTO KitchenProcessSearch (rowid, name, description) VALUES (new.id * 2 + 1, new.name, new.description);
+END;
+
+CREATE TRIGGER `Preparations_search_delete` AFTER DELETE ON `Preparations` BEGIN
+    DELETE FROM KitchenProcessSearch WHERE rowid = old.id * 2 + 1;
+END;
+
 -- Clean up existing data
 DELETE FROM RecipePreparations
 WHERE
@@ -1014,7 +1094,7 @@ FROM Recipes r WHERE r.name = 'Gelato Artigianale';
 
 -- Create a new event
 INSERT INTO Events (name, date_start, date_end, chef_id) VALUES 
-('Gala Aziendale Annuale', date('2025-06-15'), date('2025-06-16'), 5);  -- Assigned to Antonio
+('Gala Aziendale Annuale', unixepoch('2025-06-15') / 86400, unixepoch('2025-06-16') / 86400, 5);  -- Assigned to Antonio
 
 -- Create two services for this event
 -- First service (lunch): assigned to chef Antonio (ID 5) with the existing menu (ID 1)
@@ -1030,9 +1110,9 @@ INSERT INTO Services (
     1,                          -- Event ID
     'Pranzo Buffet Aziendale',  -- Service name in Italian
     1,                          -- Approved menu (same as proposed)
-    date('2025-06-15'),         -- Service date
-    time('12:00'),              -- Start time
-    time('15:00'),              -- End time
+    unixepoch('2025-06-15') / 86400, -- Service date
+    12 * 60,                    -- Start time, 12:00
+    15 * 60,                    -- End time, 15:00
     'Salone Grande'             -- Location in Italian
 );
 
@@ -1049,8 +1129,8 @@ INSERT INTO Services (
     1,                          -- Event ID
     'Cena di Gala',             -- Service name in Italian
     0,                          -- Not approved yet (0)
-    date('2025-06-15'),         -- Service date
-    time('19:00'),              -- Start time
-    time('23:00'),              -- End time
+    unixepoch('2025-06-15') / 86400, -- Service date
+    19 * 60,                    -- Start time, 19:00
+    23 * 60,                    -- End time, 23:00
     'Sala Esecutiva'            -- Location in Italian
 );
\ No newline at end of file
@@ -1,7 +1,10 @@
 package catering.businesslogic;
 
 import catering.businesslogic.event.EventManager;
+import catering.businesslogic.event.EventCalendar;
+import catering.businesslogic.event.UsageIndex;
 import catering.businesslogic.kitchen.KitchenTaskManager;
+import catering.businesslogic.menu.MenuCatalog;
 import catering.businesslogic.menu.MenuManager;
 import catering.businesslogic.recipe.RecipeManager;
 import catering.businesslogic.shift.ShiftManager;
@@ -11,32 +14,41 @@ import catering.persistence.KitchenTaskPersistence;
 import catering.persistence.MenuPersistence;
 
 public class CatERing {
-    private static CatERing singleInstance;
+
+    // Initialized by the class loader on first use, which also makes it safe
+    // for any number of threads to race on getInstance()
+    private static class Holder {
+        private static final CatERing INSTANCE = new CatERing();
+    }
 
     public static CatERing getInstance() {
-        if (singleInstance == null) {
-            singleInstance = new CatERing();
-        }
-        return singleInstance;
+        return Holder.INSTANCE;
     }
 
-    private MenuManager menuMgr;
-    private RecipeManager recipeMgr;
-    private UserManager userMgr;
-    private EventManager eventMgr;
-    private KitchenTaskManager kitchenTaskMgr;
-    private ShiftManager shiftMgr;
+    private volatile MenuManager menuMgr;
+    private volatile RecipeManager recipeMgr;
+    private volatile UserManager userMgr;
+    private volatile EventManager eventMgr;
+    private volatile KitchenTaskManager kitchenTaskMgr;
+    private volatile ShiftManager shiftMgr;
+
+    private final EventBus eventBus;
 
     private MenuPersistence menuPersistence;
     private KitchenTaskPersistence kitchenTaskPersistence;
     private EventPersistence eventPersistence;
 
+    private UsageIndex usageIndex;
+    private EventCalendar eventCalendar;
+    private MenuCatalog menuCatalog;
+
     private CatERing() {
-        menuMgr = new MenuManager();
+        eventBus = new EventBus();
+        menuMgr = new MenuManager(eventBus);
         recipeMgr = new RecipeManager();
         userMgr = new UserManager();
-        eventMgr = new EventManager();
-        kitchenTaskMgr = new KitchenTaskManager();
+        eventMgr = new EventManager(eventBus);
+        kitchenTaskMgr = new KitchenTaskManager(eventBus);
         shiftMgr = new ShiftManager();
 
         menuPersistence = new MenuPersistence();
@@ -46,9 +58,23 @@ public class CatERing {
         menuMgr.addEventReceiver(menuPersistence);
         kitchenTaskMgr.addEventReceiver(kitchenTaskPersistence);
         eventMgr.addEventReceiver(eventPersistence);
+
+        // After persistence, so that new menus and items already have IDs
+        usageIndex = new UsageIndex();
+        menuMgr.addEventReceiver(usageIndex);
+        eventMgr.addEventReceiver(usageIndex);
+        menuCatalog = new MenuCatalog();
+        menuMgr.addEventReceiver(menuCatalog);
+        menuMgr.setCatalog(menuCatalog);
+        eventCalendar = new EventCalendar();
+        eventMgr.addEventReceiver(eventCalendar);
+        eventMgr.setCalendar(eventCalendar);
     }
 
     public static void main(String[] args) {
+        // The single user of the command line works in one session
+        new Session().bind();
+
         // Get the singleton instance which initializes all managers
         CatERing app = CatERing.getInstance();
 
@@ -108,6 +134,26 @@ public class CatERing {
         this.eventMgr = eventMgr;
     }
 
+    /**
+     * @return The bus delivering manager notifications; receivers that must
+     *         not slow down the use cases subscribe to it asynchronously
+     */
+    public EventBus getEventBus() {
+        return eventBus;
+    }
+
+    public UsageIndex getUsageIndex() {
+        return usageIndex;
+    }
+
+    public EventCalendar getEventCalendar() {
+        return eventCalendar;
+    }
+
+    public MenuCatalog getMenuCatalog() {
+        return menuCatalog;
+    }
+
     public void setKitchenTaskManager(KitchenTaskManager kitchenTaskMgr) {
         this.kitchenTaskMgr = kitchenTaskMgr;
     }
@@ -0,0 +1,400 @@
+package catering.businesslogic;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+import java.util.function.IntSupplier;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import catering.util.LogManager;
+
+/**
+ * EventBus delivers the notifications of the managers to their receivers.
+ * <p>
+ * A topic is a receiver interface such as {@code MenuEventReceiver}; an
+ * event is a call on that interface, so existing receivers subscribe
+ * unchanged:
+ *
+ * <pre>
+ * bus.subscribe(MenuEventReceiver.class, menuPersistence);
+ * bus.publish(MenuEventReceiver.class, m::getId, er -&gt; er.updateMenuCreated(m));
+ * </pre>
+ *
+ * {@link Delivery#SYNC} receivers run on the publishing thread, in
+ * subscription order, before {@code publish} returns; their exceptions reach
+ * the use case as before. {@link Delivery#ASYNC} receivers, wherever they
+ * were subscribed, are queued after all of them have run, on
+ * one of a fixed number of lanes, each a single thread with a bounded queue.
+ * All events of an aggregate go to the same lane, so they are delivered in
+ * publishing order; a full queue makes the publisher wait. After
+ * {@link #shutdown()} asynchronous receivers run on the publishing thread.
+ */
+public class EventBus {
+
+    public static final int DEFAULT_LANES = 4;
+    public static final int DEFAULT_QUEUE_CAPACITY = 1024;
+
+    private static final Logger LOGGER = LogManager.getLogger(EventBus.class);
+
+    public enum Delivery {
+        SYNC, ASYNC
+    }
+
+    private static final class Subscriber {
+        final Object receiver;
+        final Delivery delivery;
+
+        Subscriber(Object receiver, Delivery delivery) {
+            this.receiver = receiver;
+            this.delivery = delivery;
+        }
+    }
+
+    private final Map<Class<?>, List<Subscriber>> subscribers = new ConcurrentHashMap<>();
+    private final Map<Class<?>, Stats> stats = new ConcurrentHashMap<>();
+    private final Lane[] lanes;
+    private final AtomicLong pending = new AtomicLong();
+    private final Object idle = new Object();
+    private volatile boolean closed;
+
+    public EventBus() {
+        this(DEFAULT_LANES, DEFAULT_QUEUE_CAPACITY);
+    }
+
+    /**
+     * @param lanes         Number of threads delivering asynchronous events
+     * @param queueCapacity Events each lane can hold before publishers wait
+     */
+    public EventBus(int lanes, int queueCapacity) {
+        if (lanes < 1 || queueCapacity < 1)
+            throw new IllegalArgumentException("lanes and queueCapacity must be positive");
+        this.lanes = new Lane[lanes];
+        for (int i = 0; i < lanes; i++) {
+            this.lanes[i] = new Lane(i, queueCapacity);
+        }
+    }
+
+    /**
+     * Subscribes a receiver for synchronous delivery
+     */
+    public <R> void subscribe(Class<R> topic, R receiver) {
+        subscribe(topic, receiver, Delivery.SYNC);
+    }
+
+    /**
+     * Subscribes a receiver to a topic. Subscribing a receiver already
+     * subscribed to the topic has no effect.
+     *
+     * @param topic    The receiver interface
+     * @param receiver The receiver
+     * @param delivery How events reach the receiver
+     */
+    public <R> void subscribe(Class<R> topic, R receiver, Delivery delivery) {
+        List<Subscriber> list = subscribers.computeIfAbsent(topic, t -> new CopyOnWriteArrayList<>());
+        synchronized (list) {
+            for (Subscriber s : list) {
+                if (s.receiver == receiver)
+                    return;
+            }
+            list.add(new Subscriber(receiver, delivery));
+        }
+    }
+
+    public <R> void unsubscribe(Class<R> topic, R receiver) {
+        List<Subscriber> list = subscribers.get(topic);
+        if (list != null) {
+            synchronized (list) {
+                list.removeIf(s -> s.receiver == receiver);
+            }
+        }
+    }
+
+    /**
+     * Publishes an event to every receiver of a topic
+     *
+     * @param topic       The receiver interface
+     * @param aggregateId ID of the aggregate the event is about, which picks
+     *                    the lane of asynchronous receivers. Read after
+     *                    synchronous delivery, so IDs assigned by
+     *                    persistence receivers are already set.
+     * @param event       The call to make on each receiver; it must not read
+     *                    the session, which asynchronous receivers do not
+     *                    share
+     */
+    public <R> void publish(Class<R> topic, IntSupplier aggregateId, Consumer<? super R> event) {
+        List<Subscriber> list = subscribers.get(topic);
+        if (list == null || list.isEmpty())
+            return;
+        Stats topicStats = getStats(topic);
+        long published = System.nanoTime();
+        topicStats.published.increment();
+
+        boolean async = false;
+        for (Subscriber s : list) {
+            if (s.delivery == Delivery.SYNC) {
+                topicStats.recordDispatch(System.nanoTime() - published);
+                deliver(topic, s.receiver, event, topicStats, true);
+            } else {
+                async = true;
+            }
+        }
+        if (async) {
+            Lane lane = lanes[Math.floorMod(Integer.hashCode(aggregateId.getAsInt()), lanes.length)];
+            for (Subscriber s : list) {
+                if (s.delivery == Delivery.ASYNC)
+                    lane.enqueue(new Task(topic, s.receiver, event, topicStats, published));
+            }
+        }
+        topicStats.publishNanos.add(System.nanoTime() - published);
+    }
+
+    @SuppressWarnings("unchecked")
+    private <R> void deliver(Class<R> topic, Object receiver, Consumer<? super R> event, Stats topicStats,
+            boolean rethrow) {
+        try {
+            event.accept((R) receiver);
+            topicStats.delivered.increment();
+        } catch (RuntimeException ex) {
+            topicStats.failed.increment();
+            if (rethrow)
+                throw ex;
+            LOGGER.log(Level.SEVERE, ex, () -> "Receiver " + receiver.getClass().getSimpleName() + " failed on "
+                    + topic.getSimpleName() + " event");
+        }
+    }
+
+    /**
+     * Waits until every asynchronous event published so far has been
+     * delivered
+     *
+     * @return false if the timeout elapsed first
+     */
+    public boolean awaitIdle(long timeout, TimeUnit unit) throws InterruptedException {
+        long deadline = System.nanoTime() + unit.toNanos(timeout);
+        synchronized (idle) {
+            while (pending.get() > 0 && !closed) {
+                long left = deadline - System.nanoTime();
+                if (left <= 0)
+                    return false;
+                TimeUnit.NANOSECONDS.timedWait(idle, left);
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @return Delivery statistics of a topic since the bus was created
+     */
+    public Stats getStats(Class<?> topic) {
+        return stats.computeIfAbsent(topic, t -> new Stats());
+    }
+
+    /**
+     * Stops the lane threads; events still queued are dropped, and
+     * asynchronous receivers of later events run on the publishing thread
+     */
+    public void shutdown() {
+        closed = true;
+        for (Lane lane : lanes) {
+            lane.stop();
+        }
+        synchronized (idle) {
+            idle.notifyAll();
+        }
+    }
+
+    /**
+     * Counters and dispatch latency of one topic. Dispatch latency is the
+     * time from publishing to the start of a receiver call: for asynchronous
+     * receivers mostly time spent queued, for synchronous ones the time
+     * taken by the receivers before them.
+     */
+    public static final class Stats {
+        private final LongAdder published = new LongAdder();
+        private final LongAdder delivered = new LongAdder();
+        private final LongAdder failed = new LongAdder();
+        private final LongAdder queueFull = new LongAdder();
+        private final LongAdder publishNanos = new LongAdder();
+        private final LongAdder dispatches = new LongAdder();
+        private final LongAdder dispatchNanos = new LongAdder();
+        private final AtomicLong maxDispatchNanos = new AtomicLong();
+
+        void recordDispatch(long nanos) {
+            dispatches.increment();
+            dispatchNanos.add(nanos);
+            maxDispatchNanos.accumulateAndGet(nanos, Math::max);
+        }
+
+        public long getPublished() {
+            return published.sum();
+        }
+
+        public long getDelivered() {
+            return delivered.sum();
+        }
+
+        public long getFailed() {
+            return failed.sum();
+        }
+
+        /**
+         * @return How many times a publisher had to wait for a full lane
+         */
+        public long getQueueFullWaits() {
+            return queueFull.sum();
+        }
+
+        /**
+         * @return Mean time a publisher spent in {@code publish}, which is
+         *         what the use case pays for its receivers
+         */
+        public double getMeanPublishNanos() {
+            long n = published.sum();
+            return n == 0 ? 0 : (double) publishNanos.sum() / n;
+        }
+
+        public double getMeanDispatchNanos() {
+            long n = dispatches.sum();
+            return n == 0 ? 0 : (double) dispatchNanos.sum() / n;
+        }
+
+        public long getMaxDispatchNanos() {
+            return maxDispatchNanos.get();
+        }
+
+        @Override
+        public String toString() {
+            return String.format("published=%d delivered=%d failed=%d queueFullWaits=%d "
+                    + "meanPublish=%.1fus meanDispatch=%.1fus maxDispatch=%.1fus", getPublished(), getDelivered(),
+                    getFailed(), getQueueFullWaits(), getMeanPublishNanos() / 1e3, getMeanDispatchNanos() / 1e3,
+                    getMaxDispatchNanos() / 1e3);
+        }
+    }
+
+    private static final class Task {
+        final Class<?> topic;
+        final Object receiver;
+        final Consumer<?> event;
+        final Stats stats;
+        final long published;
+
+        Task(Class<?> topic, Object receiver, Consumer<?> event, Stats stats, long published) {
+            this.topic = topic;
+            this.receiver = receiver;
+            this.event = event;
+            this.stats = stats;
+            this.published = published;
+        }
+    }
+
+    /**
+     * A single delivery thread, started on first use
+     */
+    private final class Lane implements Runnable {
+        private final int index;
+        private final BlockingQueue<Task> queue;
+        private volatile Thread thread;
+
+        Lane(int index, int capacity) {
+            this.index = index;
+            this.queue = new ArrayBlockingQueue<>(capacity);
+        }
+
+        void enqueue(Task task) {
+            pending.incrementAndGet();
+            if (!ensureStarted()) {
+                run(task);
+                return;
+            }
+            if (queue.offer(task)) {
+                runIfStopped(task);
+                return;
+            }
+            task.stats.queueFull.increment();
+            if (Thread.currentThread() == thread) {
+                // A receiver publishing into its own full lane would wait forever
+                run(task);
+                return;
+            }
+            try {
+                queue.put(task);
+                runIfStopped(task);
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                done();
+                LOGGER.log(Level.WARNING, "Interrupted while queueing a {0} event, dropped", task.topic.getSimpleName());
+            }
+        }
+
+        /**
+         * @return false once the bus is shut down
+         */
+        private boolean ensureStarted() {
+            if (thread == null) {
+                synchronized (this) {
+                    if (closed)
+                        return false;
+                    if (thread == null) {
+                        Thread t = new Thread(this, "event-bus-lane-" + index);
+                        t.setDaemon(true);
+                        t.start();
+                        thread = t;
+                    }
+                }
+            }
+            return !closed;
+        }
+
+        // A task queued while the bus shut down would never be taken
+        private void runIfStopped(Task task) {
+            if (closed && queue.remove(task))
+                run(task);
+        }
+
+        @Override
+        public void run() {
+            try {
+                while (!closed && !Thread.currentThread().isInterrupted()) {
+                    run(queue.take());
+                }
+            } catch (InterruptedException ex) {
+                // shutdown
+            }
+        }
+
+        @SuppressWarnings({ "unchecked", "rawtypes" })
+        private void run(Task task) {
+            try {
+                task.stats.recordDispatch(System.nanoTime() - task.published);
+                deliver((Class) task.topic, task.receiver, (Consumer) task.event, task.stats, false);
+            } finally {
+                done();
+            }
+        }
+
+        private void done() {
+            if (pending.decrementAndGet() == 0) {
+                synchronized (idle) {
+                    idle.notifyAll();
+                }
+            }
+        }
+
+        synchronized void stop() {
+            Thread t = thread;
+            if (t != null)
+                t.interrupt();
+            while (queue.poll() != null) {
+                done();
+            }
+        }
+    }
+}
@@ -0,0 +1,121 @@
+package catering.businesslogic;
+
+import catering.businesslogic.event.Event;
+import catering.businesslogic.event.Service;
+import catering.businesslogic.kitchen.SummarySheet;
+import catering.businesslogic.menu.Menu;
+import catering.businesslogic.user.User;
+
+/**
+ * Session holds what one user is working on: who is logged in, the current
+ * menu, the selected event and service, and the open summary sheet.
+ * <p>
+ * The managers are shared by every user, so they keep none of this state
+ * themselves: each operation works on {@link #current()}, the session bound
+ * to the calling thread. Code serving several users binds each user's
+ * session around their operations:
+ *
+ * <pre>
+ * try (Session.Scope scope = session.bind()) {
+ *     app.getMenuManager().createMenu("Pranzo");
+ * }
+ * </pre>
+ *
+ * A thread with no session bound has no user to act for, so the managers
+ * fail on it rather than share state with other threads; single-user
+ * programs bind one session for their main thread.
+ */
+public class Session {
+
+    private static final ThreadLocal<Session> BOUND = new ThreadLocal<>();
+
+    /**
+     * @return The session bound to the calling thread
+     * @throws IllegalStateException If no session is bound to it
+     */
+    public static Session current() {
+        Session session = BOUND.get();
+        if (session == null)
+            throw new IllegalStateException("No session bound to " + Thread.currentThread().getName());
+        return session;
+    }
+
+    /**
+     * Binds this session to the calling thread until the returned scope is
+     * closed; the previously bound session is then restored
+     *
+     * @return The scope, to be closed by try-with-resources
+     */
+    public Scope bind() {
+        Scope scope = new Scope(BOUND.get());
+        BOUND.set(this);
+        return scope;
+    }
+
+    /**
+     * A binding of a session to a thread
+     */
+    public static final class Scope implements AutoCloseable {
+        private final Session previous;
+
+        private Scope(Session previous) {
+            this.previous = previous;
+        }
+
+        @Override
+        public void close() {
+            if (previous == null)
+                BOUND.remove();
+            else
+                BOUND.set(previous);
+        }
+    }
+
+    // A session is used by one request at a time, but successive requests
+    // may run on different threads
+    private volatile User user;
+    private volatile Menu menu;
+    private volatile Event selectedEvent;
+    private volatile Service currentService;
+    private volatile SummarySheet summarySheet;
+
+    public User getUser() {
+        return user;
+    }
+
+    public void setUser(User user) {
+        this.user = user;
+    }
+
+    public Menu getMenu() {
+        return menu;
+    }
+
+    public void setMenu(Menu menu) {
+        this.menu = menu;
+    }
+
+    public Event getSelectedEvent() {
+        return selectedEvent;
+    }
+
+    public void setSelectedEvent(Event selectedEvent) {
+        this.selectedEvent = selectedEvent;
+    }
+
+    public Service getCurrentService() {
+        return currentService;
+    }
+
+    public void setCurrentService(Service currentService) {
+        this.currentService = currentService;
+    }
+
+    public SummarySheet getSummarySheet() {
+        return summarySheet;
+    }
+
+    public void setSummarySheet(SummarySheet summarySheet) {
+        this.summarySheet = summarySheet;
+    }
+}
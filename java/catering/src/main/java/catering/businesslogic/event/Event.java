@@ -4,10 +4,17 @@ import java.sql.Date;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
 
 import catering.businesslogic.user.User;
+import catering.persistence.LazyBatch;
+import catering.persistence.Page;
 import catering.persistence.PersistenceManager;
+import catering.persistence.Projection;
 import catering.persistence.ResultHandler;
+import catering.persistence.Temporals;
 
 /**
  * Represents an event in the catering system.
@@ -20,6 +27,9 @@ public class Event {
     private Date dateEnd;
     private User chef;
     private ArrayList<Service> services;
+    // While the services are not loaded: the events loaded with this one,
+    // whose services load together
+    private volatile LazyBatch<Event> servicesBatch;
 
     public Event() {
         services = new ArrayList<>();
@@ -79,30 +89,38 @@ public class Event {
         this.chef = User.load(chefId);
     }
 
+    /**
+     * @return The services, loaded on first access together with those of
+     *         the events loaded with this one
+     */
     public ArrayList<Service> getServices() {
+        LazyBatch<Event> batch = servicesBatch;
+        if (batch != null)
+            batch.load();
         return services;
     }
 
     public void setServices(ArrayList<Service> services) {
         this.services = services;
+        this.servicesBatch = null;
     }
 
     // Service management
     public void addService(Service service) {
-        if (services == null) {
+        if (getServices() == null) {
             services = new ArrayList<>();
         }
         services.add(service);
     }
 
     public void removeService(Service service) {
-        if (services != null) {
+        if (getServices() != null) {
             services.remove(service);
         }
     }
 
     public boolean containsService(Service service) {
-        if (services != null) {
+        if (getServices() != null) {
             return services.contains(service);
         }
         return false;
@@ -112,10 +130,8 @@ public class Event {
     public void saveNewEvent() {
         String query = "INSERT INTO Events (name, date_start, date_end, chef_id) VALUES (?, ?, ?, ?)";
 
-        Long startTimestamp = (dateStart != null) ? dateStart.getTime() : null;
-        Long endTimestamp = (dateEnd != null) ? dateEnd.getTime() : null;
-
-        PersistenceManager.executeUpdate(query, name, startTimestamp, endTimestamp, getChefId());
+        PersistenceManager.executeUpdate(query, name, Temporals.toEpochDay(dateStart), Temporals.toEpochDay(dateEnd),
+                getChefId());
 
         // Get the ID of the newly inserted event
         id = PersistenceManager.getLastId();
@@ -125,16 +141,14 @@ public class Event {
     public void updateEvent() {
         String query = "UPDATE Events SET name = ?, date_start = ?, date_end = ?, chef_id = ? WHERE id = ?";
 
-        Long startTimestamp = (dateStart != null) ? dateStart.getTime() : null;
-        Long endTimestamp = (dateEnd != null) ? dateEnd.getTime() : null;
-
-        PersistenceManager.executeUpdate(query, name, startTimestamp, endTimestamp, getChefId(), id);
+        PersistenceManager.executeUpdate(query, name, Temporals.toEpochDay(dateStart), Temporals.toEpochDay(dateEnd),
+                getChefId(), id);
 
     }
 
     public boolean deleteEvent() {
         // Delete all services first
-        for (Service service : services) {
+        for (Service service : getServices()) {
             service.deleteService();
         }
         services.clear();
@@ -151,85 +165,204 @@ public class Event {
 
     // Static load methods
     public static ArrayList<Event> loadAllEvents() {
+        return loadAllEvents(FetchPlan.LAZY);
+    }
+
+    /**
+     * @param plan Which of services and menus to load now rather than on
+     *             first access
+     */
+    public static ArrayList<Event> loadAllEvents(FetchPlan plan) {
         ArrayList<Event> events = new ArrayList<>();
         String query = "SELECT * FROM Events ORDER BY date_start DESC";
 
         PersistenceManager.executeQuery(query, new ResultHandler() {
             @Override
             public void handle(ResultSet rs) throws SQLException {
-                Event e = new Event();
-                e.id = rs.getInt("id");
-                e.name = rs.getString("name");
-                e.dateStart = Date.valueOf(rs.getString("date_start"));
-                e.dateEnd = Date.valueOf(rs.getString("date_end"));
-                e.chef = User.load(rs.getInt("chef_id"));
-                events.add(e);
+                events.add(fromRow(rs));
             }
         });
 
-        // Load services for each event
-        for (Event e : events) {
+        fetchServices(events, plan);
+        return events;
+    }
+
+    /**
+     * Streams all events with their chef and services, most recent first,
+     * reading one event at a time; close the stream after use
+     */
+    public static Stream<Event> streamAllEvents() {
+        String query = "SELECT * FROM Events ORDER BY date_start DESC";
+        return PersistenceManager.stream(query, rs -> {
+            Event e = fromRow(rs);
             e.services = Service.loadServicesForEvent(e.id);
+            return e;
+        });
+    }
+
+    /**
+     * Loads one page of events, most recent first
+     * 
+     * @param after      Last event of the previous page, or null for the first
+     *                   page
+     * @param pageSize   Events per page
+     * @param projection HEADER loads the chef but not the services
+     * @return The events after {@code after}
+     */
+    public static Page<Event> loadPage(Event after, int pageSize, Projection projection) {
+        Page<Event> page;
+        if (after == null) {
+            page = PersistenceManager.queryPage("SELECT * FROM Events ORDER BY date_start DESC, id DESC",
+                    pageSize, Event::fromRow);
+        } else {
+            page = PersistenceManager.queryPage(
+                    "SELECT * FROM Events WHERE (date_start, id) < (?, ?) ORDER BY date_start DESC, id DESC",
+                    pageSize, Event::fromRow, Temporals.toEpochDay(after.dateStart), after.id);
         }
 
+        if (projection == Projection.FULL)
+            fetchServices(page.getItems(), FetchPlan.SERVICES);
+        return page;
+    }
+
+    /**
+     * Loads the events overlapping a window of days, by start date. An event
+     * without an end date lasts its start day.
+     * 
+     * @param from       First day of the window
+     * @param to         Last day of the window, included
+     * @param projection HEADER loads the chef but not the services
+     * @return The events in the window
+     */
+    public static ArrayList<Event> loadInWindow(Date from, Date to, Projection projection) {
+        // The end index bounds the scan to events still running at the start
+        // of the window. The unary + keep the planner off the start index,
+        // which sorts for free but scans all history before the window
+        String query = "SELECT * FROM Events WHERE coalesce(date_end, date_start) >= ? AND +date_start <= ? "
+                + "ORDER BY +date_start, id";
+        return loadWindow(query, projection, Temporals.toEpochDay(from), Temporals.toEpochDay(to));
+    }
+
+    /**
+     * Loads the events of a chef overlapping a window of days, by start date
+     * 
+     * @see #loadInWindow(Date, Date, Projection)
+     */
+    public static ArrayList<Event> loadInWindow(int chefId, Date from, Date to, Projection projection) {
+        String query = "SELECT * FROM Events WHERE chef_id = ? AND coalesce(date_end, date_start) >= ? "
+                + "AND +date_start <= ? ORDER BY +date_start, id";
+        return loadWindow(query, projection, chefId, Temporals.toEpochDay(from), Temporals.toEpochDay(to));
+    }
+
+    private static ArrayList<Event> loadWindow(String query, Projection projection, Object... params) {
+        ArrayList<Event> events = new ArrayList<>();
+        PersistenceManager.executeQuery(query, new ResultHandler() {
+            @Override
+            public void handle(ResultSet rs) throws SQLException {
+                events.add(fromRow(rs));
+            }
+        }, params);
+
+        if (projection == Projection.FULL)
+            fetchServices(events, FetchPlan.LAZY);
         return events;
     }
 
+    /**
+     * @return A copy of this event without its services, unaffected by later
+     *         changes to this one
+     */
+    Event copyHeader() {
+        Event e = new Event();
+        e.id = id;
+        e.name = name;
+        e.dateStart = dateStart;
+        e.dateEnd = dateEnd;
+        e.chef = chef;
+        return e;
+    }
+
+    private static Event fromRow(ResultSet rs) throws SQLException {
+        Event e = new Event();
+        e.id = rs.getInt("id");
+        e.name = rs.getString("name");
+        e.dateStart = Temporals.getDate(rs, "date_start");
+        e.dateEnd = Temporals.getDate(rs, "date_end");
+        e.chef = User.load(rs.getInt("chef_id"));
+        return e;
+    }
+
     public static Event loadById(int id) {
+        return loadById(id, FetchPlan.SERVICES);
+    }
+
+    /**
+     * @param plan Which of services and menus to load now rather than on
+     *             first access
+     */
+    public static Event loadById(int id, FetchPlan plan) {
         String query = "SELECT * FROM Events WHERE id = ?";
-        return loadEventByQuery(query, id);
+        return loadEventByQuery(query, id, plan);
     }
 
     public static Event loadByName(String name) {
         String query = "SELECT * FROM Events WHERE name = ?";
-        return loadEventByQuery(query, name);
+        return loadEventByQuery(query, name, FetchPlan.SERVICES);
     }
 
-    private static Event loadEventByQuery(String query, Object param) {
+    private static Event loadEventByQuery(String query, Object param, FetchPlan plan) {
         final Event[] eventHolder = new Event[1];
-        final boolean[] eventFound = new boolean[1];
 
         PersistenceManager.executeQuery(query, new ResultHandler() {
             @Override
             public void handle(ResultSet rs) throws SQLException {
-                eventFound[0] = true;
-
-                Event e = new Event();
-
-                e.id = rs.getInt("id");
-                e.name = rs.getString("name");
-                e.dateStart = Date.valueOf(rs.getString("date_start"));
-                e.dateEnd = Date.valueOf(rs.getString("date_end"));
-
-                try {
-                    e.chef = User.load(rs.getInt("chef_id"));
-                } catch (Exception ex) {
-                    e.chef = null;
-                }
-
-                eventHolder[0] = e;
+                eventHolder[0] = fromRow(rs);
             }
         }, param);
 
-        if (!eventFound[0]) {
-            return null;
-        }
-
         Event result = eventHolder[0];
         if (result != null) {
-            try {
-                result.services = Service.loadServicesForEvent(result.id);
-            } catch (Exception ex) {
-                result.services = new ArrayList<>();
-            }
+            fetchServices(List.of(result), plan);
         }
 
         return result;
     }
 
+    /**
+     * Sets up the services of events loaded together, to load with one query
+     * for all of them: now if the plan says so, otherwise on the first
+     * {@link #getServices()} of any of them
+     */
+    private static void fetchServices(List<Event> events, FetchPlan plan) {
+        LazyBatch<Event> batch = new LazyBatch<>(events, batchEvents -> loadServices(batchEvents, plan));
+        for (Event e : events) {
+            e.services = null;
+            e.servicesBatch = batch;
+        }
+        if (plan.isEagerServices())
+            batch.load();
+    }
+
+    private static void loadServices(List<Event> events, FetchPlan plan) {
+        List<Integer> ids = new ArrayList<>();
+        for (Event e : events) {
+            if (e.servicesBatch != null)
+                ids.add(e.id);
+        }
+        Map<Integer, ArrayList<Service>> services = Service.loadServicesForEvents(ids, plan);
+        for (Event e : events) {
+            // Skip those whose services were set in the meantime
+            if (e.servicesBatch != null) {
+                ArrayList<Service> own = services.get(e.id);
+                e.services = own != null ? own : new ArrayList<>();
+                e.servicesBatch = null;
+            }
+        }
+    }
+
     @Override
     public String toString() {
         return "Event [id=" + id + ", name=" + name + ", dateStart=" + dateStart +
-                ", services=" + (services != null ? services.size() : 0) + "]";
+                ", services=" + (servicesBatch != null ? "not loaded" : services != null ? services.size() : 0) + "]";
     }
 }
\ No newline at end of file
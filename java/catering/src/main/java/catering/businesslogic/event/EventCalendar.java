@@ -0,0 +1,236 @@
+package catering.businesslogic.event;
+
+import java.sql.Date;
+import java.time.LocalDate;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+import catering.businesslogic.menu.Menu;
+import catering.businesslogic.user.User;
+import catering.persistence.Projection;
+import catering.persistence.Temporals;
+
+/**
+ * EventCalendar answers calendar queries: the events overlapping a window of
+ * days, all of them or those of a chef, and the services on those days, all
+ * of them or those at a location.
+ * <p>
+ * Windows within the planning horizon are answered from memory, through
+ * interval indexes over the events and services of the horizon; others go
+ * to the database. The horizon runs from {@link #DAYS_BEFORE} days before
+ * the day it is loaded to {@link #DAYS_AFTER} days after, unless fixed at
+ * construction. It is loaded on first use and then kept up to date as a
+ * receiver of event notifications, so, like {@link UsageIndex}, it must be
+ * registered after the persistence receiver.
+ * <p>
+ * Events are returned without their services; the services of the same days
+ * come from {@link #getServices}. Both are copies shared between callers:
+ * change them through the {@link EventManager}.
+ */
+public class EventCalendar implements EventReceiver {
+
+    public static final int DAYS_BEFORE = Integer.getInteger("catering.calendar.daysBefore", 31);
+    public static final int DAYS_AFTER = Integer.getInteger("catering.calendar.daysAfter", 366);
+
+    private static final Comparator<Event> EVENT_ORDER = Comparator.comparingInt(Event::getId);
+    private static final Comparator<Service> SERVICE_ORDER = Comparator
+            .comparing(Service::getTimeStart, Comparator.nullsFirst(Comparator.naturalOrder()))
+            .thenComparingInt(Service::getId);
+
+    private final Date fixedFrom;
+    private final Date fixedTo;
+    private final IntervalIndex<Event> events = new IntervalIndex<>(EVENT_ORDER);
+    private final IntervalIndex<Service> services = new IntervalIndex<>(SERVICE_ORDER);
+
+    private boolean loaded;
+    private int horizonFrom;
+    private int horizonTo;
+
+    /**
+     * Creates a calendar whose horizon is around the day it is loaded
+     */
+    public EventCalendar() {
+        this(null, null);
+    }
+
+    /**
+     * Creates a calendar with a fixed horizon
+     *
+     * @param from First day of the horizon
+     * @param to   Last day of the horizon, included
+     */
+    public EventCalendar(Date from, Date to) {
+        this.fixedFrom = from;
+        this.fixedTo = to;
+    }
+
+    /**
+     * Finds the events overlapping a window of days
+     *
+     * @param from First day of the window
+     * @param to   Last day of the window, included
+     * @return Immutable list of events, by start date
+     */
+    public synchronized List<Event> getEvents(Date from, Date to) {
+        if (!inHorizon(from, to))
+            return Collections.unmodifiableList(Event.loadInWindow(from, to, Projection.HEADER));
+        return Collections.unmodifiableList(
+                events.find(Temporals.toEpochDay(from), Temporals.toEpochDay(to), e -> true));
+    }
+
+    /**
+     * Finds the events of a chef overlapping a window of days
+     *
+     * @param chef The chef
+     * @param from First day of the window
+     * @param to   Last day of the window, included
+     * @return Immutable list of events, by start date
+     */
+    public synchronized List<Event> getEvents(User chef, Date from, Date to) {
+        if (!inHorizon(from, to))
+            return Collections.unmodifiableList(Event.loadInWindow(chef.getId(), from, to, Projection.HEADER));
+        return Collections.unmodifiableList(events.find(Temporals.toEpochDay(from), Temporals.toEpochDay(to),
+                e -> e.getChef() != null && e.getChef().getId() == chef.getId()));
+    }
+
+    /**
+     * Finds the services on the days of a window
+     *
+     * @param from First day of the window
+     * @param to   Last day of the window, included
+     * @return Immutable list of services, by date and start time
+     */
+    public synchronized List<Service> getServices(Date from, Date to) {
+        if (!inHorizon(from, to))
+            return Collections.unmodifiableList(Service.loadInWindow(from, to));
+        return Collections.unmodifiableList(
+                services.find(Temporals.toEpochDay(from), Temporals.toEpochDay(to), s -> true));
+    }
+
+    /**
+     * Finds the services at a location on the days of a window
+     *
+     * @param location The location
+     * @param from     First day of the window
+     * @param to       Last day of the window, included
+     * @return Immutable list of services, by date and start time
+     */
+    public synchronized List<Service> getServices(String location, Date from, Date to) {
+        if (!inHorizon(from, to))
+            return Collections.unmodifiableList(Service.loadInWindow(location, from, to));
+        return Collections.unmodifiableList(services.find(Temporals.toEpochDay(from), Temporals.toEpochDay(to),
+                s -> location.equals(s.getLocation())));
+    }
+
+    /**
+     * Drops the horizon; it is reloaded from the database on next access.
+     * Needed when the database is reinitialized behind our back.
+     */
+    public synchronized void invalidate() {
+        events.clear();
+        services.clear();
+        loaded = false;
+    }
+
+    private boolean inHorizon(Date from, Date to) {
+        if (to.before(from))
+            throw new IllegalArgumentException("Window ends before it starts: " + from + " to " + to);
+        ensureLoaded();
+        return Temporals.toEpochDay(from) >= horizonFrom && Temporals.toEpochDay(to) <= horizonTo;
+    }
+
+    private void ensureLoaded() {
+        if (loaded)
+            return;
+
+        Date from = fixedFrom;
+        Date to = fixedTo;
+        if (from == null) {
+            LocalDate today = LocalDate.now();
+            from = Date.valueOf(today.minusDays(DAYS_BEFORE));
+            to = Date.valueOf(today.plusDays(DAYS_AFTER));
+        }
+        horizonFrom = Temporals.toEpochDay(from);
+        horizonTo = Temporals.toEpochDay(to);
+
+        for (Event e : Event.loadInWindow(from, to, Projection.HEADER)) {
+            putEvent(e);
+        }
+        for (Service s : Service.loadInWindow(from, to)) {
+            putService(s);
+        }
+        loaded = true;
+    }
+
+    private void putEvent(Event e) {
+        events.remove(e.getId());
+        if (e.getDateStart() == null)
+            return;
+        int start = Temporals.toEpochDay(e.getDateStart());
+        int end = e.getDateEnd() != null ? Math.max(start, Temporals.toEpochDay(e.getDateEnd())) : start;
+        if (end >= horizonFrom && start <= horizonTo)
+            events.put(e.getId(), start, end, e);
+    }
+
+    private void putService(Service s) {
+        services.remove(s.getId());
+        if (s.getDate() == null)
+            return;
+        int day = Temporals.toEpochDay(s.getDate());
+        if (day >= horizonFrom && day <= horizonTo)
+            services.put(s.getId(), day, day, s);
+    }
+
+    // Event notifications
+
+    @Override
+    public synchronized void updateEventCreated(Event event) {
+        if (loaded)
+            putEvent(event.copyHeader());
+    }
+
+    @Override
+    public synchronized void updateEventModified(Event event) {
+        if (loaded)
+            putEvent(event.copyHeader());
+    }
+
+    @Override
+    public synchronized void updateEventDeleted(Event event) {
+        if (!loaded)
+            return;
+        events.remove(event.getId());
+        services.removeIf(s -> s.getEventId() == event.getId());
+    }
+
+    @Override
+    public synchronized void updateServiceCreated(Event event, Service service) {
+        if (loaded)
+            putService(service.copy());
+    }
+
+    @Override
+    public synchronized void updateServiceModified(Service service) {
+        if (loaded)
+            putService(service.copy());
+    }
+
+    @Override
+    public synchronized void updateServiceDeleted(Service service) {
+        if (loaded)
+            services.remove(service.getId());
+    }
+
+    @Override
+    public synchronized void updateMenuAssigned(Service service, Menu menu) {
+        if (loaded)
+            putService(service.copy());
+    }
+
+    @Override
+    public synchronized void updateMenuRemoved(Service service) {
+        if (loaded)
+            putService(service.copy());
+    }
+}
@@ -3,10 +3,16 @@ package catering.businesslogic.event;
 import java.sql.Date;
 import java.sql.Time;
 import java.util.ArrayList;
+import java.util.List;
 
+import catering.businesslogic.EventBus;
+import catering.businesslogic.Session;
 import catering.businesslogic.UseCaseLogicException;
 import catering.businesslogic.menu.Menu;
 import catering.businesslogic.user.User;
+import catering.persistence.Page;
+import catering.persistence.Projection;
+import catering.util.Instrument;
 
 /**
  * EventManager handles all operations related to events and services in the
@@ -17,15 +23,14 @@ import catering.businesslogic.user.User;
 public class EventManager {
 
 
-    private ArrayList<EventReceiver> eventReceivers;
-    private Event selectedEvent;
-    private Service currentService;
+    private final EventBus eventBus;
+    private volatile EventCalendar calendar;
 
     /**
-     * Constructor initializes the event receivers list
+     * @param eventBus The bus delivering notifications to event receivers
      */
-    public EventManager() {
-        eventReceivers = new ArrayList<>();
+    public EventManager(EventBus eventBus) {
+        this.eventBus = eventBus;
     }
 
     /**
@@ -34,8 +39,8 @@ public class EventManager {
      * @param receiver The event receiver to add
      */
     public void addEventReceiver(EventReceiver receiver) {
-        if (receiver != null && !eventReceivers.contains(receiver)) {
-            eventReceivers.add(receiver);
+        if (receiver != null) {
+            eventBus.subscribe(EventReceiver.class, receiver);
         }
     }
 
@@ -45,7 +50,7 @@ public class EventManager {
      * @param receiver The event receiver to remove
      */
     public void removeEventReceiver(EventReceiver receiver) {
-        eventReceivers.remove(receiver);
+        eventBus.unsubscribe(EventReceiver.class, receiver);
     }
 
     /**
@@ -54,24 +59,128 @@ public class EventManager {
      * @return List of all events
      */
     public ArrayList<Event> getEvents() {
+        return Instrument.call("EventManager.getEvents", () -> doGetEvents());
+    }
+
+    private ArrayList<Event> doGetEvents() {
         return Event.loadAllEvents();
     }
 
+    /**
+     * Gets one page of events, most recent first
+     * 
+     * @param after      Last event of the previous page, or null for the first
+     *                   page
+     * @param pageSize   Events per page, at most {@link Page#MAX_SIZE}
+     * @param projection HEADER leaves out the services
+     * @return The page of events
+     */
+    public Page<Event> getEvents(Event after, int pageSize, Projection projection) {
+        return Instrument.call("EventManager.getEvents", () -> doGetEvents(after, pageSize, projection));
+    }
+
+    private Page<Event> doGetEvents(Event after, int pageSize, Projection projection) {
+        return Event.loadPage(after, pageSize, projection);
+    }
+
+    /**
+     * Sets the calendar answering the calendar queries; without one they go
+     * to the database
+     * 
+     * @param calendar A calendar registered as a receiver of this manager
+     */
+    public void setCalendar(EventCalendar calendar) {
+        this.calendar = calendar;
+    }
+
+    /**
+     * Gets the events overlapping a window of days, without their services
+     * 
+     * @param from First day of the window
+     * @param to   Last day of the window, included
+     * @return The events, by start date
+     */
+    public List<Event> getCalendarEvents(Date from, Date to) {
+        return Instrument.call("EventManager.getCalendarEvents", () -> doGetCalendarEvents(from, to));
+    }
+
+    private List<Event> doGetCalendarEvents(Date from, Date to) {
+        EventCalendar c = calendar;
+        return c != null ? c.getEvents(from, to) : Event.loadInWindow(from, to, Projection.HEADER);
+    }
+
+    /**
+     * Gets the events of a chef overlapping a window of days, without their
+     * services
+     * 
+     * @param chef The chef
+     * @param from First day of the window
+     * @param to   Last day of the window, included
+     * @return The events, by start date
+     */
+    public List<Event> getCalendarEvents(User chef, Date from, Date to) {
+        return Instrument.call("EventManager.getCalendarEvents", () -> doGetCalendarEvents(chef, from, to));
+    }
+
+    private List<Event> doGetCalendarEvents(User chef, Date from, Date to) {
+        EventCalendar c = calendar;
+        return c != null ? c.getEvents(chef, from, to)
+                : Event.loadInWindow(chef.getId(), from, to, Projection.HEADER);
+    }
+
+    /**
+     * Gets the services on the days of a window
+     * 
+     * @param from First day of the window
+     * @param to   Last day of the window, included
+     * @return The services, by date and start time
+     */
+    public List<Service> getCalendarServices(Date from, Date to) {
+        return Instrument.call("EventManager.getCalendarServices", () -> doGetCalendarServices(from, to));
+    }
+
+    private List<Service> doGetCalendarServices(Date from, Date to) {
+        EventCalendar c = calendar;
+        return c != null ? c.getServices(from, to) : Service.loadInWindow(from, to);
+    }
+
+    /**
+     * Gets the services at a location on the days of a window
+     * 
+     * @param location The location
+     * @param from     First day of the window
+     * @param to       Last day of the window, included
+     * @return The services, by date and start time
+     */
+    public List<Service> getCalendarServices(String location, Date from, Date to) {
+        return Instrument.call("EventManager.getCalendarServices", () -> doGetCalendarServices(location, from, to));
+    }
+
+    private List<Service> doGetCalendarServices(String location, Date from, Date to) {
+        EventCalendar c = calendar;
+        return c != null ? c.getServices(location, from, to) : Service.loadInWindow(location, from, to);
+    }
+
     /**
      * Sets the current service based on service ID
      * 
      * @param serviceId ID of the service to select
      */
     public void setSelectedServiceIndex(int serviceId) {
+        Instrument.run("EventManager.setSelectedServiceIndex", () -> doSetSelectedServiceIndex(serviceId));
+    }
+
+    private void doSetSelectedServiceIndex(int serviceId) {
+        Event selectedEvent = getSelectedEvent();
         if (selectedEvent != null && selectedEvent.getServices() != null) {
             for (Service si : selectedEvent.getServices()) {
                 if (si.getId() == serviceId) {
-                    currentService = si;
+                    setCurrentService(si);
                     return;
                 }
             }
         }
-        // If service not found, currentService remains unchanged
+        // If service not found, the current service remains unchanged
     }
 
     /**
@@ -80,7 +189,7 @@ public class EventManager {
      * @param service Service to set as current
      */
     public void setCurrentService(Service service) {
-        this.currentService = service;
+        Session.current().setCurrentService(service);
     }
 
     /**
@@ -89,7 +198,7 @@ public class EventManager {
      * @return Current service or null if none selected
      */
     public Service getCurrentService() {
-        return this.currentService;
+        return Session.current().getCurrentService();
     }
 
     /**
@@ -98,7 +207,7 @@ public class EventManager {
      * @return Selected event or null if none selected
      */
     public Event getSelectedEvent() {
-        return selectedEvent;
+        return Session.current().getSelectedEvent();
     }
 
     /**
@@ -107,7 +216,7 @@ public class EventManager {
      * @param event Event to select
      */
     public void setSelectedEvent(Event event) {
-        this.selectedEvent = event;
+        Session.current().setSelectedEvent(event);
     }
 
     /**
@@ -120,6 +229,10 @@ public class EventManager {
      * @return The newly created event
      */
     public Event createEvent(String name, Date dateStart, Date dateEnd, User chef) {
+        return Instrument.call("EventManager.createEvent", () -> doCreateEvent(name, dateStart, dateEnd, chef));
+    }
+
+    private Event doCreateEvent(String name, Date dateStart, Date dateEnd, User chef) {
         try {
 
             Event event = new Event();
@@ -132,8 +245,8 @@ public class EventManager {
             notifyEventCreated(event);
 
             // Set as selected event
-            this.selectedEvent = event;
-            this.currentService = null;
+            setSelectedEvent(event);
+            setCurrentService(null);
 
             return event;
         } catch (Exception e) {
@@ -142,12 +255,23 @@ public class EventManager {
     }
 
     public void selectEvent(Event event) {
-        this.selectedEvent = event;
-        this.currentService = null;
+        Instrument.run("EventManager.selectEvent", () -> doSelectEvent(event));
+    }
+
+    private void doSelectEvent(Event event) {
+        setSelectedEvent(event);
+        setCurrentService(null);
     }
 
     public Service createService(String name, Date date, Time timeStart, Time timeEnd, String location)
             throws UseCaseLogicException {
+        return Instrument.call("EventManager.createService",
+                () -> doCreateService(name, date, timeStart, timeEnd, location));
+    }
+
+    private Service doCreateService(String name, Date date, Time timeStart, Time timeEnd, String location)
+            throws UseCaseLogicException {
+        Event selectedEvent = getSelectedEvent();
         if (selectedEvent == null) {
             String msg = "Cannot create service: no event selected";
             throw new UseCaseLogicException(msg);
@@ -168,7 +292,7 @@ public class EventManager {
 
             // Add to event and set as current service
             selectedEvent.addService(service);
-            this.currentService = service;
+            setCurrentService(service);
 
             return service;
         } catch (Exception e) {
@@ -184,6 +308,10 @@ public class EventManager {
      * @param date    New date for the event
      */
     public void modifyEvent(int eventId, String name, Date date) {
+        Instrument.run("EventManager.modifyEvent", () -> doModifyEvent(eventId, name, date));
+    }
+
+    private void doModifyEvent(int eventId, String name, Date date) {
         Event event = Event.loadById(eventId);
         if (event != null) {
             event.setName(name);
@@ -193,8 +321,9 @@ public class EventManager {
             notifyEventModified(event);
 
             // Update selected event if it's the same one
+            Event selectedEvent = getSelectedEvent();
             if (selectedEvent != null && selectedEvent.getId() == eventId) {
-                this.selectedEvent = event;
+                setSelectedEvent(event);
             }
         }
     }
@@ -210,6 +339,11 @@ public class EventManager {
      * @return The modified service, or null if not found
      */
     public Service modifyService(int serviceId, String name, Date date, String location, int menuId) {
+        return Instrument.call("EventManager.modifyService",
+                () -> doModifyService(serviceId, name, date, location, menuId));
+    }
+
+    private Service doModifyService(int serviceId, String name, Date date, String location, int menuId) {
         // First try to find service in the current event's services list
         Service service = findServiceById(serviceId);
 
@@ -235,8 +369,9 @@ public class EventManager {
             notifyServiceModified(service);
 
             // Update current service reference if this is the current service
+            Service currentService = getCurrentService();
             if (currentService != null && currentService.getId() == serviceId) {
-                currentService = service;
+                setCurrentService(service);
             }
         }
 
@@ -250,6 +385,11 @@ public class EventManager {
      * @return true if deleted successfully, false otherwise
      */
     public boolean deleteService(int serviceId) {
+        return Instrument.call("EventManager.deleteService", () -> doDeleteService(serviceId));
+    }
+
+    private boolean doDeleteService(int serviceId) {
+        Event selectedEvent = getSelectedEvent();
         try {
             if (selectedEvent == null) {
                 return false;
@@ -264,8 +404,9 @@ public class EventManager {
             selectedEvent.removeService(serviceToDelete);
 
             // Clear current service if it was the one deleted
+            Service currentService = getCurrentService();
             if (currentService != null && currentService.getId() == serviceId) {
-                currentService = null;
+                setCurrentService(null);
             }
 
             // Notify all receivers (EventPersistence will delete from DB)
@@ -284,6 +425,10 @@ public class EventManager {
      * @return true if deleted successfully, false otherwise
      */
     public boolean deleteEvent(int eventId) {
+        return Instrument.call("EventManager.deleteEvent", () -> doDeleteEvent(eventId));
+    }
+
+    private boolean doDeleteEvent(int eventId) {
         try {
             Event eventToDelete = Event.loadById(eventId);
             if (eventToDelete == null) {
@@ -292,9 +437,10 @@ public class EventManager {
 
 
             // Clear references if this was the selected event
+            Event selectedEvent = getSelectedEvent();
             if (selectedEvent != null && selectedEvent.getId() == eventId) {
-                selectedEvent = null;
-                currentService = null;
+                setSelectedEvent(null);
+                setCurrentService(null);
             }
 
             // Notify all receivers (EventPersistence will delete from DB)
@@ -313,7 +459,12 @@ public class EventManager {
      * @throws UseCaseLogicException if no event or service is selected
      */
     public void assignMenu(Menu menu) throws UseCaseLogicException {
-        if (selectedEvent == null) {
+        Instrument.run("EventManager.assignMenu", () -> doAssignMenu(menu));
+    }
+
+    private void doAssignMenu(Menu menu) throws UseCaseLogicException {
+        Service currentService = getCurrentService();
+        if (getSelectedEvent() == null) {
             String msg = "Cannot assign menu: no event selected";
             throw new UseCaseLogicException(msg);
         }
@@ -336,6 +487,11 @@ public class EventManager {
      * @return true if removed successfully, false if no service selected
      */
     public boolean removeMenu() {
+        return Instrument.call("EventManager.removeMenu", () -> doRemoveMenu());
+    }
+
+    private boolean doRemoveMenu() {
+        Service currentService = getCurrentService();
         if (currentService == null) {
             return false;
         }
@@ -352,6 +508,7 @@ public class EventManager {
      * Helper method to find a service by ID within the selected event
      */
     private Service findServiceById(int serviceId) {
+        Event selectedEvent = getSelectedEvent();
         if (selectedEvent == null || selectedEvent.getServices() == null) {
             return null;
         }
@@ -368,50 +525,35 @@ public class EventManager {
     // Notification methods to avoid code duplication
 
     private void notifyEventCreated(Event event) {
-        for (EventReceiver receiver : eventReceivers) {
-            receiver.updateEventCreated(event);
-        }
+        eventBus.publish(EventReceiver.class, event::getId, r -> r.updateEventCreated(event));
     }
 
     private void notifyEventModified(Event event) {
-        for (EventReceiver receiver : eventReceivers) {
-            receiver.updateEventModified(event);
-        }
+        eventBus.publish(EventReceiver.class, event::getId, r -> r.updateEventModified(event));
     }
 
     private void notifyEventDeleted(Event event) {
-        for (EventReceiver receiver : eventReceivers) {
-            receiver.updateEventDeleted(event);
-        }
+        eventBus.publish(EventReceiver.class, event::getId, r -> r.updateEventDeleted(event));
     }
 
     private void notifyServiceCreated(Service service) {
-        for (EventReceiver receiver : eventReceivers) {
-            receiver.updateServiceCreated(selectedEvent, service);
-        }
+        Event event = getSelectedEvent();
+        eventBus.publish(EventReceiver.class, service::getEventId, r -> r.updateServiceCreated(event, service));
     }
 
     private void notifyServiceModified(Service service) {
-        for (EventReceiver receiver : eventReceivers) {
-            receiver.updateServiceModified(service);
-        }
+        eventBus.publish(EventReceiver.class, service::getEventId, r -> r.updateServiceModified(service));
     }
 
     private void notifyServiceDeleted(Service service) {
-        for (EventReceiver receiver : eventReceivers) {
-            receiver.updateServiceDeleted(service);
-        }
+        eventBus.publish(EventReceiver.class, service::getEventId, r -> r.updateServiceDeleted(service));
     }
 
     private void notifyMenuAssigned(Service service, Menu menu) {
-        for (EventReceiver receiver : eventReceivers) {
-            receiver.updateMenuAssigned(service, menu);
-        }
+        eventBus.publish(EventReceiver.class, service::getEventId, r -> r.updateMenuAssigned(service, menu));
     }
 
     private void notifyMenuRemoved(Service service) {
-        for (EventReceiver receiver : eventReceivers) {
-            receiver.updateMenuRemoved(service);
-        }
+        eventBus.publish(EventReceiver.class, service::getEventId, r -> r.updateMenuRemoved(service));
     }
 }
@@ -0,0 +1,38 @@
+package catering.businesslogic.event;
+
+/**
+ * Which associations of an event a loader fetches with it. The others are
+ * fetched on first access, for all the events or services loaded together.
+ */
+public final class FetchPlan {
+
+    /** Services and menus on first access */
+    public static final FetchPlan LAZY = new FetchPlan(false, false);
+
+    /** Services with the event, their menus on first access */
+    public static final FetchPlan SERVICES = new FetchPlan(true, false);
+
+    /** Services and their menus with the event */
+    public static final FetchPlan EAGER = new FetchPlan(true, true);
+
+    private final boolean services;
+    private final boolean menus;
+
+    private FetchPlan(boolean services, boolean menus) {
+        this.services = services;
+        this.menus = menus;
+    }
+
+    public boolean isEagerServices() {
+        return services;
+    }
+
+    public boolean isEagerMenus() {
+        return menus;
+    }
+
+    @Override
+    public String toString() {
+        return "FetchPlan [services=" + (services ? "eager" : "lazy") + ", menus=" + (menus ? "eager" : "lazy") + "]";
+    }
+}
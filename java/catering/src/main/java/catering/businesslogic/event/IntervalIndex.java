@@ -0,0 +1,126 @@
+package catering.businesslogic.event;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.function.Predicate;
+
+/**
+ * Values over intervals of days, found by overlap with a window of days.
+ * <p>
+ * Values are kept by first day. A window can only be overlapped by values
+ * starting at most the longest interval before it, so a query scans the
+ * first days from there to the end of the window: its cost depends on the
+ * days and values in that range, not on the size of the index. The longest
+ * interval is not lowered on removal, only on {@link #clear()}. Not
+ * thread-safe.
+ *
+ * @param <T> Type of the values
+ */
+final class IntervalIndex<T> {
+
+    private static final class Entry<T> {
+        final int start;
+        final int end;
+        final T value;
+
+        Entry(int start, int end, T value) {
+            this.start = start;
+            this.end = end;
+            this.value = value;
+        }
+    }
+
+    private final TreeMap<Integer, List<Entry<T>>> byStart = new TreeMap<>();
+    private final Map<Integer, Entry<T>> byId = new HashMap<>();
+    private final Comparator<Entry<T>> order;
+    private int maxLength;
+
+    /**
+     * @param order Order of values starting on the same day
+     */
+    IntervalIndex(Comparator<? super T> order) {
+        this.order = (a, b) -> order.compare(a.value, b.value);
+    }
+
+    /**
+     * Adds a value, replacing the one with the same ID
+     *
+     * @param id    ID of the value
+     * @param start First day
+     * @param end   Last day, included; not before {@code start}
+     * @param value The value
+     */
+    void put(int id, int start, int end, T value) {
+        remove(id);
+        Entry<T> entry = new Entry<>(start, end, value);
+        List<Entry<T>> day = byStart.computeIfAbsent(start, k -> new ArrayList<>());
+        int i = Collections.binarySearch(day, entry, order);
+        day.add(i < 0 ? -i - 1 : i + 1, entry);
+        byId.put(id, entry);
+        maxLength = Math.max(maxLength, end - start);
+    }
+
+    /**
+     * @return The value removed, or null if there was none with that ID
+     */
+    T remove(int id) {
+        Entry<T> entry = byId.remove(id);
+        if (entry == null)
+            return null;
+        List<Entry<T>> day = byStart.get(entry.start);
+        day.remove(entry);
+        if (day.isEmpty())
+            byStart.remove(entry.start);
+        return entry.value;
+    }
+
+    /**
+     * Removes the values matching a filter, scanning them all
+     */
+    void removeIf(Predicate<? super T> filter) {
+        Iterator<Map.Entry<Integer, Entry<T>>> it = byId.entrySet().iterator();
+        while (it.hasNext()) {
+            Entry<T> entry = it.next().getValue();
+            if (filter.test(entry.value)) {
+                it.remove();
+                List<Entry<T>> day = byStart.get(entry.start);
+                day.remove(entry);
+                if (day.isEmpty())
+                    byStart.remove(entry.start);
+            }
+        }
+    }
+
+    /**
+     * @param from   First day of the window
+     * @param to     Last day of the window, included
+     * @param filter Values to keep
+     * @return The matching values overlapping the window, by first day
+     */
+    List<T> find(int from, int to, Predicate<? super T> filter) {
+        List<T> found = new ArrayList<>();
+        for (List<Entry<T>> day : byStart.subMap(from - maxLength, true, to, true).values()) {
+            for (Entry<T> entry : day) {
+                if (entry.end >= from && filter.test(entry.value))
+                    found.add(entry.value);
+            }
+        }
+        return found;
+    }
+
+    int size() {
+        return byId.size();
+    }
+
+    void clear() {
+        byStart.clear();
+        byId.clear();
+        maxLength = 0;
+    }
+}
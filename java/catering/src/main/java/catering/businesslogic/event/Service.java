@@ -6,8 +6,11 @@ import java.sql.Date;
 
 import catering.businesslogic.menu.Menu;
 import catering.businesslogic.menu.MenuItem;
+import catering.persistence.DirtyFields;
+import catering.persistence.LazyBatch;
 import catering.persistence.PersistenceManager;
 import catering.persistence.ResultHandler;
+import catering.persistence.Temporals;
 
 /**
  * Represents a service in an event in the catering system.
@@ -22,6 +25,11 @@ public class Service {
     private String location;
     private int eventId;
     private Menu menu;
+    // While the menu is not loaded: its ID, and the services loaded with
+    // this one, whose menus load together
+    private int menuId;
+    private volatile LazyBatch<Service> menuBatch;
+    private final DirtyFields dirty = new DirtyFields();
 
     public Service() {
     }
@@ -44,6 +52,7 @@ public class Service {
     }
 
     public void setName(String name) {
+        dirty.mark("name", this.name, name);
         this.name = name;
     }
 
@@ -52,6 +61,7 @@ public class Service {
     }
 
     public void setDate(Date date) {
+        dirty.mark("service_date", Temporals.toEpochDay(this.date), Temporals.toEpochDay(date));
         this.date = date;
     }
 
@@ -60,6 +70,7 @@ public class Service {
     }
 
     public void setTimeStart(Time timeStart) {
+        dirty.mark("time_start", Temporals.toMinuteOfDay(this.timeStart), Temporals.toMinuteOfDay(timeStart));
         this.timeStart = timeStart;
     }
 
@@ -68,6 +79,7 @@ public class Service {
     }
 
     public void setTimeEnd(Time timeEnd) {
+        dirty.mark("time_end", Temporals.toMinuteOfDay(this.timeEnd), Temporals.toMinuteOfDay(timeEnd));
         this.timeEnd = timeEnd;
     }
 
@@ -76,6 +88,7 @@ public class Service {
     }
 
     public void setLocation(String location) {
+        dirty.mark("location", this.location, location);
         this.location = location;
     }
 
@@ -84,71 +97,80 @@ public class Service {
     }
 
     public void setEventId(int eventId) {
+        dirty.mark("event_id", this.eventId, eventId);
         this.eventId = eventId;
     }
 
+    /**
+     * @return The ID of the approved menu, without loading it; 0 if none
+     */
     public int getMenuId() {
+        if (menuBatch != null)
+            return menuId;
         return (menu != null) ? menu.getId() : 0;
     }
 
+    /**
+     * @return The approved menu, loaded on first access together with those
+     *         of the services loaded with this one
+     */
     public Menu getMenu() {
+        LazyBatch<Service> batch = menuBatch;
+        if (batch != null)
+            batch.load();
         return menu;
     }
 
     public void setMenu(Menu menu) {
+        dirty.mark("approved_menu_id", getMenuId(), menu != null ? menu.getId() : 0);
         this.menu = menu;
+        this.menuBatch = null;
     }
 
     public void approveMenu() {
-        if (this.menu == null)
+        Menu m = getMenu();
+        if (m == null)
             return;
 
         String query = "UPDATE Services SET approved_menu_id = ? WHERE id = ?";
-        PersistenceManager.executeUpdate(query, this.menu.getId(), this.getId());
+        PersistenceManager.executeUpdate(query, m.getId(), this.getId());
     }
 
     public void removeMenu() {
-        this.menu = null;
+        setMenu(null);
     }
 
     public ArrayList<MenuItem> getMenuItems() {
-        if (this.menu == null) {
+        Menu m = getMenu();
+        if (m == null) {
             return new ArrayList<>();
         }
-        return this.menu.getItems();
+        return m.getItems();
     }
 
     // Database operations
     public void saveNewService() {
         String query = "INSERT INTO Services (event_id, name, service_date, time_start, time_end, location) VALUES (?, ?, ?, ?, ?, ?)";
 
-        // Convert date to timestamp for storage
-        Long dateTimestamp = (this.getDate() != null) ? this.getDate().getTime() : null;
-
         PersistenceManager.executeUpdate(query,
                 this.getEventId(),
                 this.getName(),
-                dateTimestamp,
-                this.getTimeStart(),
-                this.getTimeEnd(),
+                Temporals.toEpochDay(this.getDate()),
+                Temporals.toMinuteOfDay(this.getTimeStart()),
+                Temporals.toMinuteOfDay(this.getTimeEnd()),
                 this.getLocation());
 
         // Get the ID of the newly inserted service
         this.setId(PersistenceManager.getLastId());
+        dirty.clear();
     }
 
+    /**
+     * Writes the fields changed since the service was loaded or last
+     * written, approved menu included, if any
+     */
     public void updateService() {
-        String query = "UPDATE Services SET name = ?, service_date = ?, time_start = ?, time_end = ?, location = ? WHERE id = ?";
-
-        Long dateTimestamp = (this.getDate() != null) ? this.getDate().getTime() : null;
-
-        PersistenceManager.executeUpdate(query,
-                this.getName(),
-                dateTimestamp,
-                this.getTimeStart(),
-                this.getTimeEnd(),
-                this.getLocation(),
-                this.getId());
+        dirty.update("Services", this.getId());
     }
 
     public boolean deleteService() {
@@ -158,115 +180,206 @@ public class Service {
 
     public void assignMenuToService(Menu menu) {
         this.setMenu(menu);
-
-        String query = "UPDATE Services SET approved_menu_id = ? WHERE id = ?";
-        PersistenceManager.executeUpdate(query, menu.getId(), this.getId());
+        updateService();
     }
 
     public void removeMenuFromService() {
         this.removeMenu();
-
-        String query = "UPDATE Services SET approved_menu_id = 0 WHERE id = ?";
-        PersistenceManager.executeUpdate(query, this.getId());
+        updateService();
     }
 
     // Static methods for data loading
     public static ArrayList<Service> loadServicesForEvent(int eventId) {
+        return loadServicesForEvent(eventId, FetchPlan.LAZY);
+    }
+
+    /**
+     * @param plan Whether to load the menus now or on first access
+     */
+    public static ArrayList<Service> loadServicesForEvent(int eventId, FetchPlan plan) {
         ArrayList<Service> services = new ArrayList<>();
         String query = "SELECT * FROM Services WHERE event_id = ? ORDER BY service_date, time_start";
 
         PersistenceManager.executeQuery(query, new ResultHandler() {
             @Override
             public void handle(ResultSet rs) throws SQLException {
-                Service s = new Service();
-                s.id = rs.getInt("id");
-                s.name = rs.getString("name");
-
-                try {
-                    s.date = Date.valueOf(rs.getString("service_date"));
-                    s.timeStart = Time.valueOf(rs.getString("time_start"));
-                    s.timeEnd = Time.valueOf(rs.getString("time_end"));
-                } catch (IllegalArgumentException ex) {
-                    // Ignore parsing errors
-                }
-
-                s.location = rs.getString("location");
-                s.eventId = rs.getInt("event_id");
-
-                int menuId = rs.getInt("approved_menu_id");
-                if (menuId > 0)
-                    s.menu = Menu.load(menuId);
-
-                services.add(s);
+                services.add(fromRow(rs));
             }
         }, eventId);
 
+        fetchMenus(services, plan);
+        return services;
+    }
+
+    /**
+     * Loads the services of several events with one query per
+     * {@link PersistenceManager#IN_CHUNK} events. Their menus load together,
+     * now or on the first access to any of them.
+     * 
+     * @return The services of each event, by date; events without services
+     *         are absent
+     */
+    static Map<Integer, ArrayList<Service>> loadServicesForEvents(Collection<Integer> eventIds, FetchPlan plan) {
+        Map<Integer, ArrayList<Service>> byEvent = new HashMap<>();
+        ArrayList<Service> all = new ArrayList<>();
+        String query = "SELECT * FROM Services WHERE event_id IN (?) ORDER BY event_id, service_date, time_start";
+
+        PersistenceManager.executeQueryIn(query, eventIds, new ResultHandler() {
+            @Override
+            public void handle(ResultSet rs) throws SQLException {
+                Service s = fromRow(rs);
+                byEvent.computeIfAbsent(s.eventId, id -> new ArrayList<>()).add(s);
+                all.add(s);
+            }
+        });
+
+        fetchMenus(all, plan);
+        return byEvent;
+    }
+
+    /**
+     * Loads the services on the days of a window, by date and start time
+     * 
+     * @param from First day of the window
+     * @param to   Last day of the window, included
+     * @return The services in the window; their menus load on first access
+     */
+    public static ArrayList<Service> loadInWindow(Date from, Date to) {
+        String query = "SELECT * FROM Services WHERE service_date BETWEEN ? AND ? "
+                + "ORDER BY service_date, time_start, id";
+        return loadWindow(query, Temporals.toEpochDay(from), Temporals.toEpochDay(to));
+    }
+
+    /**
+     * Loads the services at a location on the days of a window, by date and
+     * start time
+     * 
+     * @see #loadInWindow(Date, Date)
+     */
+    public static ArrayList<Service> loadInWindow(String location, Date from, Date to) {
+        String query = "SELECT * FROM Services WHERE location = ? AND service_date BETWEEN ? AND ? "
+                + "ORDER BY service_date, time_start, id";
+        return loadWindow(query, location, Temporals.toEpochDay(from), Temporals.toEpochDay(to));
+    }
+
+    private static ArrayList<Service> loadWindow(String query, Object... params) {
+        ArrayList<Service> services = new ArrayList<>();
+        PersistenceManager.executeQuery(query, new ResultHandler() {
+            @Override
+            public void handle(ResultSet rs) throws SQLException {
+                services.add(fromRow(rs));
+            }
+        }, params);
+
+        fetchMenus(services, FetchPlan.LAZY);
         return services;
     }
 
     public static Service loadById(int id) {
+        return loadById(id, FetchPlan.LAZY);
+    }
+
+    /**
+     * @param plan Whether to load the menu now or on first access
+     */
+    public static Service loadById(int id, FetchPlan plan) {
         String query = "SELECT * FROM Services WHERE id = ?";
-        return loadServiceByQuery(query, id);
+        return loadServiceByQuery(query, id, plan);
     }
 
     public static Service loadByName(String name) {
         String query = "SELECT * FROM Services WHERE name = ?";
-        return loadServiceByQuery(query, name);
+        return loadServiceByQuery(query, name, FetchPlan.LAZY);
     }
 
-    private static Service loadServiceByQuery(String query, Object param) {
-        final Service[] serviceHolder = new Service[1];
-        final boolean[] serviceFound = new boolean[1];
-        serviceFound[0] = false;
+    private static Service loadServiceByQuery(String query, Object param, FetchPlan plan) {
+        ArrayList<Service> found = new ArrayList<>(1);
 
         PersistenceManager.executeQuery(query, new ResultHandler() {
             @Override
             public void handle(ResultSet rs) throws SQLException {
-                serviceFound[0] = true;
-
-                Service s = new Service();
-                s.id = rs.getInt("id");
-                s.name = rs.getString("name");
-
-                try {
-                    String dateStr = rs.getString("service_date");
-                    String startTimeStr = rs.getString("time_start");
-                    String endTimeStr = rs.getString("time_end");
-
-                    if (dateStr != null && !dateStr.isEmpty()) {
-                        s.date = Date.valueOf(dateStr);
-                    }
-                    if (startTimeStr != null && !startTimeStr.isEmpty()) {
-                        s.timeStart = Time.valueOf(startTimeStr);
-                    }
-                    if (endTimeStr != null && !endTimeStr.isEmpty()) {
-                        s.timeEnd = Time.valueOf(endTimeStr);
-                    }
-                } catch (IllegalArgumentException ex) {
-                }
-
-                s.location = rs.getString("location");
-                s.eventId = rs.getInt("event_id");
-
-                int menuId = rs.getInt("approved_menu_id");
-                if (menuId > 0) {
-                    try {
-                        s.menu = Menu.load(menuId);
-                    } catch (Exception e) {
-                    }
-                }
-
-                serviceHolder[0] = s;
+                found.add(fromRow(rs));
             }
         }, param);
 
-        return serviceFound[0] ? serviceHolder[0] : null;
+        if (found.isEmpty())
+            return null;
+        // The last row wins, as it always has for names shared by services
+        Service s = found.get(found.size() - 1);
+        fetchMenus(Collections.singletonList(s), plan);
+        return s;
+    }
+
+    /**
+     * @return A copy of this service, unaffected by later changes to this
+     *         one; a menu not loaded yet loads on its own
+     */
+    Service copy() {
+        Service s = new Service();
+        s.id = id;
+        s.name = name;
+        s.date = date;
+        s.timeStart = timeStart;
+        s.timeEnd = timeEnd;
+        s.location = location;
+        s.eventId = eventId;
+        if (menuBatch != null) {
+            s.menuId = menuId;
+            fetchMenus(Collections.singletonList(s), FetchPlan.LAZY);
+        } else {
+            s.menu = menu;
+        }
+        return s;
+    }
+
+    private static Service fromRow(ResultSet rs) throws SQLException {
+        Service s = new Service();
+        s.id = rs.getInt("id");
+        s.name = rs.getString("name");
+        s.date = Temporals.getDate(rs, "service_date");
+        s.timeStart = Temporals.getTime(rs, "time_start");
+        s.timeEnd = Temporals.getTime(rs, "time_end");
+        s.location = rs.getString("location");
+        s.eventId = rs.getInt("event_id");
+        s.menuId = rs.getInt("approved_menu_id");
+        return s;
+    }
+
+    /**
+     * Sets up the menus of services loaded together, to load with one query
+     * for all of them: now if the plan says so, otherwise on the first
+     * {@link #getMenu()} of any of them
+     */
+    private static void fetchMenus(List<Service> services, FetchPlan plan) {
+        LazyBatch<Service> batch = new LazyBatch<>(services, Service::loadMenus);
+        for (Service s : services) {
+            if (s.menuId > 0)
+                s.menuBatch = batch;
+        }
+        if (plan.isEagerMenus())
+            batch.load();
+    }
+
+    private static void loadMenus(List<Service> services) {
+        List<Integer> ids = new ArrayList<>();
+        for (Service s : services) {
+            if (s.menuBatch != null)
+                ids.add(s.menuId);
+        }
+        Map<Integer, Menu> menus = Menu.loadAll(ids);
+        for (Service s : services) {
+            // Skip those whose menu was set in the meantime
+            if (s.menuBatch != null) {
+                s.menu = menus.get(s.menuId);
+                s.menuBatch = null;
+            }
+        }
     }
 
     @Override
     public String toString() {
         return "Service [id=" + id + ", name=" + name + ", date=" + date + ", location=" + location +
-                ", menu=" + (menu != null ? menu.getTitle() : "none") + "]";
+                ", menu=" + (menuBatch != null ? "#" + menuId : menu != null ? menu.getTitle() : "none") + "]";
     }
 
     @Override
@@ -319,8 +432,8 @@ public class Service {
             return false;
 
         // If locations don't match, sections are not equal
-        boolean menuMatch = (this.menu == null && other.menu == null) ||
-        (this.menu != null && this.menu.equals(other.menu));
+        boolean menuMatch = (this.getMenu() == null && other.getMenu() == null) ||
+        (this.getMenu() != null && this.getMenu().equals(other.getMenu()));
 
         if (!menuMatch)
             return false;
@@ -0,0 +1,314 @@
+package catering.businesslogic.event;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+import catering.businesslogic.menu.Menu;
+import catering.businesslogic.menu.MenuEventReceiver;
+import catering.businesslogic.menu.MenuItem;
+import catering.businesslogic.menu.Section;
+import catering.businesslogic.recipe.KitchenProcess;
+import catering.businesslogic.recipe.RecipeBook;
+import catering.persistence.PersistenceManager;
+import catering.persistence.ResultHandler;
+
+/**
+ * UsageIndex answers where a recipe or preparation is used: in which menus
+ * and in which scheduled services.
+ * <p>
+ * Preparations are linked to recipes by the {@link RecipeBook}; this index
+ * adds recipes to menus (counting items, since a menu may list the same
+ * recipe twice) and menus to the services that adopted them. It is loaded
+ * from the database on first use and then kept up to date as a receiver of
+ * both menu and event notifications, so it must be registered after the
+ * persistence receivers, which assign the IDs it relies on.
+ */
+public class UsageIndex implements MenuEventReceiver, EventReceiver {
+
+    private final Map<Integer, Map<Integer, Integer>> menusByRecipe = new HashMap<>();
+    private final Map<Integer, Map<Integer, Integer>> recipesByMenu = new HashMap<>();
+    private final Map<Integer, Set<Integer>> servicesByMenu = new HashMap<>();
+    private final Map<Integer, Integer> menuByService = new HashMap<>();
+
+    private boolean loaded;
+
+    /**
+     * Finds the menus containing a recipe, or a recipe that includes a
+     * preparation
+     *
+     * @param kp The recipe or preparation
+     * @return Immutable set of menu IDs
+     */
+    public synchronized Set<Integer> getMenusUsing(KitchenProcess kp) {
+        ensureLoaded();
+        Set<Integer> menus = new HashSet<>();
+        for (int recipeId : recipeIdsOf(kp)) {
+            Map<Integer, Integer> counts = menusByRecipe.get(recipeId);
+            if (counts != null)
+                menus.addAll(counts.keySet());
+        }
+        return Collections.unmodifiableSet(menus);
+    }
+
+    /**
+     * Finds the services whose approved menu uses a recipe or preparation
+     *
+     * @param kp The recipe or preparation
+     * @return Immutable set of service IDs
+     */
+    public synchronized Set<Integer> getServicesUsing(KitchenProcess kp) {
+        Set<Integer> services = new HashSet<>();
+        for (int menuId : getMenusUsing(kp)) {
+            Set<Integer> ids = servicesByMenu.get(menuId);
+            if (ids != null)
+                services.addAll(ids);
+        }
+        return Collections.unmodifiableSet(services);
+    }
+
+    /**
+     * Drops the index; it is reloaded from the database on next access.
+     * Needed when the database is reinitialized behind our back.
+     */
+    public synchronized void invalidate() {
+        menusByRecipe.clear();
+        recipesByMenu.clear();
+        servicesByMenu.clear();
+        menuByService.clear();
+        loaded = false;
+    }
+
+    private Set<Integer> recipeIdsOf(KitchenProcess kp) {
+        if (kp.getId() == 0)
+            return Collections.emptySet();
+        if (kp.isRecipe())
+            return Collections.singleton(kp.getId());
+        return RecipeBook.getInstance().getRecipeIdsUsing(kp.getId());
+    }
+
+    private void ensureLoaded() {
+        if (loaded)
+            return;
+
+        // A copy not yet edited reads the item rows of its source
+        PersistenceManager.executeQuery("SELECT m.id AS menu_id, i.recipe_id FROM Menus m"
+                + " JOIN MenuItems i ON i.menu_id = coalesce(nullif(m.content_id, 0), m.id)", new ResultHandler() {
+            @Override
+            public void handle(ResultSet rs) throws SQLException {
+                addRecipe(rs.getInt("menu_id"), rs.getInt("recipe_id"));
+            }
+        });
+        PersistenceManager.executeQuery("SELECT id, approved_menu_id FROM Services", new ResultHandler() {
+            @Override
+            public void handle(ResultSet rs) throws SQLException {
+                setServiceMenu(rs.getInt("id"), rs.getInt("approved_menu_id"));
+            }
+        });
+        loaded = true;
+    }
+
+    private void addRecipe(int menuId, int recipeId) {
+        if (menuId == 0 || recipeId == 0)
+            return;
+        menusByRecipe.computeIfAbsent(recipeId, k -> new HashMap<>()).merge(menuId, 1, Integer::sum);
+        recipesByMenu.computeIfAbsent(menuId, k -> new HashMap<>()).merge(recipeId, 1, Integer::sum);
+    }
+
+    private void removeRecipe(int menuId, int recipeId) {
+        decrement(menusByRecipe, recipeId, menuId);
+        decrement(recipesByMenu, menuId, recipeId);
+    }
+
+    private static void decrement(Map<Integer, Map<Integer, Integer>> map, int outer, int inner) {
+        Map<Integer, Integer> counts = map.get(outer);
+        if (counts == null)
+            return;
+        Integer n = counts.get(inner);
+        if (n == null)
+            return;
+        if (n > 1) {
+            counts.put(inner, n - 1);
+        } else {
+            counts.remove(inner);
+            if (counts.isEmpty())
+                map.remove(outer);
+        }
+    }
+
+    private void addItem(Menu m, MenuItem mi) {
+        if (mi.getRecipe() != null)
+            addRecipe(m.getId(), mi.getRecipe().getId());
+    }
+
+    private void removeItem(Menu m, MenuItem mi) {
+        if (mi.getRecipe() != null)
+            removeRecipe(m.getId(), mi.getRecipe().getId());
+    }
+
+    private void setServiceMenu(int serviceId, int menuId) {
+        removeService(serviceId);
+        if (menuId == 0)
+            return;
+        menuByService.put(serviceId, menuId);
+        servicesByMenu.computeIfAbsent(menuId, k -> new HashSet<>()).add(serviceId);
+    }
+
+    private void removeService(int serviceId) {
+        Integer menuId = menuByService.remove(serviceId);
+        if (menuId == null)
+            return;
+        Set<Integer> services = servicesByMenu.get(menuId);
+        if (services != null) {
+            services.remove(serviceId);
+            if (services.isEmpty())
+                servicesByMenu.remove(menuId);
+        }
+    }
+
+    // Menu notifications
+
+    @Override
+    public synchronized void updateMenuCreated(Menu m) {
+        if (!loaded)
+            return;
+        for (MenuItem mi : m.getItemsView()) {
+            addItem(m, mi);
+        }
+    }
+
+    @Override
+    public synchronized void updateMenuDeleted(Menu m) {
+        if (!loaded)
+            return;
+        Map<Integer, Integer> recipes = recipesByMenu.remove(m.getId());
+        if (recipes != null) {
+            for (int recipeId : recipes.keySet()) {
+                Map<Integer, Integer> menus = menusByRecipe.get(recipeId);
+                menus.remove(m.getId());
+                if (menus.isEmpty())
+                    menusByRecipe.remove(recipeId);
+            }
+        }
+        Set<Integer> services = servicesByMenu.remove(m.getId());
+        if (services != null) {
+            for (int serviceId : services) {
+                menuByService.remove(serviceId);
+            }
+        }
+    }
+
+    @Override
+    public void updateMenuTitleChanged(Menu m) {
+    }
+
+    @Override
+    public void updateMenuPublishedState(Menu m) {
+    }
+
+    @Override
+    public void updateMenuFeaturesChanged(Menu m) {
+    }
+
+    @Override
+    public void updateSectionAdded(Menu m, Section sec) {
+    }
+
+    @Override
+    public synchronized void updateSectionDeleted(Menu m, Section s, boolean itemsDeleted) {
+        if (!loaded || !itemsDeleted)
+            return;
+        for (MenuItem mi : s.getItems()) {
+            removeItem(m, mi);
+        }
+    }
+
+    @Override
+    public void updateSectionChangedName(Menu m, Section s) {
+    }
+
+    @Override
+    public void updateSectionsRearranged(Menu m) {
+    }
+
+    @Override
+    public synchronized void updateMenuItemAdded(Menu m, MenuItem mi) {
+        if (loaded)
+            addItem(m, mi);
+    }
+
+    @Override
+    public synchronized void updateMenuItemDeleted(Menu m, Section sec, MenuItem mi) {
+        if (loaded)
+            removeItem(m, mi);
+    }
+
+    @Override
+    public void updateMenuItemChanged(Menu m, Section s, MenuItem mi) {
+    }
+
+    @Override
+    public void updateMenuItemDescriptionChanged(Menu m, MenuItem mi) {
+    }
+
+    @Override
+    public void updateMenuItemsRearranged(Menu m, Section s) {
+    }
+
+    @Override
+    public void updateFreeMenuItemsRearranged(Menu m) {
+    }
+
+    // Event notifications
+
+    @Override
+    public void updateEventCreated(Event event) {
+    }
+
+    @Override
+    public void updateEventModified(Event event) {
+    }
+
+    @Override
+    public synchronized void updateEventDeleted(Event event) {
+        if (!loaded)
+            return;
+        for (Service service : event.getServices()) {
+            removeService(service.getId());
+        }
+    }
+
+    @Override
+    public synchronized void updateServiceCreated(Event event, Service service) {
+        if (loaded && service.getMenuId() != 0)
+            setServiceMenu(service.getId(), service.getMenuId());
+    }
+
+    @Override
+    public synchronized void updateServiceModified(Service service) {
+        if (loaded)
+            setServiceMenu(service.getId(), service.getMenuId());
+    }
+
+    @Override
+    public synchronized void updateServiceDeleted(Service service) {
+        if (loaded)
+            removeService(service.getId());
+    }
+
+    @Override
+    public synchronized void updateMenuAssigned(Service service, Menu menu) {
+        if (loaded)
+            setServiceMenu(service.getId(), menu.getId());
+    }
+
+    @Override
+    public synchronized void updateMenuRemoved(Service service) {
+        if (loaded)
+            removeService(service.getId());
+    }
+}
@@ -8,6 +8,7 @@ import java.util.ArrayList;
 import catering.businesslogic.shift.Shift;
 import catering.businesslogic.user.User;
 import catering.persistence.BatchUpdateHandler;
+import catering.persistence.DirtyFields;
 import catering.persistence.PersistenceManager;
 import catering.persistence.ResultHandler;
 
@@ -20,6 +21,7 @@ public class Assignment {
     private Shift shift;
     private KitchenTask task;
     private User cook;
+    private final DirtyFields dirty = new DirtyFields();
 
     // Constructors
     public Assignment(KitchenTask task, Shift shift, User cook) {
@@ -43,6 +45,7 @@ public class Assignment {
     }
 
     public void setShift(Shift shift) {
+        dirty.mark("shift_id", idOf(this.shift), idOf(shift));
         this.shift = shift;
     }
 
@@ -51,6 +54,7 @@ public class Assignment {
     }
 
     public void setCook(User cook) {
+        dirty.mark("cook_id", idOf(this.cook), idOf(cook));
         this.cook = cook;
     }
 
@@ -116,16 +120,13 @@ public class Assignment {
     }
 
     /**
-     * Updates an existing assignment in the database
+     * Updates an existing assignment in the database: its shift and cook, if
+     * changed since it was loaded or last written
      * 
      * @param a The assignment to update
      */
     public static void updateAssignment(Assignment a) {
-        String upd = "UPDATE Assignment SET shift_id = ?, cook_id = ? WHERE id = ?";
-        PersistenceManager.executeUpdate(upd,
-                a.shift.getId(),
-                (a.cook == null ? null : a.cook.getId()),
-                a.id);
+        a.dirty.update("Assignment", a.id);
     }
 
     /**
@@ -167,6 +168,10 @@ public class Assignment {
 
             }
         });
+
+        for (Assignment a : assignmentList) {
+            a.dirty.clear();
+        }
     }
 
     /**
@@ -183,7 +188,15 @@ public class Assignment {
                 a.task.getId(),
                 (a.cook == null ? null : a.cook.getId()));
         a.id = PersistenceManager.getLastId();
+        a.dirty.clear();
+    }
+
+    private static Integer idOf(Shift shift) {
+        return shift == null ? null : shift.getId();
+    }
 
+    private static Integer idOf(User user) {
+        return user == null ? null : user.getId();
     }
 
     @Override
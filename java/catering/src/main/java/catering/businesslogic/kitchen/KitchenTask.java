@@ -9,6 +9,7 @@ import catering.businesslogic.recipe.KitchenProcess;
 import catering.businesslogic.recipe.Preparation;
 import catering.businesslogic.recipe.Recipe;
 import catering.persistence.BatchUpdateHandler;
+import catering.persistence.DirtyFields;
 import catering.persistence.PersistenceManager;
 import catering.persistence.ResultHandler;
 
@@ -20,6 +21,9 @@ public class KitchenTask {
     private int quantity;
     private int portions;
     private boolean ready;
+    // Position of the task in the stored list, -1 until saved
+    private int storedPosition = -1;
+    private final DirtyFields dirty = new DirtyFields();
 
     private KitchenTask() {
     }
@@ -67,6 +71,11 @@ public class KitchenTask {
             }
         });
 
+        for (int i = 0; i < taskList.size(); i++) {
+            taskList.get(i).storedPosition = i;
+            taskList.get(i).dirty.clear();
+        }
+
     }
 
     public static void saveNewTask(int id, KitchenTask task, int taskPosition) {
@@ -83,6 +92,8 @@ public class KitchenTask {
                 task.portions);
 
         task.id = PersistenceManager.getLastId();
+        task.storedPosition = taskPosition;
+        task.dirty.clear();
 
     }
 
@@ -103,6 +114,7 @@ public class KitchenTask {
                 t.portions = rs.getInt("portions");
                 t.ready = rs.getBoolean("ready");
                 t.quantity = rs.getInt("quantity");
+                t.storedPosition = rs.getInt("position");
                 recipeIds.add(rs.getInt("kitchenproc_id")); // Changed from kitchen_proc_id
                 types.add(rs.getBoolean("type"));
                 taskArrayList.add(t);
@@ -141,6 +153,7 @@ public class KitchenTask {
                 t.portions = rs.getInt("portions");
                 t.ready = rs.getBoolean("ready");
                 t.quantity = rs.getInt("quantity");
+                t.storedPosition = rs.getInt("position");
 
                 ids.add(rs.getInt("kitchenproc_id"));
                 types.add(rs.getBoolean("type"));
@@ -162,26 +175,37 @@ public class KitchenTask {
         return t;
     }
 
+    /**
+     * Writes the fields changed since the task was loaded or last written,
+     * if any
+     */
     public static void updateTaskChanged(KitchenTask task) {
-        String query = "UPDATE Tasks SET description = ?, quantity = ?, portions = ?, ready = ? WHERE id = ?";
+        task.dirty.update("Tasks", task.id);
+    }
 
-        PersistenceManager.executeUpdate(query,
-                task.getDescription(),
-                task.quantity,
-                task.portions,
-                task.ready,
-                task.id);
+    /**
+     * @return Position of the task in the stored list, -1 if not saved
+     */
+    int getStoredPosition() {
+        return storedPosition;
+    }
+
+    void setStoredPosition(int position) {
+        storedPosition = position;
     }
 
     public void setReady() {
+        dirty.mark("ready", ready, true);
         ready = true;
     }
 
     public void setQuantity(int quantity) {
+        dirty.mark("quantity", this.quantity, quantity);
         this.quantity = quantity;
     }
 
     public void setPortions(int portions) {
+        dirty.mark("portions", this.portions, portions);
         this.portions = portions;
     }
 
@@ -213,6 +237,7 @@ public class KitchenTask {
     }
 
     public void setDescription(String description) {
+        dirty.mark("description", this.description, description);
         this.description = description;
     }
 
@@ -221,6 +246,10 @@ public class KitchenTask {
     }
 
     public void setKitchenProcess(KitchenProcess kitchenProcess) {
+        if (kitchenProcess != this.kitchenProcess && kitchenProcess != null) {
+            dirty.put("kitchenproc_id", kitchenProcess.getId());
+            dirty.put("type", kitchenProcess.isRecipe());
+        }
         this.kitchenProcess = kitchenProcess;
     }
 
@@ -1,32 +1,41 @@
 package catering.businesslogic.kitchen;
 
 import java.util.ArrayList;
+import java.util.function.IntSupplier;
 
 import catering.businesslogic.CatERing;
+import catering.businesslogic.EventBus;
+import catering.businesslogic.Session;
 import catering.businesslogic.UseCaseLogicException;
 import catering.businesslogic.event.Event;
 import catering.businesslogic.event.Service;
 import catering.businesslogic.shift.Shift;
 import catering.businesslogic.user.User;
+import catering.persistence.Page;
+import catering.persistence.Projection;
+import catering.util.Instrument;
 
 public class KitchenTaskManager {
 
-    private SummarySheet currentSummarySheet;
-    private ArrayList<KitchenTaskEventReceiver> eventReceivers;
+    private final EventBus eventBus;
 
-    public KitchenTaskManager() {
-        eventReceivers = new ArrayList<>();
+    public KitchenTaskManager(EventBus eventBus) {
+        this.eventBus = eventBus;
     }
 
     public void addEventReceiver(KitchenTaskEventReceiver rec) {
-        this.eventReceivers.add(rec);
+        eventBus.subscribe(KitchenTaskEventReceiver.class, rec);
     }
 
     public void removeEventReceiver(KitchenTaskEventReceiver rec) {
-        this.eventReceivers.remove(rec);
+        eventBus.unsubscribe(KitchenTaskEventReceiver.class, rec);
     }
 
     public SummarySheet generateSummarySheet(Event event, Service service) throws UseCaseLogicException {
+        return Instrument.call("KitchenTaskManager.generateSummarySheet", () -> doGenerateSummarySheet(event, service));
+    }
+
+    private SummarySheet doGenerateSummarySheet(Event event, Service service) throws UseCaseLogicException {
 
         User user = CatERing.getInstance().getUserManager().getCurrentUser();
 
@@ -50,8 +59,7 @@ public class KitchenTaskManager {
 
         SummarySheet newSummarySheet = new SummarySheet(service, user);
 
-        service.getMenu().getNeededKitchenProcesses()
-                .forEach(kp -> newSummarySheet.addTask(new KitchenTask(kp)));
+        service.getMenu().forEachNeededKitchenProcess(kp -> newSummarySheet.addTask(new KitchenTask(kp)));
 
         this.setCurrentSummarySheet(newSummarySheet);
         this.notifySheetGenerated(newSummarySheet);
@@ -60,10 +68,26 @@ public class KitchenTaskManager {
     }
 
     public ArrayList<SummarySheet> loadAllSumSheets() {
+        return Instrument.call("KitchenTaskManager.loadAllSumSheets", () -> doLoadAllSumSheets());
+    }
+
+    private ArrayList<SummarySheet> doLoadAllSumSheets() {
         return SummarySheet.loadAllSumSheets();
     }
 
+    public Page<SummarySheet> loadSumSheets(SummarySheet after, int pageSize, Projection projection) {
+        return Instrument.call("KitchenTaskManager.loadSumSheets", () -> doLoadSumSheets(after, pageSize, projection));
+    }
+
+    private Page<SummarySheet> doLoadSumSheets(SummarySheet after, int pageSize, Projection projection) {
+        return SummarySheet.loadPage(after, pageSize, projection);
+    }
+
     public SummarySheet openSumSheet(SummarySheet ss) throws UseCaseLogicException {
+        return Instrument.call("KitchenTaskManager.openSumSheet", () -> doOpenSumSheet(ss));
+    }
+
+    private SummarySheet doOpenSumSheet(SummarySheet ss) throws UseCaseLogicException {
         User user = CatERing.getInstance().getUserManager().getCurrentUser();
         if (!user.isChef())
             throw new UseCaseLogicException();
@@ -74,22 +98,38 @@ public class KitchenTaskManager {
     }
 
     public void addKitchenTask(KitchenTask t) {
-        KitchenTask added = currentSummarySheet.addTask(t);
+        Instrument.run("KitchenTaskManager.addKitchenTask", () -> doAddKitchenTask(t));
+    }
+
+    private void doAddKitchenTask(KitchenTask t) {
+        KitchenTask added = getCurrentSummarySheet().addTask(t);
         notifyTaskAdded(added);
     }
 
     public void moveTask(KitchenTask t, int pos) throws UseCaseLogicException {
+        Instrument.run("KitchenTaskManager.moveTask", () -> doMoveTask(t, pos));
+    }
+
+    private void doMoveTask(KitchenTask t, int pos) throws UseCaseLogicException {
+        SummarySheet currentSummarySheet = getCurrentSummarySheet();
         if (currentSummarySheet == null || currentSummarySheet.getTaskPosition(t) < 0)
             throw new UseCaseLogicException();
         if (pos < 0 || pos >= currentSummarySheet.getTaskListSize())
             throw new UseCaseLogicException();
-        this.currentSummarySheet.moveTask(t, pos);
+        currentSummarySheet.moveTask(t, pos);
 
         this.notifyTaskListSorted();
     }
 
     public void addTaskInformation(KitchenTask task, int quantity, int portions, long minutes)
             throws UseCaseLogicException {
+        Instrument.run("KitchenTaskManager.addTaskInformation",
+                () -> doAddTaskInformation(task, quantity, portions, minutes));
+    }
+
+    private void doAddTaskInformation(KitchenTask task, int quantity, int portions, long minutes)
+            throws UseCaseLogicException {
+        SummarySheet currentSummarySheet = getCurrentSummarySheet();
         if (currentSummarySheet == null)
             throw new UseCaseLogicException();
         if (currentSummarySheet.getTaskPosition(task) < 0)
@@ -111,6 +151,11 @@ public class KitchenTaskManager {
     }
 
     public Assignment assignTask(KitchenTask t, Shift s, User cook) throws UseCaseLogicException {
+        return Instrument.call("KitchenTaskManager.assignTask", () -> doAssignTask(t, s, cook));
+    }
+
+    private Assignment doAssignTask(KitchenTask t, Shift s, User cook) throws UseCaseLogicException {
+        SummarySheet currentSummarySheet = getCurrentSummarySheet();
         if (currentSummarySheet == null) {
             throw new UseCaseLogicException("Cannot assign task because there is no active summary sheet.");
         }
@@ -142,6 +187,12 @@ public class KitchenTaskManager {
 
     public void modifyAssignment(Assignment ass, Shift shift, User cook)
             throws UseCaseLogicException {
+        Instrument.run("KitchenTaskManager.modifyAssignment", () -> doModifyAssignment(ass, shift, cook));
+    }
+
+    private void doModifyAssignment(Assignment ass, Shift shift, User cook)
+            throws UseCaseLogicException {
+        SummarySheet currentSummarySheet = getCurrentSummarySheet();
         if (currentSummarySheet == null)
             throw new UseCaseLogicException();
         // Same precondition as assignTask: if a cook is specified, they must be booked
@@ -161,39 +212,44 @@ public class KitchenTaskManager {
      * @return The current summary sheet
      */
     public SummarySheet getCurrentSummarySheet() {
-        return currentSummarySheet;
+        return Session.current().getSummarySheet();
     }
 
     public void setTaskReady(KitchenTask t) throws UseCaseLogicException {
-        KitchenTask task = currentSummarySheet.setTaskReady(t);
+        Instrument.run("KitchenTaskManager.setTaskReady", () -> doSetTaskReady(t));
+    }
+
+    private void doSetTaskReady(KitchenTask t) throws UseCaseLogicException {
+        KitchenTask task = getCurrentSummarySheet().setTaskReady(t);
         notifyTaskChanged(task);
     }
 
     public void deleteAssignment(Assignment a) throws UseCaseLogicException {
-        Assignment ass = currentSummarySheet.deleteAssignment(a);
+        Instrument.run("KitchenTaskManager.deleteAssignment", () -> doDeleteAssignment(a));
+    }
+
+    private void doDeleteAssignment(Assignment a) throws UseCaseLogicException {
+        Assignment ass = getCurrentSummarySheet().deleteAssignment(a);
         notifyAssignmentDeleted(ass);
     }
 
     private void setCurrentSummarySheet(SummarySheet summarySheet) {
-        currentSummarySheet = summarySheet;
+        Session.current().setSummarySheet(summarySheet);
     }
 
     private void notifyTaskChanged(KitchenTask task) {
-        for (KitchenTaskEventReceiver er : eventReceivers) {
-            er.updateTaskChanged(task);
-        }
+        SummarySheet sheet = getCurrentSummarySheet();
+        eventBus.publish(KitchenTaskEventReceiver.class, idOf(sheet), er -> er.updateTaskChanged(task));
     }
 
     private void notifyAssignmentDeleted(Assignment ass) {
-        for (KitchenTaskEventReceiver er : eventReceivers) {
-            er.updateAssignmentDeleted(ass);
-        }
+        SummarySheet sheet = getCurrentSummarySheet();
+        eventBus.publish(KitchenTaskEventReceiver.class, idOf(sheet), er -> er.updateAssignmentDeleted(ass));
     }
 
     private void notifyAssignmentChanged(Assignment a) {
-        for (KitchenTaskEventReceiver er : eventReceivers) {
-            er.updateAssignmentChanged(a);
-        }
+        SummarySheet sheet = getCurrentSummarySheet();
+        eventBus.publish(KitchenTaskEventReceiver.class, idOf(sheet), er -> er.updateAssignmentChanged(a));
     }
 
     /**
@@ -202,27 +258,29 @@ public class KitchenTaskManager {
      * @param assignment The assignment that was added
      */
     private void notifyAssignmentAdded(Assignment assignment) {
-        for (KitchenTaskEventReceiver er : eventReceivers) {
-            er.updateAssignmentAdded(currentSummarySheet, assignment);
-        }
+        SummarySheet sheet = getCurrentSummarySheet();
+        eventBus.publish(KitchenTaskEventReceiver.class, idOf(sheet),
+                er -> er.updateAssignmentAdded(sheet, assignment));
     }
 
     private void notifyTaskListSorted() {
-        for (KitchenTaskEventReceiver er : eventReceivers) {
-            er.updateTaskListSorted(currentSummarySheet);
-        }
+        SummarySheet sheet = getCurrentSummarySheet();
+        eventBus.publish(KitchenTaskEventReceiver.class, idOf(sheet), er -> er.updateTaskListSorted(sheet));
     }
 
     private void notifyTaskAdded(KitchenTask added) {
-        for (KitchenTaskEventReceiver er : eventReceivers) {
-            er.updateTaskAdded(currentSummarySheet, added);
-        }
+        SummarySheet sheet = getCurrentSummarySheet();
+        eventBus.publish(KitchenTaskEventReceiver.class, idOf(sheet), er -> er.updateTaskAdded(sheet, added));
     }
 
     private void notifySheetGenerated(SummarySheet summarySheet) {
-        for (KitchenTaskEventReceiver er : eventReceivers) {
-            er.updateSheetGenerated(summarySheet);
-        }
+        eventBus.publish(KitchenTaskEventReceiver.class, idOf(summarySheet),
+                er -> er.updateSheetGenerated(summarySheet));
+    }
+
+    // Events of a summary sheet share one asynchronous lane
+    private static IntSupplier idOf(SummarySheet sheet) {
+        return () -> sheet != null ? sheet.getId() : 0;
     }
 
 }
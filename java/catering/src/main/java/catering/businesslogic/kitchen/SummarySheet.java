@@ -4,13 +4,16 @@ import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.util.ArrayList;
+import java.util.stream.Stream;
 
 import catering.businesslogic.UseCaseLogicException;
 import catering.businesslogic.event.Service;
 import catering.businesslogic.shift.Shift;
 import catering.businesslogic.user.User;
 import catering.persistence.BatchUpdateHandler;
+import catering.persistence.Page;
 import catering.persistence.PersistenceManager;
+import catering.persistence.Projection;
 import catering.persistence.ResultHandler;
 
 public class SummarySheet {
@@ -24,6 +27,47 @@ public class SummarySheet {
         return loadSummarySheets("SELECT * FROM SummarySheets");
     }
 
+    /**
+     * Streams all summary sheets with their service, owner, tasks and
+     * assignments, reading one sheet at a time; close the stream after use
+     */
+    public static Stream<SummarySheet> streamAllSumSheets() {
+        return PersistenceManager.stream("SELECT * FROM SummarySheets", rs -> {
+            SummarySheet s = new SummarySheet();
+            s.id = rs.getInt("id");
+            s.service = Service.loadById(rs.getInt("service_id"));
+            s.owner = User.load(rs.getInt("owner_id"));
+            s.taskList = KitchenTask.loadAllTasksBySumSheetId(s.id);
+            s.assignmentList = Assignment.loadAllAssignmentsBySumSheetId(s.id);
+            return s;
+        });
+    }
+
+    /**
+     * Loads one page of summary sheets, in the order they were created
+     * 
+     * @param after      Last sheet of the previous page, or null for the first
+     *                   page
+     * @param pageSize   Sheets per page
+     * @param projection HEADER loads the service and owner but not the tasks
+     *                   and assignments
+     * @return The sheets after {@code after}
+     */
+    public static Page<SummarySheet> loadPage(SummarySheet after, int pageSize, Projection projection) {
+        Page<SummarySheet> page = PersistenceManager.queryPage(
+                "SELECT * FROM SummarySheets WHERE id > ? ORDER BY id", pageSize, rs -> {
+                    SummarySheet s = new SummarySheet();
+                    s.id = rs.getInt("id");
+                    s.serviceId = rs.getInt("service_id");
+                    s.ownerId = rs.getInt("owner_id");
+                    return s;
+                }, after == null ? 0 : after.id);
+        for (SummarySheet s : page.getItems()) {
+            loadReferences(s, projection);
+        }
+        return page;
+    }
+
     /**
      * Loads a specific summary sheet by ID
      * 
@@ -45,13 +89,29 @@ public class SummarySheet {
         return loadSummarySheets("SELECT * FROM SummarySheets WHERE service_id = ?", serviceId);
     }
 
+    /**
+     * Writes the positions of the tasks that moved since the list was loaded
+     * or last written, in one batch
+     */
     public static void updateTaskList(SummarySheet ss) {
+        ArrayList<KitchenTask> moved = new ArrayList<>();
+        ArrayList<Integer> positions = new ArrayList<>();
+        for (int i = 0; i < ss.taskList.size(); i++) {
+            KitchenTask t = ss.taskList.get(i);
+            if (t.getStoredPosition() != i) {
+                moved.add(t);
+                positions.add(i);
+            }
+        }
+        if (moved.isEmpty())
+            return;
+
         String upd = "UPDATE Tasks SET position = ? WHERE id = ?";
-        PersistenceManager.executeBatchUpdate(upd, ss.taskList.size(), new BatchUpdateHandler() {
+        PersistenceManager.executeBatchUpdate(upd, moved.size(), new BatchUpdateHandler() {
             @Override
             public void handleBatchItem(PreparedStatement ps, int batchCount) throws SQLException {
-                ps.setInt(1, batchCount);
-                ps.setInt(2, ss.taskList.get(batchCount).getId());
+                ps.setInt(1, positions.get(batchCount));
+                ps.setInt(2, moved.get(batchCount).getId());
             }
 
             @Override
@@ -59,6 +119,10 @@ public class SummarySheet {
                 // no generated ids to handle
             }
         });
+
+        for (int i = 0; i < moved.size(); i++) {
+            moved.get(i).setStoredPosition(positions.get(i));
+        }
     }
 
     public static void saveNewSumSheet(SummarySheet s) {
@@ -99,35 +163,47 @@ public class SummarySheet {
      */
     private static ArrayList<SummarySheet> loadSummarySheets(String query, Object... params) {
         ArrayList<SummarySheet> summarySheets = new ArrayList<>();
-        ArrayList<Integer> serviceIds = new ArrayList<>();
-        ArrayList<Integer> ownerIds = new ArrayList<>();
 
         PersistenceManager.executeQuery(query, new ResultHandler() {
             @Override
             public void handle(ResultSet rs) throws SQLException {
                 SummarySheet s = new SummarySheet();
                 s.id = rs.getInt("id");
-
+                s.serviceId = rs.getInt("service_id");
+                s.ownerId = rs.getInt("owner_id");
                 summarySheets.add(s);
-                serviceIds.add(rs.getInt("service_id"));
-                ownerIds.add(rs.getInt("owner_id"));
             }
         }, params);
 
         // Load services, owners, tasks, and assignments for each sheet
-        for (int i = 0; i < summarySheets.size(); i++) {
-            SummarySheet s = summarySheets.get(i);
-            s.service = Service.loadById(serviceIds.get(i));
-            s.owner = User.load(ownerIds.get(i));
-            s.taskList = KitchenTask.loadAllTasksBySumSheetId(s.id);
-            s.assignmentList = Assignment.loadAllAssignmentsBySumSheetId(s.id);
+        for (SummarySheet s : summarySheets) {
+            loadReferences(s, Projection.FULL);
         }
 
         return summarySheets;
     }
 
+    // Outside the result handler, so that no nested query runs while the
+    // sheets are being read
+    private static void loadReferences(SummarySheet s, Projection projection) {
+        s.service = Service.loadById(s.serviceId);
+        s.owner = User.load(s.ownerId);
+        if (projection == Projection.FULL) {
+            s.taskList = KitchenTask.loadAllTasksBySumSheetId(s.id);
+            s.assignmentList = Assignment.loadAllAssignmentsBySumSheetId(s.id);
+        } else {
+            s.taskList = new ArrayList<>();
+            s.assignmentList = new ArrayList<>();
+        }
+    }
+
     private int id;
 
+    // Read with the row, resolved by loadReferences
+    private int serviceId;
+
+    private int ownerId;
+
     private Service service;
 
     private User owner;
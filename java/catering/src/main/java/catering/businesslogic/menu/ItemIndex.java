@@ -0,0 +1,48 @@
+package catering.businesslogic.menu;
+
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Positions of the items of a list, by identity: the hash of an item
+ * changes when it is given an ID, and two new items with the same recipe
+ * and description are equal but distinct.
+ * <p>
+ * Appended items are recorded as they come; a position is checked against
+ * the list when read, and one found stale, after a removal or a move,
+ * rebuilds the index. Appends and lookups are O(1), so a list is built in
+ * linear time, and a removal costs one rebuild, as much as the shift of
+ * the list itself. Not thread-safe, like the menu holding it.
+ */
+final class ItemIndex {
+
+    private final Map<MenuItem, Integer> positions = new IdentityHashMap<>();
+
+    /**
+     * Records the last item of the list, just appended
+     */
+    void appended(List<MenuItem> items) {
+        positions.put(items.get(items.size() - 1), items.size() - 1);
+    }
+
+    /**
+     * @return The position of the item in the list, or -1 if it is not there
+     */
+    int positionOf(List<MenuItem> items, MenuItem mi) {
+        Integer pos = positions.get(mi);
+        if (pos != null && pos < items.size() && items.get(pos) == mi)
+            return pos;
+
+        rebuild(items);
+        pos = positions.get(mi);
+        return pos != null ? pos : -1;
+    }
+
+    private void rebuild(List<MenuItem> items) {
+        positions.clear();
+        for (int i = 0; i < items.size(); i++) {
+            positions.put(items.get(i), i);
+        }
+    }
+}
@@ -0,0 +1,167 @@
+package catering.businesslogic.menu;
+
+import java.util.AbstractList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.function.Consumer;
+
+/**
+ * Read-only view of the items of a menu: the free items, then those of each
+ * section in order. It reads the menu's own lists, so nothing is copied and
+ * changes to the menu show through; iterating allocates the iterator only.
+ * <p>
+ * Its spliterator knows its size and splits across and within sections, so
+ * the items of a large menu can be processed by a parallel stream. Like the
+ * lists it reads, the view must not be traversed while the menu changes.
+ * {@link #get} walks the sections: prefer iterating.
+ */
+final class ItemsView extends AbstractList<MenuItem> {
+
+    private final Menu menu;
+
+    ItemsView(Menu menu) {
+        this.menu = menu;
+    }
+
+    // Segment 0 holds the free items, segment n the items of section n - 1
+    private int segments() {
+        return menu.peekSections().size() + 1;
+    }
+
+    private List<MenuItem> segment(int n) {
+        return n == 0 ? menu.peekFreeItems() : menu.peekSections().get(n - 1).getItems();
+    }
+
+    @Override
+    public int size() {
+        int size = 0;
+        for (int n = 0; n < segments(); n++) {
+            size += segment(n).size();
+        }
+        return size;
+    }
+
+    @Override
+    public MenuItem get(int index) {
+        if (index < 0)
+            throw new IndexOutOfBoundsException("Index: " + index);
+        int offset = index;
+        for (int n = 0; n < segments(); n++) {
+            List<MenuItem> items = segment(n);
+            if (offset < items.size())
+                return items.get(offset);
+            offset -= items.size();
+        }
+        throw new IndexOutOfBoundsException("Index: " + index);
+    }
+
+    @Override
+    public void forEach(Consumer<? super MenuItem> action) {
+        for (int n = 0; n < segments(); n++) {
+            List<MenuItem> items = segment(n);
+            for (int i = 0; i < items.size(); i++) {
+                action.accept(items.get(i));
+            }
+        }
+    }
+
+    @Override
+    public Iterator<MenuItem> iterator() {
+        return new Iterator<MenuItem>() {
+            private int n;
+            private int i;
+
+            @Override
+            public boolean hasNext() {
+                while (n < segments()) {
+                    if (i < segment(n).size())
+                        return true;
+                    n++;
+                    i = 0;
+                }
+                return false;
+            }
+
+            @Override
+            public MenuItem next() {
+                if (!hasNext())
+                    throw new NoSuchElementException();
+                return segment(n).get(i++);
+            }
+        };
+    }
+
+    @Override
+    public Spliterator<MenuItem> spliterator() {
+        // Index of the first item of each segment, and the size at the end
+        int[] starts = new int[segments() + 1];
+        for (int n = 0; n < segments(); n++) {
+            starts[n + 1] = starts[n] + segment(n).size();
+        }
+        return new ItemSpliterator(starts, 0, 0, starts[starts.length - 1]);
+    }
+
+    /**
+     * The items from {@code index} to {@code end}, excluded, numbered across
+     * segments
+     */
+    private final class ItemSpliterator implements Spliterator<MenuItem> {
+
+        private final int[] starts;
+        private int n;
+        private int index;
+        private final int end;
+
+        ItemSpliterator(int[] starts, int n, int index, int end) {
+            this.starts = starts;
+            this.n = n;
+            this.index = index;
+            this.end = end;
+        }
+
+        @Override
+        public boolean tryAdvance(Consumer<? super MenuItem> action) {
+            if (index >= end)
+                return false;
+            while (index >= starts[n + 1]) {
+                n++;
+            }
+            action.accept(segment(n).get(index - starts[n]));
+            index++;
+            return true;
+        }
+
+        @Override
+        public void forEachRemaining(Consumer<? super MenuItem> action) {
+            for (; index < end; n++) {
+                List<MenuItem> items = segment(n);
+                int last = Math.min(end, starts[n + 1]);
+                for (; index < last; index++) {
+                    action.accept(items.get(index - starts[n]));
+                }
+            }
+        }
+
+        @Override
+        public Spliterator<MenuItem> trySplit() {
+            int mid = (index + end) >>> 1;
+            if (mid <= index)
+                return null;
+            Spliterator<MenuItem> prefix = new ItemSpliterator(starts, n, index, mid);
+            index = mid;
+            return prefix;
+        }
+
+        @Override
+        public long estimateSize() {
+            return end - index;
+        }
+
+        @Override
+        public int characteristics() {
+            return ORDERED | SIZED | SUBSIZED | NONNULL;
+        }
+    }
+}
@@ -4,15 +4,31 @@ import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.EnumSet;
 import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
 
 import catering.businesslogic.recipe.KitchenProcess;
 import catering.businesslogic.recipe.Recipe;
 import catering.businesslogic.user.User;
 import catering.persistence.BatchUpdateHandler;
+import catering.persistence.DirtyFields;
+import catering.persistence.Page;
 import catering.persistence.PersistenceManager;
+import catering.persistence.Projection;
 import catering.persistence.ResultHandler;
+import catering.util.trace.Span;
+import catering.util.trace.Tracer;
 
 public class Menu {
 
@@ -39,7 +55,12 @@ public class Menu {
 
     public static void create(Menu m) {
 
-        String query = "INSERT INTO Menus (title, owner_id, published) VALUES (?, ?, ?);";
+        String query = "INSERT INTO Menus (title, owner_id, published, features, parent_id, version, content_id)"
+                + " VALUES (?, ?, ?, ?, ?, ?, ?);";
+
+        // A copy changed since it was made has rows of its own
+        if (m.content == null)
+            m.contentId = 0;
 
         int[] result = PersistenceManager.executeBatchUpdate(query, 1, new BatchUpdateHandler() {
             @Override
@@ -47,6 +68,10 @@ public class Menu {
                 ps.setString(1, m.title);
                 ps.setInt(2, m.owner.getId());
                 ps.setBoolean(3, m.published);
+                ps.setInt(4, m.features);
+                ps.setInt(5, m.parentId);
+                ps.setInt(6, m.version);
+                ps.setInt(7, m.contentId);
             }
 
             @Override
@@ -58,8 +83,14 @@ public class Menu {
         });
 
         if (result[0] > 0) {
-            // Save features
-            saveFeaturesToDB(m);
+            m.dirty.clear();
+
+            // A copy reading the rows of its source has none to write
+            if (m.contentId != 0)
+                return;
+
+            // The rows get IDs: they must belong to this menu
+            m.own();
 
             // Save sections if any
             if (!m.sections.isEmpty()) {
@@ -77,70 +108,283 @@ public class Menu {
      * Load a menu from the database by ID
      */
     public static Menu load(Integer id) {
+        try (Span span = Tracer.start("Menu.load", "load").arg("id", id)) {
+            String query = "SELECT * FROM Menus WHERE id = ?";
 
-        String query = "SELECT * FROM Menus WHERE id = ?";
+            Menu m = new Menu();
 
-        Menu m = new Menu();
+            PersistenceManager.executeQuery(query, new ResultHandler() {
+                @Override
+                public void handle(ResultSet rs) throws SQLException {
 
-        PersistenceManager.executeQuery(query, new ResultHandler() {
-            @Override
-            public void handle(ResultSet rs) throws SQLException {
+                    readRow(m, rs);
+                    m.owner = User.load(rs.getInt("owner_id"));
+                    loadChildren(m);
+                }
+            }, id);
 
-                m.id = id;
-                m.title = rs.getString("title");
-                m.published = rs.getBoolean("published");
-                m.owner = User.load(rs.getInt("owner_id"));
+            span.arg("found", m.id != 0);
+            return m;
+        }
+    }
 
-                // Load sections
-                m.sections = Section.loadSections(id);
+    /**
+     * Loads several menus, reading their rows with a single query
+     *
+     * @param ids IDs of the menus; repeated IDs are loaded once
+     * @return The menus found, by ID
+     */
+    public static Map<Integer, Menu> loadAll(Collection<Integer> ids) {
+        // In row order, to match the owner IDs
+        Map<Integer, Menu> menus = new LinkedHashMap<>();
+        Set<Integer> distinct = new LinkedHashSet<>(ids);
+        if (distinct.isEmpty())
+            return menus;
+
+        try (Span span = Tracer.start("Menu.loadAll", "load").arg("ids", distinct.size())) {
+            ArrayList<Integer> ownerIds = new ArrayList<>();
+            PersistenceManager.executeQueryIn("SELECT * FROM Menus WHERE id IN (?)", distinct, new ResultHandler() {
+                @Override
+                public void handle(ResultSet rs) throws SQLException {
+                    Menu m = new Menu();
+                    readRow(m, rs);
+                    ownerIds.add(rs.getInt("owner_id"));
+                    menus.put(m.id, m);
+                }
+            });
 
-                // Load free items
-                m.freeItems = MenuItem.loadMenuItems(id, 0);
+            int i = 0;
+            for (Menu m : menus.values()) {
+                m.owner = User.load(ownerIds.get(i++));
+                loadChildren(m);
+            }
+            span.arg("menus", menus.size());
+            return menus;
+        }
+    }
 
-                // Load features
-                loadFeaturesFromDB(m);
+    /**
+     * Loads one page of menus, in the order they were created
+     * 
+     * @param after      Last menu of the previous page, or null for the first
+     *                   page
+     * @param pageSize   Menus per page
+     * @param projection HEADER loads the row only: title, owner, published
+     *                   flag and features, no sections or items
+     * @return The menus after {@code after}
+     */
+    public static Page<Menu> loadPage(Menu after, int pageSize, Projection projection) {
+        Page<Menu> page = PersistenceManager.queryPage("SELECT * FROM Menus WHERE id > ? ORDER BY id", pageSize,
+                Menu::header, after == null ? 0 : after.id);
 
-                // Check if menu is in use
-                checkIfMenuIsInUse(m);
+        if (projection == Projection.FULL) {
+            for (Menu m : page.getItems()) {
+                loadChildren(m);
+            }
+        }
+        return page;
+    }
 
+    /**
+     * Loads the menus having all the given features, whatever the others.
+     * The condition is on the features column alone: it is written as the
+     * list of masks that satisfy it, so that it is answered from the index
+     * on that column.
+     *
+     * @param features   Features required; none matches every menu
+     * @param projection HEADER loads the row only, as in {@link #loadPage}
+     * @return The menus found, by ID
+     */
+    public static List<Menu> loadWithFeatures(Set<MenuFeature> features, Projection projection) {
+        try (Span span = Tracer.start("Menu.loadWithFeatures", "load").arg("features", features.size())) {
+            List<Menu> menus = new ArrayList<>();
+            ResultHandler handler = rs -> menus.add(header(rs));
+            int mask = MenuFeature.toMask(features);
+            if (mask == 0)
+                PersistenceManager.executeQuery("SELECT * FROM Menus ORDER BY id", handler);
+            else
+                PersistenceManager.executeQueryIn("SELECT * FROM Menus WHERE features IN (?)",
+                        MenuFeature.masksWith(mask), handler);
+            // One lookup per mask: back to ID order
+            menus.sort(Comparator.comparingInt(Menu::getId));
+
+            if (projection == Projection.FULL) {
+                for (Menu m : menus) {
+                    loadChildren(m);
+                }
             }
-        }, id);
+            span.arg("menus", menus.size());
+            return menus;
+        }
+    }
 
+    /**
+     * Loads the header of every menu with a single query, loading each owner
+     * once
+     *
+     * @return The menus, by ID, without sections or items
+     */
+    public static List<Menu> loadAllHeaders() {
+        try (Span span = Tracer.start("Menu.loadAllHeaders", "load")) {
+            List<Menu> menus = new ArrayList<>();
+            Map<Integer, User> owners = new HashMap<>();
+            PersistenceManager.executeQuery("SELECT * FROM Menus ORDER BY id", new ResultHandler() {
+                @Override
+                public void handle(ResultSet rs) throws SQLException {
+                    Menu m = new Menu();
+                    readRow(m, rs);
+                    m.owner = owners.computeIfAbsent(rs.getInt("owner_id"), User::load);
+                    menus.add(m);
+                }
+            });
+            span.arg("menus", menus.size());
+            return menus;
+        }
+    }
+
+    /**
+     * Loads the versions a menu comes from, following its parents
+     *
+     * @param id ID of the menu
+     * @return The headers of the menus, without sections or items, from the
+     *         first version to the menu itself; empty if there is no such
+     *         menu
+     */
+    public static List<Menu> loadLineage(int id) {
+        try (Span span = Tracer.start("Menu.loadLineage", "load").arg("id", id)) {
+            List<Menu> menus = new ArrayList<>();
+            String query = "WITH RECURSIVE lineage (id, depth) AS (SELECT ?, 0 UNION ALL"
+                    + " SELECT Menus.parent_id, depth + 1 FROM Menus JOIN lineage ON Menus.id = lineage.id"
+                    + " WHERE Menus.parent_id > 0)"
+                    + " SELECT Menus.* FROM Menus JOIN lineage ON Menus.id = lineage.id ORDER BY depth DESC";
+            PersistenceManager.executeQuery(query, rs -> menus.add(header(rs)), id);
+            span.arg("menus", menus.size());
+            return menus;
+        }
+    }
+
+    private static Menu header(ResultSet rs) throws SQLException {
+        Menu m = new Menu();
+        readRow(m, rs);
+        m.owner = User.load(rs.getInt("owner_id"));
         return m;
     }
 
+    // Every field of the Menus row but the owner
+    private static void readRow(Menu m, ResultSet rs) throws SQLException {
+        m.id = rs.getInt("id");
+        m.title = rs.getString("title");
+        m.published = rs.getBoolean("published");
+        m.features = rs.getInt("features");
+        m.parentId = rs.getInt("parent_id");
+        m.version = rs.getInt("version");
+        m.contentId = rs.getInt("content_id");
+    }
+
+    private static void loadChildren(Menu m) {
+        // Those of the source for a copy not edited yet
+        int contentId = m.contentId != 0 ? m.contentId : m.id;
+
+        // Load sections
+        m.sections = Section.loadSections(contentId);
+
+        // Load free items
+        m.freeItems = MenuItem.loadMenuItems(contentId, 0);
+        m.indexItems();
+
+        // Check if menu is in use
+        checkIfMenuIsInUse(m);
+    }
+
     /**
      * Delete a menu from the database
      */
     public static void delete(Menu m) {
-        PersistenceManager.executeUpdate("DELETE FROM MenuItems WHERE menu_id = ?", m.id);
-        PersistenceManager.executeUpdate("DELETE FROM MenuSections WHERE menu_id = ?", m.id);
-        PersistenceManager.executeUpdate("DELETE FROM MenuFeatures WHERE menu_id = ?", m.getId());
-        PersistenceManager.executeUpdate("DELETE FROM Menus WHERE id = ?", m.getId());
+        PersistenceManager.inTransaction(() -> {
+            releaseContent(m.id, firstBorrower(m.id));
+            PersistenceManager.executeUpdate("DELETE FROM Menus WHERE id = ?", m.getId());
+        });
+    }
+
+    /**
+     * Gives a menu sections and items rows of its own, if it reads those of
+     * the menu it was copied from or copies read its rows. Called before
+     * writing a change to them: the rows are written as the menu is now,
+     * change included. All of it is one transaction, so that no copy is
+     * left without rows to read.
+     *
+     * @return Whether the rows were written, and the change with them
+     */
+    public static boolean saveContentIfShared(Menu m) {
+        boolean[] saved = new boolean[1];
+        boolean committed = PersistenceManager.inTransaction(() -> {
+            int borrower = firstBorrower(m.id);
+            if (m.contentId == 0 && borrower == 0)
+                return;
+
+            releaseContent(m.id, borrower);
+            m.own();
+            if (!m.sections.isEmpty())
+                Section.create(m.id, m.sections);
+            if (!m.freeItems.isEmpty())
+                MenuItem.create(m.id, 0, m.freeItems);
+            PersistenceManager.executeUpdate("UPDATE Menus SET content_id = 0 WHERE id = ?", m.id);
+            saved[0] = true;
+        });
+        if (!committed || !saved[0])
+            return false;
+        m.contentId = 0;
+        return true;
     }
 
+    // The first copy reading the rows of a menu, 0 if none
+    private static int firstBorrower(int id) {
+        int[] borrower = new int[1];
+        PersistenceManager.executeQuery("SELECT id FROM Menus WHERE content_id = ? ORDER BY id LIMIT 1",
+                rs -> borrower[0] = rs.getInt("id"), id);
+        return borrower[0];
+    }
+
+    /**
+     * Hands the sections and items rows of a menu over to a copy reading
+     * them, which the others then read in its place, or deletes them if
+     * there is none
+     */
+    private static void releaseContent(int id, int borrower) {
+        if (borrower == 0) {
+            PersistenceManager.executeUpdate("DELETE FROM MenuItems WHERE menu_id = ?", id);
+            PersistenceManager.executeUpdate("DELETE FROM MenuSections WHERE menu_id = ?", id);
+            return;
+        }
+        PersistenceManager.executeUpdate("UPDATE MenuItems SET menu_id = ? WHERE menu_id = ?", borrower, id);
+        PersistenceManager.executeUpdate("UPDATE MenuSections SET menu_id = ? WHERE menu_id = ?", borrower, id);
+        PersistenceManager.executeUpdate(
+                "UPDATE Menus SET content_id = CASE id WHEN ? THEN 0 ELSE ? END WHERE content_id = ?",
+                borrower, borrower, id);
+    }
+
+    /**
+     * Save the title of a menu, with any other field of its row changed
+     * since it was loaded or last written
+     */
     public static void saveTitle(Menu m) {
-        PersistenceManager.executeUpdate("UPDATE Menus SET title = ? WHERE id = ?",
-                m.getTitle(), m.getId());
+        m.dirty.update("Menus", m.getId());
     }
 
     /**
-     * Save the published status of a menu
+     * Save the published status of a menu, with any other field of its row
+     * changed since it was loaded or last written
      */
     public static void savePublished(Menu m) {
-        PersistenceManager.executeUpdate("UPDATE Menus SET published = ? WHERE id = ?",
-                m.published, m.getId());
+        m.dirty.update("Menus", m.getId());
     }
 
     /**
-     * Save the features of a menu
+     * Save the features of a menu, with any other field of its row changed
+     * since it was loaded or last written
      */
     public static void saveFeatures(Menu m) {
-        // First delete existing features
-        PersistenceManager.executeUpdate("DELETE FROM MenuFeatures WHERE menu_id = ?", m.getId());
-
-        // Then add the updated features
-        saveFeaturesToDB(m);
+        m.dirty.update("Menus", m.getId());
     }
 
     /**
@@ -181,40 +425,6 @@ public class Menu {
         });
     }
 
-    /**
-     * Save features to the database
-     */
-    private static void saveFeaturesToDB(Menu m) {
-        String query = "INSERT INTO MenuFeatures (menu_id, name, value) VALUES (?, ?, ?)";
-        String[] features = m.features.keySet().toArray(new String[0]);
-        PersistenceManager.executeBatchUpdate(query, features.length, new BatchUpdateHandler() {
-            @Override
-            public void handleBatchItem(PreparedStatement ps, int batchCount) throws SQLException {
-                ps.setInt(1, m.id);
-                ps.setString(2, features[batchCount]);
-                ps.setBoolean(3, m.features.get(features[batchCount]));
-            }
-
-            @Override
-            public void handleGeneratedIds(ResultSet rs, int count) throws SQLException {
-                // No generated IDs to handle
-            }
-        });
-    }
-
-    /**
-     * Load features from the database
-     */
-    private static void loadFeaturesFromDB(Menu m) {
-        String query = "SELECT * FROM MenuFeatures WHERE menu_id = ?";
-        PersistenceManager.executeQuery(query, new ResultHandler() {
-            @Override
-            public void handle(ResultSet rs) throws SQLException {
-                m.features.put(rs.getString("name"), rs.getBoolean("value"));
-            }
-        }, m.id);
-    }
-
     private static void checkIfMenuIsInUse(Menu m) {
         String query = "SELECT * FROM Services WHERE approved_menu_id = ?";
         PersistenceManager.executeQuery(query, new ResultHandler() {
@@ -233,7 +443,25 @@ public class Menu {
 
     private boolean inUse;
 
-    private HashMap<String, Boolean> features;
+    // One bit per MenuFeature
+    private int features;
+
+    // The menu this one was copied from, 0 if none, and the version: 1 for
+    // a new menu, one more than its parent for a copy
+    private int parentId;
+    private int version = 1;
+
+    // The menu whose rows hold the sections and items, 0 for this one: a
+    // persisted copy reads those of its source until its first edit
+    private int contentId;
+
+    // Held while the sections and items are shared with a copy or with the
+    // source of this one, null once they are this menu's own
+    private SharedContent content;
+
+    // The copy own() made of each shared section and item, by identity, so
+    // that those handed out before still stand for the same ones
+    private Map<Object, Object> copies = Collections.emptyMap();
 
     private ArrayList<MenuItem> freeItems;
 
@@ -241,13 +469,26 @@ public class Menu {
 
     private User owner;
 
+    // The section of each item, null for free items, by identity like the
+    // position indexes
+    private final Map<MenuItem, Section> itemSections = new IdentityHashMap<>();
+    private final ItemIndex freeItemPositions = new ItemIndex();
+    private final ItemsView itemsView = new ItemsView(this);
+
+    // Fields of the Menus row changed and not written yet
+    private final DirtyFields dirty = new DirtyFields();
+
     public Menu(User owner, String title, HashMap<String, Boolean> menuFeatures) {
         this.id = 0;
         this.title = title;
         this.owner = owner;
         this.published = false;
         this.inUse = false;
-        this.features = new HashMap<String, Boolean>(menuFeatures);
+        for (Map.Entry<String, Boolean> f : menuFeatures.entrySet()) {
+            MenuFeature feature = MenuFeature.byName(f.getKey());
+            if (feature != null && f.getValue())
+                this.features |= feature.bit();
+        }
         this.sections = new ArrayList<Section>();
         this.freeItems = new ArrayList<MenuItem>();
     }
@@ -261,6 +502,7 @@ public class Menu {
     }
 
     public Section addSection(String name) {
+        own();
         Section sec = new Section(name);
         this.sections.add(sec);
         return sec;
@@ -291,38 +533,62 @@ public class Menu {
         return null;
     }
 
+    /**
+     * @return The section of the item, or null if it is a free item
+     * @throws IllegalArgumentException If the item is not in this menu
+     */
     public Section getSection(MenuItem mi) {
-        for (Section sec : sections) {
-            if (sec.getItemPosition(mi) >= 0) {
-                return sec;
-            }
+        mi = resolve(mi);
+        if (!isIndexed(mi)) {
+            // Changed through the lists returned by the getters
+            indexItems();
+            if (!isIndexed(mi))
+                throw new IllegalArgumentException("MenuItem not found in this menu");
         }
-        if (freeItems.contains(mi)) {
-            return null;
-        }
-        throw new IllegalArgumentException("MenuItem not found in this menu");
+        return itemSections.get(mi);
     }
 
     public boolean hasSection(Section sec) {
-        return this.sections.contains(sec);
+        return this.sections.contains(resolve(sec));
     }
 
     public int getSectionPosition(Section sec) {
-        return this.sections.indexOf(sec);
+        return this.sections.indexOf(resolve(sec));
     }
 
+    /**
+     * @return The sections, to be changed: those shared with a copy of the
+     *         menu are copied first
+     */
     public ArrayList<Section> getSections() {
+        own();
         return this.sections;
     }
 
+    /**
+     * @return The sections, read-only: unlike {@link #getSections}, this
+     *         does not copy those shared with a copy of the menu
+     */
+    public List<Section> getSectionsView() {
+        return Collections.unmodifiableList(sections);
+    }
+
     public void moveSection(Section sec, int position) {
+        own();
+        sec = resolve(sec);
         sections.remove(sec);
         sections.add(position, sec);
     }
 
     public void removeSection(Section s, boolean deleteItems) {
-        if (!deleteItems) {
-            this.freeItems.addAll(s.getItems());
+        own();
+        s = resolve(s);
+        for (MenuItem mi : s.getItems()) {
+            if (deleteItems) {
+                itemSections.remove(mi);
+            } else {
+                addFreeItem(mi);
+            }
         }
         this.sections.remove(s);
     }
@@ -332,21 +598,39 @@ public class Menu {
     }
 
     public MenuItem addItem(Recipe recipe, Section sec, String desc) {
+        own();
+        sec = resolve(sec);
         MenuItem mi = new MenuItem(recipe, desc);
         if (sec != null) {
             sec.addItem(mi);
+            itemSections.put(mi, sec);
         } else {
-            this.freeItems.add(mi);
+            addFreeItem(mi);
         }
         return mi;
     }
 
+    /**
+     * @return The free items, to be changed, as {@link #getSections}
+     */
     public ArrayList<MenuItem> getFreeItems() {
+        own();
         return this.freeItems;
     }
 
+    /**
+     * @return The free items, read-only, as {@link #getSectionsView}
+     */
+    public List<MenuItem> getFreeItemsView() {
+        return Collections.unmodifiableList(freeItems);
+    }
+
+    /**
+     * @return The position of this very item among the free items, or -1 if
+     *         it is not one of them
+     */
     public int getFreeItemPosition(MenuItem mi) {
-        return freeItems.indexOf(mi);
+        return freeItemPositions.positionOf(freeItems, resolve(mi));
     }
 
     public int getFreeItemCount() {
@@ -354,34 +638,45 @@ public class Menu {
     }
 
     public void moveFreeItem(MenuItem mi, int position) {
-        this.freeItems.remove(mi);
+        own();
+        mi = resolve(mi);
+        removeFreeItem(mi);
         this.freeItems.add(position, mi);
     }
 
     public void changeItemSection(MenuItem mi, Section oldSec, Section newSec) {
+        own();
+        mi = resolve(mi);
+        oldSec = resolve(oldSec);
+        newSec = resolve(newSec);
         if (oldSec == null) {
-            freeItems.remove(mi);
+            removeFreeItem(mi);
         } else {
             oldSec.removeItem(mi);
         }
 
         if (newSec == null) {
-            freeItems.add(mi);
+            addFreeItem(mi);
         } else {
             newSec.addItem(mi);
+            itemSections.put(mi, newSec);
         }
     }
 
     public void removeItem(MenuItem mi) {
+        own();
+        mi = resolve(mi);
         Section sec = getSection(mi);
         if (sec == null) {
-            freeItems.remove(mi);
+            removeFreeItem(mi);
         } else {
             sec.removeItem(mi);
         }
+        itemSections.remove(mi);
     }
 
     public void updateFreeItems(ArrayList<MenuItem> newItems) {
+        own();
         ArrayList<MenuItem> updatedList = new ArrayList<>();
         for (MenuItem mi : newItems) {
             MenuItem prev = findItemById(mi.getId());
@@ -393,55 +688,214 @@ public class Menu {
                 updatedList.add(prev);
             }
         }
+        for (MenuItem mi : this.freeItems) {
+            itemSections.remove(mi);
+        }
         this.freeItems.clear();
-        this.freeItems.addAll(updatedList);
+        for (MenuItem mi : updatedList) {
+            addFreeItem(mi);
+        }
     }
 
-    public ArrayList<MenuItem> getItems() {
-        ArrayList<MenuItem> allItems = new ArrayList<>();
-        allItems.addAll(this.freeItems);
+    private void addFreeItem(MenuItem mi) {
+        freeItems.add(mi);
+        freeItemPositions.appended(freeItems);
+        itemSections.put(mi, null);
+    }
+
+    private void removeFreeItem(MenuItem mi) {
+        int pos = getFreeItemPosition(mi);
+        if (pos >= 0)
+            freeItems.remove(pos);
+    }
+
+    /**
+     * The section of this menu standing for sec, to be changed: if the
+     * sections are shared with a copy or the source of this menu, they are
+     * copied first
+     */
+    Section editSection(Section sec) {
+        own();
+        return resolve(sec);
+    }
 
-        for (Section section : this.sections) {
-            allItems.addAll(section.getItems());
+    /**
+     * The item of this menu standing for mi, to be changed, as
+     * {@link #editSection}
+     */
+    MenuItem editItem(MenuItem mi) {
+        own();
+        return resolve(mi);
+    }
+
+    /**
+     * Makes the sections and items this menu's own before they are changed
+     * or handed out to be changed. While a copy or the source of this menu
+     * still holds them, they are copied; the copies keep the IDs, and so the
+     * rows, of the originals. The last menu left holding them keeps them.
+     */
+    private void own() {
+        if (content == null)
+            return;
+        if (!content.holders.compareAndSet(1, 0)) {
+            Map<Object, Object> made = new IdentityHashMap<>();
+            ArrayList<Section> ownSections = new ArrayList<>(sections.size());
+            for (Section sec : sections) {
+                Section copy = sec.deepCopy();
+                made.put(sec, copy);
+                for (int i = 0; i < sec.getItemsCount(); i++)
+                    made.put(sec.getItems().get(i), copy.getItems().get(i));
+                ownSections.add(copy);
+            }
+            ArrayList<MenuItem> ownItems = new ArrayList<>(freeItems.size());
+            for (MenuItem mi : freeItems) {
+                MenuItem copy = mi.deepCopy();
+                made.put(mi, copy);
+                ownItems.add(copy);
+            }
+            // Those handed out before an earlier copy stand for the new ones
+            for (Map.Entry<Object, Object> e : copies.entrySet())
+                made.putIfAbsent(e.getKey(), made.getOrDefault(e.getValue(), e.getValue()));
+            sections = ownSections;
+            freeItems = ownItems;
+            copies = made;
+            content.holders.decrementAndGet();
+            indexItems();
         }
+        content = null;
+    }
 
-        return allItems;
+    private Section resolve(Section sec) {
+        Object copy = copies.get(sec);
+        return copy != null ? (Section) copy : sec;
     }
 
-    public ArrayList<KitchenProcess> getNeededKitchenProcesses() {
-        ArrayList<KitchenProcess> allKitchenProcesses = new ArrayList<>();
+    private MenuItem resolve(MenuItem mi) {
+        Object copy = copies.get(mi);
+        return copy != null ? (MenuItem) copy : mi;
+    }
 
-        for (MenuItem item : this.getItems()) {
-            Recipe recipe = item.getRecipe();
-            allKitchenProcesses.add(recipe);
-            allKitchenProcesses.addAll(recipe.getPreparations());
+    // The lists as they are, shared or not, for reading only
+    List<Section> peekSections() {
+        return sections;
+    }
+
+    List<MenuItem> peekFreeItems() {
+        return freeItems;
+    }
+
+    private boolean isIndexed(MenuItem mi) {
+        if (!itemSections.containsKey(mi))
+            return false;
+        Section sec = itemSections.get(mi);
+        return sec == null ? getFreeItemPosition(mi) >= 0 : sec.getItemPosition(mi) >= 0;
+    }
+
+    private void indexItems() {
+        itemSections.clear();
+        for (MenuItem mi : freeItems) {
+            itemSections.put(mi, null);
+        }
+        for (Section sec : sections) {
+            for (MenuItem mi : sec.getItems()) {
+                itemSections.put(mi, sec);
+            }
         }
+    }
 
+    /**
+     * @return A copy of all the items: the free items, then those of each
+     *         section
+     */
+    public ArrayList<MenuItem> getItems() {
+        return new ArrayList<>(itemsView);
+    }
+
+    /**
+     * @return All the items, in the order of {@link #getItems}, as a
+     *         read-only view over the menu's own lists: nothing is copied,
+     *         and its spliterator is sized and splits for parallel streams
+     */
+    public List<MenuItem> getItemsView() {
+        return itemsView;
+    }
+
+    public ArrayList<KitchenProcess> getNeededKitchenProcesses() {
+        ArrayList<KitchenProcess> allKitchenProcesses = new ArrayList<>();
+        forEachNeededKitchenProcess(allKitchenProcesses::add);
         return allKitchenProcesses;
     }
 
+    /**
+     * Passes each recipe of the menu, followed by its preparations, to an
+     * action, in the order of {@link #getNeededKitchenProcesses}, without
+     * copying any list
+     */
+    public void forEachNeededKitchenProcess(Consumer<? super KitchenProcess> action) {
+        itemsView.forEach(item -> {
+            Recipe recipe = item.getRecipe();
+            action.accept(recipe);
+            recipe.getPreparationsView().forEach(action);
+        });
+    }
+
+    /**
+     * Every feature is always defined, false until set: nothing to do
+     */
     public void initializeDefaultFeatures() {
-        for (String feature : DEFAULT_FEATURES) {
-            if (!features.containsKey(feature)) {
-                features.put(feature, false);
-            }
-        }
     }
 
     // ===== FEATURE MANAGEMENT =====
 
+    /**
+     * @return Every feature by name, in declaration order; change them with
+     *         {@link #setFeature}
+     */
     public Map<String, Boolean> getFeatures() {
-        return this.features;
+        Map<String, Boolean> m = new LinkedHashMap<>();
+        for (MenuFeature f : MenuFeature.values()) {
+            m.put(f.getName(), hasFeature(f));
+        }
+        return Collections.unmodifiableMap(m);
+    }
+
+    public EnumSet<MenuFeature> getFeatureSet() {
+        return MenuFeature.fromMask(features);
     }
 
+    /**
+     * @return The features as stored, one bit per {@link MenuFeature}
+     */
+    public int getFeatureMask() {
+        return features;
+    }
+
+    public boolean hasFeature(MenuFeature feature) {
+        return (features & feature.bit()) != 0;
+    }
+
+    public void setFeature(MenuFeature feature, boolean val) {
+        int mask = val ? features | feature.bit() : features & ~feature.bit();
+        dirty.mark("features", features, mask);
+        features = mask;
+    }
+
+    /**
+     * @return The value of the feature with that name, false if there is
+     *         no such feature
+     */
     public boolean getFeature(String feature) {
-        return this.features.getOrDefault(feature, false);
+        MenuFeature f = MenuFeature.byName(feature);
+        return f != null && hasFeature(f);
     }
 
+    /**
+     * Sets the feature with that name; unknown names are ignored
+     */
     public void setFeature(String feature, boolean val) {
-        if (this.features.containsKey(feature)) {
-            this.features.put(feature, val);
-        }
+        MenuFeature f = MenuFeature.byName(feature);
+        if (f != null)
+            setFeature(f, val);
     }
 
     public void setFeatures(boolean needsCook, boolean fingerFood, boolean buffet,
@@ -461,43 +915,43 @@ public class Menu {
 
     // Specific feature getters and setters
     public boolean needsCook() {
-        return getFeature(FEATURE_NEEDS_COOK);
+        return hasFeature(MenuFeature.NEEDS_COOK);
     }
 
     public void setNeedsCook(boolean value) {
-        setFeature(FEATURE_NEEDS_COOK, value);
+        setFeature(MenuFeature.NEEDS_COOK, value);
     }
 
     public boolean isFingerFood() {
-        return getFeature(FEATURE_FINGER_FOOD);
+        return hasFeature(MenuFeature.FINGER_FOOD);
     }
 
     public void setFingerFood(boolean value) {
-        setFeature(FEATURE_FINGER_FOOD, value);
+        setFeature(MenuFeature.FINGER_FOOD, value);
     }
 
     public boolean isBuffet() {
-        return getFeature(FEATURE_BUFFET);
+        return hasFeature(MenuFeature.BUFFET);
     }
 
     public void setBuffet(boolean value) {
-        setFeature(FEATURE_BUFFET, value);
+        setFeature(MenuFeature.BUFFET, value);
     }
 
     public boolean hasWarmDishes() {
-        return getFeature(FEATURE_WARM_DISHES);
+        return hasFeature(MenuFeature.WARM_DISHES);
     }
 
     public void setWarmDishes(boolean value) {
-        setFeature(FEATURE_WARM_DISHES, value);
+        setFeature(MenuFeature.WARM_DISHES, value);
     }
 
     public boolean needsKitchen() {
-        return getFeature(FEATURE_NEEDS_KITCHEN);
+        return hasFeature(MenuFeature.NEEDS_KITCHEN);
     }
 
     public void setNeedsKitchen(boolean value) {
-        setFeature(FEATURE_NEEDS_KITCHEN, value);
+        setFeature(MenuFeature.NEEDS_KITCHEN, value);
     }
 
     public boolean requiresKitchenPreparation() {
@@ -515,6 +969,7 @@ public class Menu {
     }
 
     public void setOwner(User owner) {
+        dirty.mark("owner_id", this.owner != null ? this.owner.getId() : null, owner != null ? owner.getId() : null);
         this.owner = owner;
     }
 
@@ -523,6 +978,7 @@ public class Menu {
     }
 
     public void setTitle(String title) {
+        dirty.mark("title", this.title, title);
         this.title = title;
     }
 
@@ -531,6 +987,7 @@ public class Menu {
     }
 
     public void setPublished(boolean published) {
+        dirty.mark("published", this.published, published);
         this.published = published;
     }
 
@@ -542,24 +999,82 @@ public class Menu {
         return u.getId() == this.owner.getId();
     }
 
-    // ===== UTILITY METHODS =====
+    /**
+     * @return The ID of the menu this one was copied from, 0 if none
+     */
+    public int getParentId() {
+        return parentId;
+    }
 
-    public Menu deepCopy() {
+    /**
+     * @return 1 for a new menu, one more than its parent for a copy
+     */
+    public int getVersion() {
+        return version;
+    }
 
-        Menu copy = new Menu(this.owner, this.title, this.features);
+    /**
+     * @return Whether the sections and items are stored as those of another
+     *         menu, this being a copy not edited since it was saved
+     */
+    public boolean isSharingContent() {
+        return contentId != 0;
+    }
 
+    // ===== UTILITY METHODS =====
+
+    /**
+     * @return A copy of the row fields only, for indexes that must not see
+     *         later changes until they are notified
+     */
+    Menu copyHeader() {
+        Menu copy = new Menu(this.owner, this.title);
+        copy.id = this.id;
         copy.published = this.published;
         copy.inUse = this.inUse;
+        copy.features = this.features;
+        copy.parentId = this.parentId;
+        copy.version = this.version;
+        return copy;
+    }
 
-        for (Section sec : this.sections)
-            copy.sections.add(sec.deepCopy());
+    /**
+     * Copies the menu in constant time, as the next version of this one:
+     * the copy shares the sections and items, and each of the two copies
+     * them before changing them or handing them out to be changed, unless
+     * the other has already made its own. Reading them copies nothing. Once
+     * saved, the copy reads the rows of this menu until its first edit.
+     *
+     * @return A copy, without an ID
+     */
+    public Menu deepCopy() {
 
-        for (MenuItem mi : this.freeItems)
-            copy.freeItems.add(mi.deepCopy());
+        Menu copy = new Menu(this.owner, this.title);
 
+        copy.features = this.features;
+        copy.published = this.published;
+        copy.inUse = this.inUse;
+        copy.parentId = this.id;
+        copy.version = this.version + 1;
+        copy.contentId = this.contentId != 0 ? this.contentId : this.id;
+
+        if (this.content == null)
+            this.content = new SharedContent();
+        this.content.holders.incrementAndGet();
+        copy.sections = this.sections;
+        copy.freeItems = this.freeItems;
+        copy.content = this.content;
         return copy;
     }
 
+    /**
+     * Sections and items lists shared by menus, with the number of menus
+     * holding them: each releases them when it makes them its own.
+     */
+    private static final class SharedContent {
+        private final AtomicInteger holders = new AtomicInteger(1);
+    }
+
     @Override
     public String toString() {
         StringBuilder result = new StringBuilder();
@@ -572,8 +1087,8 @@ public class Menu {
                 .append(inUse ? "in uso" : "non in uso");
 
         // Add features information
-        for (String f : features.keySet()) {
-            result.append("\n").append(f).append(": ").append(features.get(f));
+        for (MenuFeature f : MenuFeature.values()) {
+            result.append("\n").append(f.getName()).append(": ").append(hasFeature(f));
         }
 
         // Add sections
@@ -618,10 +1133,7 @@ public class Menu {
                 return false;
         } else if (!owner.equals(other.owner))
             return false;
-        if (features == null) {
-            if (other.features != null)
-                return false;
-        } else if (!features.equals(other.features))
+        if (features != other.features)
             return false;
         if (freeItems == null) {
             if (other.freeItems != null)
@@ -644,7 +1156,7 @@ public class Menu {
         result = 31 * result + Boolean.hashCode(published);
         result = 31 * result + Boolean.hashCode(inUse);
         result = 31 * result + (owner != null ? owner.hashCode() : 0);
-        result = 31 * result + (features != null ? features.hashCode() : 0);
+        result = 31 * result + features;
         result = 31 * result + (freeItems != null ? freeItems.hashCode() : 0);
         result = 31 * result + (sections != null ? sections.hashCode() : 0);
         return result;
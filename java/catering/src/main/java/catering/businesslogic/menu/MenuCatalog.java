@@ -0,0 +1,220 @@
+package catering.businesslogic.menu;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import catering.persistence.Page;
+
+/**
+ * MenuCatalog finds menus by features, owner and published state, as an
+ * organizer choosing a menu for a service does.
+ * <p>
+ * It keeps the header of every menu (title, owner, published flag and
+ * features) and a bitmap over menu IDs for each feature, each owner and the
+ * published menus, so that a {@link MenuFilter} is answered with bitmap
+ * ANDs and ORs, and its pages read in ID order from the resulting bitmap.
+ * It is loaded on first use and then kept up to date as a receiver of menu
+ * notifications, so, like {@code UsageIndex}, it must be registered after
+ * the persistence receiver.
+ * <p>
+ * Menus are returned without sections or items. They are copies shared
+ * between callers: change them through the {@link MenuManager}.
+ */
+public class MenuCatalog implements MenuEventReceiver {
+
+    private static final BitSet NONE = new BitSet();
+
+    private final Map<Integer, Menu> headers = new HashMap<>();
+    private final BitSet all = new BitSet();
+    private final BitSet published = new BitSet();
+    private final BitSet[] features = new BitSet[MenuFeature.values().length];
+    private final Map<Integer, BitSet> byOwner = new HashMap<>();
+
+    private boolean loaded;
+
+    public MenuCatalog() {
+        for (int i = 0; i < features.length; i++) {
+            features[i] = new BitSet();
+        }
+    }
+
+    /**
+     * Finds one page of the menus matching a filter, in the order they were
+     * created
+     *
+     * @param filter   The condition on the menus
+     * @param after    Last menu of the previous page, or null for the first
+     *                 page
+     * @param pageSize Menus per page
+     * @return The matching menus after {@code after}
+     */
+    public synchronized Page<Menu> find(MenuFilter filter, Menu after, int pageSize) {
+        Page.checkSize(pageSize);
+        ensureLoaded();
+        BitSet bits = filter.select(this);
+        List<Menu> rows = new ArrayList<>();
+        for (int id = bits.nextSetBit(after == null ? 0 : after.getId() + 1); id >= 0
+                && rows.size() <= pageSize; id = bits.nextSetBit(id + 1)) {
+            rows.add(headers.get(id));
+        }
+        return Page.of(rows, pageSize);
+    }
+
+    /**
+     * @return How many menus match a filter
+     */
+    public synchronized int count(MenuFilter filter) {
+        ensureLoaded();
+        return filter.select(this).cardinality();
+    }
+
+    /**
+     * Drops the catalog; it is reloaded from the database on next access.
+     * Needed when the database is reinitialized behind our back.
+     */
+    public synchronized void invalidate() {
+        headers.clear();
+        all.clear();
+        published.clear();
+        for (BitSet bits : features) {
+            bits.clear();
+        }
+        byOwner.clear();
+        loaded = false;
+    }
+
+    // Bitmaps read by MenuFilter, which must not change them
+
+    BitSet allBits() {
+        return all;
+    }
+
+    BitSet publishedBits() {
+        return published;
+    }
+
+    BitSet featureBits(MenuFeature feature) {
+        return features[feature.ordinal()];
+    }
+
+    BitSet ownerBits(int ownerId) {
+        return byOwner.getOrDefault(ownerId, NONE);
+    }
+
+    private void ensureLoaded() {
+        if (loaded)
+            return;
+        for (Menu m : Menu.loadAllHeaders()) {
+            put(m);
+        }
+        loaded = true;
+    }
+
+    private void put(Menu m) {
+        remove(m.getId());
+        int id = m.getId();
+        headers.put(id, m);
+        all.set(id);
+        if (m.isPublished())
+            published.set(id);
+        for (MenuFeature f : MenuFeature.values()) {
+            if (m.hasFeature(f))
+                features[f.ordinal()].set(id);
+        }
+        byOwner.computeIfAbsent(ownerId(m), k -> new BitSet()).set(id);
+    }
+
+    private void remove(int id) {
+        Menu old = headers.remove(id);
+        if (old == null)
+            return;
+        all.clear(id);
+        published.clear(id);
+        for (BitSet bits : features) {
+            bits.clear(id);
+        }
+        BitSet owned = byOwner.get(ownerId(old));
+        owned.clear(id);
+        if (owned.isEmpty())
+            byOwner.remove(ownerId(old));
+    }
+
+    private static int ownerId(Menu m) {
+        return m.getOwner() != null ? m.getOwner().getId() : 0;
+    }
+
+    // Menu notifications: only those changing a header matter
+
+    @Override
+    public synchronized void updateMenuCreated(Menu m) {
+        if (loaded)
+            put(m.copyHeader());
+    }
+
+    @Override
+    public synchronized void updateMenuDeleted(Menu m) {
+        if (loaded)
+            remove(m.getId());
+    }
+
+    @Override
+    public synchronized void updateMenuTitleChanged(Menu m) {
+        if (loaded)
+            put(m.copyHeader());
+    }
+
+    @Override
+    public synchronized void updateMenuPublishedState(Menu m) {
+        if (loaded)
+            put(m.copyHeader());
+    }
+
+    @Override
+    public synchronized void updateMenuFeaturesChanged(Menu m) {
+        if (loaded)
+            put(m.copyHeader());
+    }
+
+    @Override
+    public void updateSectionAdded(Menu m, Section sec) {
+    }
+
+    @Override
+    public void updateSectionDeleted(Menu m, Section s, boolean itemsDeleted) {
+    }
+
+    @Override
+    public void updateSectionChangedName(Menu m, Section s) {
+    }
+
+    @Override
+    public void updateSectionsRearranged(Menu m) {
+    }
+
+    @Override
+    public void updateMenuItemAdded(Menu m, MenuItem mi) {
+    }
+
+    @Override
+    public void updateMenuItemDeleted(Menu m, Section sec, MenuItem mi) {
+    }
+
+    @Override
+    public void updateMenuItemChanged(Menu m, Section s, MenuItem mi) {
+    }
+
+    @Override
+    public void updateMenuItemDescriptionChanged(Menu m, MenuItem mi) {
+    }
+
+    @Override
+    public void updateMenuItemsRearranged(Menu m, Section s) {
+    }
+
+    @Override
+    public void updateFreeMenuItemsRearranged(Menu m) {
+    }
+}
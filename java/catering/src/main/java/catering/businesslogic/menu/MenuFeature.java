@@ -0,0 +1,80 @@
+package catering.businesslogic.menu;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.EnumSet;
+import java.util.List;
+
+/**
+ * The features a menu may have. A set of features is stored as a bitmask,
+ * one bit per feature, in the {@code features} column of {@code Menus}: the
+ * bit of a feature is its ordinal, so new features go at the end.
+ */
+public enum MenuFeature {
+    NEEDS_COOK(Menu.FEATURE_NEEDS_COOK),
+    FINGER_FOOD(Menu.FEATURE_FINGER_FOOD),
+    BUFFET(Menu.FEATURE_BUFFET),
+    WARM_DISHES(Menu.FEATURE_WARM_DISHES),
+    NEEDS_KITCHEN(Menu.FEATURE_NEEDS_KITCHEN);
+
+    // All the masks, one bit per feature
+    static final int MASKS = 1 << values().length;
+
+    private final String name;
+
+    MenuFeature(String name) {
+        this.name = name;
+    }
+
+    /**
+     * @return The name of the feature, as used by {@link Menu#getFeature}
+     */
+    public String getName() {
+        return name;
+    }
+
+    public int bit() {
+        return 1 << ordinal();
+    }
+
+    /**
+     * @return The feature with that name, or null if there is none
+     */
+    public static MenuFeature byName(String name) {
+        for (MenuFeature f : values()) {
+            if (f.name.equals(name))
+                return f;
+        }
+        return null;
+    }
+
+    public static int toMask(Collection<MenuFeature> features) {
+        int mask = 0;
+        for (MenuFeature f : features) {
+            mask |= f.bit();
+        }
+        return mask;
+    }
+
+    public static EnumSet<MenuFeature> fromMask(int mask) {
+        EnumSet<MenuFeature> features = EnumSet.noneOf(MenuFeature.class);
+        for (MenuFeature f : values()) {
+            if ((mask & f.bit()) != 0)
+                features.add(f);
+        }
+        return features;
+    }
+
+    /**
+     * @return The masks having all the bits of {@code mask}, in ascending
+     *         order: a column holding one of them has all those features
+     */
+    static List<Integer> masksWith(int mask) {
+        List<Integer> masks = new ArrayList<>();
+        for (int m = 0; m < MASKS; m++) {
+            if ((m & mask) == mask)
+                masks.add(m);
+        }
+        return masks;
+    }
+}
@@ -0,0 +1,111 @@
+package catering.businesslogic.menu;
+
+import java.util.BitSet;
+import java.util.Set;
+import java.util.function.Function;
+import java.util.function.Predicate;
+
+import catering.businesslogic.user.User;
+
+/**
+ * A condition on menus, over their features, owner and published state,
+ * built from the factory methods and combined with {@link #and} and
+ * {@link #or}. A {@link MenuCatalog} answers it with bitmap operations over
+ * menu IDs; it can also be tested on a single menu.
+ */
+public final class MenuFilter {
+
+    /** Every menu */
+    public static final MenuFilter ALL = new MenuFilter("all", c -> (BitSet) c.allBits().clone(), m -> true);
+
+    // The menus selected, as a bitmap the caller may change
+    private final Function<MenuCatalog, BitSet> select;
+    private final Predicate<Menu> test;
+    private final String text;
+
+    private MenuFilter(String text, Function<MenuCatalog, BitSet> select, Predicate<Menu> test) {
+        this.text = text;
+        this.select = select;
+        this.test = test;
+    }
+
+    public static MenuFilter withFeature(MenuFeature feature) {
+        return new MenuFilter(feature.getName(), c -> (BitSet) c.featureBits(feature).clone(),
+                m -> m.hasFeature(feature));
+    }
+
+    /**
+     * @return The menus having all the features; every menu if there are
+     *         none
+     */
+    public static MenuFilter withAllFeatures(Set<MenuFeature> features) {
+        MenuFilter f = ALL;
+        for (MenuFeature feature : features) {
+            f = f == ALL ? withFeature(feature) : f.and(withFeature(feature));
+        }
+        return f;
+    }
+
+    /**
+     * @return The menus having at least one of the features; none if there
+     *         are none
+     */
+    public static MenuFilter withAnyFeature(Set<MenuFeature> features) {
+        MenuFilter f = null;
+        for (MenuFeature feature : features) {
+            f = f == null ? withFeature(feature) : f.or(withFeature(feature));
+        }
+        return f != null ? f : new MenuFilter("none", c -> new BitSet(), m -> false);
+    }
+
+    public static MenuFilter ownedBy(User owner) {
+        int ownerId = owner.getId();
+        return new MenuFilter("owner " + ownerId, c -> (BitSet) c.ownerBits(ownerId).clone(),
+                m -> m.getOwner() != null && m.getOwner().getId() == ownerId);
+    }
+
+    public static MenuFilter published(boolean published) {
+        if (published)
+            return new MenuFilter("published", c -> (BitSet) c.publishedBits().clone(), Menu::isPublished);
+        return new MenuFilter("not published", c -> {
+            BitSet bits = (BitSet) c.allBits().clone();
+            bits.andNot(c.publishedBits());
+            return bits;
+        }, m -> !m.isPublished());
+    }
+
+    /**
+     * @return The menus matching both this and the other filter
+     */
+    public MenuFilter and(MenuFilter other) {
+        return new MenuFilter("(" + text + " and " + other.text + ")", c -> {
+            BitSet bits = select.apply(c);
+            bits.and(other.select.apply(c));
+            return bits;
+        }, test.and(other.test));
+    }
+
+    /**
+     * @return The menus matching this or the other filter
+     */
+    public MenuFilter or(MenuFilter other) {
+        return new MenuFilter("(" + text + " or " + other.text + ")", c -> {
+            BitSet bits = select.apply(c);
+            bits.or(other.select.apply(c));
+            return bits;
+        }, test.or(other.test));
+    }
+
+    public boolean matches(Menu m) {
+        return test.test(m);
+    }
+
+    BitSet select(MenuCatalog catalog) {
+        return select.apply(catalog);
+    }
+
+    @Override
+    public String toString() {
+        return "MenuFilter [" + text + "]";
+    }
+}
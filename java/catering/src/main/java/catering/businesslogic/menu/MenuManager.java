@@ -2,20 +2,27 @@ package catering.businesslogic.menu;
 
 import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
+import java.util.Set;
 
 import catering.businesslogic.CatERing;
+import catering.businesslogic.EventBus;
+import catering.businesslogic.Session;
 import catering.businesslogic.UseCaseLogicException;
 import catering.businesslogic.recipe.Recipe;
 import catering.businesslogic.user.User;
+import catering.persistence.Page;
+import catering.persistence.Projection;
+import catering.util.Instrument;
 
 public class MenuManager {
 
-    private Menu currentMenu;
     private HashMap<String, Boolean> menuFeatures;
-    private ArrayList<MenuEventReceiver> eventReceivers;
+    private final EventBus eventBus;
+    private volatile MenuCatalog catalog;
 
-    public MenuManager() {
-        eventReceivers = new ArrayList<>();
+    public MenuManager(EventBus eventBus) {
+        this.eventBus = eventBus;
         menuFeatures = Menu.defaultFeaturesMap();
     }
 
@@ -24,6 +31,10 @@ public class MenuManager {
     }
 
     public Menu createMenu(String title) throws UseCaseLogicException {
+        return Instrument.call("MenuManager.createMenu", () -> doCreateMenu(title));
+    }
+
+    private Menu doCreateMenu(String title) throws UseCaseLogicException {
         User user = CatERing.getInstance().getUserManager().getCurrentUser();
 
         if (!user.isChef()) {
@@ -37,16 +48,103 @@ public class MenuManager {
         return m;
     }
 
-    public ArrayList<Recipe> getRecipeBook() {
+    public Page<Menu> getMenus(Menu after, int pageSize, Projection projection) {
+        return Instrument.call("MenuManager.getMenus", () -> doGetMenus(after, pageSize, projection));
+    }
+
+    private Page<Menu> doGetMenus(Menu after, int pageSize, Projection projection) {
+        return Menu.loadPage(after, pageSize, projection);
+    }
+
+    /**
+     * Sets the catalog answering {@link #findMenus}; without one menus are
+     * filtered as they are read from the database
+     *
+     * @param catalog A catalog registered as a receiver of this manager
+     */
+    public void setCatalog(MenuCatalog catalog) {
+        this.catalog = catalog;
+    }
+
+    /**
+     * Finds one page of the menus matching a filter, such as the published
+     * buffets of a chef, in the order they were created
+     *
+     * @param filter   The condition on the menus
+     * @param after    Last menu of the previous page, or null for the first
+     *                 page
+     * @param pageSize Menus per page
+     * @return Headers of the matching menus after {@code after}
+     */
+    public Page<Menu> findMenus(MenuFilter filter, Menu after, int pageSize) {
+        return Instrument.call("MenuManager.findMenus", () -> doFindMenus(filter, after, pageSize));
+    }
+
+    private Page<Menu> doFindMenus(MenuFilter filter, Menu after, int pageSize) {
+        MenuCatalog c = catalog;
+        if (c != null)
+            return c.find(filter, after, pageSize);
+
+        Page.checkSize(pageSize);
+        List<Menu> rows = new ArrayList<>();
+        Menu last = after;
+        Page<Menu> page;
+        do {
+            page = Menu.loadPage(last, Page.MAX_SIZE, Projection.HEADER);
+            for (Menu m : page.getItems()) {
+                if (rows.size() <= pageSize && filter.matches(m))
+                    rows.add(m);
+            }
+            last = page.getLast();
+        } while (page.hasNext() && rows.size() <= pageSize);
+        return Page.of(rows, pageSize);
+    }
+
+    /**
+     * Finds the menus having all the given features, such as the buffets
+     * with warm dishes
+     *
+     * @param features   Features required
+     * @param projection HEADER leaves out sections and items
+     * @return The menus found, by ID
+     */
+    public List<Menu> getMenusWithFeatures(Set<MenuFeature> features, Projection projection) {
+        return Instrument.call("MenuManager.getMenusWithFeatures", () -> doGetMenusWithFeatures(features, projection));
+    }
+
+    private List<Menu> doGetMenusWithFeatures(Set<MenuFeature> features, Projection projection) {
+        return Menu.loadWithFeatures(features, projection);
+    }
+
+    /**
+     * Finds the versions a menu was copied from, such as the one a service
+     * approved before its menu was revised
+     *
+     * @return Headers of the menus from the first version to this one
+     */
+    public List<Menu> getMenuLineage(Menu m) {
+        return Instrument.call("MenuManager.getMenuLineage", () -> doGetMenuLineage(m));
+    }
+
+    private List<Menu> doGetMenuLineage(Menu m) {
+        return Menu.loadLineage(m.getId());
+    }
+
+    public List<Recipe> getRecipeBook() {
         return CatERing.getInstance().getRecipeManager().getRecipeBook();
     }
 
     public Section defineSection(String name) throws UseCaseLogicException {
+        return Instrument.call("MenuManager.defineSection", () -> doDefineSection(name));
+    }
 
+    private Section doDefineSection(String name) throws UseCaseLogicException {
+
+        Menu currentMenu = getCurrentMenu();
         if (currentMenu == null)
             throw new UseCaseLogicException();
 
-        Section newSection = this.currentMenu.addSection(name);
+        Section newSection = currentMenu.addSection(name);
 
         this.notifySectionAdded(newSection);
 
@@ -54,11 +152,16 @@ public class MenuManager {
     }
 
     public MenuItem insertItem(Recipe recipe, Section sec, String desc) throws UseCaseLogicException {
-        if (this.currentMenu == null)
+        return Instrument.call("MenuManager.insertItem", () -> doInsertItem(recipe, sec, desc));
+    }
+
+    private MenuItem doInsertItem(Recipe recipe, Section sec, String desc) throws UseCaseLogicException {
+        Menu currentMenu = getCurrentMenu();
+        if (currentMenu == null)
             throw new UseCaseLogicException();
-        if (sec != null && this.currentMenu.getSectionPosition(sec) < 0)
+        if (sec != null && currentMenu.getSectionPosition(sec) < 0)
             throw new UseCaseLogicException();
-        MenuItem mi = this.currentMenu.addItem(recipe, sec, desc);
+        MenuItem mi = currentMenu.addItem(recipe, sec, desc);
         this.notifyMenuItemAdded(mi);
         return mi;
     }
@@ -76,15 +179,25 @@ public class MenuManager {
     }
 
     public void addMenuFeatures(HashMap<String, Boolean> features) throws UseCaseLogicException {
-        if (this.currentMenu == null)
+        Instrument.run("MenuManager.addMenuFeatures", () -> doAddMenuFeatures(features));
+    }
+
+    private void doAddMenuFeatures(HashMap<String, Boolean> features) throws UseCaseLogicException {
+        Menu currentMenu = getCurrentMenu();
+        if (currentMenu == null)
             throw new UseCaseLogicException();
         for (java.util.Map.Entry<String, Boolean> e : features.entrySet()) {
-            this.currentMenu.setFeature(e.getKey(), e.getValue());
+            currentMenu.setFeature(e.getKey(), e.getValue());
         }
         this.notifyMenuFeaturesChanged();
     }
 
     public void changeTitle(String title) throws UseCaseLogicException {
+        Instrument.run("MenuManager.changeTitle", () -> doChangeTitle(title));
+    }
+
+    private void doChangeTitle(String title) throws UseCaseLogicException {
+        Menu currentMenu = getCurrentMenu();
         if (currentMenu == null)
             throw new UseCaseLogicException();
         currentMenu.setTitle(title);
@@ -92,6 +205,11 @@ public class MenuManager {
     }
 
     public void publish() throws UseCaseLogicException {
+        Instrument.run("MenuManager.publish", () -> doPublish());
+    }
+
+    private void doPublish() throws UseCaseLogicException {
+        Menu currentMenu = getCurrentMenu();
         if (currentMenu == null)
             throw new UseCaseLogicException();
         currentMenu.setPublished(true);
@@ -99,6 +217,10 @@ public class MenuManager {
     }
 
     public void deleteMenu(Menu m) throws UseCaseLogicException {
+        Instrument.run("MenuManager.deleteMenu", () -> doDeleteMenu(m));
+    }
+
+    private void doDeleteMenu(Menu m) throws UseCaseLogicException {
         User u = CatERing.getInstance().getUserManager().getCurrentUser();
         if (!u.isChef())
             throw new UseCaseLogicException();
@@ -110,16 +232,30 @@ public class MenuManager {
     }
 
     public void chooseMenu(Menu m) throws UseCaseLogicException {
+        Instrument.run("MenuManager.chooseMenu", () -> doChooseMenu(m));
+    }
+
+    private void doChooseMenu(Menu m) throws UseCaseLogicException {
         User u = CatERing.getInstance().getUserManager().getCurrentUser();
         if (!u.isChef())
             throw new UseCaseLogicException();
         if (m.isInUse() || !m.isOwner(u)) {
             throw new UseCaseLogicException("Menu is in use or user is not owner");
         }
-        this.currentMenu = m;
+        setCurrentMenu(m);
     }
 
+    /**
+     * Makes a copy of a menu, the next version of it, the current menu. It
+     * is how a menu in use is revised: services keep the version they
+     * approved. The copy costs the same whatever the size of the menu, until
+     * it is edited.
+     */
     public Menu chooseMenuForCopy(Menu toCopy) throws UseCaseLogicException {
+        return Instrument.call("MenuManager.chooseMenuForCopy", () -> doChooseMenuForCopy(toCopy));
+    }
+
+    private Menu doChooseMenuForCopy(Menu toCopy) throws UseCaseLogicException {
 
         User user = CatERing.getInstance().getUserManager().getCurrentUser();
 
@@ -137,29 +273,46 @@ public class MenuManager {
     }
 
     public void deleteSection(Section s, boolean deleteItems) throws UseCaseLogicException {
+        Instrument.run("MenuManager.deleteSection", () -> doDeleteSection(s, deleteItems));
+    }
+
+    private void doDeleteSection(Section s, boolean deleteItems) throws UseCaseLogicException {
+        Menu currentMenu = getCurrentMenu();
         if (currentMenu == null || currentMenu.getSectionPosition(s) < 0)
             throw new UseCaseLogicException();
-        this.currentMenu.removeSection(s, deleteItems);
+        s = currentMenu.editSection(s);
+        currentMenu.removeSection(s, deleteItems);
 
-        this.notifySectionDeleted(this.currentMenu, s, deleteItems);
+        this.notifySectionDeleted(currentMenu, s, deleteItems);
     }
 
     public void changeSectionName(Section s, String name) throws UseCaseLogicException {
+        Instrument.run("MenuManager.changeSectionName", () -> doChangeSectionName(s, name));
+    }
+
+    private void doChangeSectionName(Section s, String name) throws UseCaseLogicException {
+        Menu currentMenu = getCurrentMenu();
         if (currentMenu == null || currentMenu.getSectionPosition(s) < 0)
             throw new UseCaseLogicException();
+        s = currentMenu.editSection(s);
         s.setName(name);
 
         this.notifySectionChangedName(s);
     }
 
     public void moveSection(Section sec, int position) throws UseCaseLogicException {
+        Instrument.run("MenuManager.moveSection", () -> doMoveSection(sec, position));
+    }
+
+    private void doMoveSection(Section sec, int position) throws UseCaseLogicException {
+        Menu currentMenu = getCurrentMenu();
         if (currentMenu == null || currentMenu.getSectionPosition(sec) < 0)
             throw new UseCaseLogicException();
         if (position < 0 || position >= currentMenu.getSectionCount())
             throw new UseCaseLogicException();
-        this.currentMenu.moveSection(sec, position);
+        currentMenu.moveSection(sec, position);
 
-        this.notifySectionsRearranged(this.currentMenu);
+        this.notifySectionsRearranged(currentMenu);
     }
 
     public void moveMenuItem(MenuItem it, int position) throws UseCaseLogicException {
@@ -167,6 +320,11 @@ public class MenuManager {
     }
 
     public void moveMenuItem(MenuItem mi, Section sec, int position) throws UseCaseLogicException {
+        Instrument.run("MenuManager.moveMenuItem", () -> doMoveMenuItem(mi, sec, position));
+    }
+
+    private void doMoveMenuItem(MenuItem mi, Section sec, int position) throws UseCaseLogicException {
+        Menu currentMenu = getCurrentMenu();
         if (sec == null) {
             if (currentMenu == null || currentMenu.getFreeItemPosition(mi) < 0)
                 throw new UseCaseLogicException();
@@ -175,7 +333,11 @@ public class MenuManager {
             currentMenu.moveFreeItem(mi, position);
             this.notifyFreeItemsRearranged();
         } else {
-            if (currentMenu == null || currentMenu.getSectionPosition(sec) < 0 || sec.getItemPosition(mi) < 0)
+            if (currentMenu == null || currentMenu.getSectionPosition(sec) < 0)
+                throw new UseCaseLogicException();
+            sec = currentMenu.editSection(sec);
+            mi = currentMenu.editItem(mi);
+            if (sec.getItemPosition(mi) < 0)
                 throw new UseCaseLogicException();
             if (position < 0 || position >= sec.getItemsCount())
                 throw new UseCaseLogicException();
@@ -185,7 +347,12 @@ public class MenuManager {
     }
 
     public void assignItemToSection(MenuItem mi, Section sec) throws UseCaseLogicException {
+        Instrument.run("MenuManager.assignItemToSection", () -> doAssignItemToSection(mi, sec));
+    }
+
+    private void doAssignItemToSection(MenuItem mi, Section sec) throws UseCaseLogicException {
 
+        Menu currentMenu = getCurrentMenu();
         if (currentMenu == null)
             throw new UseCaseLogicException();
 
@@ -199,25 +366,40 @@ public class MenuManager {
         if (sec == oldsec)
             return;
 
-        this.currentMenu.changeItemSection(mi, oldsec, sec);
+        mi = currentMenu.editItem(mi);
+        sec = sec != null ? currentMenu.editSection(sec) : null;
+        oldsec = currentMenu.getSection(mi);
+        if (sec == oldsec)
+            return;
+        currentMenu.changeItemSection(mi, oldsec, sec);
 
         this.notifyItemSectionChanged(mi, sec);
-
     }
 
     public void editMenuItemDescription(MenuItem mi, String desc) throws UseCaseLogicException {
+        Instrument.run("MenuManager.editMenuItemDescription", () -> doEditMenuItemDescription(mi, desc));
+    }
+
+    private void doEditMenuItemDescription(MenuItem mi, String desc) throws UseCaseLogicException {
+        Menu currentMenu = getCurrentMenu();
         if (currentMenu == null)
             throw new UseCaseLogicException();
         if (currentMenu.getSection(mi) == null && currentMenu.getFreeItemPosition(mi) < 0)
             throw new UseCaseLogicException();
 
+        mi = currentMenu.editItem(mi);
         mi.setDescription(desc);
 
         this.notifyItemDescriptionChanged(mi);
     }
 
     public void deleteItem(MenuItem mi) throws UseCaseLogicException {
+        Instrument.run("MenuManager.deleteItem", () -> doDeleteItem(mi));
+    }
+
+    private void doDeleteItem(MenuItem mi) throws UseCaseLogicException {
 
+        Menu currentMenu = getCurrentMenu();
         if (currentMenu == null)
             throw new UseCaseLogicException();
         Section sec = null;
@@ -227,113 +409,96 @@ public class MenuManager {
 
             throw new UseCaseLogicException();
         }
+        mi = currentMenu.editItem(mi);
+        sec = currentMenu.getSection(mi);
         currentMenu.removeItem(mi);
         this.notifyItemDeleted(sec, mi);
     }
 
     public void setCurrentMenu(Menu m) {
-        this.currentMenu = m;
+        Session.current().setMenu(m);
     }
 
     public Menu getCurrentMenu() {
-        return this.currentMenu;
+        return Session.current().getMenu();
     }
 
     public void addEventReceiver(MenuEventReceiver rec) {
-        this.eventReceivers.add(rec);
+        eventBus.subscribe(MenuEventReceiver.class, rec);
     }
 
     public void removeEventReceiver(MenuEventReceiver rec) {
-        this.eventReceivers.remove(rec);
+        eventBus.unsubscribe(MenuEventReceiver.class, rec);
     }
 
     private void notifyItemDeleted(Section sec, MenuItem mi) {
-        for (MenuEventReceiver er : this.eventReceivers) {
-            er.updateMenuItemDeleted(this.currentMenu, sec, mi);
-        }
+        Menu m = getCurrentMenu();
+        eventBus.publish(MenuEventReceiver.class, m::getId, er -> er.updateMenuItemDeleted(m, sec, mi));
     }
 
     private void notifyItemDescriptionChanged(MenuItem mi) {
-        for (MenuEventReceiver er : this.eventReceivers) {
-            er.updateMenuItemDescriptionChanged(this.currentMenu, mi);
-        }
+        Menu m = getCurrentMenu();
+        eventBus.publish(MenuEventReceiver.class, m::getId, er -> er.updateMenuItemDescriptionChanged(m, mi));
     }
 
     private void notifyItemSectionChanged(MenuItem mi, Section s) {
-        for (MenuEventReceiver er : this.eventReceivers) {
-            er.updateMenuItemChanged(this.currentMenu, s, mi);
-        }
+        Menu m = getCurrentMenu();
+        eventBus.publish(MenuEventReceiver.class, m::getId, er -> er.updateMenuItemChanged(m, s, mi));
     }
 
     private void notifySectionItemsRearranged(Section sec) {
-        for (MenuEventReceiver er : this.eventReceivers) {
-            er.updateMenuItemsRearranged(this.currentMenu, sec);
-        }
+        Menu m = getCurrentMenu();
+        eventBus.publish(MenuEventReceiver.class, m::getId, er -> er.updateMenuItemsRearranged(m, sec));
     }
 
     private void notifyFreeItemsRearranged() {
-        for (MenuEventReceiver er : this.eventReceivers) {
-            er.updateFreeMenuItemsRearranged(this.currentMenu);
-        }
+        Menu m = getCurrentMenu();
+        eventBus.publish(MenuEventReceiver.class, m::getId, er -> er.updateFreeMenuItemsRearranged(m));
     }
 
     private void notifySectionsRearranged(Menu m) {
-        for (MenuEventReceiver er : this.eventReceivers) {
-            er.updateSectionsRearranged(m);
-        }
+        eventBus.publish(MenuEventReceiver.class, m::getId, er -> er.updateSectionsRearranged(m));
     }
 
     private void notifySectionChangedName(Section s) {
-        for (MenuEventReceiver er : this.eventReceivers) {
-            er.updateSectionChangedName(this.currentMenu, s);
-        }
+        Menu m = getCurrentMenu();
+        eventBus.publish(MenuEventReceiver.class, m::getId, er -> er.updateSectionChangedName(m, s));
     }
 
     private void notifySectionDeleted(Menu m, Section s, boolean itemsDeleted) {
-        for (MenuEventReceiver er : this.eventReceivers) {
-            er.updateSectionDeleted(m, s, itemsDeleted);
-        }
+        eventBus.publish(MenuEventReceiver.class, m::getId, er -> er.updateSectionDeleted(m, s, itemsDeleted));
     }
 
     private void notifyMenuDeleted(Menu m) {
-        for (MenuEventReceiver er : this.eventReceivers) {
-            er.updateMenuDeleted(m);
-        }
+        eventBus.publish(MenuEventReceiver.class, m::getId, er -> er.updateMenuDeleted(m));
     }
 
     private void notifyMenuPublishedState() {
-        for (MenuEventReceiver er : this.eventReceivers) {
-            er.updateMenuPublishedState(this.currentMenu);
-        }
+        Menu m = getCurrentMenu();
+        eventBus.publish(MenuEventReceiver.class, m::getId, er -> er.updateMenuPublishedState(m));
     }
 
     private void notifyMenuTitleChanged() {
-        for (MenuEventReceiver er : this.eventReceivers) {
-            er.updateMenuTitleChanged(this.currentMenu);
-        }
+        Menu m = getCurrentMenu();
+        eventBus.publish(MenuEventReceiver.class, m::getId, er -> er.updateMenuTitleChanged(m));
     }
 
     private void notifyMenuFeaturesChanged() {
-        for (MenuEventReceiver er : this.eventReceivers) {
-            er.updateMenuFeaturesChanged(this.currentMenu);
-        }
+        Menu m = getCurrentMenu();
+        eventBus.publish(MenuEventReceiver.class, m::getId, er -> er.updateMenuFeaturesChanged(m));
     }
 
     private void notifyMenuItemAdded(MenuItem mi) {
-        for (MenuEventReceiver er : this.eventReceivers) {
-            er.updateMenuItemAdded(this.currentMenu, mi);
-        }
+        Menu m = getCurrentMenu();
+        eventBus.publish(MenuEventReceiver.class, m::getId, er -> er.updateMenuItemAdded(m, mi));
     }
 
     private void notifySectionAdded(Section sec) {
-        for (MenuEventReceiver er : this.eventReceivers) {
-            er.updateSectionAdded(this.currentMenu, sec);
-        }
+        Menu m = getCurrentMenu();
+        eventBus.publish(MenuEventReceiver.class, m::getId, er -> er.updateSectionAdded(m, sec));
     }
 
     private void notifyMenuCreated(Menu m) {
-        for (MenuEventReceiver er : this.eventReceivers) {
-            er.updateMenuCreated(m);
-        }
+        eventBus.publish(MenuEventReceiver.class, m::getId, er -> er.updateMenuCreated(m));
     }
 }
@@ -100,6 +100,7 @@ public class Section {
     private int id;
     private String name;
     private ArrayList<MenuItem> sectionItems;
+    private final ItemIndex positions = new ItemIndex();
 
     public Section(String name) {
         id = 0;
@@ -116,6 +117,7 @@ public class Section {
 
     public void addItem(MenuItem mi) {
         this.sectionItems.add(mi);
+        positions.appended(sectionItems);
     }
 
     public void updateItems(ArrayList<MenuItem> newItems) {
@@ -135,8 +137,12 @@ public class Section {
         this.sectionItems.addAll(updatedList);
     }
 
+    /**
+     * @return The position of this very item in the section, or -1 if it is
+     *         not there
+     */
     public int getItemPosition(MenuItem mi) {
-        return this.sectionItems.indexOf(mi);
+        return positions.positionOf(sectionItems, mi);
     }
 
     public int getId() {
@@ -187,12 +193,14 @@ public class Section {
     }
 
     public void moveItem(MenuItem mi, int position) {
-        sectionItems.remove(mi);
+        sectionItems.remove(getItemPosition(mi));
         sectionItems.add(position, mi);
     }
 
     public void removeItem(MenuItem mi) {
-        sectionItems.remove(mi);
+        int pos = getItemPosition(mi);
+        if (pos >= 0)
+            sectionItems.remove(pos);
     }
 
     private MenuItem findItemById(int id) {
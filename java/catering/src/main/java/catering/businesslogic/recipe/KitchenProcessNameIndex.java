@@ -0,0 +1,218 @@
+package catering.businesslogic.recipe;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Prefix index over recipe and preparation names, used for autocompletion.
+ * <p>
+ * Names are kept lower-cased in a sorted array: a completion is a binary
+ * search for the first name not smaller than the prefix followed by a scan
+ * of the names that start with it. Names and prefix are lower-cased one char
+ * at a time, the prefix as it is compared, so a query allocates nothing:
+ * results are written into an array supplied by the caller. Changes copy
+ * the arrays and publish them at once, so queries never need a lock; a save
+ * finds its old and new slots by binary search and moves the entries
+ * between them with {@code System.arraycopy}.
+ */
+public class KitchenProcessNameIndex {
+
+    private static final class Snapshot {
+        final String[] keys;
+        final KitchenProcess[] entries;
+
+        Snapshot(String[] keys, KitchenProcess[] entries) {
+            this.keys = keys;
+            this.entries = entries;
+        }
+    }
+
+    private volatile Snapshot snapshot = new Snapshot(new String[0], new KitchenProcess[0]);
+
+    // Key each entry is sorted under, by kind and ID: a renamed entry is
+    // found through its old key. Guarded by this.
+    private final Map<Long, String> keysById = new HashMap<>();
+
+    /**
+     * Replaces the content of the index
+     *
+     * @param processes All recipes and preparations to index
+     */
+    public synchronized void rebuild(Collection<? extends KitchenProcess> processes) {
+        KitchenProcess[] entries = processes.toArray(new KitchenProcess[0]);
+        String[] keys = new String[entries.length];
+        keysById.clear();
+        for (int i = 0; i < entries.length; i++) {
+            keys[i] = keyOf(entries[i]);
+            keysById.put(idOf(entries[i]), keys[i]);
+        }
+        Integer[] order = new Integer[entries.length];
+        for (int i = 0; i < order.length; i++) {
+            order[i] = i;
+        }
+        Arrays.sort(order, (a, b) -> compareEntries(keys[a], entries[a], keys[b], entries[b]));
+
+        String[] sortedKeys = new String[entries.length];
+        KitchenProcess[] sortedEntries = new KitchenProcess[entries.length];
+        for (int i = 0; i < order.length; i++) {
+            sortedKeys[i] = keys[order[i]];
+            sortedEntries[i] = entries[order[i]];
+        }
+        snapshot = new Snapshot(sortedKeys, sortedEntries);
+    }
+
+    /**
+     * Adds a recipe or preparation, replacing any entry of the same kind
+     * with the same ID
+     *
+     * @param kp The saved recipe or preparation
+     */
+    public synchronized void put(KitchenProcess kp) {
+        Snapshot current = snapshot;
+        int n = current.keys.length;
+        String key = keyOf(kp);
+        String oldKey = keysById.put(idOf(kp), key);
+        int old = oldKey == null ? -1 : search(current, oldKey, kp);
+        // Where the new key goes among the current entries: never the old
+        // slot itself unless the key is unchanged
+        int slot = search(current, key, kp);
+        if (slot < 0)
+            slot = -slot - 1;
+
+        String[] keys;
+        KitchenProcess[] entries;
+        if (old < 0) {
+            keys = new String[n + 1];
+            entries = new KitchenProcess[n + 1];
+            System.arraycopy(current.keys, 0, keys, 0, slot);
+            System.arraycopy(current.entries, 0, entries, 0, slot);
+            System.arraycopy(current.keys, slot, keys, slot + 1, n - slot);
+            System.arraycopy(current.entries, slot, entries, slot + 1, n - slot);
+        } else {
+            keys = current.keys.clone();
+            entries = current.entries.clone();
+            if (slot > old) {
+                // The entries between the two slots move down by one
+                slot--;
+                System.arraycopy(current.keys, old + 1, keys, old, slot - old);
+                System.arraycopy(current.entries, old + 1, entries, old, slot - old);
+            } else if (slot < old) {
+                System.arraycopy(current.keys, slot, keys, slot + 1, old - slot);
+                System.arraycopy(current.entries, slot, entries, slot + 1, old - slot);
+            }
+        }
+        keys[slot] = key;
+        entries[slot] = kp;
+        snapshot = new Snapshot(keys, entries);
+    }
+
+    /**
+     * Writes the first names starting with the given prefix (ignoring case),
+     * in alphabetical order, into {@code results}
+     *
+     * @param prefix      Text typed so far
+     * @param results     Destination; its length is the maximum number of
+     *                    completions returned
+     * @param recipesOnly true to skip preparations
+     * @return Number of completions written into {@code results}
+     */
+    public int complete(CharSequence prefix, KitchenProcess[] results, boolean recipesOnly) {
+        Snapshot s = snapshot;
+        int found = 0;
+        for (int i = lowerBound(s.keys, prefix); i < s.keys.length && found < results.length; i++) {
+            if (!startsWith(s.keys[i], prefix))
+                break;
+            if (recipesOnly && !s.entries[i].isRecipe())
+                continue;
+            results[found++] = s.entries[i];
+        }
+        return found;
+    }
+
+    /**
+     * @return Number of indexed names
+     */
+    public int size() {
+        return snapshot.keys.length;
+    }
+
+    // First key not smaller than the lower-cased prefix
+    private static int lowerBound(String[] keys, CharSequence prefix) {
+        int lo = 0;
+        int hi = keys.length;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (comparePrefix(keys[mid], prefix) < 0)
+                lo = mid + 1;
+            else
+                hi = mid;
+        }
+        return lo;
+    }
+
+    // Compares a key with the lower-cased prefix as String.compareTo would
+    private static int comparePrefix(String key, CharSequence prefix) {
+        int n = Math.min(key.length(), prefix.length());
+        for (int i = 0; i < n; i++) {
+            int d = key.charAt(i) - Character.toLowerCase(prefix.charAt(i));
+            if (d != 0)
+                return d;
+        }
+        return key.length() - prefix.length();
+    }
+
+    private static boolean startsWith(String key, CharSequence prefix) {
+        if (key.length() < prefix.length())
+            return false;
+        for (int i = 0; i < prefix.length(); i++) {
+            if (key.charAt(i) != Character.toLowerCase(prefix.charAt(i)))
+                return false;
+        }
+        return true;
+    }
+
+    /**
+     * @return The slot of the entry sorted under {@code key}, or
+     *         {@code -(insertion point) - 1} as in {@link Arrays#binarySearch}
+     */
+    private static int search(Snapshot s, String key, KitchenProcess kp) {
+        int lo = 0;
+        int hi = s.keys.length - 1;
+        while (lo <= hi) {
+            int mid = (lo + hi) >>> 1;
+            int c = compareEntries(s.keys[mid], s.entries[mid], key, kp);
+            if (c < 0)
+                lo = mid + 1;
+            else if (c > 0)
+                hi = mid - 1;
+            else
+                return mid;
+        }
+        return -(lo + 1);
+    }
+
+    private static long idOf(KitchenProcess kp) {
+        return (long) kp.getId() << 1 | (kp.isRecipe() ? 1 : 0);
+    }
+
+    private static int compareEntries(String keyA, KitchenProcess a, String keyB, KitchenProcess b) {
+        int byKey = keyA.compareTo(keyB);
+        if (byKey != 0)
+            return byKey;
+        if (a.isRecipe() != b.isRecipe())
+            return a.isRecipe() ? -1 : 1;
+        return Integer.compare(a.getId(), b.getId());
+    }
+
+    private static String keyOf(KitchenProcess kp) {
+        if (kp.getName() == null)
+            return "";
+        char[] chars = kp.getName().toCharArray();
+        for (int i = 0; i < chars.length; i++) {
+            chars[i] = Character.toLowerCase(chars[i]);
+        }
+        return new String(chars);
+    }
+}
@@ -212,6 +212,8 @@ public class Preparation implements KitchenProcess {
 
         PersistenceManager.executeUpdate(query, name, description);
         id = PersistenceManager.getLastId();
+
+        RecipeBook.getInstance().updatePreparationSaved(this);
         return true;
     }
 
@@ -227,6 +229,8 @@ public class Preparation implements KitchenProcess {
         String query = "UPDATE Preparations SET name = ?, description = ? WHERE id = ?";
 
         int rows = PersistenceManager.executeUpdate(query, name, description, id);
+        if (rows > 0)
+            RecipeBook.getInstance().updatePreparationSaved(this);
         return rows > 0;
     }
 
@@ -236,23 +240,9 @@ public class Preparation implements KitchenProcess {
      * @return List of recipes using this preparation
      */
     public List<Recipe> getUsedInRecipes() {
-        List<Recipe> result = new ArrayList<>();
-
         if (id == 0)
-            return result; // Not in DB
-
-        String query = "SELECT recipe_id FROM RecipePreparations WHERE preparation_id = ?";
-        PersistenceManager.executeQuery(query, new ResultHandler() {
-            @Override
-            public void handle(ResultSet rs) throws SQLException {
-                int recipeId = rs.getInt("recipe_id");
-                Recipe recipe = Recipe.loadRecipe(recipeId);
-                if (recipe != null) {
-                    result.add(recipe);
-                }
-            }
-        }, id); // Pass id as parameter
+            return new ArrayList<>(); // Not in DB
 
-        return result;
+        return RecipeBook.getInstance().getRecipesUsing(id);
     }
 }
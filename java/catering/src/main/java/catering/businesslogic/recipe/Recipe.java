@@ -2,10 +2,14 @@ package catering.businesslogic.recipe;
 
 import catering.persistence.PersistenceManager;
 import catering.persistence.ResultHandler;
+import catering.util.trace.Span;
+import catering.util.trace.Tracer;
 
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.util.*;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.stream.Stream;
 
 /**
  * Recipe represents a complete dish that can be prepared and served.
@@ -17,13 +21,15 @@ public class Recipe implements KitchenProcess {
     private String name;
     private String description;
 
-    private ArrayList<Preparation> preparations; // Associated preparation steps
+    // Associated preparation steps. Copied on write: the RecipeBook replaces
+    // them in recipes other threads may be reading
+    private final CopyOnWriteArrayList<Preparation> preparations = new CopyOnWriteArrayList<>();
+    private final List<Preparation> preparationsView = Collections.unmodifiableList(preparations);
 
     /**
      * Default constructor for loading from DB
      */
     private Recipe() {
-        this.preparations = new ArrayList<>();
     }
 
     /**
@@ -35,7 +41,6 @@ public class Recipe implements KitchenProcess {
         id = 0;
         this.name = name;
         this.description = "";
-        this.preparations = new ArrayList<>();
     }
 
     @Override
@@ -87,9 +92,7 @@ public class Recipe implements KitchenProcess {
      * @param preparation The preparation to add
      */
     public void addPreparation(Preparation preparation) {
-        if (!preparations.contains(preparation)) {
-            preparations.add(preparation);
-        }
+        preparations.addIfAbsent(preparation);
     }
 
     /**
@@ -111,6 +114,28 @@ public class Recipe implements KitchenProcess {
         return new ArrayList<>(preparations);
     }
 
+    /**
+     * @return Read-only view of the preparation steps, without copying them;
+     *         an iteration sees the steps as they were when it started
+     */
+    public List<Preparation> getPreparationsView() {
+        return preparationsView;
+    }
+
+    /**
+     * Replaces the preparation with the same ID as the given one, keeping its
+     * position. Used by the RecipeBook when a preparation is updated.
+     * 
+     * @param preparation The updated preparation
+     */
+    void replacePreparation(Preparation preparation) {
+        for (int i = 0; i < preparations.size(); i++) {
+            if (preparations.get(i).getId() == preparation.getId()) {
+                preparations.set(i, preparation);
+            }
+        }
+    }
+
     @Override
     public String toString() {
         return name;
@@ -122,7 +147,23 @@ public class Recipe implements KitchenProcess {
      * @return List of all recipes
      */
     public static ArrayList<Recipe> loadAllRecipes() {
+        Map<Integer, Preparation> preparations = new HashMap<>();
+        for (Preparation prep : Preparation.loadAllPreparations()) {
+            preparations.put(prep.getId(), prep);
+        }
+        return loadAllRecipes(preparations);
+    }
+
+    /**
+     * Loads all recipes from the database, linking them to the given
+     * preparations instead of loading each preparation separately
+     * 
+     * @param preparations Preparations by ID
+     * @return List of all recipes, sorted by name
+     */
+    static ArrayList<Recipe> loadAllRecipes(Map<Integer, Preparation> preparations) {
         ArrayList<Recipe> recipes = new ArrayList<>();
+        Map<Integer, Recipe> recipesById = new HashMap<>();
 
         String query = "SELECT * FROM Recipes";
         PersistenceManager.executeQuery(query, new ResultHandler() {
@@ -138,13 +179,22 @@ public class Recipe implements KitchenProcess {
                     rec.description = "";
                 }
                 recipes.add(rec);
+                recipesById.put(rec.id, rec);
             }
         });
 
-        // Load preparations for each recipe
-        for (Recipe recipe : recipes) {
-            loadPreparationsForRecipe(recipe);
-        }
+        // Load all recipe-preparation links with a single query
+        String linkQuery = "SELECT recipe_id, preparation_id FROM RecipePreparations";
+        PersistenceManager.executeQuery(linkQuery, new ResultHandler() {
+            @Override
+            public void handle(ResultSet rs) throws SQLException {
+                Recipe rec = recipesById.get(rs.getInt("recipe_id"));
+                Preparation prep = preparations.get(rs.getInt("preparation_id"));
+                if (rec != null && prep != null) {
+                    rec.addPreparation(prep);
+                }
+            }
+        });
 
         // Sort recipes by name
         Collections.sort(recipes, new Comparator<Recipe>() {
@@ -157,6 +207,20 @@ public class Recipe implements KitchenProcess {
         return recipes;
     }
 
+    /**
+     * Streams all recipes with their preparations, sorted by name, reading
+     * one recipe at a time; close the stream after use
+     */
+    public static Stream<Recipe> streamAllRecipes() {
+        return PersistenceManager.stream("SELECT * FROM Recipes ORDER BY name", rs -> {
+            Recipe rec = new Recipe(rs.getString("name"));
+            rec.id = rs.getInt("id");
+            rec.description = rs.getString("description");
+            loadPreparationsForRecipe(rec);
+            return rec;
+        });
+    }
+
     /**
      * Gets all recipes from the database
      * 
@@ -173,32 +237,35 @@ public class Recipe implements KitchenProcess {
      * @return The loaded recipe or null if not found
      */
     public static Recipe loadRecipe(int id) {
-        Recipe[] recHolder = new Recipe[1]; // Use array to allow modification in lambda
-        String query = "SELECT * FROM Recipes WHERE id = ?";
-
-        PersistenceManager.executeQuery(query, new ResultHandler() {
-            @Override
-            public void handle(ResultSet rs) throws SQLException {
-                Recipe rec = new Recipe();
-                rec.name = rs.getString("name");
-                rec.id = id;
-                // Load additional properties if they exist in DB
-                try {
-                    rec.description = rs.getString("description");
-                } catch (SQLException e) {
-                    rec.description = "";
+        try (Span span = Tracer.start("Recipe.loadRecipe", "load").arg("id", id)) {
+            Recipe[] recHolder = new Recipe[1]; // Use array to allow modification in lambda
+            String query = "SELECT * FROM Recipes WHERE id = ?";
+
+            PersistenceManager.executeQuery(query, new ResultHandler() {
+                @Override
+                public void handle(ResultSet rs) throws SQLException {
+                    Recipe rec = new Recipe();
+                    rec.name = rs.getString("name");
+                    rec.id = id;
+                    // Load additional properties if they exist in DB
+                    try {
+                        rec.description = rs.getString("description");
+                    } catch (SQLException e) {
+                        rec.description = "";
+                    }
+                    recHolder[0] = rec;
                 }
-                recHolder[0] = rec;
+            }, id); // Pass id as parameter
+
+            // Load preparations for this recipe
+            Recipe recipe = recHolder[0];
+            if (recipe != null) {
+                loadPreparationsForRecipe(recipe);
             }
-        }, id); // Pass id as parameter
 
-        // Load preparations for this recipe
-        Recipe recipe = recHolder[0];
-        if (recipe != null) {
-            loadPreparationsForRecipe(recipe);
+            span.arg("found", recipe != null);
+            return recipe;
         }
-
-        return recipe;
     }
 
     /**
@@ -208,32 +275,35 @@ public class Recipe implements KitchenProcess {
      * @return The loaded recipe or null if not found
      */
     public static Recipe loadRecipe(String name) {
-        Recipe[] recHolder = new Recipe[1]; // Use array to allow modification in lambda
-        String query = "SELECT * FROM Recipes WHERE name = ?";
-
-        PersistenceManager.executeQuery(query, new ResultHandler() {
-            @Override
-            public void handle(ResultSet rs) throws SQLException {
-                Recipe rec = new Recipe();
-                rec.name = rs.getString("name");
-                rec.id = rs.getInt("id");
-
-                try {
-                    rec.description = rs.getString("description");
-                } catch (SQLException e) {
-                    rec.description = "";
+        try (Span span = Tracer.start("Recipe.loadRecipe", "load").arg("name", name)) {
+            Recipe[] recHolder = new Recipe[1]; // Use array to allow modification in lambda
+            String query = "SELECT * FROM Recipes WHERE name = ?";
+
+            PersistenceManager.executeQuery(query, new ResultHandler() {
+                @Override
+                public void handle(ResultSet rs) throws SQLException {
+                    Recipe rec = new Recipe();
+                    rec.name = rs.getString("name");
+                    rec.id = rs.getInt("id");
+
+                    try {
+                        rec.description = rs.getString("description");
+                    } catch (SQLException e) {
+                        rec.description = "";
+                    }
+                    recHolder[0] = rec;
                 }
-                recHolder[0] = rec;
+            }, name); // Pass name as parameter
+
+            // Load preparations for this recipe
+            Recipe recipe = recHolder[0];
+            if (recipe != null) {
+                loadPreparationsForRecipe(recipe);
             }
-        }, name); // Pass name as parameter
 
-        // Load preparations for this recipe
-        Recipe recipe = recHolder[0];
-        if (recipe != null) {
-            loadPreparationsForRecipe(recipe);
+            span.arg("found", recipe != null);
+            return recipe;
         }
-
-        return recipe;
     }
 
     /**
@@ -272,6 +342,7 @@ public class Recipe implements KitchenProcess {
         // Save recipe-preparation relationships
         savePreparationRelationships();
 
+        RecipeBook.getInstance().updateRecipeSaved(this);
         return true;
     }
 
@@ -291,6 +362,8 @@ public class Recipe implements KitchenProcess {
         // Update recipe-preparation relationships
         savePreparationRelationships();
 
+        if (rows > 0)
+            RecipeBook.getInstance().updateRecipeSaved(this);
         return rows > 0;
     }
 
@@ -0,0 +1,296 @@
+package catering.businesslogic.recipe;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Set;
+import java.util.TreeMap;
+
+/**
+ * RecipeBook is the in-memory copy of all recipes and preparations, shared by
+ * every user of the system.
+ * <p>
+ * The book is loaded from the database on first access and then kept up to
+ * date by {@link Recipe#save()}, {@link Recipe#update()},
+ * {@link Preparation#save()} and {@link Preparation#update()}. Entries are
+ * kept sorted by name, and readers receive immutable snapshot lists that are
+ * rebuilt only after a change, so the same list can be handed to any number
+ * of callers and threads. A {@link KitchenProcessNameIndex} over the same
+ * entries answers name completions, and a reverse index from preparations to
+ * the recipes that use them answers {@link Preparation#getUsedInRecipes()}.
+ */
+public class RecipeBook {
+
+    private static class Holder {
+        private static final RecipeBook INSTANCE = new RecipeBook();
+    }
+
+    public static RecipeBook getInstance() {
+        return Holder.INSTANCE;
+    }
+
+    /**
+     * Immutable sort key: the book cannot be keyed by the entities themselves
+     * because their name may change before they are saved again.
+     */
+    private static final class SortKey implements Comparable<SortKey> {
+        private final String name;
+        private final int id;
+
+        SortKey(KitchenProcess kp) {
+            this.name = kp.getName();
+            this.id = kp.getId();
+        }
+
+        @Override
+        public int compareTo(SortKey other) {
+            if (name == null || other.name == null) {
+                if (name != other.name)
+                    return name == null ? -1 : 1;
+            } else {
+                int byName = name.compareTo(other.name);
+                if (byName != 0)
+                    return byName;
+            }
+            return Integer.compare(id, other.id);
+        }
+    }
+
+    private final NavigableMap<SortKey, Recipe> recipes = new TreeMap<>();
+    private final Map<Integer, SortKey> recipeKeys = new HashMap<>();
+    private final NavigableMap<SortKey, Preparation> preparations = new TreeMap<>();
+    private final Map<Integer, SortKey> preparationKeys = new HashMap<>();
+
+    private final KitchenProcessNameIndex names = new KitchenProcessNameIndex();
+    private final Map<Integer, Set<Integer>> recipesByPreparation = new HashMap<>();
+    private final Map<Integer, Set<Integer>> preparationsByRecipe = new HashMap<>();
+
+    private volatile boolean loaded;
+    private volatile List<Recipe> recipeSnapshot;
+    private volatile List<Preparation> preparationSnapshot;
+
+    private RecipeBook() {
+    }
+
+    /**
+     * Gets all recipes, sorted by name
+     *
+     * @return Immutable snapshot of the recipes
+     */
+    public List<Recipe> getRecipes() {
+        List<Recipe> snapshot = recipeSnapshot;
+        if (snapshot == null) {
+            synchronized (this) {
+                ensureLoaded();
+                snapshot = recipeSnapshot;
+                if (snapshot == null) {
+                    snapshot = Collections.unmodifiableList(new ArrayList<>(recipes.values()));
+                    recipeSnapshot = snapshot;
+                }
+            }
+        }
+        return snapshot;
+    }
+
+    /**
+     * Gets all preparations, sorted by name
+     *
+     * @return Immutable snapshot of the preparations
+     */
+    public List<Preparation> getPreparations() {
+        List<Preparation> snapshot = preparationSnapshot;
+        if (snapshot == null) {
+            synchronized (this) {
+                ensureLoaded();
+                snapshot = preparationSnapshot;
+                if (snapshot == null) {
+                    snapshot = Collections.unmodifiableList(new ArrayList<>(preparations.values()));
+                    preparationSnapshot = snapshot;
+                }
+            }
+        }
+        return snapshot;
+    }
+
+    /**
+     * Finds a recipe by its ID
+     *
+     * @param id The recipe ID
+     * @return The recipe, or null if it is not in the book
+     */
+    public synchronized Recipe getRecipe(int id) {
+        ensureLoaded();
+        SortKey key = recipeKeys.get(id);
+        return key == null ? null : recipes.get(key);
+    }
+
+    /**
+     * Finds a preparation by its ID
+     *
+     * @param id The preparation ID
+     * @return The preparation, or null if it is not in the book
+     */
+    public synchronized Preparation getPreparation(int id) {
+        ensureLoaded();
+        SortKey key = preparationKeys.get(id);
+        return key == null ? null : preparations.get(key);
+    }
+
+    /**
+     * Finds the recipes that include a preparation
+     *
+     * @param preparationId The preparation ID
+     * @return The recipes, sorted by name
+     */
+    public synchronized List<Recipe> getRecipesUsing(int preparationId) {
+        ensureLoaded();
+        List<Recipe> result = new ArrayList<>();
+        Set<Integer> ids = recipesByPreparation.get(preparationId);
+        if (ids == null)
+            return result;
+        for (int recipeId : ids) {
+            result.add(recipes.get(recipeKeys.get(recipeId)));
+        }
+        result.sort((a, b) -> recipeKeys.get(a.getId()).compareTo(recipeKeys.get(b.getId())));
+        return result;
+    }
+
+    /**
+     * Finds the IDs of the recipes that include a preparation
+     *
+     * @param preparationId The preparation ID
+     * @return Immutable set of recipe IDs
+     */
+    public synchronized Set<Integer> getRecipeIdsUsing(int preparationId) {
+        ensureLoaded();
+        Set<Integer> ids = recipesByPreparation.get(preparationId);
+        return ids == null ? Collections.<Integer>emptySet() : Collections.unmodifiableSet(new HashSet<>(ids));
+    }
+
+    /**
+     * Completes a recipe or preparation name, allocating only the
+     * lower-cased prefix
+     *
+     * @param prefix      Text typed so far, case is ignored
+     * @param results     Destination array, sized for the wanted number of
+     *                    completions
+     * @param recipesOnly true to skip preparations
+     * @return Number of completions written into {@code results}
+     */
+    public int completeName(CharSequence prefix, KitchenProcess[] results, boolean recipesOnly) {
+        if (!loaded) {
+            synchronized (this) {
+                ensureLoaded();
+            }
+        }
+        return names.complete(prefix, results, recipesOnly);
+    }
+
+    /**
+     * Drops the in-memory copy; the book is reloaded from the database on next
+     * access. Needed when the database is reinitialized behind our back.
+     */
+    public synchronized void invalidate() {
+        recipes.clear();
+        recipeKeys.clear();
+        preparations.clear();
+        preparationKeys.clear();
+        recipesByPreparation.clear();
+        preparationsByRecipe.clear();
+        names.rebuild(Collections.<KitchenProcess>emptyList());
+        loaded = false;
+        recipeSnapshot = null;
+        preparationSnapshot = null;
+    }
+
+    synchronized void updateRecipeSaved(Recipe rec) {
+        if (!loaded || rec.getId() == 0)
+            return;
+        SortKey old = recipeKeys.remove(rec.getId());
+        if (old != null)
+            recipes.remove(old);
+        unlinkPreparations(rec.getId());
+        SortKey key = new SortKey(rec);
+        recipes.put(key, rec);
+        recipeKeys.put(rec.getId(), key);
+        linkPreparations(rec);
+        recipeSnapshot = null;
+        names.put(rec);
+    }
+
+    synchronized void updatePreparationSaved(Preparation prep) {
+        if (!loaded || prep.getId() == 0)
+            return;
+        SortKey old = preparationKeys.remove(prep.getId());
+        if (old != null)
+            preparations.remove(old);
+        SortKey key = new SortKey(prep);
+        preparations.put(key, prep);
+        preparationKeys.put(prep.getId(), key);
+        preparationSnapshot = null;
+        names.put(prep);
+
+        // Recipes must see the updated preparation, not the one loaded earlier.
+        // Their lists are copied on write: readers keep iterating the old one.
+        if (old != null) {
+            for (int recipeId : getRecipeIdsUsing(prep.getId())) {
+                recipes.get(recipeKeys.get(recipeId)).replacePreparation(prep);
+            }
+        }
+    }
+
+    private void linkPreparations(Recipe rec) {
+        Set<Integer> linked = new HashSet<>();
+        for (Preparation prep : rec.getPreparations()) {
+            if (prep.getId() != 0) {
+                recipesByPreparation.computeIfAbsent(prep.getId(), k -> new HashSet<>()).add(rec.getId());
+                linked.add(prep.getId());
+            }
+        }
+        preparationsByRecipe.put(rec.getId(), linked);
+    }
+
+    // The recipe object may already hold its new preparations, so the old
+    // links are taken from the forward map
+    private void unlinkPreparations(int recipeId) {
+        Set<Integer> linked = preparationsByRecipe.remove(recipeId);
+        if (linked == null)
+            return;
+        for (int prepId : linked) {
+            Set<Integer> ids = recipesByPreparation.get(prepId);
+            if (ids != null) {
+                ids.remove(recipeId);
+                if (ids.isEmpty())
+                    recipesByPreparation.remove(prepId);
+            }
+        }
+    }
+
+    private void ensureLoaded() {
+        if (loaded)
+            return;
+
+        Map<Integer, Preparation> byId = new HashMap<>();
+        for (Preparation prep : Preparation.loadAllPreparations()) {
+            SortKey key = new SortKey(prep);
+            preparations.put(key, prep);
+            preparationKeys.put(prep.getId(), key);
+            byId.put(prep.getId(), prep);
+        }
+        for (Recipe rec : Recipe.loadAllRecipes(byId)) {
+            SortKey key = new SortKey(rec);
+            recipes.put(key, rec);
+            recipeKeys.put(rec.getId(), key);
+            linkPreparations(rec);
+        }
+
+        List<KitchenProcess> all = new ArrayList<>(recipes.values());
+        all.addAll(preparations.values());
+        names.rebuild(all);
+        loaded = true;
+    }
+}
@@ -1,10 +1,108 @@
 package catering.businesslogic.recipe;
 
-import java.util.ArrayList;
+import java.util.List;
+
+import catering.util.Instrument;
 
 public class RecipeManager {
 
-    public ArrayList<Recipe> getRecipeBook() {
-        return Recipe.getAllRecipes();
+    /**
+     * Gets the recipe book, sorted by recipe name
+     *
+     * @return Immutable snapshot of all recipes
+     */
+    public List<Recipe> getRecipeBook() {
+        return RecipeBook.getInstance().getRecipes();
+    }
+
+    /**
+     * Finds a recipe of the recipe book by its ID
+     *
+     * @param id The recipe ID
+     * @return The recipe, or null if there is none with that ID
+     */
+    public Recipe getRecipe(int id) {
+        return RecipeBook.getInstance().getRecipe(id);
+    }
+
+    /**
+     * Gets all preparations, sorted by name
+     *
+     * @return Immutable snapshot of all preparations
+     */
+    public List<Preparation> getPreparations() {
+        return RecipeBook.getInstance().getPreparations();
+    }
+
+    /**
+     * Completes a recipe name for menu composition. Answered from memory,
+     * allocating only the lower-cased prefix, so it can run on every
+     * keystroke.
+     *
+     * @param prefix  Text typed so far, case is ignored
+     * @param results Destination array; its length is the number of
+     *                completions wanted
+     * @return Number of recipes written into {@code results}, in name order
+     */
+    public int completeRecipeName(CharSequence prefix, KitchenProcess[] results) {
+        return Instrument.call("RecipeManager.completeRecipeName", () -> doCompleteRecipeName(prefix, results));
+    }
+
+    private int doCompleteRecipeName(CharSequence prefix, KitchenProcess[] results) {
+        return RecipeBook.getInstance().completeName(prefix, results, true);
+    }
+
+    /**
+     * Like {@link #completeRecipeName(CharSequence, KitchenProcess[])}, also
+     * returning preparations
+     */
+    public int completeName(CharSequence prefix, KitchenProcess[] results) {
+        return Instrument.call("RecipeManager.completeName", () -> doCompleteName(prefix, results));
+    }
+
+    private int doCompleteName(CharSequence prefix, KitchenProcess[] results) {
+        return RecipeBook.getInstance().completeName(prefix, results, false);
+    }
+
+    /**
+     * Full-text search over recipe and preparation names and descriptions,
+     * answered by the database without loading the recipe book
+     *
+     * @param text     Word fragments to look for, e.g. "ragu bol"
+     * @param page     Page number, starting from 0
+     * @param pageSize Results per page
+     * @return One page of results, best match first
+     */
+    public List<SearchResult> search(String text, int page, int pageSize) {
+        return Instrument.call("RecipeManager.search", () -> doSearch(text, page, pageSize));
+    }
+
+    private List<SearchResult> doSearch(String text, int page, int pageSize) {
+        return SearchResult.search(text, false, page * pageSize, pageSize);
+    }
+
+    /**
+     * Like {@link #search(String, int, int)}, restricted to recipes
+     */
+    public List<SearchResult> searchRecipes(String text, int page, int pageSize) {
+        return Instrument.call("RecipeManager.searchRecipes", () -> doSearchRecipes(text, page, pageSize));
+    }
+
+    private List<SearchResult> doSearchRecipes(String text, int page, int pageSize) {
+        return SearchResult.search(text, true, page * pageSize, pageSize);
+    }
+
+    /**
+     * Counts all results of {@link #search(String, int, int)}, for paging
+     *
+     * @param text Word fragments to look for
+     * @return Number of matching recipes and preparations
+     */
+    public int countSearchResults(String text) {
+        return Instrument.call("RecipeManager.countSearchResults", () -> doCountSearchResults(text));
+    }
+
+    private int doCountSearchResults(String text) {
+        return SearchResult.count(text, false);
     }
 }
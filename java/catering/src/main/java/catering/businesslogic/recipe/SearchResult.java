@@ -0,0 +1,142 @@
+package catering.businesslogic.recipe;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+
+import catering.persistence.PersistenceManager;
+import catering.persistence.ResultHandler;
+
+/**
+ * SearchResult is one hit of a full-text search over recipes and
+ * preparations. It carries only what a result list needs to display; the
+ * full Recipe or Preparation can be loaded from its ID when chosen.
+ */
+public class SearchResult {
+
+    /**
+     * Searches the full-text index (KitchenProcessSearch) for recipes and
+     * preparations whose name or description contains words starting with
+     * each fragment of the given text. Name matches rank higher than
+     * description matches.
+     *
+     * @param text        Fragments typed by the user, e.g. "carbon spagh"
+     * @param recipesOnly true to leave preparations out of the results
+     * @param offset      Number of results to skip
+     * @param limit       Maximum number of results to return
+     * @return Results ordered by relevance, best first
+     */
+    public static List<SearchResult> search(String text, boolean recipesOnly, int offset, int limit) {
+        List<SearchResult> results = new ArrayList<>();
+        String match = toMatchExpression(text);
+        if (match.isEmpty() || limit <= 0)
+            return results;
+
+        String query = "SELECT rowid, name, description, bm25(KitchenProcessSearch, 10.0, 1.0) AS score "
+                + "FROM KitchenProcessSearch WHERE KitchenProcessSearch MATCH ? "
+                + (recipesOnly ? "AND rowid % 2 = 0 " : "")
+                + "ORDER BY score LIMIT ? OFFSET ?";
+
+        PersistenceManager.executeQuery(query, new ResultHandler() {
+            @Override
+            public void handle(ResultSet rs) throws SQLException {
+                long rowid = rs.getLong("rowid");
+                SearchResult r = new SearchResult();
+                r.id = (int) (rowid / 2);
+                r.recipe = (rowid % 2 == 0);
+                r.name = rs.getString("name");
+                r.description = rs.getString("description");
+                r.score = -rs.getDouble("score"); // bm25 is lower for better matches
+                results.add(r);
+            }
+        }, match, limit, Math.max(offset, 0));
+
+        return results;
+    }
+
+    /**
+     * Counts the results of {@link #search(String, boolean, int, int)}
+     *
+     * @param text        Fragments typed by the user
+     * @param recipesOnly true to leave preparations out of the count
+     * @return Total number of matching recipes and preparations
+     */
+    public static int count(String text, boolean recipesOnly) {
+        String match = toMatchExpression(text);
+        if (match.isEmpty())
+            return 0;
+
+        int[] count = new int[1];
+        String query = "SELECT COUNT(*) FROM KitchenProcessSearch WHERE KitchenProcessSearch MATCH ?"
+                + (recipesOnly ? " AND rowid % 2 = 0" : "");
+        PersistenceManager.executeQuery(query, new ResultHandler() {
+            @Override
+            public void handle(ResultSet rs) throws SQLException {
+                count[0] = rs.getInt(1);
+            }
+        }, match);
+        return count[0];
+    }
+
+    /**
+     * Turns free text into an FTS5 query: every word becomes a quoted prefix
+     * term, and all terms must match.
+     */
+    static String toMatchExpression(String text) {
+        if (text == null)
+            return "";
+        StringBuilder sb = new StringBuilder();
+        for (String word : text.split("[^\\p{L}\\p{N}]+")) {
+            if (word.isEmpty())
+                continue;
+            if (sb.length() > 0)
+                sb.append(' ');
+            sb.append('"').append(word).append("\"*");
+        }
+        return sb.toString();
+    }
+
+    private int id;
+    private boolean recipe;
+    private String name;
+    private String description;
+    private double score;
+
+    private SearchResult() {
+    }
+
+    /**
+     * @return ID of the matching Recipe or Preparation
+     */
+    public int getId() {
+        return id;
+    }
+
+    /**
+     * @return true if the hit is a Recipe, false if it is a Preparation
+     */
+    public boolean isRecipe() {
+        return recipe;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public String getDescription() {
+        return description;
+    }
+
+    /**
+     * @return Relevance of the hit; higher is better
+     */
+    public double getScore() {
+        return score;
+    }
+
+    @Override
+    public String toString() {
+        return (recipe ? "Recipe " : "Preparation ") + id + ": " + name;
+    }
+}
@@ -1,13 +1,18 @@
 package catering.businesslogic.shift;
 
 import catering.businesslogic.user.User;
+import catering.persistence.DirtyFields;
+import catering.persistence.Page;
 import catering.persistence.PersistenceManager;
+import catering.persistence.Projection;
 import catering.persistence.ResultHandler;
+import catering.persistence.Temporals;
 
 import java.sql.*;
 import java.util.ArrayList;
 import java.util.HashSet;
 import java.util.Set;
+import java.util.stream.Stream;
 
 public class Shift {
 
@@ -16,6 +21,7 @@ public class Shift {
     private Time startTime;
     private Time endTime;
     private Set<User> bookedUsers;
+    private final DirtyFields dirty = new DirtyFields();
 
     private Shift() {
         bookedUsers = new HashSet<>();
@@ -30,12 +36,16 @@ public class Shift {
 
     /**
      * Sets the ID of this shift.
-     * Used when updating an existing shift.
+     * Used when updating an existing shift: all the fields of this one are
+     * written on the next update.
      * 
      * @param id The ID to set
      */
     public void setId(int id) {
         this.id = id;
+        dirty.put("date", Temporals.toEpochDay(date));
+        dirty.put("start_time", Temporals.toMinuteOfDay(startTime));
+        dirty.put("end_time", Temporals.toMinuteOfDay(endTime));
     }
 
     /**
@@ -44,6 +54,7 @@ public class Shift {
      * @param endTime The new end time
      */
     public void setEndTime(Time endTime) {
+        dirty.mark("end_time", Temporals.toMinuteOfDay(this.endTime), Temporals.toMinuteOfDay(endTime));
         this.endTime = endTime;
     }
 
@@ -54,55 +65,80 @@ public class Shift {
     }
 
     public static ArrayList<Shift> loadAllShifts() {
-        String query = "SELECT * FROM Shifts";
-        ArrayList<Shift> shiftArrayList = new ArrayList<>();
+        return loadShifts("SELECT * FROM Shifts ORDER BY date, start_time");
+    }
 
+    /**
+     * Loads the shifts of one day, by start time
+     */
+    public static ArrayList<Shift> loadShiftsForDate(Date date) {
+        return loadShifts("SELECT * FROM Shifts WHERE date = ? ORDER BY start_time", Temporals.toEpochDay(date));
+    }
+
+    private static ArrayList<Shift> loadShifts(String query, Object... params) {
+        ArrayList<Shift> shiftArrayList = new ArrayList<>();
 
         PersistenceManager.executeQuery(query, new ResultHandler() {
             @Override
             public void handle(ResultSet rs) throws SQLException {
-                Shift s = new Shift();
-                s.id = rs.getInt("id");
-
-                // Use safe date/time handling for SQLite
-                try {
-                    String dateStr = rs.getString("date");
-                    if (dateStr != null && !dateStr.isEmpty()) {
-                        s.date = Date.valueOf(dateStr);
-                    }
-
-                    String startTimeStr = rs.getString("start_time");
-                    if (startTimeStr != null && !startTimeStr.isEmpty()) {
-                        s.startTime = Time.valueOf(startTimeStr);
-                    }
-
-                    String endTimeStr = rs.getString("end_time");
-                    if (endTimeStr != null && !endTimeStr.isEmpty()) {
-                        s.endTime = Time.valueOf(endTimeStr);
-                    }
-                } catch (IllegalArgumentException ex) {
-                }
-
+                Shift s = fromRow(rs);
                 s.bookedUsers = loadBookings(s);
                 shiftArrayList.add(s);
             }
-        });
+        }, params);
+
+        return shiftArrayList;
+    }
 
-        // Sort the shifts by date and time
-        shiftArrayList.sort((a, b) -> {
-            if (a.getDate().before(b.getDate()))
-                return -1;
-            else if (a.getDate().after(b.getDate()))
-                return 1;
-            else if (a.getStartTime().before(b.getStartTime()))
-                return -1;
-            else if (a.getStartTime().after(b.getStartTime()))
-                return 1;
-            else
-                return 0;
+    /**
+     * Streams all shifts with their bookings, by date and start time, reading
+     * one shift at a time; close the stream after use
+     */
+    public static Stream<Shift> streamAllShifts() {
+        String query = "SELECT * FROM Shifts ORDER BY date, start_time";
+        return PersistenceManager.stream(query, rs -> {
+            Shift s = fromRow(rs);
+            s.bookedUsers = loadBookings(s);
+            return s;
         });
+    }
 
-        return shiftArrayList;
+    /**
+     * Loads one page of the shift table, by date and start time
+     * 
+     * @param after      Last shift of the previous page, or null for the first
+     *                   page
+     * @param pageSize   Shifts per page
+     * @param projection HEADER leaves the bookings empty
+     * @return The shifts after {@code after}
+     */
+    public static Page<Shift> loadPage(Shift after, int pageSize, Projection projection) {
+        Page<Shift> page;
+        if (after == null) {
+            page = PersistenceManager.queryPage("SELECT * FROM Shifts ORDER BY date, start_time, id",
+                    pageSize, Shift::fromRow);
+        } else {
+            page = PersistenceManager.queryPage(
+                    "SELECT * FROM Shifts WHERE (date, start_time, id) > (?, ?, ?) ORDER BY date, start_time, id",
+                    pageSize, Shift::fromRow, Temporals.toEpochDay(after.date), Temporals.toMinuteOfDay(after.startTime),
+                    after.id);
+        }
+
+        if (projection == Projection.FULL) {
+            for (Shift s : page.getItems()) {
+                s.bookedUsers = loadBookings(s);
+            }
+        }
+        return page;
+    }
+
+    private static Shift fromRow(ResultSet rs) throws SQLException {
+        Shift s = new Shift();
+        s.id = rs.getInt("id");
+        s.date = Temporals.getDate(rs, "date");
+        s.startTime = Temporals.getTime(rs, "start_time");
+        s.endTime = Temporals.getTime(rs, "end_time");
+        return s;
     }
 
     public static Shift loadItemById(int id) {
@@ -113,29 +149,7 @@ public class Shift {
         PersistenceManager.executeQuery(query, new ResultHandler() {
             @Override
             public void handle(ResultSet rs) throws SQLException {
-                Shift s = new Shift();
-                s.id = rs.getInt("id");
-
-                // Use safe date/time handling for SQLite
-                try {
-                    String dateStr = rs.getString("date");
-                    if (dateStr != null && !dateStr.isEmpty()) {
-                        s.date = Date.valueOf(dateStr);
-                    }
-
-                    String startTimeStr = rs.getString("start_time");
-                    if (startTimeStr != null && !startTimeStr.isEmpty()) {
-                        s.startTime = Time.valueOf(startTimeStr);
-                    }
-
-                    String endTimeStr = rs.getString("end_time");
-                    if (endTimeStr != null && !endTimeStr.isEmpty()) {
-                        s.endTime = Time.valueOf(endTimeStr);
-                    }
-                } catch (IllegalArgumentException ex) {
-                }
-
-                shiftHolder[0] = s;
+                shiftHolder[0] = fromRow(rs);
             }
         }, id); // Pass id as parameter
 
@@ -176,9 +190,9 @@ public class Shift {
         String query = "INSERT INTO Shifts (date, start_time, end_time) VALUES (?, ?, ?)";
 
         PersistenceManager.executeUpdate(query,
-                s.date,
-                s.startTime,
-                s.endTime);
+                Temporals.toEpochDay(s.date),
+                Temporals.toMinuteOfDay(s.startTime),
+                Temporals.toMinuteOfDay(s.endTime));
 
         s.id = PersistenceManager.getLastId();
 
@@ -194,26 +208,23 @@ public class Shift {
 
         String query = "INSERT INTO Shifts (date, start_time, end_time) VALUES (?, ?, ?)";
         PersistenceManager.executeUpdate(query,
-                date.toString(),
-                startTime.toString(),
-                endTime.toString());
+                Temporals.toEpochDay(date),
+                Temporals.toMinuteOfDay(startTime),
+                Temporals.toMinuteOfDay(endTime));
 
         this.id = PersistenceManager.getLastId();
+        dirty.clear();
     }
 
-    // Update an existing shift
+    // Update the fields of an existing shift changed since it was loaded or
+    // last written
     public void updateShift() {
         if (this.id <= 0) {
             saveShift(); // If no id, insert instead of update
             return;
         }
 
-        String query = "UPDATE Shifts SET date = ?, start_time = ?, end_time = ? WHERE id = ?";
-        PersistenceManager.executeUpdate(query,
-                date.toString(),
-                startTime.toString(),
-                endTime.toString(),
-                this.id);
+        dirty.update("Shifts", this.id);
     }
 
     // Save a booking to the database
@@ -1,6 +1,9 @@
 package catering.businesslogic.shift;
 
 import catering.businesslogic.user.User;
+import catering.persistence.Page;
+import catering.persistence.Projection;
+import catering.util.Instrument;
 
 import java.sql.Date;
 import java.sql.Time;
@@ -10,37 +13,61 @@ import java.util.Set;
 
 public class ShiftManager {
 
-    public ShiftManager() {
-        Shift.loadAllShifts();
-    }
-
     public ArrayList<Shift> getShiftTable() {
         return Shift.getShiftTable();
     }
 
+    public Page<Shift> getShiftTable(Shift after, int pageSize, Projection projection) {
+        return Instrument.call("ShiftManager.getShiftTable", () -> doGetShiftTable(after, pageSize, projection));
+    }
+
+    private Page<Shift> doGetShiftTable(Shift after, int pageSize, Projection projection) {
+        return Shift.loadPage(after, pageSize, projection);
+    }
+
     public boolean isAvailable(User u, Shift s) {
         return !s.isBooked(u);
     }
 
     public Shift createShift(Date date, Time startTime, Time endTime) {
+        return Instrument.call("ShiftManager.createShift", () -> doCreateShift(date, startTime, endTime));
+    }
+
+    private Shift doCreateShift(Date date, Time startTime, Time endTime) {
         return Shift.createShift(date, startTime, endTime);
     }
 
     public Shift loadShiftById(int id) {
+        return Instrument.call("ShiftManager.loadShiftById", () -> doLoadShiftById(id));
+    }
+
+    private Shift doLoadShiftById(int id) {
         return Shift.loadItemById(id);
     }
 
     public void updateShift(Shift shift) {
+        Instrument.run("ShiftManager.updateShift", () -> doUpdateShift(shift));
+    }
+
+    private void doUpdateShift(Shift shift) {
         shift.updateShift();
     }
 
     public void bookUserForShift(Shift shift, User user) {
+        Instrument.run("ShiftManager.bookUserForShift", () -> doBookUserForShift(shift, user));
+    }
+
+    private void doBookUserForShift(Shift shift, User user) {
         if (isAvailable(user, shift)) {
             shift.addBooking(user);
         }
     }
 
     public User removeUserFromShift(Shift shift, User user) {
+        return Instrument.call("ShiftManager.removeUserFromShift", () -> doRemoveUserFromShift(shift, user));
+    }
+
+    private User doRemoveUserFromShift(Shift shift, User user) {
         return shift.removeBookedUser(user);
     }
 
@@ -49,12 +76,10 @@ public class ShiftManager {
     }
 
     public List<Shift> getShiftsForDate(Date date) {
-        List<Shift> dateShifts = new ArrayList<>();
-        for (Shift shift : getShiftTable()) {
-            if (shift.getDate().equals(date)) {
-                dateShifts.add(shift);
-            }
-        }
-        return dateShifts;
+        return Instrument.call("ShiftManager.getShiftsForDate", () -> doGetShiftsForDate(date));
+    }
+
+    private List<Shift> doGetShiftsForDate(Date date) {
+        return Shift.loadShiftsForDate(date);
     }
 }
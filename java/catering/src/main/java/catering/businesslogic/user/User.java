@@ -2,12 +2,15 @@ package catering.businesslogic.user;
 
 import catering.persistence.PersistenceManager;
 import catering.persistence.ResultHandler;
+import catering.util.trace.Span;
+import catering.util.trace.Tracer;
 
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.util.ArrayList;
 import java.util.HashSet;
 import java.util.Set;
+import java.util.stream.Stream;
 
 public class User {
 
@@ -114,39 +117,45 @@ public class User {
     // STATIC METHODS FOR PERSISTENCE
 
     public static User load(int uid) {
-        User load = new User();
-        String userQuery = "SELECT * FROM Users WHERE id = ?";
+        try (Span span = Tracer.start("User.load", "load").arg("id", uid)) {
+            User load = new User();
+            String userQuery = "SELECT * FROM Users WHERE id = ?";
+
+            PersistenceManager.executeQuery(userQuery, new ResultHandler() {
+                @Override
+                public void handle(ResultSet rs) throws SQLException {
+                    load.id = rs.getInt("id");
+                    load.username = rs.getString("username");
+                }
+            }, uid); // Pass uid as parameter
 
-        PersistenceManager.executeQuery(userQuery, new ResultHandler() {
-            @Override
-            public void handle(ResultSet rs) throws SQLException {
-                load.id = rs.getInt("id");
-                load.username = rs.getString("username");
+            if (load.id > 0) {
+                loadRolesForUser(load);
             }
-        }, uid); // Pass uid as parameter
-
-        if (load.id > 0) {
-            loadRolesForUser(load);
+            span.arg("found", load.id > 0);
+            return load;
         }
-        return load;
     }
 
     public static User load(String username) {
-        User u = new User();
-        String userQuery = "SELECT * FROM Users WHERE username = ?";
+        try (Span span = Tracer.start("User.load", "load").arg("username", username)) {
+            User u = new User();
+            String userQuery = "SELECT * FROM Users WHERE username = ?";
+
+            PersistenceManager.executeQuery(userQuery, new ResultHandler() {
+                @Override
+                public void handle(ResultSet rs) throws SQLException {
+                    u.id = rs.getInt("id");
+                    u.username = rs.getString("username");
+                }
+            }, username); // Pass username as parameter
 
-        PersistenceManager.executeQuery(userQuery, new ResultHandler() {
-            @Override
-            public void handle(ResultSet rs) throws SQLException {
-                u.id = rs.getInt("id");
-                u.username = rs.getString("username");
+            if (u.id > 0) {
+                loadRolesForUser(u);
             }
-        }, username); // Pass username as parameter
-
-        if (u.id > 0) {
-            loadRolesForUser(u);
+            span.arg("found", u.id > 0);
+            return u;
         }
-        return u;
     }
 
     public static ArrayList<User> loadAllUsers() {
@@ -169,6 +178,20 @@ public class User {
         return users;
     }
 
+    /**
+     * Streams all users with their roles, reading one user at a time; close
+     * the stream after use
+     */
+    public static Stream<User> streamAllUsers() {
+        return PersistenceManager.stream("SELECT * FROM Users", rs -> {
+            User u = new User();
+            u.id = rs.getInt("id");
+            u.username = rs.getString("username");
+            loadRolesForUser(u);
+            return u;
+        });
+    }
+
     // Helper method to load roles for a user
     private static void loadRolesForUser(User u) {
         String roleQuery = "SELECT * FROM UserRoles WHERE user_id = ?";
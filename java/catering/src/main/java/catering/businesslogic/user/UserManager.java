@@ -1,23 +1,27 @@
 package catering.businesslogic.user;
 
+import catering.businesslogic.Session;
 import catering.businesslogic.UseCaseLogicException;
+import catering.util.Instrument;
 
 public class UserManager {
 
-    private User currentUser;
-
     public void fakeLogin(String username) throws UseCaseLogicException {
-        this.currentUser = User.load(username);
-        if (this.currentUser == null) {
+        Instrument.run("UserManager.fakeLogin", () -> doFakeLogin(username));
+    }
+
+    private void doFakeLogin(String username) throws UseCaseLogicException {
+        setCurrentUser(User.load(username));
+        if (getCurrentUser() == null) {
             throw new UseCaseLogicException("User not found");
         }
     }
 
     public User getCurrentUser() {
-        return this.currentUser;
+        return Session.current().getUser();
     }
 
     public void setCurrentUser(User user) {
-        this.currentUser = user;
+        Session.current().setUser(user);
     }
 }
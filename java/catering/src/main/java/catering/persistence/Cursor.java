@@ -0,0 +1,83 @@
+package catering.persistence;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.function.Consumer;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import catering.util.LogManager;
+
+/**
+ * Cursor walks an open result set one row at a time for
+ * {@link PersistenceManager#stream}, and closes the result set, statement and
+ * connection when the rows run out, a row fails or the stream is closed.
+ */
+class Cursor<T> extends Spliterators.AbstractSpliterator<T> implements Runnable {
+
+    private static final Logger LOGGER = LogManager.getLogger(Cursor.class);
+
+    private final String query;
+    private final Connection conn;
+    private final PreparedStatement ps;
+    private final ResultSet rs;
+    private final RowMapper<T> mapper;
+    private final QueryMonitor.Timing timing;
+    private boolean closed;
+
+    Cursor(String query, Connection conn, PreparedStatement ps, ResultSet rs, RowMapper<T> mapper,
+            QueryMonitor.Timing timing) {
+        super(Long.MAX_VALUE, Spliterator.ORDERED);
+        this.query = query;
+        this.conn = conn;
+        this.ps = ps;
+        this.rs = rs;
+        this.mapper = mapper;
+        this.timing = timing;
+    }
+
+    @Override
+    public boolean tryAdvance(Consumer<? super T> action) {
+        if (closed)
+            return false;
+        try {
+            if (!rs.next()) {
+                if (timing != null)
+                    timing.completed();
+                run();
+                return false;
+            }
+            if (timing == null) {
+                action.accept(mapper.map(rs));
+            } else {
+                // Time spent by the consumer counts as handler time, as it
+                // would in a ResultHandler
+                long handlerStart = System.nanoTime();
+                action.accept(mapper.map(rs));
+                timing.row(handlerStart);
+            }
+            return true;
+        } catch (SQLException ex) {
+            LOGGER.log(Level.SEVERE, ex, () -> "Error reading rows of query: " + query);
+            run();
+            return false;
+        }
+    }
+
+    /**
+     * Closes the cursor; called by {@code Stream.close()}
+     */
+    @Override
+    public void run() {
+        if (closed)
+            return;
+        closed = true;
+        PersistenceManager.closeQuietly(rs, ps, conn);
+        if (timing != null)
+            timing.finish();
+    }
+}
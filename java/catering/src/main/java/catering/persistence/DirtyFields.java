@@ -0,0 +1,86 @@
+package catering.persistence;
+
+import java.util.Map;
+import java.util.Objects;
+import java.util.TreeMap;
+
+/**
+ * The columns of a row changed since it was loaded or last written, with
+ * their new values, so that an update writes only those, or nothing at all.
+ * <p>
+ * Entities mark a column from their setters and write with
+ * {@link #update}. Values are kept as they are bound: epoch days for dates,
+ * IDs for references. A value set back to what was stored still counts as
+ * a change. Not thread-safe, like the entities holding it.
+ */
+public final class DirtyFields {
+
+    // Sorted, so that the same columns always make the same statement
+    private final Map<String, Object> changes = new TreeMap<>();
+
+    /**
+     * Marks a column as changed, unless the new value equals the current one
+     *
+     * @param column  Column name
+     * @param current Value the entity holds now
+     * @param value   Value it is being set to
+     * @return Whether the value changes
+     */
+    public boolean mark(String column, Object current, Object value) {
+        if (Objects.equals(current, value))
+            return false;
+        changes.put(column, value);
+        return true;
+    }
+
+    /**
+     * Marks a column as changed, whatever it held
+     */
+    public void put(String column, Object value) {
+        changes.put(column, value);
+    }
+
+    public boolean isDirty() {
+        return !changes.isEmpty();
+    }
+
+    public boolean isDirty(String column) {
+        return changes.containsKey(column);
+    }
+
+    /**
+     * Forgets the changes, once the row has been written in full
+     */
+    public void clear() {
+        changes.clear();
+    }
+
+    /**
+     * Writes the changed columns of a row with a single UPDATE, then forgets
+     * them
+     *
+     * @param table Table name
+     * @param id    Value of the {@code id} column of the row
+     * @return Whether there was anything to write
+     */
+    public boolean update(String table, int id) {
+        if (changes.isEmpty())
+            return false;
+
+        StringBuilder sql = new StringBuilder("UPDATE ").append(table).append(" SET ");
+        Object[] params = new Object[changes.size() + 1];
+        int i = 0;
+        for (Map.Entry<String, Object> change : changes.entrySet()) {
+            if (i > 0)
+                sql.append(", ");
+            sql.append(change.getKey()).append(" = ?");
+            params[i++] = change.getValue();
+        }
+        sql.append(" WHERE id = ?");
+        params[i] = id;
+
+        changes.clear();
+        PersistenceManager.executeUpdate(sql.toString(), params);
+        return true;
+    }
+}
@@ -0,0 +1,44 @@
+package catering.persistence;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * The entities one query loaded together, for an association they load
+ * lazily. The first access to the association on any of them loads it for
+ * all of them at once, so a listing costs one round of queries instead of one
+ * per entity.
+ * <p>
+ * Each member keeps a reference to its batch until the association is set;
+ * the loader should skip members that no longer refer to the batch.
+ */
+public final class LazyBatch<T> {
+
+    private final List<T> members;
+    private final Consumer<List<T>> loader;
+    private boolean loaded;
+
+    /**
+     * @param members The entities loaded together
+     * @param loader  Sets the association on each of them
+     */
+    public LazyBatch(List<T> members, Consumer<List<T>> loader) {
+        this.members = new ArrayList<>(members);
+        this.loader = loader;
+    }
+
+    /**
+     * Loads the association of every member, the first time only
+     */
+    public synchronized void load() {
+        if (loaded)
+            return;
+        loaded = true;
+        loader.accept(members);
+    }
+
+    public int size() {
+        return members.size();
+    }
+}
@@ -5,6 +5,11 @@ import catering.businesslogic.menu.MenuEventReceiver;
 import catering.businesslogic.menu.MenuItem;
 import catering.businesslogic.menu.Section;
 
+/**
+ * Writes menu changes. Those to sections and items first give a menu rows
+ * of its own if it shares them with its source or its copies: see
+ * {@link Menu#saveContentIfShared}.
+ */
 public class MenuPersistence implements MenuEventReceiver {
 
     @Override
@@ -14,11 +19,15 @@ public class MenuPersistence implements MenuEventReceiver {
 
     @Override
     public void updateSectionAdded(Menu m, Section sec) {
+        if (Menu.saveContentIfShared(m))
+            return;
         Section.create(m.getId(), sec, m.getSectionPosition(sec));
     }
 
     @Override
     public void updateMenuItemAdded(Menu m, MenuItem mi) {
+        if (Menu.saveContentIfShared(m))
+            return;
         Section sec = m.getSection(mi);
         int sec_id = (sec == null ? 0 : sec.getId());
         int pos = (sec == null ? m.getFreeItemPosition(mi) : sec.getItemPosition(mi));
@@ -47,6 +56,8 @@ public class MenuPersistence implements MenuEventReceiver {
 
     @Override
     public void updateSectionDeleted(Menu m, Section s, boolean itemsDeleted) {
+        if (Menu.saveContentIfShared(m))
+            return;
         Section.deleteSection(m.getId(), s);
         if (!itemsDeleted)
             MenuItem.create(m.getId(), 0, s.getItems());
@@ -54,37 +65,51 @@ public class MenuPersistence implements MenuEventReceiver {
 
     @Override
     public void updateSectionChangedName(Menu m, Section s) {
+        if (Menu.saveContentIfShared(m))
+            return;
         Section.saveSectionName(s);
     }
 
     @Override
     public void updateSectionsRearranged(Menu m) {
+        if (Menu.saveContentIfShared(m))
+            return;
         Menu.saveSectionOrder(m);
     }
 
     @Override
     public void updateFreeMenuItemsRearranged(Menu m) {
+        if (Menu.saveContentIfShared(m))
+            return;
         Menu.saveFreeItemOrder(m);
     }
 
     @Override
     public void updateMenuItemsRearranged(Menu m, Section s) {
+        if (Menu.saveContentIfShared(m))
+            return;
         Section.saveItemOrder(s);
     }
 
     @Override
     public void updateMenuItemChanged(Menu m, Section s, MenuItem mi) {
+        if (Menu.saveContentIfShared(m))
+            return;
         int sid = (s == null ? 0 : s.getId());
         MenuItem.saveSection(sid, mi);
     }
 
     @Override
     public void updateMenuItemDescriptionChanged(Menu m, MenuItem mi) {
+        if (Menu.saveContentIfShared(m))
+            return;
         MenuItem.saveDescription(mi);
     }
 
     @Override
     public void updateMenuItemDeleted(Menu m, Section sec, MenuItem mi) {
+        if (Menu.saveContentIfShared(m))
+            return;
         MenuItem.removeItem(mi);
         if (sec != null) {
             Section.saveItemOrder(sec);
@@ -0,0 +1,79 @@
+package catering.persistence;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * One page of a keyset-paginated listing. The next page is asked for with
+ * the last element of this one, so every page costs the same however far
+ * into the listing it is.
+ */
+public class Page<T> {
+
+    // Rows per page when the caller does not say, from the catering.pageSize
+    // system property
+    public static final int DEFAULT_SIZE = Integer.getInteger("catering.pageSize", 50);
+    public static final int MAX_SIZE = 1000;
+
+    private final List<T> items;
+    private final boolean hasNext;
+
+    Page(List<T> items, boolean hasNext) {
+        this.items = Collections.unmodifiableList(items);
+        this.hasNext = hasNext;
+    }
+
+    /**
+     * @param rows     Up to one row more than a page, as read with
+     *                 {@code LIMIT pageSize + 1}
+     * @param pageSize Rows per page
+     */
+    public static <T> Page<T> of(List<T> rows, int pageSize) {
+        if (rows.size() <= pageSize)
+            return new Page<>(rows, false);
+        return new Page<>(new ArrayList<>(rows.subList(0, pageSize)), true);
+    }
+
+    /**
+     * @throws IllegalArgumentException If the size is not between 1 and
+     *                                  {@link #MAX_SIZE}
+     */
+    public static int checkSize(int pageSize) {
+        if (pageSize < 1 || pageSize > MAX_SIZE)
+            throw new IllegalArgumentException("Page size must be between 1 and " + MAX_SIZE + ": " + pageSize);
+        return pageSize;
+    }
+
+    public List<T> getItems() {
+        return items;
+    }
+
+    public int size() {
+        return items.size();
+    }
+
+    public boolean isEmpty() {
+        return items.isEmpty();
+    }
+
+    /**
+     * @return Whether another page follows this one
+     */
+    public boolean hasNext() {
+        return hasNext;
+    }
+
+    /**
+     * @return The element to ask the next page after, or null if the page is
+     *         empty
+     */
+    public T getLast() {
+        return items.isEmpty() ? null : items.get(items.size() - 1);
+    }
+
+    @Override
+    public String toString() {
+        return "Page [size=" + items.size() + ", hasNext=" + hasNext + "]";
+    }
+}
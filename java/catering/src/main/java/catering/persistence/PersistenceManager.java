@@ -2,23 +2,76 @@ package catering.persistence;
 
 import java.io.File;
 import java.io.IOException;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Proxy;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.sql.*;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Properties;
 import java.util.logging.Level;
 import java.util.logging.Logger;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 import catering.util.LogManager;
+import catering.util.trace.Span;
+import catering.util.trace.Tracer;
 
 
 public class PersistenceManager {
 
     private static final Logger LOGGER = LogManager.getLogger(PersistenceManager.class);
-    private static final String DB_PATH = new File("database", "catering.db").getAbsolutePath();
+    // The catering.db system property points benchmarks and tools at another
+    // database file; read once, before the first connection
+    private static final String DB_PATH = new File(
+            System.getProperty("catering.db", new File("database", "catering.db").getPath())).getAbsolutePath();
     private static final String SCRIPT_PATH = new File("database", "catering_init_sqlite.sql").getAbsolutePath();
     private static final String URL = "jdbc:sqlite:" + DB_PATH;
 
-    private static int lastId;
+    // Values bound per statement by executeQueryIn
+    public static final int IN_CHUNK = 500;
+
+    // Every call opens its own connection, so concurrent writers wait on the
+    // database lock instead of failing at once, and WAL lets readers proceed
+    // while a write is in progress
+    private static final Properties CONNECTION_PROPERTIES = new Properties();
+    static {
+        CONNECTION_PROPERTIES.setProperty("busy_timeout", "30000");
+        CONNECTION_PROPERTIES.setProperty("journal_mode", "WAL");
+    }
+
+    // A transaction takes the write lock when it begins: one reading before
+    // it writes could otherwise fail at once, a writer having committed in
+    // between
+    private static final Properties TRANSACTION_PROPERTIES = new Properties();
+    static {
+        TRANSACTION_PROPERTIES.putAll(CONNECTION_PROPERTIES);
+        TRANSACTION_PROPERTIES.setProperty("transaction_mode", "IMMEDIATE");
+    }
+
+    private static final Pattern TRIGGER_START = Pattern.compile("(\\s*--[^\\n]*\\n)*\\s*CREATE\\s+TRIGGER\\b",
+            Pattern.CASE_INSENSITIVE);
+    private static final Pattern TRIGGER_END = Pattern.compile("\\bEND\\s*$", Pattern.CASE_INSENSITIVE);
+
+    // Per thread: concurrent inserts must each read back their own ID
+    private static final ThreadLocal<Integer> lastId = ThreadLocal.withInitial(() -> 0);
+
+    // The transaction the calling thread is running, if any: its statements
+    // run on the connection of the transaction instead of their own
+    private static final ThreadLocal<Transaction> transaction = new ThreadLocal<>();
+
+    // The IDs of the last ? rows inserted on the connection. The driver
+    // reports no generated keys for a batch; run in one transaction, its
+    // rows get consecutive IDs.
+    private static final String BATCH_KEYS = "WITH RECURSIVE batch (id) AS (SELECT last_insert_rowid() - ? + 1"
+            + " UNION ALL SELECT id + 1 FROM batch WHERE id < last_insert_rowid()) SELECT id FROM batch";
+    private static volatile boolean dbChecked;
 
     // Make constructor private to prevent instantiation
     private PersistenceManager() {
@@ -26,26 +79,45 @@ public class PersistenceManager {
 
     // Ensure the database file exists
     private static void ensureDbExists() {
+        if (dbChecked)
+            return;
+        synchronized (PersistenceManager.class) {
+            if (dbChecked)
+                return;
+            createDbIfMissing();
+            migrate();
+            dbChecked = true;
+        }
+    }
+
+    private static void createDbIfMissing() {
         File dbFile = new File(DB_PATH);
         if (!dbFile.exists()) {
             try {
                 // Create the parent directory if it doesn't exist
                 dbFile.getParentFile().mkdirs();
 
-                try (Connection conn = DriverManager.getConnection(URL)) {
-                    // Connection is automatically closed by try-with-resources
-                }
+                openConnection().close();
 
                 // After creating the empty database, initialize it with schema
                 initializeDatabase(SCRIPT_PATH);
 
-                LOGGER.info("Database created and initialized at: " + dbFile.getAbsolutePath());
+                LOGGER.log(Level.INFO, "Database created and initialized at: {0}", dbFile.getAbsolutePath());
             } catch (SQLException ex) {
                 LOGGER.log(Level.SEVERE, "Failed to create database", ex);
             }
         }
     }
 
+    // Brings a database file written by an older version up to date
+    private static void migrate() {
+        try (Connection conn = openConnection()) {
+            SchemaMigrations.migrate(conn);
+        } catch (SQLException ex) {
+            LOGGER.log(Level.SEVERE, "Failed to migrate database", ex);
+        }
+    }
+
     public static boolean initializeDatabase() {
         return initializeDatabase(SCRIPT_PATH);
     }
@@ -60,7 +132,7 @@ public class PersistenceManager {
     public static boolean initializeDatabase(String scriptFilePath) {
         File scriptFile = new File(scriptFilePath);
         if (!scriptFile.exists()) {
-            LOGGER.severe("SQL script file not found: " + scriptFile.getAbsolutePath());
+            LOGGER.log(Level.SEVERE, "SQL script file not found: {0}", scriptFile.getAbsolutePath());
             return false;
         }
 
@@ -68,32 +140,57 @@ public class PersistenceManager {
             // Read the SQL file content
             String sqlScript = new String(Files.readAllBytes(scriptFile.toPath()), StandardCharsets.UTF_8);
 
-            // Split the script into individual statements using semicolon as delimiter
-            String[] statements = sqlScript.split(";");
-
             // Execute each statement
-            try (Connection conn = DriverManager.getConnection(URL);
+            try (Connection conn = openConnection();
                  Statement stmt = conn.createStatement()) {
 
-                for (String statement : statements) {
+                for (String statement : splitStatements(sqlScript)) {
                     String trimmedStmt = statement.trim();
                     if (!trimmedStmt.isEmpty()) {
                         stmt.executeUpdate(trimmedStmt);
                     }
                 }
+                SchemaMigrations.setVersion(conn);
 
-                LOGGER.info("Database initialized successfully from " + scriptFilePath);
+                LOGGER.log(Level.INFO, "Database initialized successfully from {0}", scriptFilePath);
                 return true;
             }
         } catch (IOException e) {
-            LOGGER.log(Level.SEVERE, "Error reading SQL file: " + scriptFilePath, e);
+            LOGGER.log(Level.SEVERE, e, () -> "Error reading SQL file: " + scriptFilePath);
             return false;
         } catch (SQLException e) {
-            LOGGER.log(Level.SEVERE, "Error executing SQL from file: " + scriptFilePath, e);
+            LOGGER.log(Level.SEVERE, e, () -> "Error executing SQL from file: " + scriptFilePath);
             return false;
         }
     }
 
+    /**
+     * Splits an SQL script into statements using semicolon as delimiter, except
+     * inside the BEGIN ... END body of a CREATE TRIGGER statement
+     * 
+     * @param sqlScript the script content
+     * @return the individual statements, untrimmed
+     */
+    private static List<String> splitStatements(String sqlScript) {
+        List<String> statements = new ArrayList<>();
+        StringBuilder current = new StringBuilder();
+        for (String piece : sqlScript.split(";")) {
+            current.append(piece);
+            String stmt = current.toString();
+            if (TRIGGER_START.matcher(stmt).lookingAt() && !TRIGGER_END.matcher(stmt).find()) {
+                // Still inside the trigger body: keep the delimiter and continue
+                current.append(';');
+                continue;
+            }
+            statements.add(stmt);
+            current.setLength(0);
+        }
+        if (current.length() > 0) {
+            statements.add(current.toString());
+        }
+        return statements;
+    }
+
     /**
      * Executes a SQL query with parameters and processes the results with a handler
      * 
@@ -103,24 +200,149 @@ public class PersistenceManager {
      */
     public static void executeQuery(String query, ResultHandler handler, Object... params) {
         ensureDbExists();
-        try (Connection conn = DriverManager.getConnection(URL);
+        QueryMonitor.Timing timing = QueryMonitor.getInstance().start(query);
+        try (Span span = Tracer.start(query, "sql");
+                Connection conn = openConnection();
                 PreparedStatement ps = conn.prepareStatement(query)) {
+            if (timing != null)
+                timing.connected();
 
             // Set parameters if any
             setParameters(ps, params);
 
+            int rows = 0;
             try (ResultSet rs = ps.executeQuery()) {
                 while (rs.next()) {
-                    handler.handle(rs);
+                    rows++;
+                    if (timing == null) {
+                        handler.handle(rs);
+                    } else {
+                        long handlerStart = System.nanoTime();
+                        handler.handle(rs);
+                        timing.row(handlerStart);
+                    }
                 }
             }
+            span.arg("rows", rows);
+            if (timing != null)
+                timing.completed();
         } catch (SQLException ex) {
-            LOGGER.log(Level.SEVERE, "Error executing query: " + query, ex);
+            LOGGER.log(Level.SEVERE, ex, () -> "Error executing query: " + query);
+            failTransaction();
+        } finally {
+            if (timing != null)
+                timing.finish();
         }
     }
 
     /**
-     * Executes a batch update with a parameterized query
+     * Executes a query selecting rows by a list of values, in chunks of at
+     * most {@link #IN_CHUNK} values, and processes all the results with one
+     * handler
+     *
+     * @param query   SQL query in which {@code (?)} is the list, as in
+     *                {@code WHERE id IN (?)}
+     * @param values  The values to look up; no query runs if empty
+     * @param handler ResultHandler to process each row in the result set
+     */
+    public static void executeQueryIn(String query, Collection<?> values, ResultHandler handler) {
+        List<?> all = new ArrayList<>(values);
+        for (int from = 0; from < all.size(); from += IN_CHUNK) {
+            List<?> chunk = all.subList(from, Math.min(all.size(), from + IN_CHUNK));
+            String list = "(" + String.join(", ", Collections.nCopies(chunk.size(), "?")) + ")";
+            executeQuery(query.replace("(?)", list), handler, chunk.toArray());
+        }
+    }
+
+    /**
+     * Reads one page of a keyset-paginated query. The query must end with its
+     * ORDER BY, and its WHERE clause should start after the last row of the
+     * previous page; a LIMIT of one row more than the page tells whether
+     * another page follows.
+     *
+     * @param query    SQL query with ? placeholders, without LIMIT
+     * @param pageSize Rows per page, see {@link Page#checkSize}
+     * @param mapper   RowMapper turning each row into an element
+     * @param params   Variable argument list of parameters to bind to the query
+     * @return The page, empty if the query fails
+     */
+    public static <T> Page<T> queryPage(String query, int pageSize, RowMapper<T> mapper, Object... params) {
+        Page.checkSize(pageSize);
+        Object[] all = Arrays.copyOf(params, params.length + 1);
+        all[params.length] = pageSize + 1;
+        List<T> rows = new ArrayList<>(pageSize + 1);
+        executeQuery(query + " LIMIT ?", new ResultHandler() {
+            @Override
+            public void handle(ResultSet rs) throws SQLException {
+                rows.add(mapper.map(rs));
+            }
+        }, all);
+        return Page.of(rows, pageSize);
+    }
+
+    /**
+     * Runs a query and returns its rows as a stream, mapped one at a time as
+     * the stream is consumed. The connection stays open until the stream is
+     * exhausted or closed, so use it in a try-with-resources block. Errors
+     * are logged and end the stream.
+     * 
+     * @param query  SQL query with ? placeholders for parameters
+     * @param mapper RowMapper turning each row into an element
+     * @param params Variable argument list of parameters to bind to the query
+     * @return The rows, in the order the query returns them
+     */
+    public static <T> Stream<T> stream(String query, RowMapper<T> mapper, Object... params) {
+        return stream(query, 0, mapper, params);
+    }
+
+    /**
+     * Like {@link #stream(String, RowMapper, Object...)}, with a fetch size
+     * hint
+     * 
+     * @param fetchSize Rows the driver should fetch at a time, or 0 for its
+     *                  default
+     */
+    public static <T> Stream<T> stream(String query, int fetchSize, RowMapper<T> mapper, Object... params) {
+        ensureDbExists();
+        QueryMonitor.Timing timing = QueryMonitor.getInstance().start(query);
+        Connection conn = null;
+        PreparedStatement ps = null;
+        ResultSet rs = null;
+        try {
+            conn = openConnection();
+            if (timing != null)
+                timing.connected();
+            ps = conn.prepareStatement(query, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+            if (fetchSize > 0)
+                ps.setFetchSize(fetchSize);
+            setParameters(ps, params);
+            rs = ps.executeQuery();
+        } catch (SQLException ex) {
+            LOGGER.log(Level.SEVERE, ex, () -> "Error executing query: " + query);
+            failTransaction();
+            closeQuietly(rs, ps, conn);
+            if (timing != null)
+                timing.finish();
+            return Stream.empty();
+        }
+        Cursor<T> cursor = new Cursor<>(query, conn, ps, rs, mapper, timing);
+        return StreamSupport.stream(cursor, false).onClose(cursor);
+    }
+
+    static void closeQuietly(AutoCloseable... resources) {
+        for (AutoCloseable resource : resources) {
+            if (resource == null)
+                continue;
+            try {
+                resource.close();
+            } catch (Exception ex) {
+                LOGGER.log(Level.WARNING, "Error closing a JDBC resource", ex);
+            }
+        }
+    }
+
+    /**
+     * Executes a batch update with a parameterized query, in one transaction
      * 
      * @param parametrizedQuery SQL query with ? placeholders
      * @param itemNumber        Number of items to process in the batch
@@ -131,23 +353,39 @@ public class PersistenceManager {
     public static int[] executeBatchUpdate(String parametrizedQuery, int itemNumber, BatchUpdateHandler handler) {
         ensureDbExists();
         int[] result = new int[0];
-        try (
-                Connection conn = DriverManager.getConnection(URL);
+        QueryMonitor.Timing timing = QueryMonitor.getInstance().start(parametrizedQuery);
+        try (Span span = Tracer.start(parametrizedQuery, "sql").arg("items", itemNumber);
+                Connection conn = openConnection();
                 PreparedStatement ps = conn.prepareStatement(parametrizedQuery, Statement.RETURN_GENERATED_KEYS)) {
+            if (timing != null)
+                timing.connected();
             for (int i = 0; i < itemNumber; i++) {
                 handler.handleBatchItem(ps, i);
                 ps.addBatch();
             }
+            // Closing the connection rolls back a batch that fails
+            conn.setAutoCommit(false);
             result = ps.executeBatch();
-            try (ResultSet keys = ps.getGeneratedKeys()) {
-                int count = 0;
-                while (keys.next()) {
-                    handler.handleGeneratedIds(keys, count);
-                    count++;
+            span.arg("rows", Arrays.stream(result).filter(n -> n > 0).sum());
+            if (!isInsert(parametrizedQuery)) {
+                handleGeneratedIds(ps.getGeneratedKeys(), handler);
+            } else if (itemNumber > 0) {
+                try (PreparedStatement keys = conn.prepareStatement(BATCH_KEYS)) {
+                    keys.setInt(1, itemNumber);
+                    handleGeneratedIds(keys.executeQuery(), handler);
                 }
             }
+            conn.commit();
+            if (timing != null) {
+                timing.rows(itemNumber);
+                timing.completed();
+            }
         } catch (SQLException ex) {
-            LOGGER.log(Level.SEVERE, "Error executing batch update: " + parametrizedQuery, ex);
+            LOGGER.log(Level.SEVERE, ex, () -> "Error executing batch update: " + parametrizedQuery);
+            failTransaction();
+        } finally {
+            if (timing != null)
+                timing.finish();
         }
 
         return result;
@@ -163,26 +401,86 @@ public class PersistenceManager {
     public static int executeUpdate(String update, Object... params) {
         ensureDbExists();
         int result = 0;
-        try (Connection conn = DriverManager.getConnection(URL);
+        QueryMonitor.Timing timing = QueryMonitor.getInstance().start(update);
+        try (Span span = Tracer.start(update, "sql");
+                Connection conn = openConnection();
                 PreparedStatement ps = conn.prepareStatement(update, Statement.RETURN_GENERATED_KEYS)) {
+            if (timing != null)
+                timing.connected();
 
             // Set parameters if any
             setParameters(ps, params);
 
             result = ps.executeUpdate();
+            span.arg("rows", result);
             try (ResultSet rs = ps.getGeneratedKeys()) {
                 if (rs.next()) {
-                    lastId = rs.getInt(1);
+                    lastId.set(rs.getInt(1));
                 } else {
-                    lastId = 0;
+                    lastId.set(0);
                 }
             }
+            if (timing != null) {
+                timing.rows(result);
+                timing.completed();
+            }
         } catch (SQLException ex) {
-            LOGGER.log(Level.SEVERE, "SQL Error executing update: " + update, ex);
+            LOGGER.log(Level.SEVERE, ex, () -> "SQL Error executing update: " + update);
+            failTransaction();
+        } finally {
+            if (timing != null)
+                timing.finish();
         }
         return result;
     }
 
+    /**
+     * Runs work in one transaction: the statements it executes on the calling
+     * thread share one connection, and are committed together when it
+     * returns. They are rolled back if one of them fails or the work throws.
+     * Called within a transaction, the work joins it.
+     *
+     * @param work The statements to run
+     * @return Whether the transaction was committed; within a transaction,
+     *         whether none of its statements has failed so far
+     */
+    public static boolean inTransaction(Runnable work) {
+        Transaction current = transaction.get();
+        if (current != null) {
+            work.run();
+            return !current.failed;
+        }
+
+        ensureDbExists();
+        boolean committed = false;
+        try (Connection conn = DriverManager.getConnection(URL, TRANSACTION_PROPERTIES)) {
+            conn.setAutoCommit(false);
+            Transaction tx = new Transaction(conn);
+            transaction.set(tx);
+            try {
+                work.run();
+                if (!tx.failed) {
+                    conn.commit();
+                    committed = true;
+                }
+            } finally {
+                transaction.remove();
+                if (!committed)
+                    conn.rollback();
+            }
+        } catch (SQLException ex) {
+            LOGGER.log(Level.SEVERE, "Error running transaction", ex);
+        }
+        return committed;
+    }
+
+    // Makes the transaction of the calling thread, if any, roll back
+    private static void failTransaction() {
+        Transaction tx = transaction.get();
+        if (tx != null)
+            tx.failed = true;
+    }
+
     /**
      * Helper method to set parameters on a PreparedStatement
      * 
@@ -222,13 +520,28 @@ public class PersistenceManager {
         }
     }
 
+    private static void handleGeneratedIds(ResultSet keys, BatchUpdateHandler handler) throws SQLException {
+        try (ResultSet rs = keys) {
+            int count = 0;
+            while (rs.next()) {
+                handler.handleGeneratedIds(rs, count);
+                count++;
+            }
+        }
+    }
+
+    private static boolean isInsert(String query) {
+        return query.trim().regionMatches(true, 0, "INSERT", 0, "INSERT".length());
+    }
+
     /**
-     * Gets the ID generated by the last executed INSERT statement
+     * Gets the ID generated by the last INSERT statement executed by the
+     * calling thread
      * 
      * @return The generated ID, or 0 if none was generated
      */
     public static int getLastId() {
-        return lastId;
+        return lastId.get();
     }
 
     /**
@@ -239,6 +552,41 @@ public class PersistenceManager {
      */
     public static Connection getConnection() throws SQLException {
         ensureDbExists();
-        return DriverManager.getConnection(URL);
+        return openConnection();
+    }
+
+    private static Connection openConnection() throws SQLException {
+        Transaction tx = transaction.get();
+        if (tx != null)
+            return tx.shared;
+        return DriverManager.getConnection(URL, CONNECTION_PROPERTIES);
+    }
+
+    /**
+     * A transaction in progress. Its statements get the connection through
+     * {@link #shared}, which ignores their attempts to close or commit it:
+     * {@link #inTransaction} does both at the end.
+     */
+    private static final class Transaction {
+        final Connection shared;
+        boolean failed;
+
+        Transaction(Connection conn) {
+            shared = (Connection) Proxy.newProxyInstance(Connection.class.getClassLoader(),
+                    new Class<?>[] { Connection.class }, (proxy, method, args) -> {
+                        switch (method.getName()) {
+                            case "close":
+                            case "commit":
+                            case "setAutoCommit":
+                                return null;
+                            default:
+                                try {
+                                    return method.invoke(conn, args);
+                                } catch (InvocationTargetException ex) {
+                                    throw ex.getCause();
+                                }
+                        }
+                    });
+        }
     }
 }
@@ -0,0 +1,11 @@
+package catering.persistence;
+
+/**
+ * How much of an entity a listing loads.
+ */
+public enum Projection {
+    /** Columns and references only: no services, tasks, bookings or sections */
+    HEADER,
+    /** The entity with all its children, as its single-entity loader returns it */
+    FULL
+}
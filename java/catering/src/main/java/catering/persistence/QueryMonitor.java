@@ -0,0 +1,314 @@
+package catering.persistence;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import javax.management.ObjectName;
+
+import catering.util.LatencyHistogram;
+import catering.util.LogManager;
+
+/**
+ * QueryMonitor collects a {@link QueryStats} for every SQL string run by
+ * {@link PersistenceManager}, keeps a log of slow queries and attributes each
+ * query to the use case that ran it: the outermost {@code *Manager} method on
+ * the stack, or else the first caller in another package.
+ * <p>
+ * The same figures are exported over JMX as {@code catering:type=QueryMonitor}.
+ * System properties set the defaults: {@code catering.queryStats=false}
+ * turns recording off, {@code catering.slowQueryMillis} (default 200) sets
+ * the slow-query threshold.
+ */
+public class QueryMonitor implements QueryMonitorMXBean {
+
+    private static final Logger LOGGER = LogManager.getLogger(QueryMonitor.class);
+    private static final StackWalker WALKER = StackWalker.getInstance();
+
+    // Beyond this, SQL built on the fly is counted together
+    private static final int MAX_QUERIES = 2000;
+    private static final String OTHER = "(other)";
+    private static final int SLOW_LOG_SIZE = 100;
+
+    private static final QueryMonitor INSTANCE = new QueryMonitor();
+
+    public static QueryMonitor getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * A query that took longer than the threshold
+     */
+    public static final class SlowQuery {
+        private final long timestamp;
+        private final String sql;
+        private final String caller;
+        private final long nanos;
+        private final int rows;
+
+        SlowQuery(String sql, String caller, long nanos, int rows) {
+            this.timestamp = System.currentTimeMillis();
+            this.sql = sql;
+            this.caller = caller;
+            this.nanos = nanos;
+            this.rows = rows;
+        }
+
+        /** @return When the query finished, in epoch milliseconds */
+        public long getTimestamp() {
+            return timestamp;
+        }
+
+        public String getSql() {
+            return sql;
+        }
+
+        public String getCaller() {
+            return caller;
+        }
+
+        public long getNanos() {
+            return nanos;
+        }
+
+        public int getRows() {
+            return rows;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%.1f ms, %d rows, from %s: %s", nanos / 1e6, rows, caller, sql);
+        }
+    }
+
+    private final Map<String, QueryStats> queries = new ConcurrentHashMap<>();
+    private final Map<String, LatencyHistogram> callers = new ConcurrentHashMap<>();
+    private final Deque<SlowQuery> slowLog = new ArrayDeque<>();
+    private final LongAdder slowCount = new LongAdder();
+    private volatile boolean enabled = !"false".equals(System.getProperty("catering.queryStats"));
+    private volatile long slowNanos = TimeUnit.MILLISECONDS
+            .toNanos(Long.getLong("catering.slowQueryMillis", 200));
+
+    private QueryMonitor() {
+        try {
+            ManagementFactory.getPlatformMBeanServer().registerMBean(this,
+                    new ObjectName("catering:type=QueryMonitor"));
+        } catch (Exception ex) {
+            LOGGER.log(Level.WARNING, "QueryMonitor not registered with JMX", ex);
+        }
+    }
+
+    @Override
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    @Override
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    @Override
+    public long getSlowQueryThresholdMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(slowNanos);
+    }
+
+    @Override
+    public void setSlowQueryThresholdMillis(long millis) {
+        slowNanos = TimeUnit.MILLISECONDS.toNanos(millis);
+    }
+
+    /**
+     * Times one statement run by {@link PersistenceManager}: from asking for a
+     * connection, through {@code connected()} and any number of handler
+     * calls, to {@code finish()}
+     */
+    final class Timing {
+        private final String sql;
+        private final long start = System.nanoTime();
+        private long connected;
+        private long handlerNanos;
+        private int rows;
+        private boolean completed;
+
+        private Timing(String sql) {
+            this.sql = sql;
+        }
+
+        void connected() {
+            connected = System.nanoTime();
+        }
+
+        /** @param handlerStart When the handler for this row was called */
+        void row(long handlerStart) {
+            handlerNanos += System.nanoTime() - handlerStart;
+            rows++;
+        }
+
+        void rows(int count) {
+            rows += count;
+        }
+
+        /** Marks the statement as successful; otherwise it counts as an error */
+        void completed() {
+            completed = true;
+        }
+
+        void finish() {
+            long end = System.nanoTime();
+            long conn = (connected == 0 ? end : connected) - start;
+            record(sql, conn, end - start - conn - handlerNanos, handlerNanos, rows, !completed);
+        }
+    }
+
+    /**
+     * @return A timing for the statement, or null while disabled
+     */
+    Timing start(String sql) {
+        return enabled ? new Timing(sql) : null;
+    }
+
+    void record(String sql, long connectionNanos, long executionNanos, long handlerNanos, int rows,
+            boolean failed) {
+        String caller = callerOf();
+        QueryStats stats = queries.get(sql);
+        if (stats == null) {
+            String key = queries.size() < MAX_QUERIES ? sql : OTHER;
+            stats = queries.computeIfAbsent(key, QueryStats::new);
+        }
+        stats.record(caller, connectionNanos, executionNanos, handlerNanos, rows, failed);
+
+        long total = connectionNanos + executionNanos + handlerNanos;
+        callers.computeIfAbsent(caller, c -> new LatencyHistogram()).record(total);
+        if (total >= slowNanos) {
+            SlowQuery slow = new SlowQuery(sql, caller, total, rows);
+            slowCount.increment();
+            synchronized (slowLog) {
+                if (slowLog.size() == SLOW_LOG_SIZE)
+                    slowLog.removeFirst();
+                slowLog.addLast(slow);
+            }
+            LOGGER.log(Level.WARNING, "Slow query: {0}", slow);
+        }
+    }
+
+    // The outermost manager method is the use case: createMenu, not the
+    // notifyMenuCreated it calls to persist the menu
+    private static String callerOf() {
+        return WALKER.walk(frames -> {
+            String manager = null;
+            String fallback = null;
+            Iterator<StackWalker.StackFrame> it = frames.limit(64).iterator();
+            while (it.hasNext()) {
+                StackWalker.StackFrame f = it.next();
+                String cls = f.getClassName();
+                String method = f.getMethodName();
+                // Skip lambdas and anonymous result handlers, whose query ran
+                // inside another
+                if (cls.startsWith("catering.persistence.") || cls.indexOf('$') >= 0 || method.indexOf('$') >= 0)
+                    continue;
+                String simple = cls.substring(cls.lastIndexOf('.') + 1);
+                if (cls.startsWith("catering.businesslogic.") && simple.endsWith("Manager"))
+                    manager = simple + "." + method;
+                else if (fallback == null && cls.startsWith("catering."))
+                    fallback = simple + "." + method;
+            }
+            return manager != null ? manager : fallback != null ? fallback : "(unknown)";
+        });
+    }
+
+    /**
+     * @return Statistics of every SQL string, most total time first
+     */
+    public List<QueryStats> getQueryStats() {
+        List<QueryStats> result = new ArrayList<>(queries.values());
+        result.sort(Comparator.comparingLong((QueryStats q) -> q.getTotal().getTotalNanos()).reversed());
+        return result;
+    }
+
+    /**
+     * @return Statistics of one SQL string, or null if it never ran
+     */
+    public QueryStats getQueryStats(String sql) {
+        return queries.get(sql);
+    }
+
+    /**
+     * @return Time spent in queries by use case, sorted by name
+     */
+    public Map<String, LatencyHistogram> getCallerStats() {
+        return Collections.unmodifiableMap(new TreeMap<>(callers));
+    }
+
+    /**
+     * @return The latest slow queries, oldest first
+     */
+    public List<SlowQuery> getSlowQueries() {
+        synchronized (slowLog) {
+            return new ArrayList<>(slowLog);
+        }
+    }
+
+    @Override
+    public long getQueryCount() {
+        long n = 0;
+        for (QueryStats q : queries.values()) {
+            n += q.getCalls();
+        }
+        return n;
+    }
+
+    @Override
+    public long getSlowQueryCount() {
+        return slowCount.sum();
+    }
+
+    @Override
+    public String[] getTopQueries() {
+        List<QueryStats> stats = getQueryStats();
+        String[] result = new String[Math.min(20, stats.size())];
+        for (int i = 0; i < result.length; i++) {
+            result[i] = stats.get(i).toString();
+        }
+        return result;
+    }
+
+    @Override
+    public String[] getCallers() {
+        List<String> result = new ArrayList<>();
+        getCallerStats().forEach((caller, h) -> result.add(caller + ": " + h));
+        return result.toArray(new String[0]);
+    }
+
+    @Override
+    public String[] getRecentSlowQueries() {
+        List<SlowQuery> slow = getSlowQueries();
+        String[] result = new String[slow.size()];
+        for (int i = 0; i < result.length; i++) {
+            result[i] = slow.get(i).toString();
+        }
+        return result;
+    }
+
+    @Override
+    public void reset() {
+        queries.clear();
+        callers.clear();
+        slowCount.reset();
+        synchronized (slowLog) {
+            slowLog.clear();
+        }
+    }
+}
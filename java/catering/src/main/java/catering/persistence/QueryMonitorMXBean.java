@@ -0,0 +1,29 @@
+package catering.persistence;
+
+/**
+ * JMX view of {@link QueryMonitor}.
+ */
+public interface QueryMonitorMXBean {
+
+    boolean isEnabled();
+
+    void setEnabled(boolean enabled);
+
+    long getSlowQueryThresholdMillis();
+
+    void setSlowQueryThresholdMillis(long millis);
+
+    long getQueryCount();
+
+    long getSlowQueryCount();
+
+    /** @return The 20 SQL strings with the most total time, one line each */
+    String[] getTopQueries();
+
+    /** @return Time in queries by use case, one line each */
+    String[] getCallers();
+
+    String[] getRecentSlowQueries();
+
+    void reset();
+}
@@ -0,0 +1,99 @@
+package catering.persistence;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+import catering.util.LatencyHistogram;
+
+/**
+ * QueryStats accumulates what one SQL string has cost since the start (or
+ * the last reset): calls, rows, and where the time went — waiting for a
+ * connection, executing, and in the {@link ResultHandler} — split by the use
+ * case that ran it.
+ */
+public class QueryStats {
+
+    private final String sql;
+    private final LongAdder rows = new LongAdder();
+    private final LongAdder errors = new LongAdder();
+    private final LatencyHistogram total = new LatencyHistogram();
+    private final LatencyHistogram connection = new LatencyHistogram();
+    private final LatencyHistogram execution = new LatencyHistogram();
+    private final LatencyHistogram handler = new LatencyHistogram();
+    private final Map<String, LongAdder> callers = new ConcurrentHashMap<>();
+
+    QueryStats(String sql) {
+        this.sql = sql;
+    }
+
+    void record(String caller, long connectionNanos, long executionNanos, long handlerNanos, int rowCount,
+            boolean failed) {
+        connection.record(connectionNanos);
+        execution.record(executionNanos);
+        handler.record(handlerNanos);
+        total.record(connectionNanos + executionNanos + handlerNanos);
+        rows.add(rowCount);
+        if (failed)
+            errors.increment();
+        if (caller != null)
+            callers.computeIfAbsent(caller, c -> new LongAdder()).increment();
+    }
+
+    public String getSql() {
+        return sql;
+    }
+
+    public long getCalls() {
+        return total.getCount();
+    }
+
+    /**
+     * @return Rows returned by queries, or affected by updates
+     */
+    public long getRows() {
+        return rows.sum();
+    }
+
+    public long getErrors() {
+        return errors.sum();
+    }
+
+    /** @return Whole call, from asking for a connection to closing it */
+    public LatencyHistogram getTotal() {
+        return total;
+    }
+
+    public LatencyHistogram getConnection() {
+        return connection;
+    }
+
+    /** @return Preparing, executing and stepping through the results */
+    public LatencyHistogram getExecution() {
+        return execution;
+    }
+
+    /** @return Inside the {@link ResultHandler}, including nested queries */
+    public LatencyHistogram getHandler() {
+        return handler;
+    }
+
+    /**
+     * @return Calls by use case, e.g. {@code MenuManager.createMenu}, sorted
+     *         by name
+     */
+    public Map<String, Long> getCallers() {
+        Map<String, Long> result = new TreeMap<>();
+        callers.forEach((caller, n) -> result.put(caller, n.sum()));
+        return Collections.unmodifiableMap(result);
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%d calls, %d rows, %d errors, total %s, connection p99 %.1fus, handler mean %.1fus: %s",
+                getCalls(), getRows(), getErrors(), total, connection.getPercentileNanos(99) / 1e3,
+                handler.getMeanNanos() / 1e3, sql);
+    }
+}
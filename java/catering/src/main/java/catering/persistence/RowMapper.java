@@ -0,0 +1,12 @@
+package catering.persistence;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+/**
+ * Maps the current row of a result set to an object, for
+ * {@link PersistenceManager#stream}.
+ */
+public interface RowMapper<T> {
+    public T map(ResultSet rs) throws SQLException;
+}
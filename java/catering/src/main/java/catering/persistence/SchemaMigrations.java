@@ -0,0 +1,163 @@
+package catering.persistence;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import catering.util.LogManager;
+
+/**
+ * Brings an existing database up to the current schema. The schema version
+ * is kept in {@code PRAGMA user_version}: the init script creates the
+ * current schema, and {@link PersistenceManager#initializeDatabase} stamps
+ * it with {@link #VERSION}; older files are migrated on first use, one step
+ * at a time, each in its own transaction.
+ */
+final class SchemaMigrations {
+
+    private static final Logger LOGGER = LogManager.getLogger(SchemaMigrations.class);
+
+    // STEPS[n] brings the schema from version n to n + 1
+    private static final String[][] STEPS = {
+            // 1: full-text search over recipes and preparations, filled
+            // from the rows already there and kept in sync by triggers.
+            // rowid = 2 * id for recipes, 2 * id + 1 for preparations.
+            {
+                    "CREATE VIRTUAL TABLE IF NOT EXISTS KitchenProcessSearch USING fts5 (name, description,"
+                            + " tokenize = 'unicode61 remove_diacritics 2')",
+                    "DELETE FROM KitchenProcessSearch",
+                    "INSERT INTO KitchenProcessSearch (rowid, name, description)"
+                            + " SELECT id * 2, name, description FROM Recipes",
+                    "INSERT INTO KitchenProcessSearch (rowid, name, description)"
+                            + " SELECT id * 2 + 1, name, description FROM Preparations",
+                    searchTrigger("Recipes", "INSERT", "id * 2"),
+                    searchTrigger("Recipes", "UPDATE", "id * 2"),
+                    searchTrigger("Recipes", "DELETE", "id * 2"),
+                    searchTrigger("Preparations", "INSERT", "id * 2 + 1"),
+                    searchTrigger("Preparations", "UPDATE", "id * 2 + 1"),
+                    searchTrigger("Preparations", "DELETE", "id * 2 + 1"),
+            },
+            // 2: indexes for the keyset-paginated listings and for loading
+            // the children of each listed row
+            {
+                    "CREATE INDEX IF NOT EXISTS Events_by_date ON Events (date_start, id)",
+                    "CREATE INDEX IF NOT EXISTS Shifts_by_date ON Shifts (date, start_time, id)",
+                    "CREATE INDEX IF NOT EXISTS Services_by_event ON Services (event_id)",
+                    "CREATE INDEX IF NOT EXISTS Services_by_menu ON Services (approved_menu_id)",
+                    "CREATE INDEX IF NOT EXISTS UserRoles_by_user ON UserRoles (user_id)",
+                    "CREATE INDEX IF NOT EXISTS MenuSections_by_menu ON MenuSections (menu_id, position)",
+                    "CREATE INDEX IF NOT EXISTS MenuItems_by_section ON MenuItems (menu_id, section_id, position)",
+                    "CREATE INDEX IF NOT EXISTS MenuFeatures_by_menu ON MenuFeatures (menu_id)",
+                    "CREATE INDEX IF NOT EXISTS Tasks_by_sheet ON Tasks (sumsheet_id, position)",
+                    "CREATE INDEX IF NOT EXISTS Assignment_by_sheet ON Assignment (sumsheet_id)",
+            },
+            // 3: dates as epoch days, times as minutes of the day. Rows may
+            // hold text ('2025-06-15', '12:00:00') or the epoch milliseconds
+            // that java.sql.Date and Time were bound as.
+            {
+                    "UPDATE Events SET date_start = " + epochDay("date_start") + ", date_end = "
+                            + epochDay("date_end"),
+                    "UPDATE Services SET service_date = " + epochDay("service_date") + ", time_start = "
+                            + minuteOfDay("time_start") + ", time_end = " + minuteOfDay("time_end"),
+                    "UPDATE Shifts SET date = " + epochDay("date") + ", start_time = " + minuteOfDay("start_time")
+                            + ", end_time = " + minuteOfDay("end_time"),
+            },
+            // 4: indexes for the calendar queries
+            {
+                    "CREATE INDEX IF NOT EXISTS Events_by_end ON Events (coalesce(date_end, date_start))",
+                    "CREATE INDEX IF NOT EXISTS Events_by_chef ON Events (chef_id, coalesce(date_end, date_start))",
+                    "CREATE INDEX IF NOT EXISTS Services_by_date ON Services (service_date, time_start)",
+                    "CREATE INDEX IF NOT EXISTS Services_by_location ON Services (location, service_date, time_start)",
+            },
+            // 5: menu features as a bitmask on the menu row, in place of
+            // one MenuFeatures row per feature. The bits are those of
+            // MenuFeature, frozen here.
+            {
+                    "ALTER TABLE Menus ADD COLUMN features INTEGER NOT NULL DEFAULT 0",
+                    "UPDATE Menus SET features = (SELECT total(DISTINCT CASE name WHEN 'needsCook' THEN 1"
+                            + " WHEN 'fingerFood' THEN 2 WHEN 'buffet' THEN 4 WHEN 'warmDishes' THEN 8"
+                            + " WHEN 'needsKitchen' THEN 16 ELSE 0 END) FROM MenuFeatures"
+                            + " WHERE menu_id = Menus.id AND value)",
+                    "DROP TABLE MenuFeatures",
+                    "CREATE INDEX IF NOT EXISTS Menus_by_features ON Menus (features)",
+            },
+            // 6: menu lineage, and copies reading the rows of their source
+            // until their first edit. Existing menus are first versions.
+            {
+                    "ALTER TABLE Menus ADD COLUMN parent_id INTEGER NOT NULL DEFAULT 0",
+                    "ALTER TABLE Menus ADD COLUMN version INTEGER NOT NULL DEFAULT 1",
+                    "ALTER TABLE Menus ADD COLUMN content_id INTEGER NOT NULL DEFAULT 0",
+                    "CREATE INDEX IF NOT EXISTS Menus_by_parent ON Menus (parent_id)",
+                    "CREATE INDEX IF NOT EXISTS Menus_by_content ON Menus (content_id)",
+            },
+    };
+
+    static final int VERSION = STEPS.length;
+
+    private SchemaMigrations() {
+    }
+
+    static void migrate(Connection conn) throws SQLException {
+        int version = getVersion(conn);
+        if (version >= VERSION)
+            return;
+
+        boolean autoCommit = conn.getAutoCommit();
+        conn.setAutoCommit(false);
+        try (Statement stmt = conn.createStatement()) {
+            for (int v = version; v < VERSION; v++) {
+                for (String sql : STEPS[v]) {
+                    stmt.executeUpdate(sql);
+                }
+                stmt.executeUpdate("PRAGMA user_version = " + (v + 1));
+                conn.commit();
+                LOGGER.log(Level.INFO, "Database migrated to schema version {0}", v + 1);
+            }
+        } catch (SQLException ex) {
+            conn.rollback();
+            throw ex;
+        } finally {
+            conn.setAutoCommit(autoCommit);
+        }
+    }
+
+    static int getVersion(Connection conn) throws SQLException {
+        try (Statement stmt = conn.createStatement(); ResultSet rs = stmt.executeQuery("PRAGMA user_version")) {
+            return rs.next() ? rs.getInt(1) : 0;
+        }
+    }
+
+    static void setVersion(Connection conn) throws SQLException {
+        try (Statement stmt = conn.createStatement()) {
+            stmt.executeUpdate("PRAGMA user_version = " + VERSION);
+        }
+    }
+
+    // The trigger keeping the search entries of a table's rows in sync, as
+    // in the init script: an update replaces the entry
+    private static String searchTrigger(String table, String event, String rowid) {
+        String delete = "DELETE FROM KitchenProcessSearch WHERE rowid = old." + rowid + ";";
+        String insert = "INSERT INTO KitchenProcessSearch (rowid, name, description) VALUES (new." + rowid
+                + ", new.name, new.description);";
+        String body = event.equals("INSERT") ? insert : event.equals("DELETE") ? delete : delete + " " + insert;
+        return "CREATE TRIGGER IF NOT EXISTS " + table + "_search_" + event.toLowerCase() + " AFTER " + event
+                + " ON " + table + " BEGIN " + body + " END";
+    }
+
+    // Epoch milliseconds are recognised by size: no epoch day of the next
+    // thousand years reaches a million
+    private static String epochDay(String column) {
+        return "CASE WHEN typeof(" + column + ") = 'text' THEN unixepoch(" + column + ") / 86400"
+                + " WHEN abs(" + column + ") >= 1000000 THEN unixepoch(date(" + column
+                + " / 1000, 'unixepoch', 'localtime')) / 86400 ELSE " + column + " END";
+    }
+
+    private static String minuteOfDay(String column) {
+        return "CASE WHEN typeof(" + column + ") = 'text' THEN unixepoch('1970-01-01 ' || " + column + ") / 60"
+                + " WHEN " + column + " < 0 OR " + column + " >= 1440 THEN unixepoch('1970-01-01 ' || time("
+                + column + " / 1000, 'unixepoch', 'localtime')) / 60 ELSE " + column + " END";
+    }
+}
@@ -0,0 +1,60 @@
+package catering.persistence;
+
+import java.sql.Date;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Time;
+import java.time.LocalDate;
+import java.time.LocalTime;
+
+/**
+ * Maps dates and times to the integers they are stored as: a date is its
+ * epoch day (days since 1970-01-01), a time of day the minutes since
+ * midnight. Both sort and compare as plain integers, in SQL and in memory,
+ * and are read back without parsing.
+ */
+public final class Temporals {
+
+    public static final int MINUTES_PER_DAY = 24 * 60;
+
+    private Temporals() {
+    }
+
+    /**
+     * @return The epoch day, or null for a null date
+     */
+    public static Integer toEpochDay(Date date) {
+        return date == null ? null : (int) date.toLocalDate().toEpochDay();
+    }
+
+    /**
+     * @return The minute of the day, or null for a null time
+     */
+    public static Integer toMinuteOfDay(Time time) {
+        return time == null ? null : time.toLocalTime().toSecondOfDay() / 60;
+    }
+
+    public static Date toDate(long epochDay) {
+        return Date.valueOf(LocalDate.ofEpochDay(epochDay));
+    }
+
+    public static Time toTime(int minuteOfDay) {
+        return Time.valueOf(LocalTime.ofSecondOfDay(minuteOfDay * 60L));
+    }
+
+    /**
+     * @return The date stored in the column, or null if it is NULL
+     */
+    public static Date getDate(ResultSet rs, String column) throws SQLException {
+        long day = rs.getLong(column);
+        return rs.wasNull() ? null : toDate(day);
+    }
+
+    /**
+     * @return The time stored in the column, or null if it is NULL
+     */
+    public static Time getTime(ResultSet rs, String column) throws SQLException {
+        int minute = rs.getInt(column);
+        return rs.wasNull() ? null : toTime(minute);
+    }
+}
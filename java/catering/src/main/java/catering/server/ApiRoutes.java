@@ -0,0 +1,494 @@
+package catering.server;
+
+import java.sql.Date;
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import catering.businesslogic.CatERing;
+import catering.businesslogic.UseCaseLogicException;
+import catering.businesslogic.event.Event;
+import catering.businesslogic.event.EventManager;
+import catering.businesslogic.event.Service;
+import catering.businesslogic.kitchen.Assignment;
+import catering.businesslogic.kitchen.KitchenTask;
+import catering.businesslogic.kitchen.KitchenTaskManager;
+import catering.businesslogic.kitchen.SummarySheet;
+import catering.businesslogic.menu.Menu;
+import catering.businesslogic.menu.MenuFeature;
+import catering.businesslogic.menu.MenuFilter;
+import catering.businesslogic.menu.MenuItem;
+import catering.businesslogic.menu.MenuManager;
+import catering.businesslogic.menu.Section;
+import catering.businesslogic.recipe.Recipe;
+import catering.businesslogic.shift.Shift;
+import catering.businesslogic.shift.ShiftManager;
+import catering.businesslogic.user.User;
+import catering.persistence.Page;
+import catering.persistence.Projection;
+
+/**
+ * The API routes: one per system operation of the menu, event, shift and
+ * summary-sheet use cases. Handlers only translate parameters and results;
+ * preconditions stay in the managers, whose {@link UseCaseLogicException}s
+ * become 409 responses.
+ * <p>
+ * Listings are paged: {@code ?limit=} sets the page size, {@code ?after=}
+ * the id of the last element of the previous page, and {@code ?view=header}
+ * leaves out services, sections, bookings and tasks. Calendar queries take
+ * the window as {@code ?from=} and {@code ?to=} days (yyyy-mm-dd), both
+ * included. Menu searches take comma-separated feature names in
+ * {@code ?features=} (all required) and {@code ?anyFeatures=} (one
+ * required), a chef in {@code ?owner=} and {@code ?published=}.
+ */
+final class ApiRoutes {
+
+    private ApiRoutes() {
+    }
+
+    static void register(ApiServer server) {
+        registerMenuRoutes(server);
+        registerEventRoutes(server);
+        registerShiftRoutes(server);
+        registerSummarySheetRoutes(server);
+    }
+
+    // Gestire menù
+
+    private static void registerMenuRoutes(ApiServer server) {
+        server.get("/api/recipes", req -> {
+            List<Object> result = new ArrayList<>();
+            for (Recipe r : menus().getRecipeBook()) {
+                result.add(kitchenProcess(r.getId(), r.getName()));
+            }
+            return result;
+        });
+        server.get("/api/menus", req -> {
+            Menu after = req.param("after") == null ? null : loadMenu(req.intParam("after"));
+            List<Object> result = new ArrayList<>();
+            for (Menu m : menus().getMenus(after, pageSize(req), projection(req)).getItems()) {
+                result.add(menu(m));
+            }
+            return result;
+        });
+        server.get("/api/menus/search", req -> {
+            MenuFilter filter = MenuFilter.withAllFeatures(features(req, "features"));
+            if (req.param("anyFeatures") != null)
+                filter = filter.and(MenuFilter.withAnyFeature(features(req, "anyFeatures")));
+            if (req.param("owner") != null)
+                filter = filter.and(MenuFilter.ownedBy(loadUser(req.param("owner"))));
+            if (req.param("published") != null)
+                filter = filter.and(MenuFilter.published(Boolean.parseBoolean(req.param("published"))));
+            Menu after = req.param("after") == null ? null : loadMenu(req.intParam("after"));
+            List<Object> result = new ArrayList<>();
+            for (Menu m : menus().findMenus(filter, after, pageSize(req)).getItems()) {
+                result.add(menu(m));
+            }
+            return result;
+        });
+        server.get("/api/menus/current", req -> menu(currentMenu()));
+        server.post("/api/menus", req -> menu(menus().createMenu(req.param("title"))));
+        server.post("/api/menus/{id}/choose", req -> {
+            menus().chooseMenu(loadMenu(req.pathInt("id")));
+            return menu(currentMenu());
+        });
+        server.post("/api/menus/{id}/copy", req -> menu(menus().chooseMenuForCopy(loadMenu(req.pathInt("id")))));
+        server.delete("/api/menus/{id}", req -> {
+            menus().deleteMenu(loadMenu(req.pathInt("id")));
+            return null;
+        });
+        server.post("/api/menus/current/title", req -> {
+            menus().changeTitle(req.requiredParam("title"));
+            return menu(currentMenu());
+        });
+        server.post("/api/menus/current/publish", req -> {
+            menus().publish();
+            return menu(currentMenu());
+        });
+        server.post("/api/menus/current/sections", req -> section(menus().defineSection(req.requiredParam("name"))));
+        server.post("/api/menus/current/items", req -> {
+            Recipe recipe = CatERing.getInstance().getRecipeManager().getRecipe(req.intParam("recipe"));
+            if (recipe == null)
+                throw HttpError.notFound("No such recipe");
+            int sectionId = req.intParam("section", 0);
+            Section sec = sectionId == 0 ? null : currentMenu().getSectionById(sectionId);
+            if (sectionId != 0 && sec == null)
+                throw HttpError.notFound("No such section");
+            String desc = req.param("description");
+            return item(menus().insertItem(recipe, sec, desc != null ? desc : recipe.getName()));
+        });
+        server.delete("/api/menus/current/items/{id}", req -> {
+            int id = req.pathInt("id");
+            for (MenuItem mi : currentMenu().getItems()) {
+                if (mi.getId() == id) {
+                    menus().deleteItem(mi);
+                    return menu(currentMenu());
+                }
+            }
+            throw HttpError.notFound("No such item");
+        });
+    }
+
+    private static MenuManager menus() {
+        return CatERing.getInstance().getMenuManager();
+    }
+
+    private static Menu currentMenu() throws UseCaseLogicException {
+        Menu m = menus().getCurrentMenu();
+        if (m == null)
+            throw new UseCaseLogicException("No current menu");
+        return m;
+    }
+
+    // A comma-separated list of feature names, empty if missing
+    private static Set<MenuFeature> features(Request req, String name) {
+        Set<MenuFeature> features = EnumSet.noneOf(MenuFeature.class);
+        String list = req.param(name);
+        if (list == null || list.isEmpty())
+            return features;
+        for (String featureName : list.split(",")) {
+            MenuFeature f = MenuFeature.byName(featureName.trim());
+            if (f == null)
+                throw HttpError.badRequest("No such feature: " + featureName);
+            features.add(f);
+        }
+        return features;
+    }
+
+    private static Menu loadMenu(int id) {
+        Menu m = Menu.load(id);
+        if (m == null || m.getId() == 0)
+            throw HttpError.notFound("No such menu");
+        return m;
+    }
+
+    // Gestire eventi
+
+    private static void registerEventRoutes(ApiServer server) {
+        server.get("/api/events", req -> {
+            List<Object> result = new ArrayList<>();
+            Event after = null;
+            if (req.param("after") != null) {
+                after = Event.loadById(req.intParam("after"));
+                if (after == null)
+                    throw HttpError.notFound("No such event");
+            }
+            for (Event e : events().getEvents(after, pageSize(req), projection(req)).getItems()) {
+                result.add(event(e));
+            }
+            return result;
+        });
+        server.get("/api/calendar/events", req -> {
+            List<Object> result = new ArrayList<>();
+            Date from = date(req, "from");
+            Date to = date(req, "to");
+            String chef = req.param("chef");
+            List<Event> found = chef == null ? events().getCalendarEvents(from, to)
+                    : events().getCalendarEvents(loadUser(chef), from, to);
+            for (Event e : found) {
+                result.add(event(e));
+            }
+            return result;
+        });
+        server.get("/api/calendar/services", req -> {
+            List<Object> result = new ArrayList<>();
+            Date from = date(req, "from");
+            Date to = date(req, "to");
+            String location = req.param("location");
+            List<Service> found = location == null ? events().getCalendarServices(from, to)
+                    : events().getCalendarServices(location, from, to);
+            for (Service s : found) {
+                result.add(service(s));
+            }
+            return result;
+        });
+        server.get("/api/events/current", req -> event(currentEvent()));
+        server.post("/api/events/{id}/select", req -> {
+            Event e = Event.loadById(req.pathInt("id"));
+            if (e == null)
+                throw HttpError.notFound("No such event");
+            events().selectEvent(e);
+            return event(e);
+        });
+        server.post("/api/services/{id}/select", req -> {
+            currentEvent();
+            int id = req.pathInt("id");
+            events().setSelectedServiceIndex(id);
+            Service s = events().getCurrentService();
+            if (s == null || s.getId() != id)
+                throw HttpError.notFound("No such service in the selected event");
+            return service(s);
+        });
+        server.post("/api/services/current/menu", req -> {
+            events().assignMenu(loadMenu(req.intParam("menu")));
+            return service(events().getCurrentService());
+        });
+        server.delete("/api/services/current/menu", req -> {
+            if (!events().removeMenu())
+                throw new UseCaseLogicException("No service selected");
+            return service(events().getCurrentService());
+        });
+    }
+
+    private static EventManager events() {
+        return CatERing.getInstance().getEventManager();
+    }
+
+    private static Date date(Request req, String name) {
+        try {
+            return Date.valueOf(req.requiredParam(name));
+        } catch (IllegalArgumentException ex) {
+            throw HttpError.badRequest("Not a date (yyyy-mm-dd): " + name);
+        }
+    }
+
+    private static Event currentEvent() throws UseCaseLogicException {
+        Event e = events().getSelectedEvent();
+        if (e == null)
+            throw new UseCaseLogicException("No event selected");
+        return e;
+    }
+
+    // Gestire turni
+
+    private static void registerShiftRoutes(ApiServer server) {
+        server.get("/api/shifts", req -> {
+            List<Object> result = new ArrayList<>();
+            Shift after = req.param("after") == null ? null : loadShift(req.intParam("after"));
+            for (Shift s : shifts().getShiftTable(after, pageSize(req), projection(req)).getItems()) {
+                result.add(shift(s));
+            }
+            return result;
+        });
+        server.post("/api/shifts/{id}/bookings", req -> {
+            Shift s = loadShift(req.pathInt("id"));
+            shifts().bookUserForShift(s, loadUser(req.requiredParam("user")));
+            return shift(s);
+        });
+    }
+
+    private static ShiftManager shifts() {
+        return CatERing.getInstance().getShiftManager();
+    }
+
+    private static Shift loadShift(int id) {
+        Shift s = shifts().loadShiftById(id);
+        if (s == null)
+            throw HttpError.notFound("No such shift");
+        return s;
+    }
+
+    private static User loadUser(String username) {
+        User u = User.load(username);
+        if (u == null || u.getId() == 0)
+            throw HttpError.notFound("No such user");
+        return u;
+    }
+
+    // Gestire compiti cucina
+
+    private static void registerSummarySheetRoutes(ApiServer server) {
+        server.get("/api/summary-sheets", req -> {
+            SummarySheet after = null;
+            if (req.param("after") != null) {
+                after = SummarySheet.loadSummarySheetById(req.intParam("after"));
+                if (after == null)
+                    throw HttpError.notFound("No such summary sheet");
+            }
+            List<Object> result = new ArrayList<>();
+            for (SummarySheet ss : kitchen().loadSumSheets(after, pageSize(req), projection(req)).getItems()) {
+                result.add(summarySheet(ss));
+            }
+            return result;
+        });
+        server.post("/api/summary-sheets", req -> summarySheet(
+                kitchen().generateSummarySheet(events().getSelectedEvent(), events().getCurrentService())));
+        server.post("/api/summary-sheets/{id}/open", req -> {
+            SummarySheet ss = SummarySheet.loadSummarySheetById(req.pathInt("id"));
+            if (ss == null)
+                throw HttpError.notFound("No such summary sheet");
+            return summarySheet(kitchen().openSumSheet(ss));
+        });
+        server.get("/api/summary-sheets/current", req -> summarySheet(currentSheet()));
+        server.post("/api/summary-sheets/current/tasks/{id}/info", req -> {
+            KitchenTask t = findTask(req.pathInt("id"));
+            kitchen().addTaskInformation(t, req.intParam("quantity", 0), req.intParam("portions", 0),
+                    req.intParam("minutes", 0));
+            return task(t);
+        });
+        server.post("/api/summary-sheets/current/tasks/{id}/move", req -> {
+            kitchen().moveTask(findTask(req.pathInt("id")), req.intParam("position"));
+            return summarySheet(currentSheet());
+        });
+        server.post("/api/summary-sheets/current/tasks/{id}/ready", req -> {
+            KitchenTask t = findTask(req.pathInt("id"));
+            kitchen().setTaskReady(t);
+            return task(t);
+        });
+        server.post("/api/summary-sheets/current/tasks/{id}/assignments", req -> {
+            KitchenTask t = findTask(req.pathInt("id"));
+            String cook = req.param("cook");
+            Shift s = loadShift(req.intParam("shift"));
+            return assignment(kitchen().assignTask(t, s, cook == null ? null : loadUser(cook)));
+        });
+    }
+
+    private static KitchenTaskManager kitchen() {
+        return CatERing.getInstance().getKitchenTaskManager();
+    }
+
+    private static SummarySheet currentSheet() throws UseCaseLogicException {
+        SummarySheet ss = kitchen().getCurrentSummarySheet();
+        if (ss == null)
+            throw new UseCaseLogicException("No summary sheet open");
+        return ss;
+    }
+
+    private static KitchenTask findTask(int id) throws UseCaseLogicException {
+        for (KitchenTask t : currentSheet().getTaskList()) {
+            if (t.getId() == id)
+                return t;
+        }
+        throw HttpError.notFound("No such task in the open summary sheet");
+    }
+
+    // Listings
+
+    private static int pageSize(Request req) {
+        return Page.checkSize(req.intParam("limit", Page.DEFAULT_SIZE));
+    }
+
+    private static Projection projection(Request req) {
+        return "header".equals(req.param("view")) ? Projection.HEADER : Projection.FULL;
+    }
+
+    // JSON views
+
+    private static Map<String, Object> kitchenProcess(int id, String name) {
+        Map<String, Object> m = new LinkedHashMap<>();
+        m.put("id", id);
+        m.put("name", name);
+        return m;
+    }
+
+    private static Map<String, Object> menu(Menu menu) {
+        Map<String, Object> m = new LinkedHashMap<>();
+        m.put("id", menu.getId());
+        m.put("title", menu.getTitle());
+        m.put("owner", menu.getOwner() != null ? menu.getOwner().getUserName() : null);
+        m.put("published", menu.isPublished());
+        m.put("features", menu.getFeatures());
+        List<Object> sections = new ArrayList<>();
+        for (Section s : menu.getSectionsView()) {
+            sections.add(section(s));
+        }
+        m.put("sections", sections);
+        m.put("freeItems", items(menu.getFreeItemsView()));
+        return m;
+    }
+
+    private static Map<String, Object> section(Section s) {
+        Map<String, Object> m = new LinkedHashMap<>();
+        m.put("id", s.getId());
+        m.put("name", s.getName());
+        m.put("items", items(s.getItems()));
+        return m;
+    }
+
+    private static List<Object> items(List<MenuItem> items) {
+        List<Object> result = new ArrayList<>();
+        for (MenuItem mi : items) {
+            result.add(item(mi));
+        }
+        return result;
+    }
+
+    private static Map<String, Object> item(MenuItem mi) {
+        Map<String, Object> m = new LinkedHashMap<>();
+        m.put("id", mi.getId());
+        m.put("description", mi.getDescription());
+        m.put("recipe", mi.getRecipe() != null ? mi.getRecipe().getId() : null);
+        return m;
+    }
+
+    private static Map<String, Object> event(Event e) {
+        Map<String, Object> m = new LinkedHashMap<>();
+        m.put("id", e.getId());
+        m.put("name", e.getName());
+        m.put("dateStart", e.getDateStart());
+        m.put("dateEnd", e.getDateEnd());
+        m.put("chef", e.getChef() != null ? e.getChef().getUserName() : null);
+        List<Object> services = new ArrayList<>();
+        for (Service s : e.getServices()) {
+            services.add(service(s));
+        }
+        m.put("services", services);
+        return m;
+    }
+
+    private static Map<String, Object> service(Service s) {
+        Map<String, Object> m = new LinkedHashMap<>();
+        m.put("id", s.getId());
+        m.put("name", s.getName());
+        m.put("date", s.getDate());
+        m.put("timeStart", s.getTimeStart());
+        m.put("timeEnd", s.getTimeEnd());
+        m.put("location", s.getLocation());
+        m.put("menu", s.getMenuId() != 0 ? s.getMenuId() : null);
+        return m;
+    }
+
+    private static Map<String, Object> shift(Shift s) {
+        Map<String, Object> m = new LinkedHashMap<>();
+        m.put("id", s.getId());
+        m.put("date", s.getDate());
+        m.put("startTime", s.getStartTime());
+        m.put("endTime", s.getEndTime());
+        List<String> booked = new ArrayList<>();
+        for (User u : s.getBookedUsers()) {
+            booked.add(u.getUserName());
+        }
+        m.put("booked", booked);
+        return m;
+    }
+
+    private static Map<String, Object> summarySheet(SummarySheet ss) {
+        Map<String, Object> m = new LinkedHashMap<>();
+        m.put("id", ss.getId());
+        m.put("owner", ss.getOwner() != null ? ss.getOwner().getUserName() : null);
+        List<Object> tasks = new ArrayList<>();
+        for (KitchenTask t : ss.getTaskList()) {
+            tasks.add(task(t));
+        }
+        m.put("tasks", tasks);
+        List<Object> assignments = new ArrayList<>();
+        for (Assignment a : ss.getAssignments()) {
+            assignments.add(assignment(a));
+        }
+        m.put("assignments", assignments);
+        return m;
+    }
+
+    private static Map<String, Object> task(KitchenTask t) {
+        Map<String, Object> m = new LinkedHashMap<>();
+        m.put("id", t.getId());
+        m.put("description", t.getDescription());
+        m.put("kitchenProcess", t.getKitchenProcess() != null ? t.getKitchenProcess().getName() : null);
+        m.put("quantity", t.getQuantity());
+        m.put("portions", t.getPortions());
+        m.put("ready", t.isReady());
+        return m;
+    }
+
+    private static Map<String, Object> assignment(Assignment a) {
+        Map<String, Object> m = new LinkedHashMap<>();
+        m.put("id", a.getId());
+        m.put("task", a.getTask() != null ? a.getTask().getId() : null);
+        m.put("shift", a.getShift() != null ? a.getShift().getId() : null);
+        m.put("cook", a.getCook() != null ? a.getCook().getUserName() : null);
+        return m;
+    }
+}
@@ -0,0 +1,327 @@
+package catering.server;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.reflect.Method;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.security.SecureRandom;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import catering.businesslogic.CatERing;
+import catering.businesslogic.Session;
+import catering.businesslogic.UseCaseLogicException;
+import catering.util.LogManager;
+import catering.util.metrics.Counter;
+import catering.util.metrics.Metrics;
+import catering.util.metrics.Timer;
+
+/**
+ * ApiServer is an embedded HTTP server exposing the use cases of the
+ * managers as a JSON API (see {@link ApiRoutes}).
+ * <p>
+ * Clients log in with {@code POST /api/sessions} and send the returned token
+ * in the {@value #TOKEN_HEADER} header. Every request runs on its own thread
+ * (a virtual thread when the JVM provides them) with the caller's
+ * {@link Session} bound; requests of the same session are served one at a
+ * time, requests of different sessions run in parallel. A session ends at
+ * {@code DELETE /api/sessions} or after {@link #DEFAULT_SESSION_TIMEOUT_MILLIS}
+ * without requests.
+ * <p>
+ * The server listens on the loopback address unless given a host.
+ */
+public class ApiServer {
+
+    public static final String TOKEN_HEADER = "X-Session-Token";
+    public static final long DEFAULT_SESSION_TIMEOUT_MILLIS = TimeUnit.MINUTES.toMillis(30);
+
+    private static final Logger LOGGER = LogManager.getLogger(ApiServer.class);
+    private static final SecureRandom RANDOM = new SecureRandom();
+    private static final Timer REQUESTS = Metrics.timer("ApiServer.requests");
+    private static final Counter ERRORS = Metrics.counter("ApiServer.errors");
+
+    /**
+     * A route handler; its result is written as the JSON response body
+     */
+    public interface Route {
+        Object handle(Request req) throws Exception;
+    }
+
+    private static final class RouteEntry {
+        final String method;
+        final String[] segments;
+        final boolean needsSession;
+        final Route route;
+
+        RouteEntry(String method, String pattern, boolean needsSession, Route route) {
+            this.method = method;
+            this.segments = pattern.substring(1).split("/");
+            this.needsSession = needsSession;
+            this.route = route;
+        }
+
+        Map<String, String> match(String method, String[] path) {
+            if (!this.method.equals(method) || path.length != segments.length)
+                return null;
+            Map<String, String> vars = new HashMap<>();
+            for (int i = 0; i < segments.length; i++) {
+                if (segments[i].startsWith("{")) {
+                    vars.put(segments[i].substring(1, segments[i].length() - 1), path[i]);
+                } else if (!segments[i].equals(path[i])) {
+                    return null;
+                }
+            }
+            return vars;
+        }
+    }
+
+    private static final class SessionEntry {
+        final Session session = new Session();
+        final ReentrantLock lock = new ReentrantLock();
+        volatile long lastUsed = System.nanoTime();
+    }
+
+    private final HttpServer server;
+    private final ExecutorService executor;
+    private final List<RouteEntry> routes = new ArrayList<>();
+    private final Map<String, SessionEntry> sessions = new ConcurrentHashMap<>();
+    private volatile long sessionTimeoutNanos = TimeUnit.MILLISECONDS.toNanos(DEFAULT_SESSION_TIMEOUT_MILLIS);
+    private volatile long lastSweep = System.nanoTime();
+
+    /**
+     * Creates a server on the loopback address with all API routes
+     * registered
+     *
+     * @param port TCP port, or 0 for any free port
+     * @throws IOException if the port cannot be bound
+     */
+    public ApiServer(int port) throws IOException {
+        this(null, port);
+    }
+
+    /**
+     * Creates a server with all API routes registered
+     *
+     * @param host Host name or address to listen on, or null for the
+     *             loopback address
+     * @param port TCP port, or 0 for any free port
+     * @throws IOException if the host is unknown or the port cannot be bound
+     */
+    public ApiServer(String host, int port) throws IOException {
+        InetAddress address = host == null ? InetAddress.getLoopbackAddress() : InetAddress.getByName(host);
+        server = HttpServer.create(new InetSocketAddress(address, port), 0);
+        executor = newRequestExecutor();
+        server.setExecutor(executor);
+        server.createContext("/api/", this::dispatch);
+        Metrics.gauge("ApiServer.sessions", sessions::size);
+
+        post("/api/sessions", false, this::login);
+        delete("/api/sessions", req -> {
+            sessions.values().removeIf(e -> e.session == req.getSession());
+            return null;
+        });
+        ApiRoutes.register(this);
+    }
+
+    public void start() {
+        server.start();
+        LOGGER.log(Level.INFO, "API server listening on {0}", server.getAddress());
+    }
+
+    public void stop() {
+        server.stop(0);
+        executor.shutdown();
+        try {
+            executor.awaitTermination(5, TimeUnit.SECONDS);
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    public int getPort() {
+        return server.getAddress().getPort();
+    }
+
+    public InetAddress getAddress() {
+        return server.getAddress().getAddress();
+    }
+
+    /**
+     * @param millis How long a session lasts without requests
+     */
+    public void setSessionTimeoutMillis(long millis) {
+        sessionTimeoutNanos = TimeUnit.MILLISECONDS.toNanos(millis);
+    }
+
+    public void get(String pattern, Route route) {
+        routes.add(new RouteEntry("GET", pattern, true, route));
+    }
+
+    public void post(String pattern, Route route) {
+        post(pattern, true, route);
+    }
+
+    public void post(String pattern, boolean needsSession, Route route) {
+        routes.add(new RouteEntry("POST", pattern, needsSession, route));
+    }
+
+    public void delete(String pattern, Route route) {
+        routes.add(new RouteEntry("DELETE", pattern, true, route));
+    }
+
+    @SuppressWarnings("try")
+    private Object login(Request req) throws UseCaseLogicException {
+        evictExpiredSessions();
+        SessionEntry entry = new SessionEntry();
+        try (Session.Scope scope = entry.session.bind()) {
+            CatERing.getInstance().getUserManager().fakeLogin(req.requiredParam("user"));
+        }
+        if (entry.session.getUser().getId() == 0)
+            throw new HttpError(401, "Unknown user");
+        byte[] bytes = new byte[16];
+        RANDOM.nextBytes(bytes);
+        String token = Base64.getUrlEncoder().withoutPadding().encodeToString(bytes);
+        sessions.put(token, entry);
+
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("token", token);
+        result.put("user", entry.session.getUser().getUserName());
+        return result;
+    }
+
+    // The session of a token, unless it has expired, which ends it
+    private SessionEntry findSession(String token) {
+        SessionEntry entry = token == null ? null : sessions.get(token);
+        if (entry == null)
+            return null;
+        long now = System.nanoTime();
+        if (now - entry.lastUsed > sessionTimeoutNanos) {
+            sessions.remove(token, entry);
+            return null;
+        }
+        entry.lastUsed = now;
+        return entry;
+    }
+
+    // Ends the sessions whose clients went away without logging out; at
+    // most once per quarter of the timeout, on login
+    private void evictExpiredSessions() {
+        long now = System.nanoTime();
+        long timeout = sessionTimeoutNanos;
+        if (now - lastSweep < timeout / 4)
+            return;
+        lastSweep = now;
+        sessions.values().removeIf(e -> now - e.lastUsed > timeout);
+    }
+
+    private void dispatch(HttpExchange exchange) throws IOException {
+        long start = REQUESTS.start();
+        int status = 200;
+        Object body;
+        try {
+            body = route(exchange);
+        } catch (HttpError ex) {
+            status = ex.getStatus();
+            body = error(ex.getMessage());
+        } catch (UseCaseLogicException ex) {
+            status = 409;
+            body = error(ex.getMessage() != null ? ex.getMessage() : "Operation not allowed");
+        } catch (IllegalArgumentException | IndexOutOfBoundsException ex) {
+            status = 400;
+            body = error(ex.getMessage());
+        } catch (Exception ex) {
+            LOGGER.log(Level.SEVERE, ex, () -> "Error serving " + exchange.getRequestURI());
+            status = 500;
+            body = error("Internal error");
+        }
+
+        byte[] bytes = Json.write(body).getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "application/json; charset=utf-8");
+        exchange.sendResponseHeaders(status, bytes.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(bytes);
+        }
+        if (status >= 400)
+            ERRORS.increment();
+        REQUESTS.stop(start);
+    }
+
+    @SuppressWarnings("try")
+    private Object route(HttpExchange exchange) throws Exception {
+        String[] path = exchange.getRequestURI().getPath().substring(1).split("/");
+        String method = exchange.getRequestMethod();
+        for (RouteEntry entry : routes) {
+            Map<String, String> vars = entry.match(method, path);
+            if (vars == null)
+                continue;
+
+            Map<String, String> params = Request.parseParams(exchange.getRequestURI().getRawQuery(),
+                    exchange.getRequestBody());
+            if (!entry.needsSession)
+                return entry.route.handle(new Request(vars, params, null));
+
+            String token = exchange.getRequestHeaders().getFirst(TOKEN_HEADER);
+            SessionEntry session = findSession(token);
+            if (session == null)
+                throw new HttpError(401, "Missing or unknown session token");
+
+            session.lock.lock();
+            try (Session.Scope scope = session.session.bind()) {
+                return entry.route.handle(new Request(vars, params, session.session));
+            } finally {
+                session.lock.unlock();
+            }
+        }
+        throw HttpError.notFound("No such resource: " + method + " " + exchange.getRequestURI().getPath());
+    }
+
+    private static Map<String, Object> error(String message) {
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("error", message);
+        return result;
+    }
+
+    /**
+     * Creates the executor running the requests: one virtual thread per
+     * request when the JVM provides virtual threads (Java 21 and later), one
+     * pooled platform thread per concurrent request otherwise. Looked up by
+     * reflection because the project is compiled for Java 11.
+     */
+    static ExecutorService newRequestExecutor() {
+        try {
+            Method factory = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+            return (ExecutorService) factory.invoke(null);
+        } catch (ReflectiveOperationException ex) {
+            AtomicInteger count = new AtomicInteger();
+            return Executors.newCachedThreadPool(r -> {
+                Thread t = new Thread(r, "api-request-" + count.incrementAndGet());
+                t.setDaemon(true);
+                return t;
+            });
+        }
+    }
+
+    public static void main(String[] args) throws IOException {
+        int port = args.length > 0 ? Integer.parseInt(args[0]) : 8080;
+        ApiServer server = new ApiServer(args.length > 1 ? args[1] : null, port);
+        Runtime.getRuntime().addShutdownHook(new Thread(server::stop));
+        server.start();
+    }
+}
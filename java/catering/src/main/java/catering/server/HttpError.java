@@ -0,0 +1,28 @@
+package catering.server;
+
+/**
+ * Thrown by route handlers to answer with a given HTTP status and message.
+ */
+public class HttpError extends RuntimeException {
+
+    private static final long serialVersionUID = 1L;
+
+    private final int status;
+
+    public HttpError(int status, String message) {
+        super(message);
+        this.status = status;
+    }
+
+    public int getStatus() {
+        return status;
+    }
+
+    public static HttpError badRequest(String message) {
+        return new HttpError(400, message);
+    }
+
+    public static HttpError notFound(String message) {
+        return new HttpError(404, message);
+    }
+}
@@ -0,0 +1,118 @@
+package catering.server;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+
+import catering.businesslogic.Session;
+
+/**
+ * Request is what a route handler sees of an HTTP request: path variables,
+ * parameters from the query string and from a form-encoded body, and the
+ * caller's session.
+ */
+public class Request {
+
+    // Form bodies are a few parameters: larger ones are refused, read no
+    // further than this
+    static final int MAX_BODY_BYTES = 64 * 1024;
+
+    private final Map<String, String> pathVariables;
+    private final Map<String, String> params;
+    private final Session session;
+
+    Request(Map<String, String> pathVariables, Map<String, String> params, Session session) {
+        this.pathVariables = pathVariables;
+        this.params = params;
+        this.session = session;
+    }
+
+    /**
+     * @return The session of the caller, never null on routes that require
+     *         one
+     */
+    public Session getSession() {
+        return session;
+    }
+
+    /**
+     * @param name Name of a {@code {variable}} in the route path
+     * @return Its value as an integer
+     */
+    public int pathInt(String name) {
+        return toInt(name, pathVariables.get(name));
+    }
+
+    /**
+     * @param name Parameter name
+     * @return Its value, or null if absent
+     */
+    public String param(String name) {
+        return params.get(name);
+    }
+
+    /**
+     * @param name Parameter name
+     * @return Its value
+     * @throws HttpError 400 if the parameter is absent or blank
+     */
+    public String requiredParam(String name) {
+        String value = params.get(name);
+        if (value == null || value.trim().isEmpty())
+            throw HttpError.badRequest("Missing parameter: " + name);
+        return value;
+    }
+
+    /**
+     * @param name Parameter name
+     * @return Its value as an integer
+     * @throws HttpError 400 if the parameter is absent or not a number
+     */
+    public int intParam(String name) {
+        return toInt(name, requiredParam(name));
+    }
+
+    /**
+     * @param name         Parameter name
+     * @param defaultValue Value to use when the parameter is absent
+     * @return Its value as an integer
+     */
+    public int intParam(String name, int defaultValue) {
+        String value = params.get(name);
+        return value == null ? defaultValue : toInt(name, value);
+    }
+
+    private static int toInt(String name, String value) {
+        try {
+            return Integer.parseInt(value);
+        } catch (NumberFormatException ex) {
+            throw HttpError.badRequest("Not a number: " + name);
+        }
+    }
+
+    static Map<String, String> parseParams(String query, InputStream body) throws IOException {
+        Map<String, String> params = new HashMap<>();
+        parseInto(params, query);
+        byte[] bytes = body.readNBytes(MAX_BODY_BYTES + 1);
+        if (bytes.length > MAX_BODY_BYTES)
+            throw new HttpError(413, "Request body larger than " + MAX_BODY_BYTES + " bytes");
+        parseInto(params, new String(bytes, StandardCharsets.UTF_8));
+        return params;
+    }
+
+    private static void parseInto(Map<String, String> params, String encoded) {
+        if (encoded == null || encoded.isEmpty())
+            return;
+        for (String pair : encoded.split("&")) {
+            if (pair.isEmpty())
+                continue;
+            int eq = pair.indexOf('=');
+            String key = eq < 0 ? pair : pair.substring(0, eq);
+            String value = eq < 0 ? "" : pair.substring(eq + 1);
+            params.put(URLDecoder.decode(key, StandardCharsets.UTF_8), URLDecoder.decode(value, StandardCharsets.UTF_8));
+        }
+    }
+}
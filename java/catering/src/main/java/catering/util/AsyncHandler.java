@@ -0,0 +1,165 @@
+package catering.util;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+import java.util.logging.ErrorManager;
+import java.util.logging.Handler;
+import java.util.logging.Level;
+import java.util.logging.LogRecord;
+
+/**
+ * AsyncHandler hands records to a background thread through a bounded ring
+ * buffer, so logging threads never format or write. When the buffer is full,
+ * records below WARNING are dropped (and the drops reported) while warnings
+ * and errors wait for room.
+ */
+class AsyncHandler extends Handler {
+
+    private static final int BATCH = 256;
+
+    private final ArrayBlockingQueue<LogRecord> queue;
+    private final Writer out;
+    private final LogFormatter formatter = new LogFormatter();
+    private final Thread writer;
+    private final LongAdder dropped = new LongAdder();
+    private final AtomicLong accepted = new AtomicLong();
+    private final AtomicLong written = new AtomicLong();
+    private volatile boolean closed;
+
+    // Used by the writer thread only
+    private final List<LogRecord> batch = new ArrayList<>(BATCH);
+    private final StringBuilder line = new StringBuilder(256);
+    private char[] chars = new char[256];
+    private long droppedReported;
+
+    /**
+     * @param out      Destination; it is flushed, never closed
+     * @param capacity Records the buffer holds before dropping
+     */
+    AsyncHandler(OutputStream out, int capacity) {
+        this.queue = new ArrayBlockingQueue<>(capacity);
+        this.out = new OutputStreamWriter(out, StandardCharsets.UTF_8);
+        setFormatter(formatter);
+        writer = new Thread(this::run, "log-writer");
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    @Override
+    public void publish(LogRecord record) {
+        if (closed || !isLoggable(record))
+            return;
+        if (queue.offer(record)) {
+            accepted.incrementAndGet();
+            return;
+        }
+        if (record.getLevel().intValue() < Level.WARNING.intValue()) {
+            dropped.increment();
+            return;
+        }
+        try {
+            queue.put(record);
+            accepted.incrementAndGet();
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            dropped.increment();
+        }
+    }
+
+    /**
+     * Waits, for up to a few seconds, until the records published so far are
+     * written
+     */
+    @Override
+    public void flush() {
+        long target = accepted.get();
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (written.get() < target && writer.isAlive() && System.nanoTime() < deadline) {
+            LockSupport.parkNanos(TimeUnit.MICROSECONDS.toNanos(100));
+        }
+    }
+
+    @Override
+    public void close() {
+        if (closed)
+            return;
+        closed = true;
+        try {
+            writer.join(TimeUnit.SECONDS.toMillis(5));
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    long getDropped() {
+        return dropped.sum();
+    }
+
+    private void run() {
+        while (!closed || !queue.isEmpty()) {
+            LogRecord first;
+            try {
+                first = queue.poll(100, TimeUnit.MILLISECONDS);
+            } catch (InterruptedException ex) {
+                // Only close() stops the writer
+                continue;
+            }
+            if (first == null)
+                continue;
+            batch.add(first);
+            queue.drainTo(batch, BATCH - 1);
+            try {
+                for (LogRecord record : batch) {
+                    write(record);
+                }
+                reportDrops();
+                out.flush();
+            } catch (IOException ex) {
+                reportError("Log output failed", ex, ErrorManager.WRITE_FAILURE);
+            }
+            written.addAndGet(batch.size());
+            batch.clear();
+        }
+    }
+
+    private void write(LogRecord record) throws IOException {
+        line.setLength(0);
+        try {
+            formatter.formatTo(record, line);
+        } catch (RuntimeException ex) {
+            reportError(null, ex, ErrorManager.FORMAT_FAILURE);
+            return;
+        }
+        writeLine();
+    }
+
+    private void reportDrops() throws IOException {
+        long total = dropped.sum();
+        if (total == droppedReported)
+            return;
+        line.setLength(0);
+        formatter.appendTimestamp(System.currentTimeMillis(), line);
+        line.append(" [WARNING] ").append(AsyncHandler.class.getName()).append(": ")
+                .append(total - droppedReported).append(" log records dropped, buffer full\n");
+        droppedReported = total;
+        writeLine();
+    }
+
+    private void writeLine() throws IOException {
+        int length = line.length();
+        if (chars.length < length)
+            chars = new char[Math.max(length, chars.length * 2)];
+        line.getChars(0, length, chars, 0);
+        out.write(chars, 0, length);
+    }
+}
@@ -0,0 +1,398 @@
+package catering.util;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.util.Random;
+import java.util.logging.Logger;
+
+import catering.businesslogic.menu.MenuFeature;
+import catering.businesslogic.user.User;
+import catering.persistence.PersistenceManager;
+
+/**
+ * DataGenerator fills the catering database with synthetic but plausible
+ * data at a chosen scale: users with roles, recipes and preparations, menus
+ * with sections and items, events with services, shifts with bookings and
+ * summary sheets with tasks and assignments.
+ * <p>
+ * Rows are appended after the existing ones (usually the seed data) with
+ * explicit IDs, in one transaction per table and batched statements. The
+ * same seed and sizes always produce the same database.
+ *
+ * <pre>
+ * new DataGenerator(42).scaledTo(10_000).generate();
+ * </pre>
+ *
+ * As a tool, the arguments are the number of menus and the seed; the
+ * {@code catering.db} system property chooses the database file, which is
+ * reset from the schema script first:
+ *
+ * <pre>
+ * mvn compile exec:java -Dexec.mainClass=catering.util.DataGenerator \
+ *     -Dexec.args="10000 42" -Dcatering.db=database/large.db
+ * </pre>
+ */
+public class DataGenerator {
+
+    private static final Logger LOGGER = LogManager.getLogger(DataGenerator.class);
+    private static final int BATCH_SIZE = 10_000;
+
+    private static final String[] FIRST_NAMES = { "marco", "giulia", "luca", "sofia", "antonio", "chiara",
+            "giovanni", "francesca", "matteo", "sara", "andrea", "elena", "paolo", "anna", "stefano", "laura" };
+    private static final String[] LAST_NAMES = { "rossi", "russo", "ferrari", "esposito", "bianchi", "romano",
+            "colombo", "ricci", "marino", "greco", "bruno", "gallo", "conti", "deluca", "costa", "giordano" };
+    private static final String[] DISHES = { "Risotto", "Spaghetti", "Tagliatelle", "Lasagne", "Gnocchi",
+            "Ravioli", "Zuppa", "Insalata", "Torta", "Crostata", "Polpette", "Arrosto", "Frittata", "Pizza",
+            "Focaccia", "Sformato", "Tortelli", "Carpaccio", "Tiramisù", "Panna cotta" };
+    private static final String[] BASES = { "Salsa", "Crema", "Brodo", "Ragù", "Fondo", "Pesto", "Impasto",
+            "Besciamella", "Glassa", "Sugo" };
+    private static final String[] STYLES = { "alla", "al", "con", "di", "ai" };
+    private static final String[] INGREDIENTS = { "funghi", "pomodoro", "zucca", "tartufo", "limone", "pesce",
+            "carne", "verdure", "formaggi", "noci", "basilico", "ricotta", "speck", "salmone", "carciofi",
+            "pistacchio", "zafferano", "porcini", "gamberi", "melanzane" };
+    private static final String[] SECTIONS = { "Antipasti", "Primi", "Secondi", "Contorni", "Dessert",
+            "Finger food", "Bevande" };
+    private static final String[] OCCASIONS = { "Matrimonio", "Cena aziendale", "Convegno", "Compleanno",
+            "Inaugurazione", "Battesimo", "Gala", "Festa di laurea" };
+    private static final String[] SERVICES = { "Colazione", "Coffee break", "Pranzo", "Aperitivo", "Cena",
+            "Buffet", "Rinfresco", "Brunch" };
+    private static final String[] PLACES = { "Salone Grande", "Sala Esecutiva", "Terrazza", "Giardino",
+            "Sala Conferenze", "Chiostro", "Veranda" };
+
+    private final long seed;
+    private int users = 500;
+    private int recipes = 7_000;
+    private int preparations = 3_000;
+    private int menus = 1_000;
+    private int sectionsPerMenu = 4;
+    private int itemsPerSection = 5;
+    private int events = 250;
+    private int servicesPerEvent = 8;
+    private int shifts = 500;
+    private int bookingsPerShift = 4;
+    private int summarySheets = 200;
+    private int tasksPerSheet = 15;
+
+    private Random random;
+
+    public DataGenerator(long seed) {
+        this.seed = seed;
+    }
+
+    /**
+     * Sets every size in proportion to the number of menus; 10 000 menus give
+     * 5 000 users, 70 000 recipes and 30 000 preparations, 2 500 events of 8
+     * services, 5 000 shifts and 2 000 summary sheets
+     */
+    public DataGenerator scaledTo(int menus) {
+        this.menus = menus;
+        this.users = Math.max(20, menus / 2);
+        this.recipes = menus * 7;
+        this.preparations = menus * 3;
+        this.events = Math.max(1, menus / 4);
+        this.shifts = Math.max(1, menus / 2);
+        this.summarySheets = Math.max(1, menus / 5);
+        return this;
+    }
+
+    public DataGenerator users(int users) {
+        this.users = users;
+        return this;
+    }
+
+    public DataGenerator recipes(int recipes, int preparations) {
+        this.recipes = recipes;
+        this.preparations = preparations;
+        return this;
+    }
+
+    public DataGenerator menus(int menus, int sectionsPerMenu, int itemsPerSection) {
+        this.menus = menus;
+        this.sectionsPerMenu = sectionsPerMenu;
+        this.itemsPerSection = itemsPerSection;
+        return this;
+    }
+
+    public DataGenerator events(int events, int servicesPerEvent) {
+        this.events = events;
+        this.servicesPerEvent = servicesPerEvent;
+        return this;
+    }
+
+    public DataGenerator shifts(int shifts, int bookingsPerShift) {
+        this.shifts = shifts;
+        this.bookingsPerShift = bookingsPerShift;
+        return this;
+    }
+
+    public DataGenerator summarySheets(int summarySheets, int tasksPerSheet) {
+        this.summarySheets = summarySheets;
+        this.tasksPerSheet = tasksPerSheet;
+        return this;
+    }
+
+    /**
+     * Appends the generated rows to the database
+     *
+     * @throws SQLException if an insert fails; the table being filled is
+     *                      rolled back
+     */
+    public void generate() throws SQLException {
+        if (users < 1)
+            throw new IllegalArgumentException("At least one user is needed to own menus and events");
+        random = new Random(seed);
+        long start = System.nanoTime();
+        try (Connection conn = PersistenceManager.getConnection()) {
+            conn.setAutoCommit(false);
+            try {
+                int[] chefs = generateUsers(conn);
+                int firstRecipe = generateRecipes(conn);
+                int[] menuIds = generateMenus(conn, chefs, firstRecipe);
+                int firstService = generateEvents(conn, chefs, menuIds);
+                int[][] bookings = generateShifts(conn);
+                generateSummarySheets(conn, chefs, firstService, firstRecipe, bookings);
+            } catch (SQLException ex) {
+                conn.rollback();
+                throw ex;
+            }
+        }
+        LOGGER.info(String.format("Generated %d menus, %d recipes, %d users, %d events in %.1f s", menus, recipes,
+                users, events, (System.nanoTime() - start) / 1e9));
+    }
+
+    /** @return IDs of the generated chefs */
+    private int[] generateUsers(Connection conn) throws SQLException {
+        int first = nextId(conn, "Users");
+        int[] chefs = new int[(users + 9) / 10];
+        int chefCount = 0;
+        try (Batch u = new Batch(conn, "INSERT INTO Users (id, username) VALUES (?, ?)");
+                Batch r = new Batch(conn, "INSERT INTO UserRoles (user_id, role_id) VALUES (?, ?)")) {
+            for (int i = 0; i < users; i++) {
+                int id = first + i;
+                u.add(id, pick(FIRST_NAMES) + "." + pick(LAST_NAMES) + i);
+                // One chef in ten, then cooks, organizers and service staff
+                User.Role role = i % 10 == 0 ? User.Role.CHEF
+                        : i % 10 < 7 ? User.Role.CUOCO : i % 10 == 7 ? User.Role.ORGANIZZATORE : User.Role.SERVIZIO;
+                r.add(id, role.ordinal());
+                if (role == User.Role.CHEF) {
+                    chefs[chefCount++] = id;
+                    r.add(id, User.Role.CUOCO.ordinal());
+                }
+            }
+        }
+        conn.commit();
+        return chefs;
+    }
+
+    /** @return ID of the first generated recipe */
+    private int generateRecipes(Connection conn) throws SQLException {
+        int firstRecipe = nextId(conn, "Recipes");
+        int firstPrep = nextId(conn, "Preparations");
+        try (Batch p = new Batch(conn, "INSERT INTO Preparations (id, name, description) VALUES (?, ?, ?)")) {
+            for (int i = 0; i < preparations; i++) {
+                p.add(firstPrep + i, pick(BASES) + " " + pick(STYLES) + " " + pick(INGREDIENTS) + " " + i,
+                        "Base per " + pick(DISHES).toLowerCase());
+            }
+        }
+        try (Batch r = new Batch(conn, "INSERT INTO Recipes (id, name, description) VALUES (?, ?, ?)");
+                Batch rp = new Batch(conn,
+                        "INSERT OR IGNORE INTO RecipePreparations (recipe_id, preparation_id) VALUES (?, ?)")) {
+            for (int i = 0; i < recipes; i++) {
+                String ingredient = pick(INGREDIENTS);
+                r.add(firstRecipe + i, pick(DISHES) + " " + pick(STYLES) + " " + ingredient + " " + i,
+                        "Piatto a base di " + ingredient);
+                if (preparations > 0) {
+                    for (int k = random.nextInt(4); k > 0; k--) {
+                        rp.add(firstRecipe + i, firstPrep + random.nextInt(preparations));
+                    }
+                }
+            }
+        }
+        conn.commit();
+        return firstRecipe;
+    }
+
+    private int[] generateMenus(Connection conn, int[] chefs, int firstRecipe) throws SQLException {
+        int firstMenu = nextId(conn, "Menus");
+        int section = nextId(conn, "MenuSections");
+        int[] ids = new int[menus];
+        try (Batch m = new Batch(conn,
+                "INSERT INTO Menus (id, title, owner_id, published, features) VALUES (?, ?, ?, ?, ?)");
+                Batch s = new Batch(conn, "INSERT INTO MenuSections (id, menu_id, name, position) VALUES (?, ?, ?, ?)");
+                Batch it = new Batch(conn, "INSERT INTO MenuItems (menu_id, section_id, description, recipe_id, "
+                        + "position) VALUES (?, ?, ?, ?, ?)")) {
+            for (int i = 0; i < menus; i++) {
+                int menuId = firstMenu + i;
+                ids[i] = menuId;
+                m.add(menuId, "Menu " + pick(OCCASIONS).toLowerCase() + " " + i, pickId(chefs),
+                        random.nextInt(3) == 0 ? 0 : 1, random.nextInt(1 << MenuFeature.values().length));
+                int offset = random.nextInt(SECTIONS.length);
+                for (int sec = 0; sec < sectionsPerMenu; sec++, section++) {
+                    s.add(section, menuId, SECTIONS[(offset + sec) % SECTIONS.length], sec);
+                    for (int pos = 0; pos < itemsPerSection; pos++) {
+                        addItem(it, menuId, section, firstRecipe, pos);
+                    }
+                }
+                // A couple of items outside any section
+                for (int pos = 0; pos < 2; pos++) {
+                    addItem(it, menuId, 0, firstRecipe, pos);
+                }
+            }
+        }
+        conn.commit();
+        return ids;
+    }
+
+    private void addItem(Batch it, int menuId, int sectionId, int firstRecipe, int pos) throws SQLException {
+        int recipe = firstRecipe + random.nextInt(Math.max(1, recipes));
+        it.add(menuId, sectionId, "Piatto " + (recipe - firstRecipe), recipe, pos);
+    }
+
+    /** @return ID of the first generated service */
+    private int generateEvents(Connection conn, int[] chefs, int[] menuIds) throws SQLException {
+        int firstEvent = nextId(conn, "Events");
+        int firstService = nextId(conn, "Services");
+        try (Batch e = new Batch(conn,
+                "INSERT INTO Events (id, name, date_start, date_end, chef_id) VALUES (?, ?, ?, ?, ?)");
+                Batch s = new Batch(conn, "INSERT INTO Services (event_id, name, approved_menu_id, service_date, "
+                        + "time_start, time_end, location) VALUES (?, ?, ?, ?, ?, ?, ?)")) {
+            for (int i = 0; i < events; i++) {
+                int id = firstEvent + i;
+                LocalDate start = day(random.nextInt(730));
+                int days = 1 + random.nextInt(3);
+                LocalDate end = start.plusDays(days - 1);
+                e.add(id, pick(OCCASIONS) + " " + pick(LAST_NAMES) + " " + i, start.toEpochDay(), end.toEpochDay(),
+                        pickId(chefs));
+                for (int k = 0; k < servicesPerEvent; k++) {
+                    int hour = 7 + (k * 3) % 15;
+                    // Seven services in ten already have an approved menu
+                    int menu = menuIds.length > 0 && random.nextInt(10) < 7 ? pickId(menuIds) : 0;
+                    s.add(id, pick(SERVICES), menu, start.plusDays(k % days).toEpochDay(), hour * 60, (hour + 2) * 60,
+                            pick(PLACES));
+                }
+            }
+        }
+        conn.commit();
+        return firstService;
+    }
+
+    /** @return User IDs booked on each generated shift */
+    private int[][] generateShifts(Connection conn) throws SQLException {
+        int first = nextId(conn, "Shifts");
+        int firstUser = nextId(conn, "Users") - users;
+        int[][] bookings = new int[shifts][];
+        try (Batch s = new Batch(conn, "INSERT INTO Shifts (id, date, start_time, end_time) VALUES (?, ?, ?, ?)");
+                Batch b = new Batch(conn,
+                        "INSERT OR IGNORE INTO ShiftBookings (shift_id, user_id) VALUES (?, ?)")) {
+            for (int i = 0; i < shifts; i++) {
+                int id = first + i;
+                int slot = i % 3;
+                s.add(id, day(i / 3).toEpochDay(), (6 + 6 * slot) * 60, (12 + 6 * slot) * 60);
+                bookings[i] = new int[users > 0 ? bookingsPerShift : 0];
+                for (int k = 0; k < bookings[i].length; k++) {
+                    bookings[i][k] = firstUser + random.nextInt(users);
+                    b.add(id, bookings[i][k]);
+                }
+            }
+        }
+        conn.commit();
+        return bookings;
+    }
+
+    private void generateSummarySheets(Connection conn, int[] chefs, int firstService, int firstRecipe,
+            int[][] bookings) throws SQLException {
+        int services = events * servicesPerEvent;
+        if (services == 0 || recipes == 0)
+            return;
+        int sheet = nextId(conn, "SummarySheets");
+        int task = nextId(conn, "Tasks");
+        try (Batch ss = new Batch(conn, "INSERT INTO SummarySheets (id, service_id, owner_id) VALUES (?, ?, ?)");
+                Batch t = new Batch(conn, "INSERT INTO Tasks (id, sumsheet_id, kitchenproc_id, description, type, "
+                        + "quantity, position, portions, ready) VALUES (?, ?, ?, ?, 1, ?, ?, ?, ?)");
+                Batch a = new Batch(conn,
+                        "INSERT INTO Assignment (sumsheet_id, task_id, cook_id, shift_id) VALUES (?, ?, ?, ?)")) {
+            int firstShift = nextId(conn, "Shifts") - shifts;
+            for (int i = 0; i < summarySheets; i++, sheet++) {
+                ss.add(sheet, firstService + random.nextInt(services), pickId(chefs));
+                for (int pos = 0; pos < tasksPerSheet; pos++, task++) {
+                    int recipe = firstRecipe + random.nextInt(recipes);
+                    t.add(task, sheet, recipe, "Ricetta " + (recipe - firstRecipe), (double) (1 + random.nextInt(10)),
+                            pos, 10 * (1 + random.nextInt(20)), random.nextInt(4) == 0 ? 1 : 0);
+                    // Two tasks in three are assigned, to a cook booked on the shift
+                    if (shifts > 0 && random.nextInt(3) > 0) {
+                        int shift = random.nextInt(shifts);
+                        int[] booked = bookings[shift];
+                        a.add(sheet, task, booked.length > 0 ? booked[random.nextInt(booked.length)] : null,
+                                firstShift + shift);
+                    }
+                }
+            }
+        }
+        conn.commit();
+    }
+
+    private String pick(String[] values) {
+        return values[random.nextInt(values.length)];
+    }
+
+    private int pickId(int[] ids) {
+        return ids[random.nextInt(ids.length)];
+    }
+
+    private static LocalDate day(int offset) {
+        return LocalDate.of(2026, 1, 1).plusDays(offset);
+    }
+
+    private static int nextId(Connection conn, String table) throws SQLException {
+        try (PreparedStatement ps = conn.prepareStatement("SELECT COALESCE(MAX(id), 0) + 1 FROM " + table);
+                ResultSet rs = ps.executeQuery()) {
+            rs.next();
+            return rs.getInt(1);
+        }
+    }
+
+    /**
+     * A batched insert statement, flushed every {@value #BATCH_SIZE} rows and
+     * on close
+     */
+    private static final class Batch implements AutoCloseable {
+        private final PreparedStatement ps;
+        private int pending;
+
+        Batch(Connection conn, String sql) throws SQLException {
+            ps = conn.prepareStatement(sql);
+        }
+
+        void add(Object... values) throws SQLException {
+            for (int i = 0; i < values.length; i++) {
+                ps.setObject(i + 1, values[i]);
+            }
+            ps.addBatch();
+            if (++pending == BATCH_SIZE) {
+                ps.executeBatch();
+                pending = 0;
+            }
+        }
+
+        @Override
+        public void close() throws SQLException {
+            try {
+                if (pending > 0)
+                    ps.executeBatch();
+            } finally {
+                ps.close();
+            }
+        }
+    }
+
+    public static void main(String[] args) throws SQLException {
+        int menus = args.length > 0 ? Integer.parseInt(args[0]) : 10_000;
+        long seed = args.length > 1 ? Long.parseLong(args[1]) : 42;
+        if (!PersistenceManager.initializeDatabase())
+            throw new IllegalStateException("Cannot initialize the database from the schema script");
+        new DataGenerator(seed).scaledTo(menus).generate();
+    }
+}
@@ -0,0 +1,66 @@
+package catering.util;
+
+import catering.util.metrics.Metrics;
+import catering.util.trace.Span;
+import catering.util.trace.Tracer;
+
+/**
+ * Instrument runs a use case operation timed in {@link Metrics} and traced
+ * as a {@code usecase} span of {@link Tracer}, both under the name of the
+ * operation:
+ *
+ * <pre>
+ * return Instrument.call("MenuManager.createMenu", () -&gt; {
+ *     ...
+ * });
+ * </pre>
+ *
+ * The operation may throw a checked exception, which reaches the caller
+ * unchanged.
+ */
+public final class Instrument {
+
+    /** An operation with a result */
+    @FunctionalInterface
+    public interface Operation<T, E extends Exception> {
+        T call() throws E;
+    }
+
+    /** An operation without a result */
+    @FunctionalInterface
+    public interface Action<E extends Exception> {
+        void run() throws E;
+    }
+
+    private Instrument() {
+    }
+
+    /**
+     * @param name Timer and span name, e.g. {@code MenuManager.createMenu}
+     * @return The result of the operation
+     */
+    public static <T, E extends Exception> T call(String name, Operation<T, E> op) throws E {
+        long start = Metrics.start();
+        Span span = Tracer.start(name, "usecase");
+        try {
+            return op.call();
+        } finally {
+            span.close();
+            Metrics.stop(name, start);
+        }
+    }
+
+    /**
+     * @param name Timer and span name, as for {@link #call}
+     */
+    public static <E extends Exception> void run(String name, Action<E> op) throws E {
+        long start = Metrics.start();
+        Span span = Tracer.start(name, "usecase");
+        try {
+            op.run();
+        } finally {
+            span.close();
+            Metrics.stop(name, start);
+        }
+    }
+}
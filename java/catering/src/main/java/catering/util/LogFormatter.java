@@ -0,0 +1,118 @@
+package catering.util;
+
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.util.logging.Formatter;
+import java.util.logging.LogRecord;
+
+/**
+ * Formats records as {@code 2025-01-31 12:00:00.000 [INFO] logger: message},
+ * appending into a caller's buffer. Simple {@code {0}} placeholders are
+ * filled in directly; anything else goes through {@link java.text.MessageFormat}.
+ * Safe to share between threads.
+ */
+class LogFormatter extends Formatter {
+
+    private static final DateTimeFormatter SECONDS = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss.");
+
+    // Timestamps only change within the second between records, so the
+    // formatted date is kept for the current second
+    private static final class Second {
+        final long epochSecond;
+        final String prefix;
+
+        Second(long epochSecond, String prefix) {
+            this.epochSecond = epochSecond;
+            this.prefix = prefix;
+        }
+    }
+
+    private final ZoneId zone = ZoneId.systemDefault();
+    private volatile Second second = new Second(Long.MIN_VALUE, "");
+
+    @Override
+    public String format(LogRecord record) {
+        StringBuilder sb = new StringBuilder(128);
+        formatTo(record, sb);
+        return sb.toString();
+    }
+
+    void formatTo(LogRecord record, StringBuilder sb) {
+        appendTimestamp(record.getMillis(), sb);
+        sb.append(" [").append(record.getLevel().getName()).append("] ");
+        sb.append(record.getLoggerName()).append(": ");
+        appendMessage(record, sb);
+        sb.append('\n');
+
+        Throwable thrown = record.getThrown();
+        if (thrown != null) {
+            sb.append(thrown).append('\n');
+            for (StackTraceElement element : thrown.getStackTrace()) {
+                sb.append("\tat ").append(element).append('\n');
+            }
+            sb.append('\n');
+        }
+    }
+
+    void appendTimestamp(long millis, StringBuilder sb) {
+        long epochSecond = Math.floorDiv(millis, 1000);
+        Second s = second;
+        if (s.epochSecond != epochSecond) {
+            s = new Second(epochSecond, SECONDS.format(Instant.ofEpochSecond(epochSecond).atZone(zone)));
+            second = s;
+        }
+        int ms = Math.floorMod(millis, 1000);
+        sb.append(s.prefix);
+        if (ms < 100)
+            sb.append('0');
+        if (ms < 10)
+            sb.append('0');
+        sb.append(ms);
+    }
+
+    private void appendMessage(LogRecord record, StringBuilder sb) {
+        String message = record.getMessage();
+        Object[] params = record.getParameters();
+        if (message == null) {
+            sb.append("null");
+        } else if (params == null || params.length == 0) {
+            sb.append(message);
+        } else if (record.getResourceBundle() != null || message.indexOf('\'') >= 0) {
+            sb.append(formatMessage(record));
+        } else {
+            appendPlaceholders(record, message, params, sb);
+        }
+    }
+
+    // Fills in {0}, {1}, ...; falls back to MessageFormat on anything else,
+    // such as {0,number}
+    private void appendPlaceholders(LogRecord record, String message, Object[] params, StringBuilder sb) {
+        int mark = sb.length();
+        int from = 0;
+        int open;
+        while ((open = message.indexOf('{', from)) >= 0) {
+            int close = message.indexOf('}', open);
+            int index = close > open + 1 ? parseIndex(message, open + 1, close) : -1;
+            if (index < 0 || index >= params.length) {
+                sb.setLength(mark);
+                sb.append(formatMessage(record));
+                return;
+            }
+            sb.append(message, from, open).append(params[index]);
+            from = close + 1;
+        }
+        sb.append(message, from, message.length());
+    }
+
+    private static int parseIndex(String s, int from, int to) {
+        int n = 0;
+        for (int i = from; i < to; i++) {
+            char c = s.charAt(i);
+            if (c < '0' || c > '9' || n > 99)
+                return -1;
+            n = n * 10 + (c - '0');
+        }
+        return n;
+    }
+}
@@ -1,20 +1,28 @@
 package catering.util;
 
-import java.text.SimpleDateFormat;
-import java.util.Date;
-import java.util.logging.ConsoleHandler;
-import java.util.logging.Formatter;
 import java.util.logging.Level;
-import java.util.logging.LogRecord;
 import java.util.logging.Logger;
 
 /**
- * Utility class to provide consistent logging across the application
+ * Utility class to provide consistent logging across the application.
+ * <p>
+ * Records go to standard error through a background writer, so a log call
+ * costs the caller little more than queueing the record. Build messages
+ * lazily, so that nothing is concatenated for a disabled level:
+ *
+ * <pre>
+ * LOGGER.log(Level.SEVERE, ex, () -&gt; "Error executing query: " + query);
+ * LOGGER.log(Level.INFO, "Database initialized from {0}", path);
+ * </pre>
  */
 public class LogManager {
-    private static final SimpleDateFormat DATE_FORMAT = new SimpleDateFormat("yyyy-MM-dd HH:mm:ss.SSS");
+    // Records held while the writer catches up, from the catering.logBuffer
+    // system property
+    private static final int BUFFER_SIZE = Integer.getInteger("catering.logBuffer", 8192);
     private static LogManager instance = null;
 
+    private final AsyncHandler handler;
+
     private LogManager() {
         // Private constructor
         Logger rootLogger = Logger.getLogger("");
@@ -24,11 +32,11 @@ public class LogManager {
             rootLogger.removeHandler(handler);
         }
 
-        // Add a console handler with custom formatter
-        ConsoleHandler consoleHandler = new ConsoleHandler();
-        consoleHandler.setLevel(Level.ALL);
-        consoleHandler.setFormatter(new CustomFormatter());
-        rootLogger.addHandler(consoleHandler);
+        // Add an asynchronous console handler with custom formatter
+        handler = new AsyncHandler(System.err, BUFFER_SIZE);
+        handler.setLevel(Level.ALL);
+        rootLogger.addHandler(handler);
+        Runtime.getRuntime().addShutdownHook(new Thread(handler::close, "log-flush"));
 
         // Set default level
         rootLogger.setLevel(Level.INFO);
@@ -47,32 +55,9 @@ public class LogManager {
     }
 
     /**
-     * Custom formatter for readable log output
+     * Waits until the records logged so far are written
      */
-    private static class CustomFormatter extends Formatter {
-        @Override
-        public String format(LogRecord record) {
-            StringBuilder sb = new StringBuilder();
-            sb.append(DATE_FORMAT.format(new Date(record.getMillis())));
-            sb.append(" [").append(record.getLevel()).append("] ");
-            sb.append(record.getLoggerName()).append(": ");
-            sb.append(formatMessage(record));
-
-            if (record.getThrown() != null) {
-                sb.append("\n").append(formatException(record.getThrown()));
-            }
-
-            sb.append("\n");
-            return sb.toString();
-        }
-
-        private String formatException(Throwable throwable) {
-            StringBuilder sb = new StringBuilder();
-            sb.append(throwable.toString()).append("\n");
-            for (StackTraceElement element : throwable.getStackTrace()) {
-                sb.append("\tat ").append(element.toString()).append("\n");
-            }
-            return sb.toString();
-        }
+    public static void flush() {
+        getInstance().handler.flush();
     }
-}
\ No newline at end of file
+}
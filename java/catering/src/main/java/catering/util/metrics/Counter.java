@@ -0,0 +1,47 @@
+package catering.util.metrics;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Counter is a running total. Updates are spread over striped cells, so
+ * threads counting at the same time do not contend; they are ignored while
+ * metrics are off.
+ */
+public class Counter implements CounterMXBean {
+
+    private final String name;
+    private final LongAdder count = new LongAdder();
+
+    Counter(String name) {
+        this.name = name;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public void increment() {
+        if (Metrics.isEnabled())
+            count.increment();
+    }
+
+    public void add(long n) {
+        if (Metrics.isEnabled())
+            count.add(n);
+    }
+
+    @Override
+    public long getCount() {
+        return count.sum();
+    }
+
+    @Override
+    public void reset() {
+        count.reset();
+    }
+
+    @Override
+    public String toString() {
+        return "count=" + count.sum();
+    }
+}
@@ -0,0 +1,35 @@
+package catering.util.metrics;
+
+import java.util.function.LongSupplier;
+
+/**
+ * Gauge reports a value computed when it is read, such as the number of open
+ * sessions.
+ */
+public class Gauge implements GaugeMXBean {
+
+    private final String name;
+    private volatile LongSupplier source = () -> 0;
+
+    Gauge(String name) {
+        this.name = name;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    void setSource(LongSupplier source) {
+        this.source = source;
+    }
+
+    @Override
+    public long getValue() {
+        return source.getAsLong();
+    }
+
+    @Override
+    public String toString() {
+        return "value=" + getValue();
+    }
+}
@@ -0,0 +1,9 @@
+package catering.util.metrics;
+
+/**
+ * JMX view of a {@link Gauge}.
+ */
+public interface GaugeMXBean {
+
+    long getValue();
+}
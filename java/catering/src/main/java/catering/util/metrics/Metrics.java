@@ -0,0 +1,178 @@
+package catering.util.metrics;
+
+import java.lang.management.ManagementFactory;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+import java.util.function.LongSupplier;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import javax.management.ObjectName;
+
+import catering.util.LogManager;
+
+/**
+ * Metrics is the registry of the application's timers, counters and gauges.
+ * Each is created on first use, lives for the life of the JVM and is
+ * exported over JMX as {@code catering.metrics:type=Timer,name=...} (or
+ * Counter, Gauge); {@link #dump()} lists them all as text.
+ * <p>
+ * Timing an operation costs one volatile read when metrics are off
+ * ({@code -Dcatering.metrics=false}):
+ *
+ * <pre>
+ * long start = Metrics.start();
+ * try {
+ *     ...
+ * } finally {
+ *     Metrics.stop(name, start);
+ * }
+ * </pre>
+ *
+ * This is what {@link catering.util.Instrument} does around every manager
+ * operation.
+ */
+public final class Metrics {
+
+    /** Returned by {@link #start()} while metrics are off */
+    public static final long NOT_TIMED = Long.MIN_VALUE;
+
+    private static final Logger LOGGER = LogManager.getLogger(Metrics.class);
+
+    private static final Map<String, Timer> TIMERS = new ConcurrentHashMap<>();
+    private static final Map<String, Counter> COUNTERS = new ConcurrentHashMap<>();
+    private static final Map<String, Gauge> GAUGES = new ConcurrentHashMap<>();
+    private static volatile boolean enabled = !"false".equals(System.getProperty("catering.metrics"));
+
+    static {
+        register("catering:type=Metrics", new Registry());
+    }
+
+    private Metrics() {
+    }
+
+    public static boolean isEnabled() {
+        return enabled;
+    }
+
+    public static void setEnabled(boolean enabled) {
+        Metrics.enabled = enabled;
+    }
+
+    /**
+     * @return The current time for {@link #stop(String, long)}, or
+     *         {@link #NOT_TIMED} while metrics are off
+     */
+    public static long start() {
+        return enabled ? System.nanoTime() : NOT_TIMED;
+    }
+
+    /**
+     * Records the time since {@code start} in the named timer
+     *
+     * @param name  Timer name, e.g. {@code MenuManager.createMenu}
+     * @param start Value returned by {@link #start()}
+     */
+    public static void stop(String name, long start) {
+        if (start == NOT_TIMED)
+            return;
+        long nanos = System.nanoTime() - start;
+        Timer timer = TIMERS.get(name);
+        if (timer == null)
+            timer = timer(name);
+        timer.record(nanos);
+    }
+
+    /**
+     * @return The named timer, created if missing
+     */
+    public static Timer timer(String name) {
+        return getOrCreate(TIMERS, name, Timer::new, "Timer");
+    }
+
+    /**
+     * @return The named counter, created if missing
+     */
+    public static Counter counter(String name) {
+        return getOrCreate(COUNTERS, name, Counter::new, "Counter");
+    }
+
+    /**
+     * Registers a gauge, replacing the value source of an existing one
+     *
+     * @param name  Gauge name
+     * @param value Read each time the gauge is queried, from any thread
+     * @return The gauge
+     */
+    public static Gauge gauge(String name, LongSupplier value) {
+        Gauge gauge = getOrCreate(GAUGES, name, Gauge::new, "Gauge");
+        gauge.setSource(value);
+        return gauge;
+    }
+
+    /**
+     * @return All metrics, one per line, sorted by name
+     */
+    public static String dump() {
+        Map<String, Object> all = new TreeMap<>();
+        all.putAll(TIMERS);
+        all.putAll(COUNTERS);
+        all.putAll(GAUGES);
+        StringBuilder sb = new StringBuilder();
+        all.forEach((name, metric) -> sb.append(name).append(' ').append(metric).append('\n'));
+        return sb.toString();
+    }
+
+    /**
+     * Zeroes all timers and counters; gauges are left alone
+     */
+    public static void reset() {
+        TIMERS.values().forEach(Timer::reset);
+        COUNTERS.values().forEach(Counter::reset);
+    }
+
+    private static <M> M getOrCreate(Map<String, M> metrics, String name, Function<String, M> factory,
+            String type) {
+        M metric = metrics.get(name);
+        if (metric != null)
+            return metric;
+        return metrics.computeIfAbsent(name, n -> {
+            M created = factory.apply(n);
+            register("catering.metrics:type=" + type + ",name=" + ObjectName.quote(n), created);
+            return created;
+        });
+    }
+
+    private static void register(String objectName, Object bean) {
+        try {
+            ManagementFactory.getPlatformMBeanServer().registerMBean(bean, new ObjectName(objectName));
+        } catch (Exception ex) {
+            LOGGER.log(Level.WARNING, ex, () -> "Metric not registered with JMX: " + objectName);
+        }
+    }
+
+    private static final class Registry implements MetricsMXBean {
+
+        @Override
+        public boolean isEnabled() {
+            return Metrics.isEnabled();
+        }
+
+        @Override
+        public void setEnabled(boolean enabled) {
+            Metrics.setEnabled(enabled);
+        }
+
+        @Override
+        public String dump() {
+            return Metrics.dump();
+        }
+
+        @Override
+        public void reset() {
+            Metrics.reset();
+        }
+    }
+}
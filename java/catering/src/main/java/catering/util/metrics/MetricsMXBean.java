@@ -0,0 +1,16 @@
+package catering.util.metrics;
+
+/**
+ * JMX view of the {@link Metrics} registry, as {@code catering:type=Metrics}.
+ */
+public interface MetricsMXBean {
+
+    boolean isEnabled();
+
+    void setEnabled(boolean enabled);
+
+    /** @return All metrics as text, one per line */
+    String dump();
+
+    void reset();
+}
@@ -0,0 +1,81 @@
+package catering.util.metrics;
+
+import catering.util.LatencyHistogram;
+
+/**
+ * Timer keeps a histogram of the durations of an operation.
+ */
+public class Timer implements TimerMXBean {
+
+    private final String name;
+    private final LatencyHistogram histogram = new LatencyHistogram();
+
+    Timer(String name) {
+        this.name = name;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * @return The current time for {@link #stop(long)}, or
+     *         {@link Metrics#NOT_TIMED} while metrics are off
+     */
+    public long start() {
+        return Metrics.start();
+    }
+
+    public void stop(long start) {
+        if (start != Metrics.NOT_TIMED)
+            histogram.record(System.nanoTime() - start);
+    }
+
+    public void record(long nanos) {
+        histogram.record(nanos);
+    }
+
+    public LatencyHistogram getHistogram() {
+        return histogram;
+    }
+
+    @Override
+    public long getCount() {
+        return histogram.getCount();
+    }
+
+    @Override
+    public double getMeanMillis() {
+        return histogram.getMeanNanos() / 1e6;
+    }
+
+    @Override
+    public double getP50Millis() {
+        return histogram.getPercentileNanos(50) / 1e6;
+    }
+
+    @Override
+    public double getP95Millis() {
+        return histogram.getPercentileNanos(95) / 1e6;
+    }
+
+    @Override
+    public double getP99Millis() {
+        return histogram.getPercentileNanos(99) / 1e6;
+    }
+
+    @Override
+    public double getMaxMillis() {
+        return histogram.getMaxNanos() / 1e6;
+    }
+
+    @Override
+    public void reset() {
+        histogram.reset();
+    }
+
+    @Override
+    public String toString() {
+        return histogram.toString();
+    }
+}
@@ -0,0 +1,21 @@
+package catering.util.metrics;
+
+/**
+ * JMX view of a {@link Timer}.
+ */
+public interface TimerMXBean {
+
+    long getCount();
+
+    double getMeanMillis();
+
+    double getP50Millis();
+
+    double getP95Millis();
+
+    double getP99Millis();
+
+    double getMaxMillis();
+
+    void reset();
+}
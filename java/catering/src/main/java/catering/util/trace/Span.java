@@ -0,0 +1,57 @@
+package catering.util.trace;
+
+/**
+ * Span is one timed piece of work, opened by {@link Tracer#start} and
+ * closed, on the same thread, with try-with-resources. Spans opened while
+ * another is open on the thread are its children.
+ */
+public class Span implements AutoCloseable {
+
+    /** Handed out while tracing is off; does nothing */
+    static final Span DISABLED = new Span(null, null, null, 0);
+
+    final Tracer.ThreadTrace trace;
+    final String name;
+    final String category;
+    final long startNanos;
+    long endNanos;
+    String[] args;
+
+    Span(Tracer.ThreadTrace trace, String name, String category, long startNanos) {
+        this.trace = trace;
+        this.name = name;
+        this.category = category;
+        this.startNanos = startNanos;
+    }
+
+    /**
+     * Attaches a value shown with the span in trace viewers
+     *
+     * @return This span
+     */
+    public Span arg(String key, Object value) {
+        if (name != null) {
+            int n = args == null ? 0 : args.length;
+            String[] grown = new String[n + 2];
+            if (n > 0)
+                System.arraycopy(args, 0, grown, 0, n);
+            grown[n] = key;
+            grown[n + 1] = String.valueOf(value);
+            args = grown;
+        }
+        return this;
+    }
+
+    /**
+     * @return Whether the span is being recorded
+     */
+    public boolean isSampled() {
+        return name != null;
+    }
+
+    @Override
+    public void close() {
+        if (trace != null)
+            trace.end(this);
+    }
+}
@@ -0,0 +1,247 @@
+package catering.util.trace;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import catering.util.LogManager;
+
+/**
+ * Tracer records nested spans (use cases, entity loads, SQL statements) and
+ * exports them in the Chrome Trace Event format, which chrome://tracing,
+ * Perfetto and speedscope open directly.
+ * <p>
+ * The decision to record is taken once per trace, when the outermost span of
+ * a thread opens, with the probability set by the
+ * {@code catering.traceSampleRate} system property (0 to 1, default 0: off).
+ * While off, {@link #start} costs one volatile read. With
+ * {@code catering.traceFile} set, the trace is written there on exit.
+ */
+public final class Tracer {
+
+    private static final Logger LOGGER = LogManager.getLogger(Tracer.class);
+
+    // Spans kept for export; beyond this, whole traces are dropped
+    private static final int MAX_SPANS = Integer.getInteger("catering.traceMaxSpans", 1_000_000);
+    private static final int MAX_SPANS_PER_TRACE = 100_000;
+    private static final long BASE_NANOS = System.nanoTime();
+
+    private static final Queue<Span> SPANS = new ConcurrentLinkedQueue<>();
+    private static final AtomicInteger SPAN_COUNT = new AtomicInteger();
+    private static final LongAdder DROPPED = new LongAdder();
+    private static final Map<Long, String> THREAD_NAMES = new ConcurrentHashMap<>();
+    private static final ThreadLocal<ThreadTrace> CURRENT = ThreadLocal.withInitial(ThreadTrace::new);
+
+    private static volatile double sampleRate = parseRate(System.getProperty("catering.traceSampleRate"));
+
+    static {
+        String file = System.getProperty("catering.traceFile");
+        if (file != null) {
+            Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+                try {
+                    export(Paths.get(file));
+                } catch (IOException ex) {
+                    LOGGER.log(Level.SEVERE, ex, () -> "Trace not written to " + file);
+                }
+            }, "trace-export"));
+        }
+    }
+
+    private Tracer() {
+    }
+
+    /**
+     * Spans of one thread's current trace
+     */
+    static final class ThreadTrace {
+        private final long threadId = Thread.currentThread().getId();
+        private final String threadName = Thread.currentThread().getName();
+        private final Span unsampled = new Span(this, null, null, 0);
+        private final List<Span> spans = new ArrayList<>();
+        private int depth;
+        private boolean sampled;
+
+        Span start(String name, String category) {
+            if (depth++ == 0) {
+                double rate = sampleRate;
+                sampled = rate >= 1 || ThreadLocalRandom.current().nextDouble() < rate;
+            }
+            if (!sampled || spans.size() >= MAX_SPANS_PER_TRACE)
+                return unsampled;
+            return new Span(this, name, category, System.nanoTime());
+        }
+
+        void end(Span span) {
+            if (span != unsampled) {
+                span.endNanos = System.nanoTime();
+                spans.add(span);
+            }
+            if (--depth == 0 && !spans.isEmpty()) {
+                collect(threadId, threadName, spans);
+                spans.clear();
+            }
+        }
+    }
+
+    /**
+     * Opens a span on the calling thread; close it with try-with-resources
+     *
+     * @param name     Shown in trace viewers, e.g. {@code MenuManager.createMenu}
+     * @param category Groups spans, e.g. {@code usecase}, {@code load},
+     *                 {@code sql}
+     */
+    public static Span start(String name, String category) {
+        if (sampleRate == 0)
+            return Span.DISABLED;
+        return CURRENT.get().start(name, category);
+    }
+
+    public static double getSampleRate() {
+        return sampleRate;
+    }
+
+    /**
+     * @param rate Fraction of traces recorded, from 0 (off) to 1 (all)
+     */
+    public static void setSampleRate(double rate) {
+        if (!(rate >= 0 && rate <= 1))
+            throw new IllegalArgumentException("Sample rate must be between 0 and 1: " + rate);
+        sampleRate = rate;
+    }
+
+    /**
+     * @return Spans recorded and not yet cleared
+     */
+    public static int getSpanCount() {
+        return SPAN_COUNT.get();
+    }
+
+    /**
+     * @return Spans not kept because the limit was reached
+     */
+    public static long getDroppedCount() {
+        return DROPPED.sum();
+    }
+
+    /**
+     * @return The spans recorded so far, in the order their traces ended
+     */
+    static List<Span> getSpans() {
+        return new ArrayList<>(SPANS);
+    }
+
+    public static void clear() {
+        SPANS.clear();
+        SPAN_COUNT.set(0);
+        DROPPED.reset();
+    }
+
+    /**
+     * Writes the spans recorded so far as a Chrome Trace Event JSON file
+     *
+     * @param file Destination, replaced if it exists
+     * @throws IOException if the file cannot be written
+     */
+    public static void export(Path file) throws IOException {
+        try (Writer out = new BufferedWriter(Files.newBufferedWriter(file, StandardCharsets.UTF_8))) {
+            write(out);
+        }
+        LOGGER.log(Level.INFO, "Trace with {0} spans written to {1}", new Object[] { getSpanCount(), file });
+    }
+
+    /**
+     * Writes the spans recorded so far as Chrome Trace Event JSON
+     */
+    public static void write(Appendable out) throws IOException {
+        out.append("{\"displayTimeUnit\":\"ms\",\"traceEvents\":[");
+        boolean first = true;
+        for (Map.Entry<Long, String> thread : THREAD_NAMES.entrySet()) {
+            out.append(first ? "\n" : ",\n");
+            first = false;
+            out.append("{\"name\":\"thread_name\",\"ph\":\"M\",\"pid\":1,\"tid\":").append(thread.getKey().toString())
+                    .append(",\"args\":{\"name\":");
+            string(out, thread.getValue());
+            out.append("}}");
+        }
+        for (Span span : SPANS) {
+            out.append(first ? "\n" : ",\n");
+            first = false;
+            out.append("{\"name\":");
+            string(out, span.name);
+            out.append(",\"cat\":");
+            string(out, span.category);
+            out.append(",\"ph\":\"X\",\"pid\":1,\"tid\":").append(Long.toString(span.trace.threadId))
+                    .append(",\"ts\":").append(micros(span.startNanos - BASE_NANOS))
+                    .append(",\"dur\":").append(micros(span.endNanos - span.startNanos));
+            if (span.args != null) {
+                out.append(",\"args\":{");
+                for (int i = 0; i < span.args.length; i += 2) {
+                    if (i > 0)
+                        out.append(',');
+                    string(out, span.args[i]);
+                    out.append(':');
+                    string(out, span.args[i + 1]);
+                }
+                out.append('}');
+            }
+            out.append('}');
+        }
+        out.append("\n]}\n");
+    }
+
+    private static void collect(long threadId, String threadName, List<Span> spans) {
+        if (SPAN_COUNT.addAndGet(spans.size()) > MAX_SPANS) {
+            SPAN_COUNT.addAndGet(-spans.size());
+            DROPPED.add(spans.size());
+            return;
+        }
+        THREAD_NAMES.putIfAbsent(threadId, threadName);
+        SPANS.addAll(spans);
+    }
+
+    private static String micros(long nanos) {
+        return Long.toString(nanos / 1000) + '.' + (char) ('0' + (Math.abs(nanos) / 100) % 10);
+    }
+
+    private static void string(Appendable out, String s) throws IOException {
+        out.append('"');
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            if (c == '"' || c == '\\')
+                out.append('\\').append(c);
+            else if (c == '\n')
+                out.append("\\n");
+            else if (c < 0x20)
+                out.append(String.format("\\u%04x", (int) c));
+            else
+                out.append(c);
+        }
+        out.append('"');
+    }
+
+    private static double parseRate(String value) {
+        if (value == null)
+            return 0;
+        try {
+            double rate = Double.parseDouble(value);
+            return rate >= 0 && rate <= 1 ? rate : 0;
+        } catch (NumberFormatException ex) {
+            return 0;
+        }
+    }
+}
@@ -0,0 +1,204 @@
+package catering.businesslogic;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import catering.businesslogic.menu.Menu;
+import catering.businesslogic.menu.MenuEventReceiver;
+import catering.businesslogic.menu.MenuItem;
+import catering.businesslogic.menu.Section;
+import catering.businesslogic.recipe.Recipe;
+import catering.persistence.PersistenceManager;
+
+/**
+ * Stress test for the shared bootstrap: many threads, each with its own
+ * {@link Session}, drive the same managers while receivers are added and
+ * removed concurrently.
+ */
+class ConcurrencyStressTest {
+
+    private static final int THREADS = 16;
+    private static final int MENUS_PER_THREAD = 10;
+
+    private ExecutorService pool;
+
+    @BeforeEach
+    void setUp() {
+        PersistenceManager.initializeDatabase("database/catering_init_sqlite.sql");
+        pool = Executors.newFixedThreadPool(THREADS + 1);
+    }
+
+    @AfterEach
+    void tearDown() {
+        pool.shutdownNow();
+    }
+
+    @Test
+    void testGetInstance_RacingThreads_SeeOneInstance() throws Exception {
+        CyclicBarrier start = new CyclicBarrier(THREADS);
+        List<Future<CatERing>> results = new ArrayList<>();
+        for (int i = 0; i < THREADS; i++) {
+            results.add(pool.submit(() -> {
+                start.await();
+                return CatERing.getInstance();
+            }));
+        }
+
+        for (Future<CatERing> f : results) {
+            assertSame(CatERing.getInstance(), f.get(10, TimeUnit.SECONDS));
+        }
+    }
+
+    @Test
+    void testMenuManager_ManyUsersAndChangingReceivers() throws Exception {
+        CatERing app = CatERing.getInstance();
+        Recipe recipe = app.getRecipeManager().getRecipeBook().get(0);
+        Set<Integer> createdIds = ConcurrentHashMap.newKeySet();
+        AtomicInteger itemsSeen = new AtomicInteger();
+        CountingReceiver counter = new CountingReceiver(itemsSeen);
+
+        app.getMenuManager().addEventReceiver(counter);
+        AtomicBoolean running = new AtomicBoolean(true);
+        CyclicBarrier start = new CyclicBarrier(THREADS + 1);
+        try {
+            // Churns the receiver list while the others iterate over it
+            Future<?> churn = pool.submit(() -> {
+                start.await();
+                while (running.get()) {
+                    CountingReceiver idle = new CountingReceiver(new AtomicInteger());
+                    app.getMenuManager().addEventReceiver(idle);
+                    app.getMenuManager().removeEventReceiver(idle);
+                }
+                return null;
+            });
+
+            List<Future<List<Menu>>> workers = new ArrayList<>();
+            for (int t = 0; t < THREADS; t++) {
+                String chef = (t % 2 == 0) ? "Antonio" : "Chiara";
+                Callable<List<Menu>> work = () -> {
+                    List<Menu> mine = new ArrayList<>();
+                    try (Session.Scope scope = new Session().bind()) {
+                        app.getUserManager().fakeLogin(chef);
+                        start.await();
+                        for (int i = 0; i < MENUS_PER_THREAD; i++) {
+                            Menu m = app.getMenuManager().createMenu(chef + " " + i);
+                            Section sec = app.getMenuManager().defineSection("Primi");
+                            app.getMenuManager().insertItem(recipe, sec);
+                            app.getMenuManager().changeTitle(m.getTitle() + " (rivisto)");
+
+                            assertSame(m, app.getMenuManager().getCurrentMenu());
+                            createdIds.add(m.getId());
+                            mine.add(m);
+                        }
+                    }
+                    return mine;
+                };
+                workers.add(pool.submit(work));
+            }
+
+            Set<Integer> ids = new HashSet<>();
+            for (Future<List<Menu>> f : workers) {
+                for (Menu m : f.get(60, TimeUnit.SECONDS)) {
+                    assertTrue(m.getId() > 0, "every menu must be persisted");
+                    assertTrue(m.getTitle().endsWith("(rivisto)"));
+                    ids.add(m.getId());
+                }
+            }
+            running.set(false);
+            churn.get(10, TimeUnit.SECONDS);
+
+            assertEquals(THREADS * MENUS_PER_THREAD, ids.size(), "each thread must read back its own menu ID");
+            assertEquals(ids, createdIds);
+            assertEquals(THREADS * MENUS_PER_THREAD, itemsSeen.get(), "no notification may be lost");
+        } finally {
+            running.set(false);
+            app.getMenuManager().removeEventReceiver(counter);
+        }
+    }
+
+    private static class CountingReceiver implements MenuEventReceiver {
+        private final AtomicInteger itemsAdded;
+
+        CountingReceiver(AtomicInteger itemsAdded) {
+            this.itemsAdded = itemsAdded;
+        }
+
+        @Override
+        public void updateMenuItemAdded(Menu m, MenuItem mi) {
+            itemsAdded.incrementAndGet();
+        }
+
+        @Override
+        public void updateMenuCreated(Menu m) {
+        }
+
+        @Override
+        public void updateMenuDeleted(Menu m) {
+        }
+
+        @Override
+        public void updateMenuTitleChanged(Menu m) {
+        }
+
+        @Override
+        public void updateMenuPublishedState(Menu m) {
+        }
+
+        @Override
+        public void updateMenuFeaturesChanged(Menu m) {
+        }
+
+        @Override
+        public void updateSectionAdded(Menu m, Section sec) {
+        }
+
+        @Override
+        public void updateSectionDeleted(Menu m, Section s, boolean itemsDeleted) {
+        }
+
+        @Override
+        public void updateSectionChangedName(Menu m, Section s) {
+        }
+
+        @Override
+        public void updateSectionsRearranged(Menu m) {
+        }
+
+        @Override
+        public void updateMenuItemDeleted(Menu m, Section sec, MenuItem mi) {
+        }
+
+        @Override
+        public void updateMenuItemChanged(Menu m, Section s, MenuItem mi) {
+        }
+
+        @Override
+        public void updateMenuItemDescriptionChanged(Menu m, MenuItem mi) {
+        }
+
+        @Override
+        public void updateMenuItemsRearranged(Menu m, Section s) {
+        }
+
+        @Override
+        public void updateFreeMenuItemsRearranged(Menu m) {
+        }
+    }
+}
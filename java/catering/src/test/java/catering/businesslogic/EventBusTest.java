@@ -0,0 +1,293 @@
+package catering.businesslogic;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+
+import catering.businesslogic.EventBus.Delivery;
+import catering.businesslogic.menu.Menu;
+import catering.businesslogic.menu.MenuEventReceiver;
+import catering.businesslogic.menu.MenuItem;
+import catering.businesslogic.menu.Section;
+import catering.persistence.PersistenceManager;
+
+/**
+ * Tests for {@link EventBus}: synchronous and asynchronous delivery, order
+ * per aggregate, bounded lanes and the delivery statistics.
+ */
+class EventBusTest {
+
+    /** A test topic */
+    interface Listener {
+        void onEvent(int aggregate, int seq);
+    }
+
+    private EventBus bus;
+
+    private Session.Scope scope;
+
+    @BeforeEach
+    void setUp() {
+        scope = new Session().bind();
+        bus = new EventBus(4, 16);
+    }
+
+    @AfterEach
+    void tearDown() {
+        bus.shutdown();
+        scope.close();
+    }
+
+    @Nested
+    class SyncDelivery {
+
+        @Test
+        void testPublish_DeliversInSubscriptionOrderBeforeReturning() {
+            List<String> calls = new ArrayList<>();
+            bus.subscribe(Listener.class, (a, s) -> calls.add("first"));
+            bus.subscribe(Listener.class, (a, s) -> calls.add("second"));
+
+            bus.publish(Listener.class, () -> 1, l -> l.onEvent(1, 1));
+
+            assertEquals(List.of("first", "second"), calls);
+            assertEquals(1, bus.getStats(Listener.class).getPublished());
+            assertEquals(2, bus.getStats(Listener.class).getDelivered());
+        }
+
+        @Test
+        void testPublish_ReceiverExceptionReachesPublisher() {
+            bus.subscribe(Listener.class, (a, s) -> {
+                throw new IllegalStateException("boom");
+            });
+
+            assertThrows(IllegalStateException.class, () -> bus.publish(Listener.class, () -> 1, l -> l.onEvent(1, 1)));
+            assertEquals(1, bus.getStats(Listener.class).getFailed());
+        }
+
+        @Test
+        void testSubscribe_SameReceiverTwice_DeliveredOnce() {
+            List<Integer> calls = new ArrayList<>();
+            Listener listener = (a, s) -> calls.add(s);
+            bus.subscribe(Listener.class, listener);
+            bus.subscribe(Listener.class, listener, Delivery.ASYNC);
+
+            bus.publish(Listener.class, () -> 1, l -> l.onEvent(1, 7));
+
+            assertEquals(List.of(7), calls);
+        }
+    }
+
+    @Nested
+    class AsyncDelivery {
+
+        @Test
+        void testPublish_KeepsOrderPerAggregate() throws Exception {
+            List<int[]> received = Collections.synchronizedList(new ArrayList<>());
+            bus.subscribe(Listener.class, (a, s) -> received.add(new int[] { a, s }), Delivery.ASYNC);
+
+            for (int seq = 0; seq < 500; seq++) {
+                for (int aggregate = 1; aggregate <= 8; aggregate++) {
+                    int a = aggregate, s = seq;
+                    bus.publish(Listener.class, () -> a, l -> l.onEvent(a, s));
+                }
+            }
+            assertTrue(bus.awaitIdle(10, TimeUnit.SECONDS));
+
+            assertEquals(4000, received.size());
+            int[] last = new int[9];
+            Arrays.fill(last, -1);
+            for (int[] e : received) {
+                assertEquals(last[e[0]] + 1, e[1], "aggregate " + e[0]);
+                last[e[0]] = e[1];
+            }
+        }
+
+        @Test
+        void testPublish_QueuesAfterLaterSyncReceivers() throws Exception {
+            int[] id = new int[1];
+            List<Integer> idsRead = new ArrayList<>();
+            List<String> calls = Collections.synchronizedList(new ArrayList<>());
+            bus.subscribe(Listener.class, (a, s) -> calls.add("async"), Delivery.ASYNC);
+            // Like a persistence receiver, assigns the ID of the aggregate
+            bus.subscribe(Listener.class, (a, s) -> {
+                id[0] = 42;
+                calls.add("sync");
+            });
+
+            bus.publish(Listener.class, () -> {
+                idsRead.add(id[0]);
+                return id[0];
+            }, l -> l.onEvent(id[0], 1));
+            assertTrue(bus.awaitIdle(5, TimeUnit.SECONDS));
+
+            assertEquals(List.of(42), idsRead, "the lane is picked once, after synchronous delivery");
+            assertEquals(List.of("sync", "async"), calls);
+        }
+
+        @Test
+        void testPublish_DoesNotWaitForSlowReceiver() throws Exception {
+            CountDownLatch release = new CountDownLatch(1);
+            bus.subscribe(Listener.class, (a, s) -> {
+                try {
+                    release.await();
+                } catch (InterruptedException ex) {
+                    Thread.currentThread().interrupt();
+                }
+            }, Delivery.ASYNC);
+
+            bus.publish(Listener.class, () -> 1, l -> l.onEvent(1, 1));
+            assertFalse(bus.awaitIdle(50, TimeUnit.MILLISECONDS));
+
+            release.countDown();
+            assertTrue(bus.awaitIdle(5, TimeUnit.SECONDS));
+            assertEquals(1, bus.getStats(Listener.class).getDelivered());
+        }
+
+        @Test
+        void testPublish_FullLane_PublisherWaits() throws Exception {
+            EventBus small = new EventBus(1, 1);
+            CountDownLatch release = new CountDownLatch(1);
+            small.subscribe(Listener.class, (a, s) -> {
+                try {
+                    release.await();
+                } catch (InterruptedException ex) {
+                    Thread.currentThread().interrupt();
+                }
+            }, Delivery.ASYNC);
+
+            Thread publisher = new Thread(() -> {
+                for (int i = 0; i < 3; i++) {
+                    int s = i;
+                    small.publish(Listener.class, () -> 1, l -> l.onEvent(1, s));
+                }
+            });
+            publisher.start();
+            publisher.join(200);
+            assertTrue(publisher.isAlive());
+
+            release.countDown();
+            publisher.join(5000);
+            assertTrue(small.awaitIdle(5, TimeUnit.SECONDS));
+            assertTrue(small.getStats(Listener.class).getQueueFullWaits() > 0);
+            assertEquals(3, small.getStats(Listener.class).getDelivered());
+            small.shutdown();
+        }
+
+        @Test
+        void testPublish_AfterShutdown_RunsOnPublisher() throws Exception {
+            List<Thread> threads = Collections.synchronizedList(new ArrayList<>());
+            bus.subscribe(Listener.class, (a, s) -> threads.add(Thread.currentThread()), Delivery.ASYNC);
+            bus.publish(Listener.class, () -> 1, l -> l.onEvent(1, 1));
+            assertTrue(bus.awaitIdle(5, TimeUnit.SECONDS));
+
+            bus.shutdown();
+            bus.publish(Listener.class, () -> 1, l -> l.onEvent(1, 2));
+
+            assertEquals(2, threads.size());
+            assertNotSame(Thread.currentThread(), threads.get(0));
+            assertSame(Thread.currentThread(), threads.get(1));
+            assertTrue(bus.awaitIdle(1, TimeUnit.SECONDS));
+        }
+
+        @Test
+        void testShutdown_DropsQueuedEvents() throws Exception {
+            CountDownLatch release = new CountDownLatch(1);
+            bus.subscribe(Listener.class, (a, s) -> {
+                try {
+                    release.await();
+                } catch (InterruptedException ex) {
+                    Thread.currentThread().interrupt();
+                }
+            }, Delivery.ASYNC);
+            for (int i = 0; i < 3; i++) {
+                int s = i;
+                bus.publish(Listener.class, () -> 1, l -> l.onEvent(1, s));
+            }
+
+            bus.shutdown();
+
+            assertTrue(bus.awaitIdle(1, TimeUnit.SECONDS));
+            release.countDown();
+        }
+
+        @Test
+        void testExistingReceiver_SubscribesAsyncUnchanged() throws Exception {
+            PersistenceManager.initializeDatabase("database/catering_init_sqlite.sql");
+            CatERing app = CatERing.getInstance();
+            app.getUserManager().fakeLogin("Antonio");
+            List<String> titles = Collections.synchronizedList(new ArrayList<>());
+            MenuEventReceiver receiver = new MenuEventReceiverAdapter() {
+                @Override
+                public void updateMenuCreated(Menu m) {
+                    titles.add(m.getTitle() + "#" + m.getId());
+                }
+            };
+
+            app.getEventBus().subscribe(MenuEventReceiver.class, receiver, Delivery.ASYNC);
+            try {
+                Menu menu = app.getMenuManager().createMenu("Menu asincrono");
+                assertTrue(app.getEventBus().awaitIdle(5, TimeUnit.SECONDS));
+                assertEquals(List.of("Menu asincrono#" + menu.getId()), titles);
+            } finally {
+                app.getEventBus().unsubscribe(MenuEventReceiver.class, receiver);
+            }
+        }
+    }
+
+    private static class MenuEventReceiverAdapter implements MenuEventReceiver {
+        public void updateMenuCreated(Menu m) {
+        }
+
+        public void updateMenuDeleted(Menu m) {
+        }
+
+        public void updateMenuTitleChanged(Menu m) {
+        }
+
+        public void updateMenuPublishedState(Menu m) {
+        }
+
+        public void updateMenuFeaturesChanged(Menu m) {
+        }
+
+        public void updateSectionAdded(Menu m, Section sec) {
+        }
+
+        public void updateSectionDeleted(Menu m, Section s, boolean itemsDeleted) {
+        }
+
+        public void updateSectionChangedName(Menu m, Section s) {
+        }
+
+        public void updateSectionsRearranged(Menu m) {
+        }
+
+        public void updateMenuItemAdded(Menu m, MenuItem mi) {
+        }
+
+        public void updateMenuItemDeleted(Menu m, Section sec, MenuItem mi) {
+        }
+
+        public void updateMenuItemChanged(Menu m, Section s, MenuItem mi) {
+        }
+
+        public void updateMenuItemDescriptionChanged(Menu m, MenuItem mi) {
+        }
+
+        public void updateMenuItemsRearranged(Menu m, Section s) {
+        }
+
+        public void updateFreeMenuItemsRearranged(Menu m) {
+        }
+    }
+}
@@ -0,0 +1,132 @@
+package catering.businesslogic;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+
+import catering.businesslogic.menu.Menu;
+import catering.persistence.PersistenceManager;
+
+/**
+ * Tests for {@link Session}: the managers keep the user and the working
+ * aggregates in the session bound to the calling thread, so that users do
+ * not see each other's state.
+ */
+class SessionTest {
+
+    private static CatERing app;
+
+    @BeforeAll
+    static void init() {
+        PersistenceManager.initializeDatabase("database/catering_init_sqlite.sql");
+        app = CatERing.getInstance();
+    }
+
+    private Session.Scope scope;
+
+    @BeforeEach
+    void setUp() throws UseCaseLogicException {
+        scope = new Session().bind();
+        app.getUserManager().fakeLogin("Antonio"); // session of the test thread
+        app.getMenuManager().setCurrentMenu(null);
+    }
+
+    @AfterEach
+    void tearDown() {
+        scope.close();
+    }
+
+    @Nested
+    class Binding {
+
+        @Test
+        void testBind_ManagersUseBoundSession() throws UseCaseLogicException {
+            Session session = new Session();
+
+            try (Session.Scope scope = session.bind()) {
+                assertSame(session, Session.current());
+                assertNull(app.getUserManager().getCurrentUser());
+
+                app.getUserManager().fakeLogin("Chiara");
+                app.getMenuManager().createMenu("Menu di Chiara");
+            }
+
+            assertEquals("Chiara", session.getUser().getUserName());
+            assertEquals("Menu di Chiara", session.getMenu().getTitle());
+            assertEquals("Antonio", app.getUserManager().getCurrentUser().getUserName());
+            assertNull(app.getMenuManager().getCurrentMenu());
+        }
+
+        @Test
+        void testClose_RestoresPreviouslyBoundSession() {
+            Session outer = new Session();
+            Session inner = new Session();
+
+            try (Session.Scope o = outer.bind()) {
+                try (Session.Scope i = inner.bind()) {
+                    assertSame(inner, Session.current());
+                }
+                assertSame(outer, Session.current());
+            }
+            assertNotSame(outer, Session.current());
+        }
+
+        @Test
+        void testCurrent_UnboundThread_Fails() throws Exception {
+            ExecutorService pool = Executors.newSingleThreadExecutor();
+            try {
+                Future<?> user = pool.submit(() -> app.getUserManager().getCurrentUser());
+
+                ExecutionException e = assertThrows(ExecutionException.class, () -> user.get(10, TimeUnit.SECONDS));
+                assertInstanceOf(IllegalStateException.class, e.getCause());
+            } finally {
+                pool.shutdownNow();
+            }
+            assertEquals("Antonio", app.getUserManager().getCurrentUser().getUserName());
+        }
+    }
+
+    @Nested
+    class Concurrency {
+
+        @Test
+        void testConcurrentUsers_DoNotSeeEachOthersMenu() throws Exception {
+            ExecutorService pool = Executors.newFixedThreadPool(2);
+            CountDownLatch bothCreated = new CountDownLatch(2);
+            try {
+                Future<Menu> antonio = pool.submit(() -> createMenuAs("Antonio", "Pranzo", bothCreated));
+                Future<Menu> chiara = pool.submit(() -> createMenuAs("Chiara", "Cena", bothCreated));
+
+                assertEquals("Pranzo", antonio.get(10, TimeUnit.SECONDS).getTitle());
+                assertEquals("Cena", chiara.get(10, TimeUnit.SECONDS).getTitle());
+            } finally {
+                pool.shutdownNow();
+            }
+        }
+    }
+
+    private static Menu createMenuAs(String user, String title, CountDownLatch bothCreated) throws Exception {
+        try (Session.Scope scope = new Session().bind()) {
+            app.getUserManager().fakeLogin(user);
+            app.getMenuManager().createMenu(title);
+            bothCreated.countDown();
+            bothCreated.await(10, TimeUnit.SECONDS);
+
+            // Both menus exist now; each thread must still see its own
+            Menu current = app.getMenuManager().getCurrentMenu();
+            assertEquals(user, current.getOwner().getUserName());
+            return current;
+        }
+    }
+}
@@ -0,0 +1,180 @@
+package catering.businesslogic.event;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.sql.Date;
+import java.sql.Time;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+
+import catering.businesslogic.CatERing;
+import catering.businesslogic.Session;
+import catering.businesslogic.UseCaseLogicException;
+import catering.businesslogic.user.User;
+import catering.persistence.PersistenceManager;
+import catering.persistence.Projection;
+
+/**
+ * Tests for {@link EventCalendar} with a horizon fixed on June 2025, around
+ * the seeded event: Gala Aziendale Annuale, 15 to 16 June, chef Antonio,
+ * with a lunch in the Salone Grande and a dinner in the Sala Esecutiva on
+ * the 15th.
+ */
+class EventCalendarTest {
+
+    private CatERing app;
+    private EventManager manager;
+    private EventCalendar calendar;
+    private User antonio;
+    private User chiara;
+
+    private Session.Scope scope;
+
+    @BeforeEach
+    void setUp() throws UseCaseLogicException {
+        scope = new Session().bind();
+        PersistenceManager.initializeDatabase("database/catering_init_sqlite.sql");
+        app = CatERing.getInstance();
+        manager = app.getEventManager();
+        calendar = new EventCalendar(day("2025-06-01"), day("2025-06-30"));
+        manager.addEventReceiver(calendar);
+        manager.setCalendar(calendar);
+        app.getUserManager().fakeLogin("Antonio");
+
+        antonio = User.load("Antonio");
+        chiara = User.load("Chiara");
+    }
+
+    @AfterEach
+    void tearDown() {
+        manager.removeEventReceiver(calendar);
+        manager.setCalendar(app.getEventCalendar());
+        scope.close();
+    }
+
+    @Nested
+    class Queries {
+
+        @Test
+        void testGetEvents_OverlappingWindow() {
+            assertEquals(List.of("Gala Aziendale Annuale"),
+                    names(calendar.getEvents(day("2025-06-16"), day("2025-06-22"))));
+            assertTrue(calendar.getEvents(day("2025-06-17"), day("2025-06-23")).isEmpty());
+            assertTrue(calendar.getEvents(day("2025-06-15"), day("2025-06-15")).get(0).getServices().isEmpty());
+        }
+
+        @Test
+        void testGetEvents_LongEventFoundFromAnyDay() {
+            PersistenceManager.executeUpdate("INSERT INTO Events (name, date_start, date_end, chef_id) VALUES "
+                    + "('Festival', unixepoch('2025-06-02') / 86400, unixepoch('2025-06-28') / 86400, 6)");
+            calendar.invalidate();
+
+            assertEquals(List.of("Festival"), names(calendar.getEvents(day("2025-06-20"), day("2025-06-21"))));
+            assertEquals(List.of("Festival"),
+                    names(calendar.getEvents(chiara, day("2025-06-20"), day("2025-06-21"))));
+            assertTrue(calendar.getEvents(antonio, day("2025-06-20"), day("2025-06-21")).isEmpty());
+        }
+
+        @Test
+        void testGetServices_ByDateAndTimeAndLocation() {
+            List<Service> week = calendar.getServices(day("2025-06-09"), day("2025-06-15"));
+            assertEquals(List.of("Pranzo Buffet Aziendale", "Cena di Gala"), serviceNames(week));
+            assertEquals(List.of("Cena di Gala"),
+                    serviceNames(calendar.getServices("Sala Esecutiva", day("2025-06-09"), day("2025-06-15"))));
+            assertTrue(calendar.getServices(day("2025-06-16"), day("2025-06-22")).isEmpty());
+        }
+
+        @Test
+        void testOutsideHorizon_GoesToDatabase() {
+            calendar.getEvents(day("2025-06-01"), day("2025-06-01"));
+            PersistenceManager.executeUpdate("INSERT INTO Events (name, date_start, date_end, chef_id) VALUES "
+                    + "('Luglio', unixepoch('2025-07-03') / 86400, NULL, 5), "
+                    + "('Giugno', unixepoch('2025-06-20') / 86400, NULL, 5)");
+
+            assertEquals(List.of("Gala Aziendale Annuale", "Giugno", "Luglio"),
+                    names(calendar.getEvents(day("2025-06-16"), day("2025-07-06"))));
+            // Within the horizon, rows written behind the calendar's back are
+            // not seen until it is reloaded
+            assertTrue(calendar.getEvents(day("2025-06-20"), day("2025-06-20")).isEmpty());
+        }
+
+        @Test
+        void testMemoryAgreesWithDatabase() {
+            Date from = day("2025-06-14");
+            Date to = day("2025-06-20");
+            assertEquals(names(Event.loadInWindow(from, to, Projection.HEADER)),
+                    names(calendar.getEvents(from, to)));
+            assertEquals(names(Event.loadInWindow(antonio.getId(), from, to, Projection.HEADER)),
+                    names(calendar.getEvents(antonio, from, to)));
+            assertEquals(serviceNames(Service.loadInWindow("Salone Grande", from, to)),
+                    serviceNames(calendar.getServices("Salone Grande", from, to)));
+        }
+
+        @Test
+        void testWindowEndingBeforeStart_Rejected() {
+            assertThrows(IllegalArgumentException.class,
+                    () -> calendar.getEvents(day("2025-06-20"), day("2025-06-19")));
+        }
+    }
+
+    @Nested
+    class Maintenance {
+
+        @Test
+        void testCreatedEventAndService_Found() throws UseCaseLogicException {
+            calendar.getEvents(day("2025-06-01"), day("2025-06-01"));
+            manager.createEvent("Matrimonio", day("2025-06-21"), null, chiara);
+            manager.createService("Aperitivo", day("2025-06-21"), Time.valueOf("18:00:00"),
+                    Time.valueOf("19:30:00"), "Giardino");
+
+            assertEquals(List.of("Matrimonio"),
+                    names(manager.getCalendarEvents(chiara, day("2025-06-16"), day("2025-06-22"))));
+            assertEquals(List.of("Aperitivo"),
+                    serviceNames(manager.getCalendarServices("Giardino", day("2025-06-16"), day("2025-06-22"))));
+        }
+
+        @Test
+        void testModifiedEvent_Moves() {
+            calendar.getEvents(day("2025-06-01"), day("2025-06-01"));
+            manager.modifyEvent(1, "Gala Aziendale Annuale", day("2025-06-16"));
+
+            assertTrue(calendar.getEvents(day("2025-06-15"), day("2025-06-15")).isEmpty());
+            assertEquals(day("2025-06-16"),
+                    calendar.getEvents(day("2025-06-16"), day("2025-06-16")).get(0).getDateStart());
+        }
+
+        @Test
+        void testDeletedEvent_RemovesItsServices() {
+            calendar.getEvents(day("2025-06-01"), day("2025-06-01"));
+            manager.deleteEvent(1);
+
+            assertTrue(calendar.getEvents(day("2025-06-01"), day("2025-06-30")).isEmpty());
+            assertTrue(calendar.getServices(day("2025-06-01"), day("2025-06-30")).isEmpty());
+        }
+    }
+
+    private static Date day(String date) {
+        return Date.valueOf(date);
+    }
+
+    private static List<String> names(List<Event> events) {
+        List<String> names = new ArrayList<>();
+        for (Event e : events) {
+            names.add(e.getName());
+        }
+        return names;
+    }
+
+    private static List<String> serviceNames(List<Service> services) {
+        List<String> names = new ArrayList<>();
+        for (Service s : services) {
+            names.add(s.getName());
+        }
+        return names;
+    }
+}
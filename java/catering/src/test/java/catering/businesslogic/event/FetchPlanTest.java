@@ -0,0 +1,100 @@
+package catering.businesslogic.event;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.sql.Date;
+import java.util.List;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import catering.businesslogic.menu.Menu;
+import catering.persistence.PersistenceManager;
+import catering.persistence.QueryMonitor;
+import catering.persistence.QueryStats;
+import catering.persistence.Temporals;
+
+/**
+ * Tests for lazy loading of {@link Event#getServices()} and
+ * {@link Service#getMenu()}: what each {@link FetchPlan} loads up front, and
+ * batch loading across the events and services loaded together.
+ */
+class FetchPlanTest {
+
+    private final QueryMonitor monitor = QueryMonitor.getInstance();
+
+    @BeforeEach
+    void setUp() {
+        PersistenceManager.initializeDatabase("database/catering_init_sqlite.sql");
+        // A second event, with a service on the seeded menu
+        int day = Temporals.toEpochDay(Date.valueOf("2025-07-01"));
+        PersistenceManager.executeUpdate(
+                "INSERT INTO Events (name, date_start, date_end, chef_id) VALUES ('Matrimonio', ?, ?, 5)", day, day);
+        PersistenceManager.executeUpdate("INSERT INTO Services (event_id, name, approved_menu_id, service_date, "
+                + "time_start, time_end, location) VALUES (2, 'Rinfresco', 1, ?, 18 * 60, 20 * 60, 'Villa')", day);
+        monitor.setEnabled(true);
+        monitor.reset();
+    }
+
+    @Test
+    void testLazy_ServicesOfAllEventsLoadOnFirstAccess() {
+        List<Event> events = Event.loadAllEvents(FetchPlan.LAZY);
+        assertEquals(0, calls("SELECT * FROM Services WHERE event_id"));
+
+        events.get(0).getServices();
+        assertEquals(1, calls("SELECT * FROM Services WHERE event_id"));
+
+        for (Event e : events) {
+            assertFalse(e.getServices().isEmpty());
+        }
+        assertEquals(1, calls("SELECT * FROM Services WHERE event_id"));
+        assertEquals(0, calls("SELECT * FROM Menus"));
+    }
+
+    @Test
+    void testLazy_MenusOfSiblingServicesLoadTogether() {
+        List<Event> events = Event.loadAllEvents(FetchPlan.SERVICES);
+        Service first = events.get(0).getServices().get(0);
+        assertEquals(1, first.getMenuId());
+        assertEquals(0, calls("SELECT * FROM Menus"));
+
+        Menu menu = first.getMenu();
+        assertEquals("Sample Menu", menu.getTitle());
+        for (Event e : events) {
+            for (Service s : e.getServices()) {
+                if (s.getMenuId() == 1)
+                    assertSame(menu, s.getMenu());
+            }
+        }
+        assertEquals(1, calls("SELECT * FROM Menus"));
+    }
+
+    @Test
+    void testEager_LoadsMenusUpFront() {
+        Event e = Event.loadById(1, FetchPlan.EAGER);
+
+        assertEquals(1, calls("SELECT * FROM Services WHERE event_id"));
+        assertEquals(1, calls("SELECT * FROM Menus"));
+        assertFalse(e.getServices().get(0).getMenu().getSections().isEmpty());
+    }
+
+    @Test
+    void testSetMenu_BeforeLoadIsKept() {
+        List<Service> services = Service.loadServicesForEvent(1);
+        Service first = services.get(0);
+        first.removeMenu();
+
+        assertNull(first.getMenu());
+        assertEquals(0, first.getMenuId());
+        assertEquals(0, calls("SELECT * FROM Menus"));
+    }
+
+    private long calls(String prefix) {
+        long n = 0;
+        for (QueryStats q : monitor.getQueryStats()) {
+            if (q.getSql().startsWith(prefix))
+                n += q.getCalls();
+        }
+        return n;
+    }
+}
@@ -0,0 +1,168 @@
+package catering.businesslogic.event;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.Set;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+
+import catering.businesslogic.CatERing;
+import catering.businesslogic.Session;
+import catering.businesslogic.UseCaseLogicException;
+import catering.businesslogic.menu.Menu;
+import catering.businesslogic.menu.MenuItem;
+import catering.businesslogic.menu.Section;
+import catering.businesslogic.recipe.Preparation;
+import catering.businesslogic.recipe.Recipe;
+import catering.businesslogic.recipe.RecipeBook;
+import catering.persistence.PersistenceManager;
+
+/**
+ * Tests for {@link UsageIndex} against the seeded SQLite database: the
+ * seeded menu (ID 1) lists Spaghetti alla Carbonara, which includes Salsa
+ * carbonara, and is the approved menu of the lunch service only.
+ */
+class UsageIndexTest {
+
+    private CatERing app;
+    private UsageIndex index;
+    private Recipe carbonara;
+    private Preparation sauce;
+
+    private Session.Scope scope;
+
+    @BeforeEach
+    void setUp() throws UseCaseLogicException {
+        scope = new Session().bind();
+        PersistenceManager.initializeDatabase("database/catering_init_sqlite.sql");
+        RecipeBook.getInstance().invalidate();
+        app = CatERing.getInstance();
+        index = app.getUsageIndex();
+        index.invalidate();
+        app.getUserManager().fakeLogin("Antonio"); // Antonio is a chef
+
+        carbonara = findRecipe("Spaghetti alla Carbonara");
+        sauce = carbonara.getPreparations().get(0);
+    }
+
+    @AfterEach
+    void tearDown() {
+        scope.close();
+    }
+
+    @Nested
+    class Lookups {
+
+        @Test
+        void testGetUsedInRecipes_ComesFromReverseIndex() {
+            assertTrue(sauce.getUsedInRecipes().contains(carbonara));
+        }
+
+        @Test
+        void testGetMenusUsing_Preparation_GoesThroughRecipes() {
+            assertEquals(1, index.getMenusUsing(sauce).size());
+            assertTrue(index.getMenusUsing(sauce).contains(1));
+            assertEquals(index.getMenusUsing(carbonara), index.getMenusUsing(sauce));
+        }
+
+        @Test
+        void testGetServicesUsing_OnlyServicesWithApprovedMenu() {
+            Service lunch = findService("Pranzo Buffet Aziendale");
+
+            assertEquals(1, index.getServicesUsing(sauce).size());
+            assertTrue(index.getServicesUsing(sauce).contains(lunch.getId()));
+        }
+
+        @Test
+        void testGetMenusUsing_UnusedPreparation_IsEmpty() {
+            Preparation unused = new Preparation("Mai usata");
+            unused.save();
+
+            assertTrue(index.getMenusUsing(unused).isEmpty());
+            assertTrue(unused.getUsedInRecipes().isEmpty());
+        }
+    }
+
+    @Nested
+    class Maintenance {
+
+        @Test
+        void testInsertAndDeleteItem_UpdateMenus() throws UseCaseLogicException {
+            Menu m = app.getMenuManager().createMenu("Cena leggera");
+            MenuItem first = app.getMenuManager().insertItem(carbonara, (Section) null);
+            app.getMenuManager().insertItem(carbonara, (Section) null);
+
+            assertTrue(index.getMenusUsing(sauce).contains(m.getId()));
+
+            app.getMenuManager().deleteItem(first);
+            assertTrue(index.getMenusUsing(sauce).contains(m.getId()), "the menu still lists the recipe once");
+
+            app.getMenuManager().deleteMenu(m);
+            assertFalse(index.getMenusUsing(sauce).contains(m.getId()));
+        }
+
+        @Test
+        void testAssignAndRemoveMenu_UpdateServices() throws UseCaseLogicException {
+            Event gala = Event.loadByName("Gala Aziendale Annuale");
+            Service dinner = findService("Cena di Gala");
+            app.getEventManager().selectEvent(gala);
+            app.getEventManager().setCurrentService(dinner);
+
+            app.getEventManager().assignMenu(Menu.load(1));
+            assertTrue(index.getServicesUsing(sauce).contains(dinner.getId()));
+
+            app.getEventManager().removeMenu();
+            assertFalse(index.getServicesUsing(sauce).contains(dinner.getId()));
+        }
+
+        @Test
+        void testServiceModified_MenuCleared_DropsService() {
+            Service lunch = findService("Pranzo Buffet Aziendale");
+            assertTrue(index.getServicesUsing(sauce).contains(lunch.getId()));
+
+            lunch.setMenu(null);
+            index.updateServiceModified(lunch);
+
+            assertFalse(index.getServicesUsing(sauce).contains(lunch.getId()));
+        }
+
+        @Test
+        void testReload_ListsCopiesReadingSourceRows() throws UseCaseLogicException {
+            Menu copy = app.getMenuManager().chooseMenuForCopy(Menu.load(1));
+            assertTrue(copy.isSharingContent());
+            assertEquals(Set.of(1, copy.getId()), index.getMenusUsing(sauce));
+
+            index.invalidate();
+
+            assertEquals(Set.of(1, copy.getId()), index.getMenusUsing(sauce));
+        }
+
+        @Test
+        void testRecipeUpdate_RelinksPreparations() {
+            assertTrue(carbonara.removePreparation(sauce));
+            carbonara.update();
+
+            assertFalse(sauce.getUsedInRecipes().contains(carbonara));
+            assertTrue(index.getMenusUsing(sauce).isEmpty());
+        }
+    }
+
+    private Recipe findRecipe(String name) {
+        for (Recipe r : app.getRecipeManager().getRecipeBook()) {
+            if (name.equals(r.getName()))
+                return r;
+        }
+        return null;
+    }
+
+    private static Service findService(String name) {
+        for (Service s : Event.loadByName("Gala Aziendale Annuale").getServices()) {
+            if (name.equals(s.getName()))
+                return s;
+        }
+        return null;
+    }
+}
@@ -1,10 +1,12 @@
 package catering.businesslogic.kitchen;
 
 import catering.businesslogic.CatERing;
+import catering.businesslogic.Session;
 import catering.businesslogic.UseCaseLogicException;
 import catering.businesslogic.event.Event;
 import catering.businesslogic.event.Service;
 import catering.persistence.PersistenceManager;
+import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeAll;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
@@ -32,13 +34,21 @@ class KitchenTaskManagerTest {
         app = CatERing.getInstance();
     }
 
+    private Session.Scope scope;
+
     @BeforeEach
     void setUp() throws UseCaseLogicException {
+        scope = new Session().bind();
         app.getUserManager().fakeLogin("Antonio"); // Antonio is the chef of the seeded event
         event = Event.loadByName("Gala Aziendale Annuale");
         service = Service.loadByName("Pranzo Buffet Aziendale");
     }
 
+    @AfterEach
+    void tearDown() {
+        scope.close();
+    }
+
     @Test
     void testGenerateSummarySheet_HappyPath_OneTaskPerKitchenProcess() throws UseCaseLogicException {
         int expected = service.getMenu().getNeededKitchenProcesses().size();
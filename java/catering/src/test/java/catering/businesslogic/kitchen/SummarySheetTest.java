@@ -5,11 +5,13 @@ import static org.junit.jupiter.api.Assertions.*;
 import java.sql.Date;
 import java.sql.Time;
 
+import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeAll;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 
 import catering.businesslogic.CatERing;
+import catering.businesslogic.Session;
 import catering.businesslogic.UseCaseLogicException;
 import catering.businesslogic.event.Event;
 import catering.businesslogic.event.Service;
@@ -43,12 +45,20 @@ class SummarySheetTest {
 
     private SummarySheet sheet;
 
+    private Session.Scope scope;
+
     @BeforeEach
     void generateFreshSheet() throws UseCaseLogicException {
+        scope = new Session().bind();
         app.getUserManager().fakeLogin(chef.getUserName());
         sheet = app.getKitchenTaskManager().generateSummarySheet(event, service);
     }
 
+    @AfterEach
+    void tearDown() {
+        scope.close();
+    }
+
     @Test
     void testGeneratedSheet_IsOwnedByChefAndPopulatedWithTasks() {
         assertNotNull(sheet);
@@ -0,0 +1,183 @@
+package catering.businesslogic.menu;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.List;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+
+import catering.businesslogic.CatERing;
+import catering.businesslogic.Session;
+import catering.businesslogic.UseCaseLogicException;
+import catering.businesslogic.user.User;
+import catering.persistence.Page;
+import catering.persistence.PersistenceManager;
+
+/**
+ * Tests for {@link MenuCatalog} against the seeded SQLite database, whose
+ * only menu (ID 1) is published by Antonio and has no features. Each test
+ * adds a hot buffet, a cold buffet and finger food by Antonio, and a
+ * published dinner with warm dishes by Chiara.
+ */
+class MenuCatalogTest {
+
+    private CatERing app;
+    private MenuManager manager;
+    private MenuCatalog catalog;
+    private User antonio;
+    private User chiara;
+    private Menu hotBuffet;
+    private Menu coldBuffet;
+    private Menu fingerFood;
+    private Menu dinner;
+
+    private Session.Scope scope;
+
+    @BeforeEach
+    void setUp() throws UseCaseLogicException {
+        scope = new Session().bind();
+        PersistenceManager.initializeDatabase("database/catering_init_sqlite.sql");
+        app = CatERing.getInstance();
+        manager = app.getMenuManager();
+        catalog = app.getMenuCatalog();
+        catalog.invalidate();
+        antonio = User.load("Antonio");
+        chiara = User.load("Chiara");
+
+        app.getUserManager().fakeLogin("Antonio");
+        hotBuffet = create("Buffet caldo", Menu.FEATURE_BUFFET, Menu.FEATURE_WARM_DISHES);
+        coldBuffet = create("Buffet freddo", Menu.FEATURE_BUFFET);
+        fingerFood = create("Aperitivo", Menu.FEATURE_FINGER_FOOD);
+        app.getUserManager().fakeLogin("Chiara");
+        dinner = create("Cena", Menu.FEATURE_WARM_DISHES, Menu.FEATURE_NEEDS_COOK);
+        manager.publish();
+    }
+
+    @AfterEach
+    void tearDown() {
+        manager.setCatalog(catalog);
+        scope.close();
+    }
+
+    @Nested
+    class Queries {
+
+        @Test
+        void testFeatures_AllAndAny() {
+            assertEquals(ids(hotBuffet),
+                    find(MenuFilter.withAllFeatures(EnumSet.of(MenuFeature.BUFFET, MenuFeature.WARM_DISHES))));
+            assertEquals(ids(hotBuffet, fingerFood, dinner),
+                    find(MenuFilter.withAnyFeature(EnumSet.of(MenuFeature.WARM_DISHES, MenuFeature.FINGER_FOOD))));
+            assertEquals(5, find(MenuFilter.withAllFeatures(EnumSet.noneOf(MenuFeature.class))).size());
+            assertTrue(find(MenuFilter.withAnyFeature(EnumSet.noneOf(MenuFeature.class))).isEmpty());
+        }
+
+        @Test
+        void testOwnerAndPublished_CombinedWithFeatures() {
+            assertEquals(ids(dinner), find(MenuFilter.ownedBy(chiara)));
+            assertEquals(List.of(1, dinner.getId()), find(MenuFilter.published(true)));
+            assertEquals(ids(hotBuffet, coldBuffet),
+                    find(MenuFilter.withFeature(MenuFeature.BUFFET).and(MenuFilter.ownedBy(antonio))
+                            .and(MenuFilter.published(false))));
+            assertEquals(ids(hotBuffet, dinner), find(MenuFilter.withFeature(MenuFeature.WARM_DISHES)
+                    .and(MenuFilter.ownedBy(antonio).or(MenuFilter.published(true)))));
+            assertEquals(4, catalog.count(MenuFilter.ownedBy(antonio)));
+        }
+
+        @Test
+        void testPages_InIdOrder() {
+            Page<Menu> first = catalog.find(MenuFilter.published(false), null, 2);
+            assertEquals(ids(hotBuffet, coldBuffet), menuIds(first.getItems()));
+            assertTrue(first.hasNext());
+
+            Page<Menu> second = catalog.find(MenuFilter.published(false), first.getLast(), 2);
+            assertEquals(ids(fingerFood), menuIds(second.getItems()));
+            assertFalse(second.hasNext());
+        }
+
+        @Test
+        void testCatalogAgreesWithDatabase() {
+            List<MenuFilter> filters = List.of(MenuFilter.ALL,
+                    MenuFilter.withAnyFeature(EnumSet.of(MenuFeature.BUFFET, MenuFeature.NEEDS_COOK)),
+                    MenuFilter.ownedBy(antonio).and(MenuFilter.published(true)),
+                    MenuFilter.withFeature(MenuFeature.WARM_DISHES).or(MenuFilter.ownedBy(chiara)));
+            for (MenuFilter filter : filters) {
+                manager.setCatalog(catalog);
+                List<Integer> fromCatalog = menuIds(manager.findMenus(filter, null, 2).getItems());
+                manager.setCatalog(null);
+                assertEquals(fromCatalog, menuIds(manager.findMenus(filter, null, 2).getItems()),
+                        filter.toString());
+            }
+        }
+    }
+
+    @Nested
+    class Maintenance {
+
+        @Test
+        void testChangedFeaturesAndPublishing_Followed() throws UseCaseLogicException {
+            assertEquals(ids(dinner), find(MenuFilter.withFeature(MenuFeature.NEEDS_COOK)));
+
+            HashMap<String, Boolean> features = new HashMap<>();
+            features.put(Menu.FEATURE_NEEDS_COOK, false);
+            features.put(Menu.FEATURE_BUFFET, true);
+            manager.addMenuFeatures(features);
+
+            assertTrue(find(MenuFilter.withFeature(MenuFeature.NEEDS_COOK)).isEmpty());
+            assertEquals(ids(hotBuffet, coldBuffet, dinner), find(MenuFilter.withFeature(MenuFeature.BUFFET)));
+            assertEquals(ids(dinner), find(MenuFilter.withFeature(MenuFeature.BUFFET)
+                    .and(MenuFilter.published(true))));
+        }
+
+        @Test
+        void testDeletedMenu_Removed() throws UseCaseLogicException {
+            manager.deleteMenu(dinner);
+
+            assertTrue(find(MenuFilter.ownedBy(chiara)).isEmpty());
+            assertEquals(ids(hotBuffet), find(MenuFilter.withFeature(MenuFeature.WARM_DISHES)));
+        }
+
+        @Test
+        void testHeaders_AreCopies() throws UseCaseLogicException {
+            Menu found = catalog.find(MenuFilter.ownedBy(chiara), null, 1).getLast();
+            assertNotSame(dinner, found);
+            assertEquals("Cena", found.getTitle());
+            assertTrue(found.getSections().isEmpty());
+
+            manager.changeTitle("Cena di gala");
+            assertEquals("Cena di gala", catalog.find(MenuFilter.ownedBy(chiara), null, 1).getLast().getTitle());
+        }
+    }
+
+    private Menu create(String title, String... features) throws UseCaseLogicException {
+        Menu m = manager.createMenu(title);
+        HashMap<String, Boolean> values = new HashMap<>();
+        for (String f : features) {
+            values.put(f, true);
+        }
+        manager.addMenuFeatures(values);
+        return m;
+    }
+
+    private List<Integer> find(MenuFilter filter) {
+        return menuIds(catalog.find(filter, null, Page.MAX_SIZE).getItems());
+    }
+
+    private static List<Integer> ids(Menu... menus) {
+        List<Integer> ids = new ArrayList<>();
+        for (Menu m : menus) {
+            ids.add(m.getId());
+        }
+        return ids;
+    }
+
+    private static List<Integer> menuIds(List<Menu> menus) {
+        return ids(menus.toArray(new Menu[0]));
+    }
+}
@@ -1,14 +1,23 @@
 package catering.businesslogic.menu;
 
 import catering.businesslogic.CatERing;
+import catering.businesslogic.Session;
 import catering.businesslogic.UseCaseLogicException;
 import catering.businesslogic.recipe.Recipe;
 import catering.persistence.PersistenceManager;
+import catering.persistence.Projection;
+
+import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeAll;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Nested;
 import org.junit.jupiter.api.Test;
 
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.List;
+
 import static org.junit.jupiter.api.Assertions.*;
 
 /**
@@ -30,12 +39,20 @@ class MenuManagerTest {
         app = CatERing.getInstance();
     }
 
+    private Session.Scope scope;
+
     @BeforeEach
     void setUp() throws UseCaseLogicException {
+        scope = new Session().bind();
         app.getUserManager().fakeLogin("Antonio"); // Antonio is a chef
         app.getMenuManager().setCurrentMenu(null);
     }
 
+    @AfterEach
+    void tearDown() {
+        scope.close();
+    }
+
     @Nested
     class CreateMenu {
 
@@ -256,4 +273,40 @@ class MenuManagerTest {
             assertNull(app.getMenuManager().getCurrentMenu());
         }
     }
+
+    @Nested
+    class GetMenusWithFeatures {
+
+        @Test
+        void testBuffetsWithWarmDishes_WhateverTheOtherFeatures() throws UseCaseLogicException {
+            Menu wanted = createWith("Buffet caldo", Menu.FEATURE_BUFFET, Menu.FEATURE_WARM_DISHES,
+                    Menu.FEATURE_FINGER_FOOD);
+            createWith("Buffet freddo", Menu.FEATURE_BUFFET);
+            createWith("Cena calda", Menu.FEATURE_WARM_DISHES);
+
+            List<Menu> found = app.getMenuManager().getMenusWithFeatures(
+                    EnumSet.of(MenuFeature.BUFFET, MenuFeature.WARM_DISHES), Projection.HEADER);
+            assertEquals(1, found.size());
+            assertEquals(wanted.getId(), found.get(0).getId());
+            assertTrue(found.get(0).isFingerFood());
+        }
+
+        @Test
+        void testQuery_UsesTheFeaturesIndex() {
+            List<String> plan = new ArrayList<>();
+            PersistenceManager.executeQuery("EXPLAIN QUERY PLAN SELECT * FROM Menus WHERE features IN (12, 13)",
+                    rs -> plan.add(rs.getString("detail")));
+            assertTrue(plan.get(0).contains("Menus_by_features"), plan.toString());
+        }
+
+        private Menu createWith(String title, String... features) throws UseCaseLogicException {
+            Menu m = app.getMenuManager().createMenu(title);
+            HashMap<String, Boolean> values = new HashMap<>();
+            for (String f : features) {
+                values.put(f, true);
+            }
+            app.getMenuManager().addMenuFeatures(values);
+            return m;
+        }
+    }
 }
@@ -1,10 +1,18 @@
 package catering.businesslogic.menu;
 
+import catering.businesslogic.recipe.KitchenProcess;
+import catering.businesslogic.recipe.Preparation;
 import catering.businesslogic.recipe.Recipe;
 import catering.businesslogic.user.User;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Spliterator;
+import java.util.stream.Collectors;
+
 import static org.junit.jupiter.api.Assertions.*;
 
 class MenuTest {
@@ -66,6 +74,122 @@ class MenuTest {
         assertNull(menu.getSection(mi));
     }
 
+    @Test
+    void testGetSection_FollowsMovesAndRemovals() {
+        Section first = menu.addSection("Antipasti");
+        Section second = menu.addSection("Primi");
+        Recipe r = new Recipe("Bruschetta");
+        MenuItem a = menu.addItem(r, first, "A");
+        MenuItem b = menu.addItem(r, first, "B");
+        MenuItem free = menu.addItem(r, null, "Free");
+
+        menu.changeItemSection(a, first, second);
+        menu.changeItemSection(free, null, first);
+        assertSame(second, menu.getSection(a));
+        assertSame(first, menu.getSection(free));
+        assertEquals(1, first.getItemPosition(free));
+
+        menu.removeSection(first, false);
+        assertNull(menu.getSection(b));
+        assertEquals(List.of(b, free), menu.getFreeItems());
+        assertEquals(1, menu.getFreeItemPosition(free));
+
+        menu.removeItem(b);
+        assertEquals(0, menu.getFreeItemPosition(free));
+        assertThrows(IllegalArgumentException.class, () -> menu.getSection(b));
+
+        menu.removeSection(second, true);
+        assertThrows(IllegalArgumentException.class, () -> menu.getSection(a));
+    }
+
+    @Test
+    void testPositions_ByIdentityNotEquality() {
+        Section s = menu.addSection("Antipasti");
+        Recipe r = new Recipe("Bruschetta");
+        MenuItem first = menu.addItem(r, s, "Bruschetta");
+        MenuItem second = menu.addItem(r, s, "Bruschetta");
+        assertEquals(first, second);
+
+        assertEquals(1, s.getItemPosition(second));
+        menu.removeItem(second);
+        assertSame(first, s.getItems().get(0));
+        assertEquals(-1, s.getItemPosition(second));
+        assertEquals(0, s.getItemPosition(first));
+    }
+
+    @Test
+    void testUpdateFreeItems_ReindexesFreeItems() {
+        Recipe r = new Recipe("Olives");
+        MenuItem kept = menu.addItem(r, null, "Kept");
+        MenuItem dropped = menu.addItem(r, null, "Dropped");
+
+        menu.updateFreeItems(new ArrayList<>(List.of(kept)));
+        assertEquals(0, menu.getFreeItemPosition(kept));
+        assertEquals(-1, menu.getFreeItemPosition(dropped));
+        assertNull(menu.getSection(kept));
+        assertThrows(IllegalArgumentException.class, () -> menu.getSection(dropped));
+
+        // Lists changed behind the menu's back are found again
+        menu.getFreeItems().add(dropped);
+        assertNull(menu.getSection(dropped));
+    }
+
+    @Test
+    void testItemsView_LiveReadOnlyInOrder() {
+        Section s = menu.addSection("Antipasti");
+        Recipe r = new Recipe("Bruschetta");
+        MenuItem inSection = menu.addItem(r, s, "In section");
+        List<MenuItem> view = menu.getItemsView();
+        MenuItem free = menu.addItem(r, null, "Free");
+
+        assertEquals(List.of(free, inSection), view);
+        assertEquals(menu.getItems(), view);
+        assertSame(view, menu.getItemsView());
+        assertSame(inSection, view.get(1));
+        assertThrows(UnsupportedOperationException.class, () -> view.add(free));
+        assertThrows(IndexOutOfBoundsException.class, () -> view.get(2));
+    }
+
+    @Test
+    void testItemsView_SizedSpliteratorForParallelStreams() {
+        Recipe r = new Recipe("Bruschetta");
+        for (int sec = 0; sec < 4; sec++) {
+            Section s = menu.addSection("Section " + sec);
+            for (int i = 0; i < 25 * sec; i++) {
+                menu.addItem(r, s, sec + "." + i);
+            }
+        }
+        for (int i = 0; i < 7; i++) {
+            menu.addItem(r, null, "free " + i);
+        }
+
+        Spliterator<MenuItem> all = menu.getItemsView().spliterator();
+        assertTrue(all.hasCharacteristics(Spliterator.SIZED | Spliterator.SUBSIZED | Spliterator.ORDERED));
+        assertEquals(157, all.getExactSizeIfKnown());
+        Spliterator<MenuItem> prefix = all.trySplit();
+        assertEquals(157, prefix.getExactSizeIfKnown() + all.getExactSizeIfKnown());
+
+        List<String> expected = new ArrayList<>();
+        for (MenuItem mi : menu.getItems()) {
+            expected.add(mi.getDescription());
+        }
+        assertEquals(expected, menu.getItemsView().parallelStream().map(MenuItem::getDescription)
+                .collect(Collectors.toList()));
+    }
+
+    @Test
+    void testForEachNeededKitchenProcess_SameAsList() {
+        Recipe r = new Recipe("Bruschetta");
+        r.addPreparation(new Preparation("Pane tostato"));
+        menu.addItem(r, menu.addSection("Antipasti"), "Bruschetta");
+        menu.addItem(new Recipe("Olive"), null, "Olive");
+
+        List<KitchenProcess> visited = new ArrayList<>();
+        menu.forEachNeededKitchenProcess(visited::add);
+        assertEquals(menu.getNeededKitchenProcesses(), visited);
+        assertEquals(3, visited.size());
+    }
+
     @Test
     void testAddItem_NullDescription_StoredAsNull() {
         Recipe r = new Recipe("Bread");
@@ -90,6 +214,68 @@ class MenuTest {
                 "Recipe is shared by design: deepCopy clones the menu structure, not the recipe book");
     }
 
+    @Test
+    void testDeepCopy_SharesUntilChanged() {
+        Section s = menu.addSection("Antipasti");
+        MenuItem original = menu.addItem(new Recipe("Bruschetta"), s, "Tomato bruschetta");
+
+        Menu copy = menu.deepCopy();
+        assertSame(original, copy.getItemsView().get(0), "an unchanged copy shares the items");
+        assertEquals(menu.getVersion() + 1, copy.getVersion());
+
+        copy.addSection("Dolci");
+        copy.getSections().get(0).setName("Stuzzichini");
+        assertEquals(List.of("Antipasti"), names(menu.getSectionsView()));
+        assertEquals(List.of("Stuzzichini", "Dolci"), names(copy.getSectionsView()));
+
+        menu.removeItem(menu.getSections().get(0).getItems().get(0));
+        assertEquals(0, menu.getItemsView().size());
+        assertEquals("Tomato bruschetta", copy.getItemsView().get(0).getDescription());
+    }
+
+    @Test
+    void testDeepCopy_ReadingDoesNotCopy() {
+        Section s = menu.addSection("Antipasti");
+        MenuItem original = menu.addItem(new Recipe("Bruschetta"), s, "Tomato bruschetta");
+
+        Menu copy = menu.deepCopy();
+        assertSame(s, copy.getSection(0));
+        assertTrue(copy.hasSection(s));
+        assertEquals(0, copy.getSectionPosition(s));
+        assertSame(s, copy.getSection(original));
+        assertSame(original, copy.getItemsView().get(0), "reading leaves the items shared");
+    }
+
+    @Test
+    void testDeepCopy_LastHolderKeepsContent() {
+        Section s = menu.addSection("Antipasti");
+        menu.addItem(new Recipe("Bruschetta"), s, "Tomato bruschetta");
+
+        Menu copy = menu.deepCopy();
+        copy.addSection("Dolci");
+
+        // The copy made the content its own: the menu holds it alone
+        menu.addSection("Primi");
+        assertSame(s, menu.getSection(0));
+        assertEquals(List.of("Antipasti", "Dolci"), names(copy.getSectionsView()));
+    }
+
+    @Test
+    void testDeepCopy_HandedOutSectionStandsForCopy() {
+        Section s = menu.addSection("Antipasti");
+        MenuItem mi = menu.addItem(new Recipe("Bruschetta"), s, "Tomato bruschetta");
+
+        Menu copy = menu.deepCopy();
+        Section shared = copy.getSection(0);
+        copy.removeItem(mi);
+        copy.removeSection(shared, true);
+
+        assertEquals(0, copy.getSectionCount());
+        assertEquals(-1, copy.getSectionPosition(shared));
+        assertEquals(List.of("Antipasti"), names(menu.getSectionsView()));
+        assertSame(mi, menu.getItemsView().get(0));
+    }
+
     @Test
     void testGetSectionCount_EmptyMenu_ReturnsZero() {
         assertEquals(0, menu.getSectionCount());
@@ -99,4 +285,22 @@ class MenuTest {
     void testIsInUse_FreshMenu_ReturnsFalse() {
         assertFalse(menu.isInUse());
     }
+
+    @Test
+    void testFeatures_ByNameAndByBit() {
+        menu.setFeature(Menu.FEATURE_BUFFET, true);
+        menu.setWarmDishes(true);
+        menu.setFeature("unknown", true);
+
+        assertTrue(menu.getFeature(Menu.FEATURE_WARM_DISHES));
+        assertFalse(menu.getFeature("unknown"));
+        assertEquals(EnumSet.of(MenuFeature.BUFFET, MenuFeature.WARM_DISHES), menu.getFeatureSet());
+        assertEquals(MenuFeature.BUFFET.bit() | MenuFeature.WARM_DISHES.bit(), menu.getFeatureMask());
+        assertEquals(Menu.DEFAULT_FEATURES.length, menu.getFeatures().size());
+        assertEquals(menu.getFeatureSet(), menu.deepCopy().getFeatureSet());
+    }
+
+    private static List<String> names(List<Section> sections) {
+        return sections.stream().map(Section::getName).collect(Collectors.toList());
+    }
 }
@@ -0,0 +1,166 @@
+package catering.businesslogic.menu;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import catering.businesslogic.CatERing;
+import catering.businesslogic.Session;
+import catering.businesslogic.UseCaseLogicException;
+import catering.businesslogic.event.Service;
+import catering.persistence.PersistenceManager;
+
+/**
+ * Tests for menu copies as versions, against the seeded SQLite database,
+ * whose menu 1, by Antonio, has three sections and six items and is
+ * approved by service 1.
+ */
+class MenuVersionsTest {
+
+    private CatERing app;
+    private MenuManager manager;
+
+    private Session.Scope scope;
+
+    @BeforeEach
+    void setUp() throws UseCaseLogicException {
+        scope = new Session().bind();
+        PersistenceManager.initializeDatabase("database/catering_init_sqlite.sql");
+        app = CatERing.getInstance();
+        manager = app.getMenuManager();
+        app.getUserManager().fakeLogin("Antonio");
+        manager.setCurrentMenu(null);
+    }
+
+    @AfterEach
+    void tearDown() {
+        scope.close();
+    }
+
+    @Test
+    void testCopy_ReadsRowsOfSource() throws UseCaseLogicException {
+        Menu source = Menu.load(1);
+        Menu copy = manager.chooseMenuForCopy(source);
+
+        assertEquals(1, copy.getParentId());
+        assertEquals(2, copy.getVersion());
+        assertTrue(copy.isSharingContent());
+        assertEquals(0, rows("MenuItems", copy.getId()));
+
+        Menu loaded = Menu.load(copy.getId());
+        assertEquals(descriptions(source), descriptions(loaded));
+        assertEquals(2, loaded.getVersion());
+    }
+
+    @Test
+    void testEditedCopy_LeavesApprovedVersion() throws UseCaseLogicException {
+        Menu copy = manager.chooseMenuForCopy(Menu.load(1));
+        manager.changeSectionName(copy.getSections().get(0), "Antipasti");
+        manager.insertItem(copy.getSections().get(0).getItems().get(0).getRecipe(), "Caprese di bufala");
+
+        assertFalse(copy.isSharingContent());
+        assertEquals(7, rows("MenuItems", copy.getId()));
+        Menu loaded = Menu.load(copy.getId());
+        assertEquals("Antipasti", loaded.getSections().get(0).getName());
+        assertEquals(7, loaded.getItems().size());
+        assertEquals(itemIds(loaded), itemIds(copy), "the copy's items know their new rows");
+
+        Menu approved = Service.loadById(1).getMenu();
+        assertEquals(1, approved.getId());
+        assertEquals("Appetizers", approved.getSections().get(0).getName());
+        assertEquals(6, approved.getItems().size());
+    }
+
+    @Test
+    void testEditedCopy_SectionReadBeforeLeavesSource() throws UseCaseLogicException {
+        Menu source = Menu.load(1);
+        Menu copy = manager.chooseMenuForCopy(source);
+        Section read = copy.getSection(0);
+
+        manager.changeSectionName(read, "Antipasti");
+
+        assertEquals("Appetizers", source.getSection(0).getName());
+        assertEquals("Antipasti", copy.getSection(0).getName());
+        assertEquals("Antipasti", Menu.load(copy.getId()).getSection(0).getName());
+        assertEquals("Appetizers", Menu.load(1).getSection(0).getName());
+    }
+
+    @Test
+    void testEditedSource_HandsRowsToCopies() throws UseCaseLogicException {
+        Menu source = manager.createMenu("Pranzo");
+        Section sec = manager.defineSection("Primi");
+        manager.insertItem(Menu.load(1).getItems().get(2).getRecipe(), sec, "Carbonara");
+        Menu first = manager.chooseMenuForCopy(source);
+        Menu second = manager.chooseMenuForCopy(source);
+
+        manager.chooseMenu(source);
+        manager.changeSectionName(source.getSections().get(0), "Pasta");
+
+        assertEquals("Pasta", Menu.load(source.getId()).getSections().get(0).getName());
+        for (Menu copy : List.of(first, second)) {
+            Menu loaded = Menu.load(copy.getId());
+            assertEquals("Primi", loaded.getSections().get(0).getName());
+            assertEquals(List.of("Carbonara"), descriptions(loaded));
+        }
+        assertFalse(Menu.load(first.getId()).isSharingContent());
+        assertTrue(Menu.load(second.getId()).isSharingContent());
+    }
+
+    @Test
+    void testDeletedSource_KeepsCopy() throws UseCaseLogicException {
+        Menu source = manager.createMenu("Pranzo");
+        manager.insertItem(Menu.load(1).getItems().get(0).getRecipe(), "Caprese");
+        Menu copy = manager.chooseMenuForCopy(source);
+
+        manager.deleteMenu(source);
+
+        assertEquals(List.of("Caprese"), descriptions(Menu.load(copy.getId())));
+    }
+
+    @Test
+    void testLineage_FromFirstVersion() throws UseCaseLogicException {
+        Menu second = manager.chooseMenuForCopy(Menu.load(1));
+        app.getUserManager().fakeLogin("Chiara");
+        Menu third = manager.chooseMenuForCopy(second);
+
+        List<Menu> lineage = manager.getMenuLineage(third);
+        List<Integer> ids = new ArrayList<>();
+        List<Integer> versions = new ArrayList<>();
+        for (Menu m : lineage) {
+            ids.add(m.getId());
+            versions.add(m.getVersion());
+        }
+        assertEquals(List.of(1, second.getId(), third.getId()), ids);
+        assertEquals(List.of(1, 2, 3), versions);
+        assertTrue(Menu.load(third.getId()).isSharingContent());
+        assertEquals(6, Menu.load(third.getId()).getItems().size());
+    }
+
+    private static List<String> descriptions(Menu m) {
+        List<String> result = new ArrayList<>();
+        for (MenuItem mi : m.getItemsView()) {
+            result.add(mi.getDescription());
+        }
+        return result;
+    }
+
+    private static List<Integer> itemIds(Menu m) {
+        List<Integer> result = new ArrayList<>();
+        for (MenuItem mi : m.getItemsView()) {
+            result.add(mi.getId());
+        }
+        return result;
+    }
+
+    private static int rows(String table, int menuId) {
+        int[] count = new int[1];
+        PersistenceManager.executeQuery("SELECT count(*) AS n FROM " + table + " WHERE menu_id = ?",
+                rs -> count[0] = rs.getInt("n"), menuId);
+        return count[0];
+    }
+}
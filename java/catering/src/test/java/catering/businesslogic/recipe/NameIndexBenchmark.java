@@ -0,0 +1,90 @@
+package catering.businesslogic.recipe;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Microbenchmark for {@link KitchenProcessNameIndex}: per-query latency of
+ * name completion over 100k synthetic recipe and preparation names.
+ * <p>
+ * Not a JUnit test; run it with
+ *
+ * <pre>
+ * mvn test-compile exec:java -Dexec.classpathScope=test \
+ *     -Dexec.mainClass=catering.businesslogic.recipe.NameIndexBenchmark
+ * </pre>
+ */
+public class NameIndexBenchmark {
+
+    private static final String[] DISHES = { "Risotto", "Spaghetti", "Tagliatelle", "Lasagne", "Gnocchi",
+            "Ravioli", "Zuppa", "Insalata", "Torta", "Crostata", "Polpette", "Arrosto", "Frittata", "Pizza",
+            "Focaccia", "Salsa", "Crema", "Brodo", "Ragù", "Sformato" };
+    private static final String[] STYLES = { "alla", "al", "con", "di", "ai" };
+    private static final String[] INGREDIENTS = { "funghi", "pomodoro", "zucca", "tartufo", "limone", "pesce",
+            "carne", "verdure", "formaggi", "noci", "basilico", "ricotta", "speck", "salmone", "carciofi" };
+
+    public static void main(String[] args) {
+        int size = args.length > 0 ? Integer.parseInt(args[0]) : 100_000;
+        int queries = args.length > 1 ? Integer.parseInt(args[1]) : 1_000_000;
+        Random random = new Random(42);
+
+        List<KitchenProcess> processes = new ArrayList<>(size);
+        for (int i = 1; i <= size; i++) {
+            String name = DISHES[random.nextInt(DISHES.length)] + " " + STYLES[random.nextInt(STYLES.length)] + " "
+                    + INGREDIENTS[random.nextInt(INGREDIENTS.length)] + " " + i;
+            KitchenProcess kp = (i % 4 == 0) ? new Preparation(name) : new Recipe(name);
+            kp.setId(i);
+            processes.add(kp);
+        }
+
+        long buildStart = System.nanoTime();
+        KitchenProcessNameIndex index = new KitchenProcessNameIndex();
+        index.rebuild(processes);
+        System.out.printf("Built index of %d names in %.1f ms%n", index.size(),
+                (System.nanoTime() - buildStart) / 1e6);
+
+        // Prefixes as typed one keystroke at a time
+        String[] prefixes = new String[4096];
+        for (int i = 0; i < prefixes.length; i++) {
+            String name = processes.get(random.nextInt(size)).getName().toLowerCase();
+            prefixes[i] = name.substring(0, 1 + random.nextInt(Math.min(12, name.length())));
+        }
+        KitchenProcess[] results = new KitchenProcess[10];
+
+        // Warm up
+        long sink = 0;
+        for (int i = 0; i < queries; i++) {
+            sink += index.complete(prefixes[i & (prefixes.length - 1)], results, true);
+        }
+
+        long[] samples = new long[queries];
+        long allocatedBefore = allocatedBytes();
+        long start = System.nanoTime();
+        for (int i = 0; i < queries; i++) {
+            long t0 = System.nanoTime();
+            sink += index.complete(prefixes[i & (prefixes.length - 1)], results, true);
+            samples[i] = System.nanoTime() - t0;
+        }
+        long elapsed = System.nanoTime() - start;
+        long allocated = allocatedBytes() - allocatedBefore;
+
+        Arrays.sort(samples);
+        System.out.printf("%d top-%d completions: mean %.0f ns, p50 %d ns, p99 %d ns, p99.9 %d ns%n", queries,
+                results.length, (double) elapsed / queries, samples[queries / 2], samples[(int) (queries * 0.99)],
+                samples[(int) (queries * 0.999)]);
+        System.out.printf("Allocated during measurement: %d bytes (%.3f bytes/query)%n", allocated,
+                (double) allocated / queries);
+        System.out.println("(checksum " + sink + ")");
+    }
+
+    private static long allocatedBytes() {
+        java.lang.management.ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        if (bean instanceof com.sun.management.ThreadMXBean) {
+            return ((com.sun.management.ThreadMXBean) bean).getThreadAllocatedBytes(Thread.currentThread().getId());
+        }
+        return 0;
+    }
+}
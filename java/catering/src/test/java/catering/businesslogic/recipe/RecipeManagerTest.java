@@ -0,0 +1,280 @@
+package catering.businesslogic.recipe;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.Iterator;
+import java.util.List;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+
+import catering.persistence.PersistenceManager;
+
+/**
+ * Tests for {@link RecipeManager} and the shared {@link RecipeBook} against
+ * the seeded SQLite database. The book is invalidated before each test
+ * because the database is reinitialized underneath it.
+ */
+class RecipeManagerTest {
+
+    private RecipeManager recipeMgr;
+
+    @BeforeEach
+    void setUp() {
+        PersistenceManager.initializeDatabase("database/catering_init_sqlite.sql");
+        RecipeBook.getInstance().invalidate();
+        recipeMgr = new RecipeManager();
+    }
+
+    @Nested
+    class RecipeBookSnapshots {
+
+        @Test
+        void testGetRecipeBook_IsSortedByName() {
+            List<Recipe> book = recipeMgr.getRecipeBook();
+
+            assertFalse(book.isEmpty(), "the seed script must populate the recipe book");
+            for (int i = 1; i < book.size(); i++) {
+                assertTrue(book.get(i - 1).getName().compareTo(book.get(i).getName()) <= 0);
+            }
+        }
+
+        @Test
+        void testGetRecipeBook_Unchanged_ReturnsSameSnapshot() {
+            assertSame(recipeMgr.getRecipeBook(), recipeMgr.getRecipeBook());
+        }
+
+        @Test
+        void testGetRecipeBook_IsImmutable() {
+            List<Recipe> book = recipeMgr.getRecipeBook();
+            assertThrows(UnsupportedOperationException.class, () -> book.add(new Recipe("Intruder")));
+        }
+
+        @Test
+        void testGetRecipeBook_LinksPreparations() {
+            Recipe bruschetta = findByName(recipeMgr.getRecipeBook(), "Bruschetta al Pomodoro");
+
+            assertNotNull(bruschetta);
+            assertEquals(1, bruschetta.getPreparations().size());
+            assertEquals("Salsa di pomodoro", bruschetta.getPreparations().get(0).getName());
+        }
+    }
+
+    @Nested
+    class IncrementalUpdates {
+
+        @Test
+        void testRecipeSave_AppearsInNewSnapshotOnly() {
+            List<Recipe> before = recipeMgr.getRecipeBook();
+
+            Recipe added = new Recipe("Zuppa Inglese");
+            added.save();
+
+            List<Recipe> after = recipeMgr.getRecipeBook();
+            assertNull(findByName(before, "Zuppa Inglese"), "old snapshots must not change");
+            assertSame(added, findByName(after, "Zuppa Inglese"));
+            assertEquals(before.size() + 1, after.size());
+        }
+
+        @Test
+        void testRecipeUpdate_Rename_KeepsBookSorted() {
+            Recipe recipe = findByName(recipeMgr.getRecipeBook(), "Bruschetta al Pomodoro");
+
+            recipe.setName("Zz Bruschetta");
+            recipe.update();
+
+            List<Recipe> book = recipeMgr.getRecipeBook();
+            assertSame(recipe, book.get(book.size() - 1));
+            assertNull(findByName(book, "Bruschetta al Pomodoro"));
+        }
+
+        @Test
+        void testPreparationUpdate_IsSeenByLinkedRecipes() {
+            Recipe bruschetta = findByName(recipeMgr.getRecipeBook(), "Bruschetta al Pomodoro");
+            Preparation sauce = Preparation.loadPreparationById(bruschetta.getPreparations().get(0).getId());
+
+            sauce.setName("Salsa di pomodoro fresco");
+            sauce.update();
+
+            assertEquals("Salsa di pomodoro fresco", bruschetta.getPreparations().get(0).getName());
+            assertSame(sauce, RecipeBook.getInstance().getPreparation(sauce.getId()));
+        }
+
+        @Test
+        void testPreparationUpdate_DuringIteration_LeavesReaderOnItsSnapshot() {
+            Recipe bruschetta = findByName(recipeMgr.getRecipeBook(), "Bruschetta al Pomodoro");
+            Preparation before = bruschetta.getPreparationsView().get(0);
+            Iterator<Preparation> reader = bruschetta.getPreparationsView().iterator();
+
+            Preparation sauce = Preparation.loadPreparationById(before.getId());
+            sauce.setName("Salsa di pomodoro fresco");
+            sauce.update();
+
+            assertSame(before, reader.next());
+            assertSame(sauce, bruschetta.getPreparationsView().get(0));
+        }
+    }
+
+    @Nested
+    class Search {
+
+        @Test
+        void testSearch_NameFragment_FindsRecipe() {
+            List<SearchResult> results = recipeMgr.search("spagh carbon", 0, 10);
+
+            assertFalse(results.isEmpty());
+            assertEquals("Spaghetti alla Carbonara", results.get(0).getName());
+            assertTrue(results.get(0).isRecipe());
+        }
+
+        @Test
+        void testSearch_IgnoresAccents_FindsPreparation() {
+            List<SearchResult> results = recipeMgr.search("ragu bolog", 0, 10);
+
+            assertTrue(results.stream().anyMatch(r -> !r.isRecipe() && r.getName().equals("Ragù alla bolognese")));
+        }
+
+        @Test
+        void testSearchRecipes_LeavesOutPreparations() {
+            List<SearchResult> results = recipeMgr.searchRecipes("ragu", 0, 50);
+
+            assertFalse(results.isEmpty());
+            assertTrue(results.stream().allMatch(SearchResult::isRecipe));
+        }
+
+        @Test
+        void testSearch_Pages_AreDisjointAndCounted() {
+            int total = recipeMgr.countSearchResults("pomodoro");
+            List<SearchResult> first = recipeMgr.search("pomodoro", 0, 2);
+            List<SearchResult> second = recipeMgr.search("pomodoro", 1, 2);
+
+            assertTrue(total > 2, "the seed script has several dishes with tomato");
+            assertEquals(2, first.size());
+            for (SearchResult r : second) {
+                assertTrue(first.stream().noneMatch(f -> f.getId() == r.getId() && f.isRecipe() == r.isRecipe()));
+            }
+        }
+
+        @Test
+        void testSearch_SavedRecipe_IsIndexed() {
+            Recipe added = new Recipe("Cassata Siciliana");
+            added.setDescription("Torta di ricotta e canditi");
+            added.save();
+
+            List<SearchResult> results = recipeMgr.search("canditi", 0, 10);
+
+            assertEquals(1, results.size());
+            assertEquals(added.getId(), results.get(0).getId());
+        }
+
+        @Test
+        void testSearch_BlankText_ReturnsNothing() {
+            assertTrue(recipeMgr.search("  ", 0, 10).isEmpty());
+            assertEquals(0, recipeMgr.countSearchResults(null));
+        }
+    }
+
+    @Nested
+    class NameCompletion {
+
+        @Test
+        void testCompleteRecipeName_IgnoresCaseAndKeepsNameOrder() {
+            KitchenProcess[] results = new KitchenProcess[10];
+
+            int n = recipeMgr.completeRecipeName("SPAGHETTI", results);
+
+            assertTrue(n >= 2, "the seed script has more than one spaghetti dish");
+            for (int i = 0; i < n; i++) {
+                assertTrue(results[i].isRecipe());
+                assertTrue(results[i].getName().toLowerCase().startsWith("spaghetti"));
+                if (i > 0)
+                    assertTrue(results[i - 1].getName().compareToIgnoreCase(results[i].getName()) <= 0);
+            }
+        }
+
+        @Test
+        void testCompleteName_PrefixLowerCasedLikeNames() {
+            // String.toLowerCase would turn U+0130 into "i" and a combining
+            // dot; names and prefix are both lower-cased one char at a time
+            KitchenProcessNameIndex index = new KitchenProcessNameIndex();
+            Recipe izmir = new Recipe("\u0130zmir k\u00f6ftesi");
+            index.rebuild(List.of(new Recipe("Insalata"), izmir, new Recipe("Involtini")));
+            KitchenProcess[] results = new KitchenProcess[5];
+
+            assertEquals(1, index.complete("\u0130ZM", results, true));
+            assertSame(izmir, results[0]);
+            assertEquals(3, index.complete("i", results, true));
+        }
+
+        @Test
+        void testPut_MovesRenamedEntryToItsSlot() {
+            KitchenProcessNameIndex index = new KitchenProcessNameIndex();
+            Recipe[] recipes = new Recipe[5];
+            String[] names = { "Arrosto", "Brodo", "Crema", "Dolce", "Frittata" };
+            for (int i = 0; i < names.length; i++) {
+                recipes[i] = new Recipe(names[i]);
+                recipes[i].setId(i + 1);
+            }
+            index.rebuild(List.of(recipes));
+
+            recipes[1].setName("Zuppa");
+            index.put(recipes[1]);
+            recipes[4].setName("Aglio");
+            index.put(recipes[4]);
+            index.put(recipes[2]);
+            Preparation sauce = new Preparation("Besciamella");
+            sauce.setId(1);
+            index.put(sauce);
+
+            KitchenProcess[] results = new KitchenProcess[10];
+            int n = index.complete("", results, false);
+            String[] completed = new String[n];
+            for (int i = 0; i < n; i++) {
+                completed[i] = results[i].getName();
+            }
+            assertArrayEquals(new String[] { "Aglio", "Arrosto", "Besciamella", "Crema", "Dolce", "Zuppa" },
+                    completed);
+            assertEquals(6, index.size());
+        }
+
+        @Test
+        void testCompleteName_StopsAtResultArrayLength() {
+            KitchenProcess[] results = new KitchenProcess[1];
+            assertEquals(1, recipeMgr.completeName("s", results));
+        }
+
+        @Test
+        void testCompleteName_IncludesPreparations() {
+            KitchenProcess[] results = new KitchenProcess[5];
+
+            int n = recipeMgr.completeName("besciam", results);
+
+            assertEquals(1, n);
+            assertFalse(results[0].isRecipe());
+        }
+
+        @Test
+        void testCompleteName_SavedAndRenamed_IndexFollows() {
+            KitchenProcess[] results = new KitchenProcess[5];
+            Recipe added = new Recipe("Quaglie arrosto");
+            added.save();
+            assertEquals(1, recipeMgr.completeRecipeName("quagl", results));
+
+            added.setName("Piccione arrosto");
+            added.update();
+
+            assertEquals(0, recipeMgr.completeRecipeName("quagl", results));
+            assertEquals(1, recipeMgr.completeRecipeName("piccione", results));
+            assertSame(added, results[0]);
+        }
+    }
+
+    private static Recipe findByName(List<Recipe> recipes, String name) {
+        for (Recipe r : recipes) {
+            if (name.equals(r.getName()))
+                return r;
+        }
+        return null;
+    }
+}
@@ -0,0 +1,145 @@
+package catering.persistence;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.sql.Date;
+import java.sql.Time;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import catering.businesslogic.event.Service;
+import catering.businesslogic.kitchen.KitchenTask;
+import catering.businesslogic.kitchen.SummarySheet;
+import catering.businesslogic.menu.Menu;
+import catering.businesslogic.shift.Shift;
+
+/**
+ * Tests for change tracking: entities write only the fields changed since
+ * they were loaded or last written, and nothing when none changed.
+ */
+class DirtyFieldsTest {
+
+    private final QueryMonitor monitor = QueryMonitor.getInstance();
+
+    @BeforeEach
+    void setUp() {
+        PersistenceManager.initializeDatabase("database/catering_init_sqlite.sql");
+        // A summary sheet for the lunch service, with three tasks
+        PersistenceManager.executeUpdate("INSERT INTO SummarySheets (service_id, owner_id) VALUES (1, 5)");
+        for (int i = 0; i < 3; i++) {
+            PersistenceManager.executeUpdate("INSERT INTO Tasks (sumsheet_id, kitchenproc_id, description, type, "
+                    + "position, ready, quantity, portions) SELECT 1, id, name, 1, ?, 0, 0, 0 FROM Recipes "
+                    + "ORDER BY id LIMIT 1", i);
+        }
+        monitor.setEnabled(true);
+        monitor.reset();
+    }
+
+    @Test
+    void testUpdate_OnlyChangedColumns() {
+        KitchenTask task = KitchenTask.loadTaskById(1);
+        KitchenTask.updateTaskChanged(task);
+        assertTrue(updates("Tasks").isEmpty());
+
+        task.setQuantity(4);
+        task.setPortions(0);
+        KitchenTask.updateTaskChanged(task);
+        assertEquals(List.of("UPDATE Tasks SET quantity = ? WHERE id = ?"), updates("Tasks"));
+        assertEquals(4, KitchenTask.loadTaskById(1).getQuantity());
+
+        monitor.reset();
+        KitchenTask.updateTaskChanged(task);
+        assertTrue(updates("Tasks").isEmpty());
+    }
+
+    @Test
+    void testService_WritesItsMenuWithTheOtherChanges() {
+        Service service = Service.loadById(2);
+        service.setLocation("Terrazza");
+        service.setMenu(Menu.load(1));
+        service.setTimeStart(service.getTimeStart());
+        service.updateService();
+
+        assertEquals(List.of("UPDATE Services SET approved_menu_id = ?, location = ? WHERE id = ?"),
+                updates("Services"));
+        Service reloaded = Service.loadById(2);
+        assertEquals("Terrazza", reloaded.getLocation());
+        assertEquals(1, reloaded.getMenuId());
+        assertEquals(Time.valueOf("19:00:00"), reloaded.getTimeStart());
+    }
+
+    @Test
+    void testMenuFeatures_WrittenAsOneColumn() {
+        Menu menu = Menu.load(1);
+        menu.setBuffet(true);
+        menu.setWarmDishes(true);
+        menu.setFingerFood(menu.isFingerFood());
+        Menu.saveFeatures(menu);
+        assertEquals(List.of("UPDATE Menus SET features = ? WHERE id = ?"), updates("Menus"));
+        assertEquals(1, calls("UPDATE Menus"));
+        assertEquals(menu.getFeatures(), Menu.load(1).getFeatures());
+
+        monitor.reset();
+        Menu.saveFeatures(menu);
+        assertTrue(monitor.getQueryStats().isEmpty());
+    }
+
+    @Test
+    void testTaskList_WritesOnlyMovedTasks() {
+        SummarySheet sheet = SummarySheet.loadSummarySheetById(1);
+        SummarySheet.updateTaskList(sheet);
+        assertEquals(0, calls("UPDATE Tasks SET position"));
+
+        List<KitchenTask> tasks = new ArrayList<>(sheet.getTaskList());
+        sheet.moveTask(tasks.get(2), 1);
+        SummarySheet.updateTaskList(sheet);
+        assertEquals(1, calls("UPDATE Tasks SET position"));
+        assertEquals(List.of(1, 3, 2), taskIds(SummarySheet.loadSummarySheetById(1)));
+
+        monitor.reset();
+        SummarySheet.updateTaskList(sheet);
+        assertEquals(0, calls("UPDATE Tasks SET position"));
+    }
+
+    @Test
+    void testShiftSetId_WritesAllFields() {
+        Shift stored = Shift.createShift(Date.valueOf("2025-06-15"), Time.valueOf("08:00:00"),
+                Time.valueOf("12:00:00"));
+        Shift detached = new Shift(Date.valueOf("2025-06-16"), Time.valueOf("09:00:00"), Time.valueOf("13:00:00"));
+        detached.setId(stored.getId());
+        detached.updateShift();
+
+        Shift reloaded = Shift.loadItemById(stored.getId());
+        assertEquals(Date.valueOf("2025-06-16"), reloaded.getDate());
+        assertEquals(Time.valueOf("09:00:00"), reloaded.getStartTime());
+    }
+
+    private List<String> updates(String prefix) {
+        List<String> sql = new ArrayList<>();
+        for (QueryStats q : monitor.getQueryStats()) {
+            if (q.getSql().startsWith("UPDATE " + prefix))
+                sql.add(q.getSql());
+        }
+        return sql;
+    }
+
+    private long calls(String prefix) {
+        long n = 0;
+        for (QueryStats q : monitor.getQueryStats()) {
+            if (q.getSql().startsWith(prefix))
+                n += q.getCalls();
+        }
+        return n;
+    }
+
+    private static List<Integer> taskIds(SummarySheet sheet) {
+        List<Integer> ids = new ArrayList<>();
+        for (KitchenTask t : sheet.getTaskList()) {
+            ids.add(t.getId());
+        }
+        return ids;
+    }
+}
@@ -0,0 +1,115 @@
+package catering.persistence;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.sql.Date;
+import java.sql.Time;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import catering.businesslogic.event.Event;
+import catering.businesslogic.menu.Menu;
+import catering.businesslogic.shift.Shift;
+
+/**
+ * Tests for keyset pagination: {@link PersistenceManager#queryPage} and the
+ * paged loaders of the entities.
+ */
+class PageTest {
+
+    @BeforeEach
+    void setUp() {
+        PersistenceManager.initializeDatabase("database/catering_init_sqlite.sql");
+    }
+
+    @Test
+    void testEventPages_MostRecentFirstTiesById() {
+        // Two more events on the same day as the seeded one, and one later
+        for (String[] e : new String[][] { { "Same day A", "2025-06-15" }, { "Same day B", "2025-06-15" },
+                { "Later", "2025-09-01" } }) {
+            PersistenceManager.executeUpdate(
+                    "INSERT INTO Events (name, date_start, date_end, chef_id) VALUES (?, ?, ?, 5)", e[0],
+                    day(e[1]), day(e[1]));
+        }
+
+        List<String> names = new ArrayList<>();
+        Page<Event> page = Event.loadPage(null, 2, Projection.HEADER);
+        assertTrue(page.hasNext());
+        while (true) {
+            for (Event e : page.getItems()) {
+                names.add(e.getName());
+                assertTrue(e.getServices().isEmpty());
+            }
+            if (!page.hasNext())
+                break;
+            page = Event.loadPage(page.getLast(), 2, Projection.HEADER);
+        }
+
+        assertEquals(List.of("Later", "Same day B", "Same day A", "Gala Aziendale Annuale"), names);
+    }
+
+    @Test
+    void testEventPage_FullLoadsServices() {
+        Page<Event> page = Event.loadPage(null, 10, Projection.FULL);
+
+        assertEquals(1, page.size());
+        assertFalse(page.hasNext());
+        assertEquals(Event.loadById(page.getLast().getId()).getServices().size(),
+                page.getLast().getServices().size());
+        assertFalse(page.getLast().getServices().isEmpty());
+    }
+
+    @Test
+    void testShiftPages_ByDateAndStartTime() {
+        String[][] shifts = { { "2025-06-02", "14:00:00" }, { "2025-06-01", "18:00:00" },
+                { "2025-06-01", "08:00:00" }, { "2025-06-02", "14:00:00" }, { "2025-06-01", "12:00:00" } };
+        for (String[] s : shifts) {
+            PersistenceManager.executeUpdate("INSERT INTO Shifts (date, start_time, end_time) VALUES (?, ?, ?)",
+                    day(s[0]), Temporals.toMinuteOfDay(Time.valueOf(s[1])), 23 * 60);
+        }
+
+        List<String> keys = new ArrayList<>();
+        Shift after = null;
+        Page<Shift> page;
+        do {
+            page = Shift.loadPage(after, 2, Projection.FULL);
+            for (Shift s : page.getItems()) {
+                keys.add(s.getDate() + " " + s.getStartTime() + " #" + s.getId());
+            }
+            after = page.getLast();
+        } while (page.hasNext());
+
+        assertEquals(List.of("2025-06-01 08:00:00 #3", "2025-06-01 12:00:00 #5", "2025-06-01 18:00:00 #2",
+                "2025-06-02 14:00:00 #1", "2025-06-02 14:00:00 #4"), keys);
+    }
+
+    @Test
+    void testMenuPage_HeaderHasNoSections() {
+        Page<Menu> header = Menu.loadPage(null, 1, Projection.HEADER);
+        Page<Menu> full = Menu.loadPage(null, 1, Projection.FULL);
+
+        assertEquals("Sample Menu", header.getLast().getTitle());
+        assertTrue(header.getLast().getSections().isEmpty());
+        assertEquals(Menu.load(1).getSections().size(), full.getLast().getSections().size());
+        assertTrue(Menu.loadPage(full.getLast(), 1, Projection.HEADER).isEmpty());
+    }
+
+    @Test
+    void testQueryPage_ChecksSize() {
+        String query = "SELECT id FROM Users ORDER BY id";
+
+        assertThrows(IllegalArgumentException.class, () -> PersistenceManager.queryPage(query, 0, rs -> 1));
+        assertThrows(IllegalArgumentException.class,
+                () -> PersistenceManager.queryPage(query, Page.MAX_SIZE + 1, rs -> 1));
+        Page<Integer> page = PersistenceManager.queryPage(query, 3, rs -> rs.getInt("id"));
+        assertEquals(List.of(1, 2, 3), page.getItems());
+        assertTrue(page.hasNext());
+    }
+
+    private static int day(String date) {
+        return Temporals.toEpochDay(Date.valueOf(date));
+    }
+}
@@ -0,0 +1,112 @@
+package catering.persistence;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.lang.management.ManagementFactory;
+
+import javax.management.ObjectName;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import catering.businesslogic.CatERing;
+import catering.businesslogic.Session;
+import catering.businesslogic.UseCaseLogicException;
+
+/**
+ * Tests for {@link QueryMonitor}: per-SQL counts, use-case attribution, the
+ * slow-query log and the JMX view.
+ */
+class QueryMonitorTest {
+
+    private static final String COUNT_USERS = "SELECT id FROM Users";
+
+    private final QueryMonitor monitor = QueryMonitor.getInstance();
+    private long threshold;
+
+    private Session.Scope scope;
+
+    @BeforeEach
+    void setUp() {
+        scope = new Session().bind();
+        PersistenceManager.initializeDatabase("database/catering_init_sqlite.sql");
+        threshold = monitor.getSlowQueryThresholdMillis();
+        monitor.setEnabled(true);
+        monitor.reset();
+    }
+
+    @AfterEach
+    void tearDown() {
+        monitor.setSlowQueryThresholdMillis(threshold);
+        monitor.setEnabled(true);
+        scope.close();
+    }
+
+    @Test
+    void testExecuteQuery_RecordsCallsRowsAndTimes() {
+        int[] rows = new int[1];
+        PersistenceManager.executeQuery(COUNT_USERS, rs -> rows[0]++);
+        PersistenceManager.executeQuery(COUNT_USERS, rs -> rows[0]++);
+
+        QueryStats stats = monitor.getQueryStats(COUNT_USERS);
+        assertEquals(2, stats.getCalls());
+        assertEquals(rows[0], stats.getRows());
+        assertEquals(0, stats.getErrors());
+        assertTrue(stats.getTotal().getTotalNanos() >= stats.getExecution().getTotalNanos());
+        assertEquals(2, stats.getConnection().getCount());
+    }
+
+    @Test
+    void testExecuteUpdate_FailureCountsAsError() {
+        PersistenceManager.executeUpdate("UPDATE NoSuchTable SET x = 1");
+
+        assertEquals(1, monitor.getQueryStats("UPDATE NoSuchTable SET x = 1").getErrors());
+    }
+
+    @Test
+    void testManagerOperation_AttributedToUseCase() throws UseCaseLogicException {
+        CatERing app = CatERing.getInstance();
+        app.getUserManager().fakeLogin("Antonio");
+        monitor.reset();
+
+        app.getMenuManager().createMenu("Pranzo");
+
+        QueryStats insert = monitor.getQueryStats("INSERT INTO Menus (title, owner_id, published, features, parent_id,"
+                + " version, content_id) VALUES (?, ?, ?, ?, ?, ?, ?);");
+        assertEquals(1L, insert.getCallers().get("MenuManager.createMenu"));
+        assertTrue(monitor.getCallerStats().containsKey("MenuManager.createMenu"));
+    }
+
+    @Test
+    void testSlowQuery_LoggedAboveThreshold() {
+        monitor.setSlowQueryThresholdMillis(0);
+
+        PersistenceManager.executeQuery(COUNT_USERS, rs -> {
+        });
+
+        assertEquals(1, monitor.getSlowQueryCount());
+        assertEquals(COUNT_USERS, monitor.getSlowQueries().get(0).getSql());
+    }
+
+    @Test
+    void testDisabled_RecordsNothing() {
+        monitor.setEnabled(false);
+
+        PersistenceManager.executeQuery(COUNT_USERS, rs -> {
+        });
+
+        assertNull(monitor.getQueryStats(COUNT_USERS));
+        assertEquals(0, monitor.getQueryCount());
+    }
+
+    @Test
+    void testJmx_ExposesCounts() throws Exception {
+        PersistenceManager.executeQuery(COUNT_USERS, rs -> {
+        });
+
+        Object count = ManagementFactory.getPlatformMBeanServer()
+                .getAttribute(new ObjectName("catering:type=QueryMonitor"), "QueryCount");
+        assertEquals(1L, count);
+    }
+}
@@ -0,0 +1,197 @@
+package catering.persistence;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.sql.Connection;
+import java.sql.Date;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Time;
+import java.util.EnumSet;
+import java.util.List;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import catering.businesslogic.CatERing;
+import catering.businesslogic.event.Event;
+import catering.businesslogic.event.Service;
+import catering.businesslogic.menu.Menu;
+import catering.businesslogic.menu.MenuFeature;
+import catering.businesslogic.shift.Shift;
+
+/**
+ * Tests for {@link Temporals} and the migration of older files: files
+ * without the search table or the listing indexes, dates and times stored
+ * as text or epoch milliseconds, menu features stored one row each, and
+ * menus without versions.
+ */
+class SchemaMigrationsTest {
+
+    private static final List<String> LISTING_INDEXES = List.of("Events_by_date", "Shifts_by_date",
+            "Services_by_event", "Services_by_menu", "UserRoles_by_user", "MenuSections_by_menu",
+            "MenuItems_by_section", "Tasks_by_sheet", "Assignment_by_sheet");
+
+    @BeforeEach
+    void setUp() {
+        PersistenceManager.initializeDatabase("database/catering_init_sqlite.sql");
+    }
+
+    @Test
+    void testInitializeDatabase_StampsCurrentVersion() throws SQLException {
+        try (Connection conn = PersistenceManager.getConnection()) {
+            assertEquals(SchemaMigrations.VERSION, SchemaMigrations.getVersion(conn));
+        }
+    }
+
+    @Test
+    void testMigrate_FillsSearchTable() throws SQLException {
+        try (Connection conn = PersistenceManager.getConnection(); Statement stmt = conn.createStatement()) {
+            withoutSearch(stmt);
+            withFeatureRows(stmt);
+            stmt.executeUpdate("PRAGMA user_version = 0");
+
+            SchemaMigrations.migrate(conn);
+            assertEquals(SchemaMigrations.VERSION, SchemaMigrations.getVersion(conn));
+        }
+
+        assertFalse(CatERing.getInstance().getRecipeManager().search("vitello", 0, 10).isEmpty());
+        // The triggers keep it in sync
+        PersistenceManager.executeUpdate(
+                "UPDATE Recipes SET name = 'Quenelle di luccio' WHERE name = 'Vitello Tonnato'");
+        assertEquals(1, CatERing.getInstance().getRecipeManager().search("quenelle", 0, 10).size());
+    }
+
+    @Test
+    void testMigrate_CreatesListingIndexes() throws SQLException {
+        try (Connection conn = PersistenceManager.getConnection(); Statement stmt = conn.createStatement()) {
+            for (String index : LISTING_INDEXES)
+                stmt.executeUpdate("DROP INDEX " + index);
+            withFeatureRows(stmt);
+            stmt.executeUpdate("PRAGMA user_version = 1");
+
+            SchemaMigrations.migrate(conn);
+            assertEquals(SchemaMigrations.VERSION, SchemaMigrations.getVersion(conn));
+        }
+
+        int[] count = new int[1];
+        PersistenceManager.executeQuery("SELECT count(*) FROM sqlite_master WHERE type = 'index' AND name IN ('"
+                + String.join("', '", LISTING_INDEXES) + "')", rs -> count[0] = rs.getInt(1));
+        assertEquals(LISTING_INDEXES.size(), count[0]);
+    }
+
+    @Test
+    void testMigrate_ConvertsTextAndMillis() throws SQLException {
+        long millis = Date.valueOf("2025-06-15").getTime();
+        try (Connection conn = PersistenceManager.getConnection(); Statement stmt = conn.createStatement()) {
+            stmt.executeUpdate("UPDATE Events SET date_start = '2025-06-15', date_end = " + millis);
+            stmt.executeUpdate("UPDATE Services SET service_date = '2025-06-15', time_start = '12:30:00', "
+                    + "time_end = " + Time.valueOf("15:00:00").getTime());
+            stmt.executeUpdate("INSERT INTO Shifts (date, start_time, end_time) VALUES (" + millis
+                    + ", '08:00:00', '14:00:00')");
+            withFeatureRows(stmt);
+            stmt.executeUpdate("PRAGMA user_version = 0");
+
+            SchemaMigrations.migrate(conn);
+            assertEquals(SchemaMigrations.VERSION, SchemaMigrations.getVersion(conn));
+        }
+
+        Event event = Event.loadById(1);
+        assertEquals(Date.valueOf("2025-06-15"), event.getDateStart());
+        assertEquals(Date.valueOf("2025-06-15"), event.getDateEnd());
+        Service service = event.getServices().get(0);
+        assertEquals(Date.valueOf("2025-06-15"), service.getDate());
+        assertEquals(Time.valueOf("12:30:00"), service.getTimeStart());
+        assertEquals(Time.valueOf("15:00:00"), service.getTimeEnd());
+        List<Shift> shifts = Shift.loadShiftsForDate(Date.valueOf("2025-06-15"));
+        assertEquals(1, shifts.size());
+        assertEquals(Time.valueOf("08:00:00"), shifts.get(0).getStartTime());
+    }
+
+    @Test
+    void testMigrate_LeavesCurrentValues() throws SQLException {
+        Event before = Event.loadById(1);
+        try (Connection conn = PersistenceManager.getConnection(); Statement stmt = conn.createStatement()) {
+            withFeatureRows(stmt);
+            stmt.executeUpdate("PRAGMA user_version = 0");
+            SchemaMigrations.migrate(conn);
+        }
+
+        Event after = Event.loadById(1);
+        assertEquals(before.getDateStart(), after.getDateStart());
+        assertEquals(before.getServices().get(0).getTimeStart(), after.getServices().get(0).getTimeStart());
+    }
+
+    @Test
+    void testMigrate_FoldsFeatureRowsIntoMask() throws SQLException {
+        try (Connection conn = PersistenceManager.getConnection(); Statement stmt = conn.createStatement()) {
+            stmt.executeUpdate("INSERT INTO Menus (title, owner_id, published) VALUES ('Vuoto', 5, 0)");
+            withFeatureRows(stmt);
+            stmt.executeUpdate("INSERT INTO MenuFeatures (menu_id, name, value) VALUES (1, 'buffet', 1), "
+                    + "(1, 'warmDishes', 1), (1, 'warmDishes', 1), (1, 'needsCook', 0), (1, 'unknown', 1)");
+            stmt.executeUpdate("PRAGMA user_version = 4");
+
+            SchemaMigrations.migrate(conn);
+            assertEquals(SchemaMigrations.VERSION, SchemaMigrations.getVersion(conn));
+        }
+
+        assertEquals(EnumSet.of(MenuFeature.BUFFET, MenuFeature.WARM_DISHES), Menu.load(1).getFeatureSet());
+        assertEquals(0, Menu.load(2).getFeatureMask());
+    }
+
+    @Test
+    void testMigrate_MenusAreFirstVersions() throws SQLException {
+        try (Connection conn = PersistenceManager.getConnection(); Statement stmt = conn.createStatement()) {
+            withoutLineage(stmt);
+            stmt.executeUpdate("PRAGMA user_version = 5");
+
+            SchemaMigrations.migrate(conn);
+            assertEquals(SchemaMigrations.VERSION, SchemaMigrations.getVersion(conn));
+        }
+
+        Menu m = Menu.load(1);
+        assertEquals(1, m.getVersion());
+        assertEquals(0, m.getParentId());
+        assertFalse(m.isSharingContent());
+        assertEquals(6, m.getItems().size());
+    }
+
+    @Test
+    void testTemporals_RoundTrip() {
+        Date date = Date.valueOf("1969-12-31");
+        Time time = Time.valueOf("23:59:00");
+
+        assertEquals(-1, Temporals.toEpochDay(date));
+        assertEquals(Temporals.MINUTES_PER_DAY - 1, Temporals.toMinuteOfDay(time));
+        assertEquals(date, Temporals.toDate(Temporals.toEpochDay(date)));
+        assertEquals(time, Temporals.toTime(Temporals.toMinuteOfDay(time)));
+        assertNull(Temporals.toEpochDay(null));
+    }
+
+    // Puts the menu features back as they were before version 5
+    private static void withFeatureRows(Statement stmt) throws SQLException {
+        withoutLineage(stmt);
+        stmt.executeUpdate("DROP INDEX Menus_by_features");
+        stmt.executeUpdate("ALTER TABLE Menus DROP COLUMN features");
+        stmt.executeUpdate("CREATE TABLE MenuFeatures (menu_id INTEGER NOT NULL, name TEXT NOT NULL DEFAULT '', "
+                + "value INTEGER DEFAULT 0)");
+    }
+
+    // Puts the menus back as they were before version 6
+    private static void withoutLineage(Statement stmt) throws SQLException {
+        stmt.executeUpdate("DROP INDEX Menus_by_parent");
+        stmt.executeUpdate("DROP INDEX Menus_by_content");
+        stmt.executeUpdate("ALTER TABLE Menus DROP COLUMN parent_id");
+        stmt.executeUpdate("ALTER TABLE Menus DROP COLUMN version");
+        stmt.executeUpdate("ALTER TABLE Menus DROP COLUMN content_id");
+    }
+
+    // Puts the search table back as it was before version 1: missing
+    private static void withoutSearch(Statement stmt) throws SQLException {
+        for (String table : List.of("Recipes", "Preparations")) {
+            for (String event : List.of("insert", "update", "delete"))
+                stmt.executeUpdate("DROP TRIGGER " + table + "_search_" + event);
+        }
+        stmt.executeUpdate("DROP TABLE KitchenProcessSearch");
+    }
+}
@@ -0,0 +1,90 @@
+package catering.persistence;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import catering.businesslogic.event.Event;
+import catering.businesslogic.kitchen.SummarySheet;
+import catering.businesslogic.recipe.Recipe;
+import catering.businesslogic.shift.Shift;
+import catering.businesslogic.user.User;
+
+/**
+ * Tests for {@link PersistenceManager#stream}: lazy mapping, closing, errors,
+ * and the streaming loaders of the entities.
+ */
+class StreamQueryTest {
+
+    private static final String USERS = "SELECT id, username FROM Users ORDER BY id";
+
+    private final QueryMonitor monitor = QueryMonitor.getInstance();
+
+    @BeforeEach
+    void setUp() {
+        PersistenceManager.initializeDatabase("database/catering_init_sqlite.sql");
+        monitor.setEnabled(true);
+        monitor.reset();
+    }
+
+    @Test
+    void testStream_MapsOnlyRowsConsumed() {
+        int[] mapped = new int[1];
+        List<String> first;
+        try (Stream<String> names = PersistenceManager.stream(USERS, rs -> {
+            mapped[0]++;
+            return rs.getString("username");
+        })) {
+            first = names.limit(2).collect(Collectors.toList());
+        }
+
+        assertEquals(2, first.size());
+        assertEquals(2, mapped[0]);
+        // Closing the stream ends the query
+        assertEquals(1, monitor.getQueryStats(USERS).getCalls());
+        assertEquals(2, monitor.getQueryStats(USERS).getRows());
+    }
+
+    @Test
+    void testStream_ExhaustedReleasesWithoutClose() {
+        long count = PersistenceManager.stream(USERS, 10, rs -> rs.getInt("id")).count();
+
+        assertEquals(count, monitor.getQueryStats(USERS).getRows());
+        assertEquals(1, monitor.getQueryStats(USERS).getCalls());
+    }
+
+    @Test
+    void testStream_BadQueryIsEmpty() {
+        try (Stream<Integer> rows = PersistenceManager.stream("SELECT * FROM NoSuchTable", rs -> 1)) {
+            assertEquals(0, rows.count());
+        }
+
+        assertEquals(1, monitor.getQueryStats("SELECT * FROM NoSuchTable").getErrors());
+    }
+
+    @Test
+    void testEntityStreams_MatchLoaders() {
+        try (Stream<Event> events = Event.streamAllEvents();
+                Stream<User> users = User.streamAllUsers();
+                Stream<Shift> shifts = Shift.streamAllShifts();
+                Stream<Recipe> recipes = Recipe.streamAllRecipes();
+                Stream<SummarySheet> sheets = SummarySheet.streamAllSumSheets()) {
+            assertEquals(ids(Event.loadAllEvents().stream().map(Event::getId)), ids(events.map(Event::getId)));
+            assertEquals(ids(User.loadAllUsers().stream().map(u -> u.getUserName() + u.getRoles())),
+                    ids(users.map(u -> u.getUserName() + u.getRoles())));
+            assertEquals(ids(Shift.loadAllShifts().stream().map(Shift::getId)), ids(shifts.map(Shift::getId)));
+            assertEquals(ids(Recipe.loadAllRecipes().stream().map(Recipe::getName)),
+                    ids(recipes.map(Recipe::getName)));
+            assertEquals(SummarySheet.loadAllSumSheets().size(), sheets.count());
+        }
+    }
+
+    private static List<Object> ids(Stream<?> values) {
+        return values.collect(Collectors.toList());
+    }
+}
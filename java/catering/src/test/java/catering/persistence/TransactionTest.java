@@ -0,0 +1,72 @@
+package catering.persistence;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Tests for {@link PersistenceManager#inTransaction}, on the Users table of
+ * the seeded database.
+ */
+class TransactionTest {
+
+    private static final String RENAME = "UPDATE Users SET username = ? WHERE username = ?";
+
+    @BeforeEach
+    void setUp() {
+        PersistenceManager.initializeDatabase("database/catering_init_sqlite.sql");
+    }
+
+    @Test
+    void testInTransaction_CommitsAllStatements() {
+        boolean committed = PersistenceManager.inTransaction(() -> {
+            PersistenceManager.executeUpdate(RENAME, "Antonia", "Antonio");
+            PersistenceManager.executeUpdate(RENAME, "Chiaro", "Chiara");
+        });
+
+        assertTrue(committed);
+        assertEquals(1, users("Antonia"));
+        assertEquals(1, users("Chiaro"));
+    }
+
+    @Test
+    void testInTransaction_FailedStatementRollsBack() {
+        boolean committed = PersistenceManager.inTransaction(() -> {
+            PersistenceManager.executeUpdate(RENAME, "Antonia", "Antonio");
+            PersistenceManager.executeUpdate("UPDATE NoSuchTable SET x = 1");
+        });
+
+        assertFalse(committed);
+        assertEquals(1, users("Antonio"));
+        assertEquals(0, users("Antonia"));
+    }
+
+    @Test
+    void testInTransaction_ExceptionRollsBack() {
+        assertThrows(IllegalStateException.class, () -> PersistenceManager.inTransaction(() -> {
+            PersistenceManager.executeUpdate(RENAME, "Antonia", "Antonio");
+            throw new IllegalStateException();
+        }));
+
+        assertEquals(1, users("Antonio"));
+    }
+
+    @Test
+    void testInTransaction_NestedJoinsOuter() {
+        boolean committed = PersistenceManager.inTransaction(() -> {
+            PersistenceManager.inTransaction(() -> PersistenceManager.executeUpdate(RENAME, "Antonia", "Antonio"));
+            PersistenceManager.executeUpdate("UPDATE NoSuchTable SET x = 1");
+        });
+
+        assertFalse(committed);
+        assertEquals(1, users("Antonio"));
+    }
+
+    private static int users(String username) {
+        int[] count = new int[1];
+        PersistenceManager.executeQuery("SELECT count(*) AS n FROM Users WHERE username = ?",
+                rs -> count[0] = rs.getInt("n"), username);
+        return count[0];
+    }
+}
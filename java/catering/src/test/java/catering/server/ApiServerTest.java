@@ -0,0 +1,215 @@
+package catering.server;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+
+import catering.businesslogic.recipe.RecipeBook;
+import catering.persistence.PersistenceManager;
+
+/**
+ * Tests for {@link ApiServer} over real HTTP on a free local port.
+ */
+class ApiServerTest {
+
+    private static ApiServer server;
+    private static HttpClient client;
+
+    @BeforeAll
+    static void startServer() throws Exception {
+        server = new ApiServer(0);
+        server.start();
+        client = HttpClient.newHttpClient();
+    }
+
+    @AfterAll
+    static void stopServer() {
+        server.stop();
+    }
+
+    @BeforeEach
+    void setUp() {
+        PersistenceManager.initializeDatabase("database/catering_init_sqlite.sql");
+        RecipeBook.getInstance().invalidate();
+    }
+
+    @Nested
+    class Sessions {
+
+        @Test
+        void testLogin_ReturnsToken() throws Exception {
+            HttpResponse<String> res = send("POST", "/api/sessions", null, "user=Antonio");
+
+            assertEquals(200, res.statusCode());
+            assertTrue(res.body().contains("\"user\":\"Antonio\""));
+        }
+
+        @Test
+        void testLogin_UnknownUser_Unauthorized() throws Exception {
+            assertEquals(401, send("POST", "/api/sessions", null, "user=Nessuno").statusCode());
+        }
+
+        @Test
+        void testRequest_WithoutToken_Unauthorized() throws Exception {
+            assertEquals(401, send("GET", "/api/menus/current", null, null).statusCode());
+        }
+
+        @Test
+        void testUnknownPath_NotFound() throws Exception {
+            assertEquals(404, send("GET", "/api/nothing", login("Antonio"), null).statusCode());
+        }
+
+        @Test
+        void testLogout_EndsSession() throws Exception {
+            String token = login("Antonio");
+
+            assertEquals(200, send("DELETE", "/api/sessions", token, null).statusCode());
+            assertEquals(401, send("GET", "/api/menus/current", token, null).statusCode());
+        }
+
+        @Test
+        void testIdleSession_Expires() throws Exception {
+            String token = login("Antonio");
+            server.setSessionTimeoutMillis(0);
+            try {
+                assertEquals(401, send("GET", "/api/menus/current", token, null).statusCode());
+            } finally {
+                server.setSessionTimeoutMillis(ApiServer.DEFAULT_SESSION_TIMEOUT_MILLIS);
+            }
+        }
+
+        @Test
+        void testLargeBody_Refused() throws Exception {
+            String form = "user=Antonio&pad=" + "x".repeat(Request.MAX_BODY_BYTES);
+
+            assertEquals(413, send("POST", "/api/sessions", null, form).statusCode());
+        }
+
+        @Test
+        void testListensOnLoopback() {
+            assertTrue(server.getAddress().isLoopbackAddress());
+        }
+    }
+
+    @Nested
+    class Menus {
+
+        @Test
+        void testCreateMenuAndInsertItem_AsChef() throws Exception {
+            String token = login("Antonio");
+
+            HttpResponse<String> created = send("POST", "/api/menus", token, "title=Pranzo%20di%20prova");
+            assertEquals(200, created.statusCode());
+            int section = idOf(send("POST", "/api/menus/current/sections", token, "name=Primi").body());
+            HttpResponse<String> item = send("POST", "/api/menus/current/items", token,
+                    "recipe=1&section=" + section + "&description=Piatto");
+            assertEquals(200, item.statusCode(), item.body());
+
+            String menu = send("GET", "/api/menus/current", token, null).body();
+            assertTrue(menu.contains("\"title\":\"Pranzo di prova\""));
+            assertTrue(menu.contains("\"description\":\"Piatto\""));
+        }
+
+        @Test
+        void testCreateMenu_AsCook_Conflict() throws Exception {
+            assertEquals(409, send("POST", "/api/menus", login("Luca"), "title=Pranzo").statusCode());
+        }
+
+        @Test
+        void testUnknownMenu_NotFound() throws Exception {
+            String token = login("Antonio");
+
+            assertEquals(404, send("POST", "/api/menus/999/choose", token, null).statusCode());
+            assertEquals(404, send("POST", "/api/menus/999/copy", token, null).statusCode());
+            assertEquals(404, send("DELETE", "/api/menus/999", token, null).statusCode());
+        }
+
+        @Test
+        void testSessions_HaveTheirOwnCurrentMenu() throws Exception {
+            String antonio = login("Antonio");
+            String chiara = login("Chiara");
+
+            send("POST", "/api/menus", antonio, "title=Menu%20A");
+            send("POST", "/api/menus", chiara, "title=Menu%20C");
+
+            assertTrue(send("GET", "/api/menus/current", antonio, null).body().contains("\"title\":\"Menu A\""));
+            assertTrue(send("GET", "/api/menus/current", chiara, null).body().contains("\"title\":\"Menu C\""));
+        }
+    }
+
+    @Nested
+    class EventsAndSummarySheets {
+
+        @Test
+        void testGenerateSummarySheet_ForSelectedService() throws Exception {
+            String token = login("Antonio");
+
+            assertEquals(200, send("POST", "/api/events/1/select", token, null).statusCode());
+            assertEquals(200, send("POST", "/api/services/1/select", token, null).statusCode());
+            HttpResponse<String> sheet = send("POST", "/api/summary-sheets", token, null);
+
+            assertEquals(200, sheet.statusCode(), sheet.body());
+            assertTrue(sheet.body().contains("\"tasks\":[{"));
+        }
+
+        @Test
+        void testGenerateSummarySheet_NoEventSelected_Conflict() throws Exception {
+            assertEquals(409, send("POST", "/api/summary-sheets", login("Antonio"), null).statusCode());
+        }
+
+        @Test
+        void testListShifts() throws Exception {
+            HttpResponse<String> res = send("GET", "/api/shifts", login("Antonio"), null);
+
+            assertEquals(200, res.statusCode());
+            assertTrue(res.body().startsWith("["));
+        }
+
+        @Test
+        void testListEvents_Paged() throws Exception {
+            String token = login("Antonio");
+            HttpResponse<String> first = send("GET", "/api/events?limit=1&view=header", token, null);
+
+            assertEquals(200, first.statusCode(), first.body());
+            assertTrue(first.body().contains("\"services\":[]"));
+            String next = "/api/events?limit=1&after=" + idOf(first.body());
+            assertEquals("[]", send("GET", next, token, null).body());
+            assertEquals(400, send("GET", "/api/events?limit=0", token, null).statusCode());
+        }
+    }
+
+    private static String login(String user) throws Exception {
+        String body = send("POST", "/api/sessions", null, "user=" + user).body();
+        Matcher m = Pattern.compile("\"token\":\"([^\"]+)\"").matcher(body);
+        assertTrue(m.find(), body);
+        return m.group(1);
+    }
+
+    private static int idOf(String json) {
+        Matcher m = Pattern.compile("\"id\":(\\d+)").matcher(json);
+        assertTrue(m.find(), json);
+        return Integer.parseInt(m.group(1));
+    }
+
+    private static HttpResponse<String> send(String method, String path, String token, String form)
+            throws Exception {
+        HttpRequest.Builder b = HttpRequest.newBuilder(URI.create("http://localhost:" + server.getPort() + path))
+                .header("Content-Type", "application/x-www-form-urlencoded")
+                .method(method, form == null ? HttpRequest.BodyPublishers.noBody()
+                        : HttpRequest.BodyPublishers.ofString(form));
+        if (token != null)
+            b.header(ApiServer.TOKEN_HEADER, token);
+        return client.send(b.build(), HttpResponse.BodyHandlers.ofString());
+    }
+}
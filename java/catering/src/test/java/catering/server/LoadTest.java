@@ -0,0 +1,168 @@
+package catering.server;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import catering.persistence.PersistenceManager;
+
+/**
+ * Load test for {@link ApiServer}: a number of clients, each with its own
+ * session, send a mix of reads and menu edits for a fixed time; reports
+ * throughput and latency percentiles.
+ * <p>
+ * Not a JUnit test; run it with
+ *
+ * <pre>
+ * mvn test-compile exec:java -Dexec.classpathScope=test \
+ *     -Dexec.mainClass=catering.server.LoadTest -Dexec.args="64 20"
+ * </pre>
+ *
+ * Arguments are the number of clients, the duration in seconds and
+ * optionally the base URL of a running server; without it the server is
+ * started in-process on a free port.
+ */
+public class LoadTest {
+
+    private static final String[] USERS = { "Antonio", "Chiara", "Marco", "Giulia" };
+    private static final Pattern TOKEN = Pattern.compile("\"token\":\"([^\"]+)\"");
+    private static final Pattern ID = Pattern.compile("\"id\":(\\d+)");
+
+    public static void main(String[] args) throws Exception {
+        int clients = args.length > 0 ? Integer.parseInt(args[0]) : 32;
+        int seconds = args.length > 1 ? Integer.parseInt(args[1]) : 10;
+        String baseUrl = args.length > 2 ? args[2] : null;
+
+        ApiServer server = null;
+        if (baseUrl == null) {
+            PersistenceManager.initializeDatabase("database/catering_init_sqlite.sql");
+            server = new ApiServer(0);
+            server.start();
+            baseUrl = "http://localhost:" + server.getPort();
+        }
+
+        HttpClient client = HttpClient.newBuilder().build();
+        Client[] workers = new Client[clients];
+        CountDownLatch done = new CountDownLatch(clients);
+        long deadline = System.nanoTime() + seconds * 1_000_000_000L;
+        for (int i = 0; i < clients; i++) {
+            workers[i] = new Client(client, baseUrl, USERS[i % USERS.length], i, deadline, done);
+            new Thread(workers[i], "load-client-" + i).start();
+        }
+        long start = System.nanoTime();
+        done.await();
+        double elapsed = (System.nanoTime() - start) / 1e9;
+        if (server != null)
+            server.stop();
+
+        int count = 0;
+        int errors = 0;
+        for (Client w : workers) {
+            count += w.count;
+            errors += w.errors;
+        }
+        long[] samples = new long[count];
+        int pos = 0;
+        for (Client w : workers) {
+            System.arraycopy(w.samples, 0, samples, pos, w.count);
+            pos += w.count;
+        }
+        Arrays.sort(samples);
+
+        System.out.printf("%d clients, %.1f s: %d requests, %d errors%n", clients, elapsed, count, errors);
+        if (count > 0) {
+            System.out.printf("Throughput %.0f req/s; latency p50 %.2f ms, p99 %.2f ms, max %.2f ms%n",
+                    count / elapsed, samples[count / 2] / 1e6, samples[(int) (count * 0.99)] / 1e6,
+                    samples[count - 1] / 1e6);
+        }
+    }
+
+    /**
+     * One client: logs in, then loops over the workload until the deadline,
+     * timing every request
+     */
+    private static final class Client implements Runnable {
+        private final HttpClient http;
+        private final String baseUrl;
+        private final String user;
+        private final Random random;
+        private final long deadline;
+        private final CountDownLatch done;
+
+        long[] samples = new long[1024];
+        int count;
+        int errors;
+        private String token;
+
+        Client(HttpClient http, String baseUrl, String user, int seed, long deadline, CountDownLatch done) {
+            this.http = http;
+            this.baseUrl = baseUrl;
+            this.user = user;
+            this.random = new Random(seed);
+            this.deadline = deadline;
+            this.done = done;
+        }
+
+        @Override
+        public void run() {
+            try {
+                Matcher m = TOKEN.matcher(send("POST", "/api/sessions", "user=" + user));
+                if (!m.find())
+                    throw new IllegalStateException("Login failed for " + user);
+                token = m.group(1);
+
+                while (System.nanoTime() < deadline) {
+                    int op = random.nextInt(10);
+                    if (op < 3) {
+                        send("GET", "/api/recipes", null);
+                    } else if (op < 5) {
+                        send("GET", "/api/events", null);
+                    } else if (op < 7) {
+                        send("GET", "/api/shifts", null);
+                    } else if (op < 8) {
+                        send("POST", "/api/menus", "title=Carico");
+                    } else if (op < 9) {
+                        send("POST", "/api/menus/current/sections", "name=Sezione");
+                    } else {
+                        Matcher id = ID.matcher(send("POST", "/api/menus/current/sections", "name=Primi"));
+                        String section = id.find() ? "&section=" + id.group(1) : "";
+                        send("POST", "/api/menus/current/items", "recipe=" + (1 + random.nextInt(5)) + section);
+                    }
+                }
+            } catch (Exception ex) {
+                System.err.println(Thread.currentThread().getName() + ": " + ex);
+            } finally {
+                done.countDown();
+            }
+        }
+
+        private String send(String method, String path, String form) throws Exception {
+            HttpRequest.Builder b = HttpRequest.newBuilder(URI.create(baseUrl + path))
+                    .header("Content-Type", "application/x-www-form-urlencoded")
+                    .method(method, form == null ? HttpRequest.BodyPublishers.noBody()
+                            : HttpRequest.BodyPublishers.ofString(form));
+            if (token != null)
+                b.header(ApiServer.TOKEN_HEADER, token);
+
+            long t0 = System.nanoTime();
+            HttpResponse<String> res = http.send(b.build(), HttpResponse.BodyHandlers.ofString());
+            record(System.nanoTime() - t0);
+            // 409 is a refused use-case operation (e.g. no current menu yet), not a failure
+            if (res.statusCode() != 200 && res.statusCode() != 409)
+                errors++;
+            return res.body();
+        }
+
+        private void record(long nanos) {
+            if (count == samples.length)
+                samples = Arrays.copyOf(samples, count * 2);
+            samples[count++] = nanos;
+        }
+    }
+}
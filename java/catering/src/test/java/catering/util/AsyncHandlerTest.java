@@ -0,0 +1,121 @@
+package catering.util;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.util.concurrent.CountDownLatch;
+import java.util.logging.Level;
+import java.util.logging.LogRecord;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Tests for {@link AsyncHandler} and {@link LogFormatter}.
+ */
+class AsyncHandlerTest {
+
+    private final ByteArrayOutputStream out = new ByteArrayOutputStream();
+    private AsyncHandler handler;
+
+    @AfterEach
+    void tearDown() {
+        if (handler != null)
+            handler.close();
+    }
+
+    @Test
+    void testPublish_WritesRecordsInOrder() {
+        handler = new AsyncHandler(out, 1024);
+        for (int i = 0; i < 100; i++) {
+            handler.publish(record(Level.INFO, "line {0}", i));
+        }
+        handler.flush();
+
+        String[] lines = output().split("\n");
+        assertEquals(100, lines.length);
+        assertTrue(lines[0].endsWith(" [INFO] test: line 0"));
+        assertTrue(lines[99].endsWith(" [INFO] test: line 99"));
+    }
+
+    @Test
+    void testFormat_Parameters() {
+        LogFormatter formatter = new LogFormatter();
+
+        assertTrue(formatter.format(record(Level.INFO, "{1} then {0}", "a", "b")).endsWith("b then a\n"));
+        assertTrue(formatter.format(record(Level.INFO, "{0,number,#.0}", 1.5)).endsWith("1.5\n"));
+        assertTrue(formatter.format(record(Level.INFO, "{0} of {", "half")).endsWith("{0} of {\n"));
+    }
+
+    @Test
+    void testFormat_TimestampMatchesDateTimeFormatter() {
+        LogFormatter formatter = new LogFormatter();
+        DateTimeFormatter expected = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss.SSS")
+                .withZone(ZoneId.systemDefault());
+
+        for (long millis : new long[] { 0, 999, 1000, 1_700_000_000_007L, 1_700_000_000_070L, 1_700_000_001_700L }) {
+            StringBuilder sb = new StringBuilder();
+            formatter.appendTimestamp(millis, sb);
+            assertEquals(expected.format(Instant.ofEpochMilli(millis)), sb.toString());
+        }
+    }
+
+    @Test
+    void testPublish_FullBufferDropsInfoNotWarnings() throws InterruptedException {
+        CountDownLatch writing = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        OutputStream blocking = new OutputStream() {
+            @Override
+            public void write(int b) {
+                out.write(b);
+            }
+
+            @Override
+            public void write(byte[] b, int off, int len) {
+                out.write(b, off, len);
+            }
+
+            @Override
+            public void flush() throws IOException {
+                writing.countDown();
+                try {
+                    release.await();
+                } catch (InterruptedException ex) {
+                    throw new IOException(ex);
+                }
+            }
+        };
+        handler = new AsyncHandler(blocking, 4);
+        handler.publish(record(Level.INFO, "first"));
+        writing.await();
+
+        for (int i = 0; i < 10; i++) {
+            handler.publish(record(Level.INFO, "info"));
+        }
+        assertEquals(6, handler.getDropped());
+
+        release.countDown();
+        handler.publish(record(Level.WARNING, "warning"));
+        handler.flush();
+
+        assertTrue(output().contains("6 log records dropped"));
+        assertTrue(output().contains("[WARNING] test: warning"));
+    }
+
+    private String output() {
+        return new String(out.toByteArray(), StandardCharsets.UTF_8);
+    }
+
+    private static LogRecord record(Level level, String message, Object... params) {
+        LogRecord record = new LogRecord(level, message);
+        record.setLoggerName("test");
+        record.setParameters(params);
+        return record;
+    }
+}
@@ -0,0 +1,86 @@
+package catering.util;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.sql.SQLException;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import catering.businesslogic.event.Event;
+import catering.businesslogic.menu.Menu;
+import catering.businesslogic.recipe.RecipeBook;
+import catering.persistence.PersistenceManager;
+
+/**
+ * Tests for {@link DataGenerator} at a small scale.
+ */
+class DataGeneratorTest {
+
+    @BeforeEach
+    void setUp() {
+        PersistenceManager.initializeDatabase("database/catering_init_sqlite.sql");
+    }
+
+    @Test
+    void testGenerate_AddsRowsAfterSeedData() throws SQLException {
+        int menusBefore = count("Menus");
+        int usersBefore = count("Users");
+
+        new DataGenerator(7).users(30).recipes(200, 80).menus(20, 3, 4).events(5, 4).shifts(10, 3)
+                .summarySheets(4, 6).generate();
+
+        assertEquals(menusBefore + 20, count("Menus"));
+        assertEquals(usersBefore + 30, count("Users"));
+        assertEquals(20 * (3 * 4 + 2), count("MenuItems") - countWhere("MenuItems", "menu_id <= " + menusBefore));
+        assertEquals(4 * 6, countWhere("Tasks", "sumsheet_id > 0"));
+    }
+
+    @Test
+    void testGenerate_SameSeed_SameData() throws SQLException {
+        new DataGenerator(7).scaledTo(40).generate();
+        String first = digest();
+
+        PersistenceManager.initializeDatabase("database/catering_init_sqlite.sql");
+        new DataGenerator(7).scaledTo(40).generate();
+
+        assertEquals(first, digest());
+    }
+
+    @Test
+    void testGenerate_RowsLoadAsDomainObjects() throws SQLException {
+        int lastSeedMenu = count("Menus");
+        new DataGenerator(3).scaledTo(20).generate();
+        RecipeBook.getInstance().invalidate();
+
+        Menu menu = Menu.load(lastSeedMenu + 1);
+        assertNotNull(menu);
+        assertEquals(4, menu.getSections().size());
+        assertEquals(2, menu.getFreeItems().size());
+
+        Event event = Event.loadById(count("Events"));
+        assertNotNull(event.getChef());
+        assertTrue(event.getChef().isChef());
+        assertEquals(8, event.getServices().size());
+    }
+
+    private static int count(String table) {
+        return countWhere(table, "1");
+    }
+
+    private static int countWhere(String table, String condition) {
+        int[] n = new int[1];
+        PersistenceManager.executeQuery("SELECT COUNT(*) FROM " + table + " WHERE " + condition,
+                rs -> n[0] = rs.getInt(1));
+        return n[0];
+    }
+
+    private static String digest() {
+        StringBuilder sb = new StringBuilder();
+        PersistenceManager.executeQuery("SELECT (SELECT group_concat(username) FROM Users), "
+                + "(SELECT group_concat(recipe_id) FROM MenuItems), "
+                + "(SELECT group_concat(cook_id || ':' || shift_id) FROM Assignment)",
+                rs -> sb.append(rs.getString(1)).append(rs.getString(2)).append(rs.getString(3)));
+        return sb.toString();
+    }
+}
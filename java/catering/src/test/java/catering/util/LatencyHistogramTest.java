@@ -0,0 +1,34 @@
+package catering.util;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Tests for {@link LatencyHistogram}.
+ */
+class LatencyHistogramTest {
+
+    @Test
+    void testPercentiles_WithinBucketPrecision() {
+        LatencyHistogram h = new LatencyHistogram();
+        for (long v = 1; v <= 100_000; v++) {
+            h.record(v * 1000);
+        }
+
+        assertEquals(100_000, h.getCount());
+        assertEquals(100_000_000L, h.getMaxNanos());
+        assertEquals(50_000_000, h.getPercentileNanos(50), 50_000_000 / 16.0);
+        assertEquals(99_000_000, h.getPercentileNanos(99), 99_000_000 / 16.0);
+        assertEquals(100_000_000L, h.getPercentileNanos(100));
+    }
+
+    @Test
+    void testBuckets_CoverEveryValue() {
+        for (long v : new long[] { 0, 1, 15, 16, 17, 1000, 1L << 40, Long.MAX_VALUE }) {
+            int bucket = LatencyHistogram.bucketOf(v);
+            assertTrue(LatencyHistogram.highestValueIn(bucket) >= v);
+            assertTrue(bucket == 0 || LatencyHistogram.highestValueIn(bucket - 1) < v);
+        }
+    }
+}
@@ -0,0 +1,89 @@
+package catering.util.metrics;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.lang.management.ManagementFactory;
+
+import javax.management.ObjectName;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import catering.businesslogic.CatERing;
+import catering.businesslogic.Session;
+import catering.businesslogic.UseCaseLogicException;
+import catering.persistence.PersistenceManager;
+
+/**
+ * Tests for {@link Metrics}: timers, counters, gauges, the switch and the
+ * JMX export, and the timing of manager operations.
+ */
+class MetricsTest {
+
+    private Session.Scope scope;
+
+    @BeforeEach
+    void setUp() {
+        scope = new Session().bind();
+        Metrics.setEnabled(true);
+        Metrics.reset();
+    }
+
+    @AfterEach
+    void tearDown() {
+        Metrics.setEnabled(true);
+        scope.close();
+    }
+
+    @Test
+    void testTimer_RecordsDurations() {
+        long start = Metrics.start();
+        Metrics.stop("MetricsTest.timer", start);
+        Metrics.stop("MetricsTest.timer", Metrics.start());
+
+        Timer timer = Metrics.timer("MetricsTest.timer");
+        assertEquals(2, timer.getCount());
+        assertTrue(timer.getMaxMillis() >= timer.getP50Millis());
+    }
+
+    @Test
+    void testDisabled_RecordsNothing() {
+        Metrics.setEnabled(false);
+
+        assertEquals(Metrics.NOT_TIMED, Metrics.start());
+        Metrics.stop("MetricsTest.disabled", Metrics.start());
+        Metrics.counter("MetricsTest.disabled").increment();
+
+        assertEquals(0, Metrics.counter("MetricsTest.disabled").getCount());
+        assertFalse(Metrics.dump().contains("MetricsTest.disabled count=1"));
+    }
+
+    @Test
+    void testCounterAndGauge_InDumpAndJmx() throws Exception {
+        Metrics.counter("MetricsTest.counter").add(3);
+        Metrics.gauge("MetricsTest.gauge", () -> 42);
+
+        String dump = Metrics.dump();
+        assertTrue(dump.contains("MetricsTest.counter count=3"));
+        assertTrue(dump.contains("MetricsTest.gauge value=42"));
+        Object value = ManagementFactory.getPlatformMBeanServer().getAttribute(
+                new ObjectName("catering.metrics:type=Gauge,name=" + ObjectName.quote("MetricsTest.gauge")),
+                "Value");
+        assertEquals(42L, value);
+    }
+
+    @Test
+    void testManagerOperation_Timed() throws UseCaseLogicException {
+        PersistenceManager.initializeDatabase("database/catering_init_sqlite.sql");
+        CatERing app = CatERing.getInstance();
+        app.getUserManager().fakeLogin("Antonio");
+
+        app.getMenuManager().createMenu("Pranzo");
+        assertThrows(UseCaseLogicException.class, () -> app.getMenuManager().moveSection(null, 5));
+
+        assertEquals(1, Metrics.timer("MenuManager.createMenu").getCount());
+        assertEquals(1, Metrics.timer("MenuManager.moveSection").getCount());
+        assertEquals(1, Metrics.timer("UserManager.fakeLogin").getCount());
+    }
+}
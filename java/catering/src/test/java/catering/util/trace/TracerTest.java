@@ -0,0 +1,104 @@
+package catering.util.trace;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import catering.businesslogic.CatERing;
+import catering.businesslogic.Session;
+import catering.businesslogic.UseCaseLogicException;
+import catering.persistence.PersistenceManager;
+
+/**
+ * Tests for {@link Tracer}: nesting, sampling per trace and the Chrome
+ * Trace Event export.
+ */
+class TracerTest {
+
+    private Session.Scope scope;
+
+    @BeforeEach
+    void setUp() {
+        scope = new Session().bind();
+        Tracer.clear();
+    }
+
+    @AfterEach
+    void tearDown() {
+        Tracer.setSampleRate(0);
+        Tracer.clear();
+        scope.close();
+    }
+
+    @Test
+    void testOff_RecordsNothing() {
+        Tracer.setSampleRate(0);
+
+        try (Span span = Tracer.start("root", "test")) {
+            assertFalse(span.isSampled());
+        }
+
+        assertEquals(0, Tracer.getSpanCount());
+    }
+
+    @Test
+    void testManagerOperation_NestsLoadsAndQueries() throws UseCaseLogicException {
+        PersistenceManager.initializeDatabase("database/catering_init_sqlite.sql");
+        CatERing app = CatERing.getInstance();
+        Tracer.setSampleRate(1);
+
+        app.getUserManager().fakeLogin("Antonio");
+
+        List<Span> spans = Tracer.getSpans();
+        Span root = spans.get(spans.size() - 1);
+        assertEquals("UserManager.fakeLogin", root.name);
+        assertTrue(spans.stream().anyMatch(s -> s.name.equals("User.load") && s.category.equals("load")));
+        assertTrue(spans.stream().anyMatch(s -> s.category.equals("sql")));
+        for (Span span : spans) {
+            assertTrue(span.startNanos >= root.startNanos && span.endNanos <= root.endNanos);
+        }
+    }
+
+    @Test
+    void testSampling_KeepsOrDropsWholeTraces() {
+        Tracer.setSampleRate(0.5);
+
+        for (int i = 0; i < 200; i++) {
+            try (Span root = Tracer.start("root", "test")) {
+                try (Span child = Tracer.start("child", "test")) {
+                    assertEquals(root.isSampled(), child.isSampled());
+                }
+            }
+        }
+
+        int spans = Tracer.getSpanCount();
+        assertEquals(0, spans % 2);
+        assertTrue(spans > 0 && spans < 400);
+    }
+
+    @Test
+    void testExport_ChromeTraceFormat(@TempDir Path dir) throws IOException {
+        Tracer.setSampleRate(1);
+        try (Span span = Tracer.start("say \"hi\"", "test").arg("id", 7)) {
+            assertTrue(span.isSampled());
+        }
+
+        Path file = dir.resolve("trace.json");
+        Tracer.export(file);
+
+        String json = new String(Files.readAllBytes(file), StandardCharsets.UTF_8);
+        assertTrue(json.startsWith("{\"displayTimeUnit\":\"ms\",\"traceEvents\":["));
+        assertTrue(json.contains("\"name\":\"thread_name\",\"ph\":\"M\""));
+        assertTrue(json.contains("\"name\":\"say \\\"hi\\\"\",\"cat\":\"test\",\"ph\":\"X\""));
+        assertTrue(json.contains("\"args\":{\"id\":\"7\"}"));
+    }
+}